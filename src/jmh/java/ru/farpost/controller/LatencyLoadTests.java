@@ -0,0 +1,269 @@
+package ru.farpost.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.farpost.JavaBackendTestApplication;
+import ru.farpost.service.DocumentIngestService;
+import ru.farpost.utils.CorpusGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный тест: 99-й процентиль задержки легкого запроса {@code GET /api/documents/{id}}, пока несколько
+ * клиентов непрерывно запрашивают {@code /statistics} по группе документов, не должен превышать исходный
+ * (без нагрузки) больше чем в {@code load.maxP99Ratio} раз.
+ * <p>
+ * Перед измерениями поднимается приложение с веб-сервером на свободном порту, схема БД пересоздается и в нее
+ * загружается сгенерированный корпус. Поэтому, как и {@code ServiceBenchmark}, тесту нужна отдельная БД PostgreSQL,
+ * которую можно очищать; ее параметры задаются системными свойствами {@code jmh.datasource.url},
+ * {@code jmh.datasource.username} и {@code jmh.datasource.password}. Без {@code jmh.datasource.url} тест пропускается.
+ * <p>
+ * Остальные параметры также задаются системными свойствами:
+ * <ul>
+ *     <li>{@code load.documents} – количество документов корпуса, по умолчанию {@code 2000};</li>
+ *     <li>{@code load.groupSize} – количество документов в группе запроса {@code /statistics}, по умолчанию {@code 1000};</li>
+ *     <li>{@code load.heavyClients} – количество клиентов {@code /statistics}, по умолчанию {@code 32};</li>
+ *     <li>{@code load.probeClients} – количество клиентов {@code GET /{id}}, по умолчанию {@code 4};</li>
+ *     <li>{@code load.seconds} – длительность каждой фазы измерений в секундах, по умолчанию {@code 20};</li>
+ *     <li>{@code load.maxP99Ratio} – допустимый рост 99-го процентиля под нагрузкой, по умолчанию {@code 2.0}.</li>
+ * </ul>
+ */
+@EnabledIfSystemProperty(named = "jmh.datasource.url", matches = ".+")
+class LatencyLoadTests {
+
+    /**
+     * Количество документов корпуса.
+     */
+    private static final int DOCUMENTS = Integer.getInteger("load.documents", 2000);
+
+    /**
+     * Количество документов в группе запроса {@code /statistics}.
+     */
+    private static final int GROUP_SIZE = Integer.getInteger("load.groupSize", 1000);
+
+    /**
+     * Количество клиентов {@code /statistics}.
+     */
+    private static final int HEAVY_CLIENTS = Integer.getInteger("load.heavyClients", 32);
+
+    /**
+     * Количество клиентов {@code GET /{id}}.
+     */
+    private static final int PROBE_CLIENTS = Integer.getInteger("load.probeClients", 4);
+
+    /**
+     * Длительность каждой фазы измерений.
+     */
+    private static final Duration PHASE = Duration.ofSeconds(Long.getLong("load.seconds", 20));
+
+    /**
+     * Допустимый рост 99-го процентиля задержки под нагрузкой.
+     */
+    private static final double MAX_P99_RATIO = Double.parseDouble(System.getProperty("load.maxP99Ratio", "2.0"));
+
+    /**
+     * HTTP-клиент; каждый запрос выполняется в своем виртуальном потоке, чтобы клиент не ограничивал нагрузку.
+     */
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    /**
+     * Контекст приложения.
+     */
+    private static ConfigurableApplicationContext context;
+
+    /**
+     * Адрес API документов.
+     */
+    private static String url;
+
+    /**
+     * Метод для запуска приложения и загрузки корпуса в БД.
+     *
+     * @throws IOException если корпус не удалось загрузить.
+     */
+    @BeforeAll
+    static void setUp() throws IOException {
+        context = new SpringApplication(JavaBackendTestApplication.class).run(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.datasource.url=" + System.getProperty("jmh.datasource.url"),
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", "myuser"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", "mypassword"));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        url = "http://localhost:" + port + "/api/documents";
+
+        List<String> texts = new CorpusGenerator(CorpusGenerator.Language.RU, 20000, 42).texts(DOCUMENTS, 300);
+        ObjectMapper mapper = new ObjectMapper();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            ObjectNode document = mapper.createObjectNode().put("id", i + 1L).put("text", texts.get(i));
+            body.append(mapper.writeValueAsString(document)).append('\n');
+        }
+        context.getBean(DocumentIngestService.class)
+                .ingestNdjson(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    /**
+     * Метод для остановки приложения.
+     */
+    @AfterAll
+    static void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testIdLatencyStaysFlatWhileStatisticsIsSaturated() throws Exception {
+
+        String statisticsPath = "/statistics?ids=" + LongStream.rangeClosed(1, Math.min(GROUP_SIZE, DOCUMENTS))
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(","));
+        probe(Duration.ofSeconds(5));
+        Result idle = probe(PHASE);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong heavyCompleted = new AtomicLong();
+        AtomicLong heavyFailed = new AtomicLong();
+        Result loaded;
+        try (ExecutorService heavy = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < HEAVY_CLIENTS; i++) {
+                heavy.submit(() -> {
+                    while (running.get()) {
+                        try {
+                            (succeeded(send(url + statisticsPath)) ? heavyCompleted : heavyFailed).incrementAndGet();
+                        } catch (IOException e) {
+                            heavyFailed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            Thread.sleep(2000);
+            long heavyBefore = heavyCompleted.get();
+            loaded = probe(PHASE);
+            heavyCompleted.addAndGet(-heavyBefore);
+            running.set(false);
+        }
+
+        System.out.printf("GET /{id} p50/p99, ms: idle %.1f/%.1f, under load %.1f/%.1f; /statistics: %d completed, %d failed%n",
+                idle.percentile(0.5), idle.percentile(0.99), loaded.percentile(0.5), loaded.percentile(0.99),
+                heavyCompleted.get(), heavyFailed.get());
+        assertEquals(0, idle.errors());
+        assertEquals(0, loaded.errors());
+        assertTrue(heavyCompleted.get() > 0, "/statistics did not complete under load");
+        double ratio = loaded.percentile(0.99) / idle.percentile(0.99);
+        assertTrue(ratio <= MAX_P99_RATIO, () -> String.format("GET /{id} p99 grew %.2f times under load (allowed %.2f)",
+                ratio, MAX_P99_RATIO));
+
+    }
+
+    /**
+     * Метод для измерения задержек {@code GET /{id}} по случайным документам корпуса.
+     *
+     * @param duration длительность измерений.
+     * @return задержки запросов и количество ошибок.
+     * @throws InterruptedException если ожидание клиентов прервано.
+     */
+    private static Result probe(Duration duration) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService probes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < PROBE_CLIENTS; i++) {
+                probes.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long id = ThreadLocalRandom.current().nextLong(1, DOCUMENTS + 1);
+                        long start = System.nanoTime();
+                        try {
+                            if (!succeeded(send(url + "/" + id))) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                    return null;
+                });
+            }
+        }
+        return new Result(latencies.stream().mapToLong(Long::longValue).sorted().toArray(), errors.get());
+    }
+
+    /**
+     * Метод для выполнения запроса {@code GET}.
+     *
+     * @param uri адрес запроса.
+     * @return ответ.
+     * @throws IOException если запрос не удалось выполнить.
+     * @throws InterruptedException если ожидание ответа прервано.
+     */
+    private static HttpResponse<String> send(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofMinutes(1)).GET().build();
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Метод для проверки, что запрос выполнен успешно: ошибки приложения возвращаются с кодом 200
+     * и телом {@code {"code": ..., "message": ...}}.
+     *
+     * @param response ответ.
+     * @return {@code true}, если запрос выполнен успешно.
+     */
+    private static boolean succeeded(HttpResponse<String> response) {
+        return response.statusCode() == 200 && !response.body().startsWith("{\"code\":");
+    }
+
+    /**
+     * Результат измерений задержек.
+     *
+     * @param latencies задержки запросов в наносекундах по возрастанию.
+     * @param errors количество ошибок.
+     */
+    private record Result(long[] latencies, long errors) {
+
+        /**
+         * Метод для получения процентиля задержки.
+         *
+         * @param quantile квантиль от 0 до 1.
+         * @return задержка в миллисекундах.
+         */
+        double percentile(double quantile) {
+            int index = Math.min(latencies.length - 1, (int) Math.ceil(quantile * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+
+    }
+
+}
@@ -0,0 +1,160 @@
+package ru.farpost.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.farpost.JavaBackendTestApplication;
+import ru.farpost.utils.CorpusGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки методов {@link DocumentService}, работающих с БД: поиска документов по слову
+ * и вычисления статистики всех документов.
+ * <p>
+ * Перед измерениями поднимается контекст приложения без веб-сервера, схема БД пересоздается и в нее
+ * загружается сгенерированный корпус. Поэтому для бенчмарка нужна отдельная БД PostgreSQL, которую можно
+ * очищать; ее параметры задаются системными свойствами {@code jmh.datasource.url},
+ * {@code jmh.datasource.username} и {@code jmh.datasource.password}, например
+ * {@code -jvmArgsAppend -Djmh.datasource.url=jdbc:postgresql://localhost:5432/jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    /**
+     * Язык документов.
+     */
+    @Param({"RU"})
+    public CorpusGenerator.Language language;
+
+    /**
+     * Количество документов корпуса.
+     */
+    @Param({"1000"})
+    public int documents;
+
+    /**
+     * Среднее количество слов в документе.
+     */
+    @Param({"300"})
+    public int wordsPerDocument;
+
+    /**
+     * Количество различных слов словаря генератора.
+     */
+    @Param({"20000"})
+    public int vocabularySize;
+
+    /**
+     * Контекст приложения.
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Сервис для работы с документами.
+     */
+    private DocumentService documentService;
+
+    /**
+     * Самое частое слово корпуса.
+     */
+    private String frequentWord;
+
+    /**
+     * Редкое слово корпуса.
+     */
+    private String rareWord;
+
+    /**
+     * Метод для запуска приложения и загрузки корпуса в БД.
+     *
+     * @throws IOException если корпус не удалось загрузить.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplication(JavaBackendTestApplication.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.datasource.url=" + System.getProperty("jmh.datasource.url", "jdbc:postgresql://localhost:5432/jmh"),
+                "--spring.datasource.username=" + System.getProperty("jmh.datasource.username", "myuser"),
+                "--spring.datasource.password=" + System.getProperty("jmh.datasource.password", "mypassword"));
+        documentService = context.getBean(DocumentService.class);
+
+        CorpusGenerator generator = new CorpusGenerator(language, vocabularySize, 42);
+        frequentWord = generator.word(0);
+        rareWord = generator.word(vocabularySize / 2);
+        List<String> texts = generator.texts(documents, wordsPerDocument);
+        ObjectMapper mapper = new ObjectMapper();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            ObjectNode document = mapper.createObjectNode().put("id", i + 1L).put("text", texts.get(i));
+            body.append(mapper.writeValueAsString(document)).append('\n');
+        }
+        context.getBean(DocumentIngestService.class)
+                .ingestNdjson(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    /**
+     * Метод для остановки приложения.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Бенчмарк поиска документов по частому слову.
+     *
+     * @return идентификаторы документов.
+     */
+    @Benchmark
+    public List<Long> getDocumentIdByFrequentWord() {
+        return documentService.getDocumentIdByWords(frequentWord);
+    }
+
+    /**
+     * Бенчмарк поиска документов по редкому слову.
+     *
+     * @return идентификаторы документов.
+     */
+    @Benchmark
+    public List<Long> getDocumentIdByRareWord() {
+        return documentService.getDocumentIdByWords(rareWord);
+    }
+
+    /**
+     * Бенчмарк вычисления статистики всех документов.
+     *
+     * @return статистика корпуса.
+     */
+    @Benchmark
+    public Map<String, Integer> getAllDocumentStatistic() {
+        return documentService.getAllDocumentsStatistics(false, null);
+    }
+
+}
@@ -0,0 +1,122 @@
+package ru.farpost.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки аналитических функций {@link DocumentsAnalyticFunctions} на сгенерированных текстах.
+ * Каждая операция обрабатывает следующий текст из набора, поэтому измерение не сводится к одному тексту.
+ * Размер и язык текстов задаются параметрами JMH, например {@code -p documentWords=10000 -p language=EN}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    /**
+     * Количество различных текстов, по которым идут операции.
+     */
+    private static final int TEXTS = 64;
+
+    /**
+     * Язык текстов.
+     */
+    @Param({"RU", "EN", "MIXED"})
+    public CorpusGenerator.Language language;
+
+    /**
+     * Среднее количество слов в тексте.
+     */
+    @Param({"100", "10000"})
+    public int documentWords;
+
+    /**
+     * Количество различных слов словаря генератора.
+     */
+    @Param({"20000"})
+    public int vocabularySize;
+
+    /**
+     * Аналитические функции.
+     */
+    private DocumentsAnalyticFunctions analyticFunctions;
+
+    /**
+     * Тексты документов.
+     */
+    private List<String> texts;
+
+    /**
+     * Номер следующего текста.
+     */
+    private int next;
+
+    /**
+     * Метод для генерации текстов и создания аналитических функций.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        CorpusGenerator generator = new CorpusGenerator(language, vocabularySize, 42);
+        analyticFunctions = new DocumentsAnalyticFunctions(new TextTokenizer(generator.stopWordsUtil()), new TermDictionary());
+        texts = generator.texts(TEXTS, documentWords);
+    }
+
+    /**
+     * Метод для получения следующего текста.
+     *
+     * @return текст документа.
+     */
+    private String nextText() {
+        String text = texts.get(next);
+        next = (next + 1) % TEXTS;
+        return text;
+    }
+
+    /**
+     * Бенчмарк нормализации текста.
+     *
+     * @return нормализованный текст.
+     */
+    @Benchmark
+    public String normalizeDocumentText() {
+        return analyticFunctions.normalizeDocumentText(nextText());
+    }
+
+    /**
+     * Бенчмарк вычисления статистики текста.
+     *
+     * @return статистика текста.
+     */
+    @Benchmark
+    public Map<String, Integer> getDocumentStatistic() {
+        return analyticFunctions.getDocumentStatistic(nextText());
+    }
+
+    /**
+     * Бенчмарк поиска наиболее часто встречающихся слов текста.
+     *
+     * @return наиболее часто встречающиеся слова.
+     */
+    @Benchmark
+    public Map<String, Integer> getTopWords() {
+        return analyticFunctions.getTopWords(nextText(), DocumentsAnalyticFunctions.DEFAULT_TOP_WORDS_COUNT);
+    }
+
+}
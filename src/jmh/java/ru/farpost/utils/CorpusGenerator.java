@@ -0,0 +1,215 @@
+package ru.farpost.utils;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Генератор текстов документов для бенчмарков.
+ * Слова собираются из слогов выбранного языка, частоты слов подчиняются закону Ципфа, в текст подмешиваются
+ * стоп-слова из {@code application.yaml}, заглавные буквы, знаки препинания и границы предложений.
+ * Генерация детерминирована: одинаковые параметры дают одинаковый корпус.
+ */
+public class CorpusGenerator {
+
+    /**
+     * Язык генерируемых текстов.
+     */
+    public enum Language {
+
+        /**
+         * Русские слова.
+         */
+        RU,
+
+        /**
+         * Английские слова.
+         */
+        EN,
+
+        /**
+         * Русские и английские слова вперемешку.
+         */
+        MIXED
+
+    }
+
+    /**
+     * Слоги русских слов.
+     */
+    private static final String[] RU_SYLLABLES = {
+            "ка", "ло", "ми", "ре", "ст", "во", "на", "пр", "ти", "ко", "да", "ны", "ль", "ра", "че", "ше",
+            "бу", "зо", "жи", "ёт", "ую", "ов", "ени", "ость", "ник", "тель", "ать", "ый"};
+
+    /**
+     * Слоги английских слов.
+     */
+    private static final String[] EN_SYLLABLES = {
+            "ka", "lo", "mi", "re", "st", "vo", "na", "pr", "ti", "co", "da", "ny", "th", "ra", "ch", "sh",
+            "bu", "zo", "ing", "tion", "er", "ed", "ly", "ment", "ous", "al", "ize", "ive"};
+
+    /**
+     * Показатель степени распределения Ципфа.
+     */
+    private static final double ZIPF_EXPONENT = 1.07;
+
+    /**
+     * Доля стоп-слов среди слов текста.
+     */
+    private static final double STOP_WORD_RATE = 0.2;
+
+    /**
+     * Генератор случайных чисел.
+     */
+    private final Random random;
+
+    /**
+     * Словарь, упорядоченный по убыванию частоты.
+     */
+    private final String[] vocabulary;
+
+    /**
+     * Накопленные вероятности слов словаря.
+     */
+    private final double[] cumulative;
+
+    /**
+     * Стоп-слова.
+     */
+    private final List<String> stopWords;
+
+    /**
+     * Конструктор для создания генератора.
+     *
+     * @param language язык текстов.
+     * @param vocabularySize количество различных слов.
+     * @param seed начальное значение генератора случайных чисел.
+     */
+    public CorpusGenerator(Language language, int vocabularySize, long seed) {
+        this.random = new Random(seed);
+        this.stopWords = loadStopWords();
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            String[] syllables = switch (language) {
+                case RU -> RU_SYLLABLES;
+                case EN -> EN_SYLLABLES;
+                case MIXED -> i % 2 == 0 ? RU_SYLLABLES : EN_SYLLABLES;
+            };
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int j = 0; j < length; j++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        this.cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * Метод для получения слова словаря по его рангу частоты.
+     *
+     * @param rank ранг слова, начиная с {@code 0} для самого частого.
+     * @return слово словаря.
+     */
+    public String word(int rank) {
+        return vocabulary[rank];
+    }
+
+    /**
+     * Метод для генерации текста документа.
+     *
+     * @param words количество слов в тексте.
+     * @return текст документа.
+     */
+    public String text(int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        boolean sentenceStart = true;
+        for (int i = 0; i < words; i++) {
+            String word = random.nextDouble() < STOP_WORD_RATE
+                    ? stopWords.get(random.nextInt(stopWords.size()))
+                    : vocabulary[nextRank()];
+            if (sentenceStart) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+            sentenceStart = random.nextInt(12) == 0;
+            if (sentenceStart) {
+                text.append(random.nextInt(5) == 0 ? "! " : ". ");
+            } else if (random.nextInt(10) == 0) {
+                text.append(", ");
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Метод для генерации корпуса документов.
+     *
+     * @param documents количество документов.
+     * @param wordsPerDocument среднее количество слов в документе; длина документа равномерно
+     *                         распределена от половины до полутора средних.
+     * @return тексты документов.
+     */
+    public List<String> texts(int documents, int wordsPerDocument) {
+        List<String> texts = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            texts.add(text(wordsPerDocument / 2 + random.nextInt(wordsPerDocument + 1)));
+        }
+        return texts;
+    }
+
+    /**
+     * Метод для создания утилиты стоп-слов со списком из {@code application.yaml}.
+     *
+     * @return утилита стоп-слов.
+     */
+    public StopWordsListUtil stopWordsUtil() {
+        StopWordsListUtil stopWordsUtil = new StopWordsListUtil();
+        stopWordsUtil.setWords(stopWords);
+        return stopWordsUtil;
+    }
+
+    /**
+     * Метод для получения ранга следующего слова по распределению Ципфа.
+     *
+     * @return ранг слова.
+     */
+    private int nextRank() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, vocabulary.length - 1);
+    }
+
+    /**
+     * Метод для чтения списка стоп-слов из {@code application.yaml}.
+     *
+     * @return список стоп-слов.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> loadStopWords() {
+        try (InputStream input = CorpusGenerator.class.getResourceAsStream("/application.yaml")) {
+            Map<String, Object> config = new Yaml().load(input);
+            return (List<String>) ((Map<String, Object>) config.get("stop")).get("words");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
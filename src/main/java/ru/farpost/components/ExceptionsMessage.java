@@ -22,7 +22,32 @@ public enum ExceptionsMessage {
     /**
      * Сообщение для случая, когда произошла ошибка при создании документа.
      */
-    CREATE_ERROR("Ошибка при создании документа!", 400);
+    CREATE_ERROR("Ошибка при создании документа!", 400),
+
+    /**
+     * Сообщение для случая, когда документ в теле запроса не удалось разобрать.
+     */
+    PARSE_ERROR("Некорректный формат документа!", 400),
+
+    /**
+     * Сообщение для случая, когда параметр запроса имеет недопустимое значение.
+     */
+    INVALID_PARAMETER("Некорректное значение параметра запроса!", 400),
+
+    /**
+     * Сообщение для случая, когда текст документа длиннее допустимого.
+     */
+    DOCUMENT_TOO_LARGE("Текст документа слишком большой!", 413),
+
+    /**
+     * Сообщение для случая, когда очередь тяжелых запросов переполнена.
+     */
+    SERVER_BUSY("Сервер перегружен, повторите запрос позже!", 503),
+
+    /**
+     * Сообщение для случая, когда узел кластера не ответил за отведенное время.
+     */
+    SHARD_UNAVAILABLE("Узел кластера недоступен, повторите запрос позже!", 504);
 
     /**
      * Сообщение об ошибке.
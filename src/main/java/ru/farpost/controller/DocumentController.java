@@ -1,24 +1,90 @@
 package ru.farpost.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
-import ru.farpost.components.ExceptionsMessage;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.farpost.dto.BulkResultDTO;
 import ru.farpost.dto.DocumentDTO;
-import ru.farpost.exception.ErrorResponse;
+import ru.farpost.dto.DocumentIdsPageDTO;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.dto.StatisticTotalsDTO;
 import ru.farpost.model.Document;
+import ru.farpost.service.ClusterService;
+import ru.farpost.service.DocumentIngestService;
 import ru.farpost.service.DocumentService;
+import ru.farpost.service.DocumentVersionService;
+import ru.farpost.service.IndexPipelineService;
+import ru.farpost.utils.CorpusTaskExecutor;
+import ru.farpost.utils.ShardMerger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Контроллер для обработки HTTP-запросов по управлению документами.
+ * Тяжелые запросы по всему корпусу выполняются асинхронно в ограниченном пуле {@link CorpusTaskExecutor},
+ * чтобы не занимать потоки обработки легких запросов.
+ * Ответы по документу и общая статистика передаются с {@code ETag} (версией документа или корпуса, см.
+ * {@link DocumentVersionService}) и {@code Cache-Control: no-cache}; на запрос с {@code If-None-Match},
+ * совпадающим с текущей версией, возвращается {@code 304 Not Modified} без чтения и разбора текста.
+ * Если изменения документов применяются к индексу отложенно (см. {@link IndexPipelineService}), ответ на сохранение
+ * содержит заголовок {@value #VISIBLE_AFTER_HEADER} с номером события, после применения которого изменения видны
+ * в поиске и аналитике.
+ * <p>
+ * При работе в кластере (см. {@link ClusterService}) контроллер узла, получившего запрос клиента, выступает
+ * координатором: запрос по документу передается узлу документа, а поиск, общая статистика, частые слова, n-граммы
+ * и повторная индексация параллельно выполняются всеми узлами, и их частичные результаты объединяются
+ * (см. {@link ShardMerger}); свою часть координатор вычисляет сам, без запроса по HTTP, а ответы остальных узлов
+ * ожидает без блокировки потока обработки запросов. Запрос координатора с заголовком {@value ClusterService#SHARD_HEADER} узел выполняет
+ * только по своим документам.
  */
 @Controller
-@RequestMapping("/api/documents")
+@RequestMapping(DocumentController.BASE_PATH)
 public class DocumentController {
 
+    /**
+     * Путь запросов к документам.
+     */
+    static final String BASE_PATH = "/api/documents";
+
+    /**
+     * Заголовок {@code Cache-Control} ответов с {@code ETag}: ответ можно хранить, но перед использованием
+     * его нужно подтвердить запросом с {@code If-None-Match}.
+     */
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache();
+
+    /**
+     * Заголовок ответа на сохранение с номером события, которого должен достичь водяной знак индекса.
+     */
+    public static final String VISIBLE_AFTER_HEADER = "X-Visible-After";
+
     /**
      * Сервис для работы с документами.
      * Обеспечивает бизнес-логику для операций над {@link DocumentDTO} и {@link Document}.
@@ -26,96 +92,628 @@ public class DocumentController {
     private final DocumentService documentService;
 
     /**
-     * Конструктор для создания экземпляра контроллера документов с внедренным сервисом (@Autowired).
+     * Сервис для пакетной загрузки документов.
+     */
+    private final DocumentIngestService documentIngestService;
+
+    /**
+     * Компонент для выполнения тяжелых запросов по всему корпусу.
+     */
+    private final CorpusTaskExecutor corpusTaskExecutor;
+
+    /**
+     * Сервис для получения версий документов и корпуса.
+     */
+    private final DocumentVersionService documentVersionService;
+
+    /**
+     * Сервис для отложенного применения изменений документов к индексу и аналитике.
+     */
+    private final IndexPipelineService indexPipelineService;
+
+    /**
+     * Сервис для работы приложения узлом кластера.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * Конструктор для создания экземпляра контроллера документов с внедренными сервисами (@Autowired).
      *
      * @param documentService сервис для работы с документами
+     * @param documentIngestService сервис для пакетной загрузки документов
+     * @param corpusTaskExecutor компонент для выполнения тяжелых запросов по всему корпусу
+     * @param documentVersionService сервис для получения версий документов и корпуса
+     * @param indexPipelineService сервис для отложенного применения изменений к индексу
+     * @param clusterService сервис для работы приложения узлом кластера
      */
     @Autowired
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, DocumentIngestService documentIngestService,
+                              CorpusTaskExecutor corpusTaskExecutor, DocumentVersionService documentVersionService,
+                              IndexPipelineService indexPipelineService, ClusterService clusterService) {
         this.documentService = documentService;
+        this.documentIngestService = documentIngestService;
+        this.corpusTaskExecutor = corpusTaskExecutor;
+        this.documentVersionService = documentVersionService;
+        this.indexPipelineService = indexPipelineService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Метод для проверки, что запрос нужно выполнить координатором кластера.
+     *
+     * @param request запрос.
+     * @return {@code true}, если работа в кластере включена и запрос получен не от координатора.
+     */
+    private boolean coordinating(WebRequest request) {
+        return clusterService.isEnabled() && request.getHeader(ClusterService.SHARD_HEADER) == null;
+    }
+
+    /**
+     * Метод для проверки, что запрос по документу нужно передать узлу документа.
+     *
+     * @param id идентификатор документа.
+     * @param request запрос.
+     * @return {@code true}, если запрос выполняется координатором, а документ хранится на другом узле.
+     */
+    private boolean remote(Long id, WebRequest request) {
+        return coordinating(request) && !clusterService.isLocal(id);
+    }
+
+    /**
+     * Метод для получения пути и строки запроса для передачи узлам в том виде, в котором их передал клиент.
+     *
+     * @param request запрос.
+     * @return путь и строка запроса.
+     */
+    private static String shardPath(WebRequest request) {
+        HttpServletRequest servletRequest = ((NativeWebRequest) request).getNativeRequest(HttpServletRequest.class);
+        return shardPath(servletRequest.getRequestURI(), servletRequest.getQueryString());
+    }
+
+    /**
+     * Метод для получения пути и строки запроса для передачи узлам.
+     *
+     * @param request запрос.
+     * @param path путь относительно {@link #BASE_PATH}.
+     * @param query строка запроса или {@code null}, если передается строка запроса клиента.
+     * @return путь и строка запроса.
+     */
+    private static String shardPath(WebRequest request, String path, String query) {
+        HttpServletRequest servletRequest = ((NativeWebRequest) request).getNativeRequest(HttpServletRequest.class);
+        return shardPath(servletRequest.getContextPath() + BASE_PATH + path,
+                query == null ? servletRequest.getQueryString() : query);
+    }
+
+    /**
+     * Метод для соединения пути и строки запроса.
+     *
+     * @param path путь.
+     * @param query строка запроса или {@code null}, если ее нет.
+     * @return путь и строка запроса.
+     */
+    private static String shardPath(String path, String query) {
+        return query == null ? path : path + "?" + query;
+    }
+
+    /**
+     * Метод для передачи запроса на чтение по документу узлу документа вместе с заголовком {@code If-None-Match}.
+     *
+     * @param id идентификатор документа.
+     * @param request запрос.
+     * @param type тип тела ответа.
+     * @return {@link ResponseEntity} с ответом узла.
+     * @param <T> тип тела ответа.
+     */
+    private <T> ResponseEntity<T> forward(Long id, WebRequest request, TypeReference<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return clusterService.forward(id, "GET", shardPath(request), headers,
+                HttpRequest.BodyPublishers.noBody(), false, type);
+    }
+
+    /**
+     * Метод для формирования ответа по объединенным частичным результатам узлов.
+     * Если часть узлов не ответила, количество таких узлов передается в заголовке
+     * {@value ClusterService#FAILED_SHARDS_HEADER}.
+     *
+     * @param results частичные результаты узлов.
+     * @param merge функция для объединения частичных результатов.
+     * @return {@link ResponseEntity} с объединенным результатом.
+     * @param <T> тип частичного результата.
+     * @param <R> тип объединенного результата.
+     */
+    private static <T, R> ResponseEntity<R> merged(ClusterService.ShardResults<T> results, Function<List<T>, R> merge) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (results.getFailedShards() > 0) {
+            response.header(ClusterService.FAILED_SHARDS_HEADER, Integer.toString(results.getFailedShards()));
+        }
+        return response.body(merge.apply(results.getValues()));
+    }
+
+    /**
+     * Метод для формирования ответа с {@code ETag}.
+     * Если {@code If-None-Match} запроса совпадает с {@code eTag}, возвращается {@code 304 Not Modified},
+     * и тело ответа не вычисляется.
+     *
+     * @param request запрос.
+     * @param eTag версия ответа или {@code null}, если версия неизвестна.
+     * @param body функция для вычисления тела ответа.
+     * @return {@link ResponseEntity} с телом ответа или без него.
+     * @param <T> тип тела ответа.
+     */
+    private static <T> ResponseEntity<T> conditional(WebRequest request, String eTag, Supplier<T> body) {
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(body.get());
+    }
+
+    /**
+     * Метод для формирования ответа на сохранение с заголовком {@value #VISIBLE_AFTER_HEADER}.
+     *
+     * @param sequence номер события или {@code 0}, если изменения уже применены; в этом случае заголовок не передается.
+     * @param body тело ответа.
+     * @return {@link ResponseEntity} с телом ответа.
+     * @param <T> тип тела ответа.
+     */
+    private static <T> ResponseEntity<T> saved(long sequence, T body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (sequence > 0) {
+            response.header(VISIBLE_AFTER_HEADER, Long.toString(sequence));
+        }
+        return response.body(body);
     }
 
     /**
      * Метод для обработки запроса на создание нового документа и сохранения его в системе.
      *
      * @param document объект документа, переданный в теле запроса.
+     * @param request запрос.
      * @return {@link ResponseEntity} с сообщением о статусе создания документа.
      */
     @RequestMapping(value = "/", method = RequestMethod.POST)
-    public ResponseEntity<Map<String, String>> createDocument(@RequestBody Document document) {
-        if (document.getId() == null || document.getText().isEmpty() || document.getText().isBlank()) {
-            throw new ErrorResponse(ExceptionsMessage.CREATE_ERROR);
+    public ResponseEntity<Map<String, String>> createDocument(@RequestBody Document document, WebRequest request) {
+        documentService.validateDocument(document);
+        if (remote(document.getId(), request)) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            return clusterService.forward(document.getId(), "POST", shardPath(request), headers,
+                    clusterService.jsonBody(document), true, new TypeReference<>() { });
         }
-        documentService.saveDocument(document);
+        long sequence = documentService.saveDocument(document);
         var response = Map.of("createStatus", "Документ успешно сохранен!");
-        return ResponseEntity.ok(response);
+        return saved(sequence, response);
+    }
+
+    /**
+     * Метод для обработки запроса на пакетную загрузку документов, переданных JSON-массивом.
+     * Каждый документ проверяется так же, как в {@link #createDocument(Document, WebRequest)}; некорректные документы
+     * перечисляются в ответе, остальные сохраняются.
+     * При работе в кластере документы других узлов передаются этим узлам.
+     *
+     * @param body тело запроса с JSON-массивом документов.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с объектом {@link BulkResultDTO}, содержащим результат загрузки.
+     * @throws IOException если тело запроса не удалось прочитать.
+     */
+    @RequestMapping(value = "/bulk", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkResultDTO> createDocuments(InputStream body, WebRequest request) throws IOException {
+        BulkResultDTO result = documentIngestService.ingestJsonArray(body, coordinating(request));
+        return saved(result.getVisibleAfter(), result);
+    }
+
+    /**
+     * Метод для обработки запроса на пакетную загрузку документов в формате NDJSON (один документ на строку).
+     * При работе в кластере документы других узлов передаются этим узлам.
+     *
+     * @param body тело запроса с документами в формате NDJSON.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с объектом {@link BulkResultDTO}, содержащим результат загрузки.
+     * @throws IOException если тело запроса не удалось прочитать.
+     */
+    @RequestMapping(value = "/bulk", method = RequestMethod.POST, consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkResultDTO> createDocumentsFromNdjson(InputStream body, WebRequest request) throws IOException {
+        BulkResultDTO result = documentIngestService.ingestNdjson(body, coordinating(request));
+        return saved(result.getVisibleAfter(), result);
+    }
+
+    /**
+     * Метод для обработки запроса на потоковую загрузку текста документа, переданного в теле запроса как есть.
+     * Документ создается или перезаписывается; тело запроса читается частями, поэтому размер текста
+     * не ограничен доступной памятью. При работе в кластере тело запроса передается узлу документа так же потоком.
+     *
+     * @param id идентификатор документа, переданный в параметре пути.
+     * @param request запрос с текстом документа в теле.
+     * @return {@link ResponseEntity} с картой, содержащей статистические данные по сохраненному документу.
+     * @throws IOException если тело запроса не удалось прочитать.
+     */
+    @RequestMapping(value = "/{id}/text", method = RequestMethod.PUT, consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Map<String, Integer>> uploadDocumentText(@PathVariable("id") Long id, WebRequest request) throws IOException {
+        HttpServletRequest servletRequest = ((NativeWebRequest) request).getNativeRequest(HttpServletRequest.class);
+        if (remote(id, request)) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.CONTENT_TYPE, servletRequest.getContentType());
+            InputStream body = servletRequest.getInputStream();
+            return clusterService.forward(id, "PUT", shardPath(request), headers,
+                    HttpRequest.BodyPublishers.ofInputStream(() -> body), true, new TypeReference<>() { });
+        }
+        Reader body = servletRequest.getReader();
+        return ResponseEntity.ok(documentIngestService.ingestText(id, body));
+    }
+
+    /**
+     * Метод для обработки запроса на ожидание применения изменений к индексу и аналитике.
+     * Ответ передается, когда водяной знак достигнет {@code after} или истечет время ожидания
+     * (не более {@code index-pipeline.max-wait}); поток обработки запросов при этом не занимается.
+     *
+     * @param after номер события из заголовка {@value #VISIBLE_AFTER_HEADER}; если не задан, ответ передается сразу.
+     * @param timeout максимальное время ожидания в миллисекундах.
+     * @return {@link ResponseEntity} с картой, содержащей водяной знак ({@code watermark}), номер последнего события
+     * ({@code latest}) и количество документов, ожидающих применения изменений ({@code queued}).
+     */
+    @RequestMapping(value = "/index/watermark", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<Map<String, Long>>> getIndexWatermark(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                                                  @RequestParam(value = "timeout", defaultValue = "0") long timeout) {
+        return indexPipelineService.awaitWatermark(after, Duration.ofMillis(timeout)).thenApply(watermark -> ResponseEntity.ok(Map.of(
+                "watermark", watermark,
+                "latest", indexPipelineService.getLatestSequence(),
+                "queued", (long) indexPipelineService.getQueuedCount())));
+    }
+
+    /**
+     * Метод для обработки запроса на повторную индексацию всех документов.
+     * Пересчитывает инвертированный индекс, общую статистику и аналитику документов, обходя корпус порциями.
+     * Выполняется асинхронно в пуле тяжелых запросов; при работе в кластере – на всех узлах.
+     *
+     * @param request запрос.
+     * @return {@link ResponseEntity} с количеством проиндексированных документов.
+     */
+    @RequestMapping(value = "/reindex", method = RequestMethod.POST)
+    public CompletableFuture<ResponseEntity<Map<String, Long>>> reindexDocuments(WebRequest request) {
+        if (coordinating(request)) {
+            return clusterService.gather("POST", shardPath(request), true, new TypeReference<Map<String, Long>>() { },
+                            () -> corpusTaskExecutor.submit(() -> Map.of("reindexedCount", documentService.reindexAllDocuments())))
+                    .thenApply(results -> merged(results, parts -> Map.of("reindexedCount",
+                            parts.stream().mapToLong(part -> part.get("reindexedCount")).sum())));
+        }
+        return corpusTaskExecutor.submit(() -> ResponseEntity.ok(Map.of("reindexedCount", documentService.reindexAllDocuments())));
     }
 
     /**
      * Метод для обработки запроса на получение документа по его идентификатору.
      *
      * @param id идентификатор документа, переданный в параметре пути.
+     * @param request запрос с заголовком {@code If-None-Match}.
      * @return {@link ResponseEntity} с объектом {@link DocumentDTO}, содержащим данные документа.
      */
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
-    public  ResponseEntity<DocumentDTO> getDocument(@PathVariable("id") Long id) {
-        DocumentDTO document = documentService.findDocument(id);
-        return ResponseEntity.ok(document);
+    public  ResponseEntity<DocumentDTO> getDocument(@PathVariable("id") Long id, WebRequest request) {
+        if (remote(id, request)) {
+            return forward(id, request, new TypeReference<>() { });
+        }
+        return conditional(request, documentVersionService.getDocumentETag(id), () -> documentService.findDocument(id));
     }
 
     /**
      * Метод для обработки запроса на получение нормализованного документа по его идентификатору.
      *
      * @param id идентификатор документа, переданный в параметре пути.
+     * @param request запрос с заголовком {@code If-None-Match}.
      * @return {@link ResponseEntity} с объектом {@link DocumentDTO}, содержащим нормализованные данные документа.
      */
     @RequestMapping(value = "/{id}/normalized", method = RequestMethod.GET)
-    public ResponseEntity<DocumentDTO> getNormalizedDocument(@PathVariable("id") Long id) {
-        DocumentDTO document = documentService.getNormalizedDocument(id);
-        return ResponseEntity.ok(document);
+    public ResponseEntity<DocumentDTO> getNormalizedDocument(@PathVariable("id") Long id, WebRequest request) {
+        if (remote(id, request)) {
+            return forward(id, request, new TypeReference<>() { });
+        }
+        return conditional(request, documentVersionService.getAnalyticsETag(id),
+                () -> documentService.getNormalizedDocument(id));
     }
 
     /**
      * Метод для обработки запроса на получение статистики по документу.
      *
      * @param id идентификатор документа, переданный в параметре пути.
+     * @param approx {@code true}, если количество уникальных слов нужно оценить приближенно.
+     * @param request запрос с заголовком {@code If-None-Match}.
      * @return {@link ResponseEntity} с картой, содержащей статистические данные по документу.
      */
     @RequestMapping(value = "/{id}/statistics", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, Integer>> getDocumentStatistics(@PathVariable("id") Long id) {
-        return ResponseEntity.ok(documentService.getDocumentStatistics(id));
+    public ResponseEntity<Map<String, Integer>> getDocumentStatistics(@PathVariable("id") Long id,
+                                                                      @RequestParam(value = "approx", defaultValue = "false") boolean approx,
+                                                                      WebRequest request) {
+        if (remote(id, request)) {
+            return forward(id, request, new TypeReference<>() { });
+        }
+        return conditional(request, documentVersionService.getAnalyticsETag(id),
+                () -> documentService.getDocumentStatistics(id, approx));
     }
 
     /**
-     * Метод для обработки запроса на получение статистики по всем документам.
+     * Метод для обработки запроса на получение статистики по всем документам или по группе документов.
+     * Выполняется асинхронно в пуле тяжелых запросов; совпадение версии корпуса проверяется до этого.
+     * Приближенная статистика обновляется после завершения транзакции сохранения, поэтому передается без {@code ETag}.
+     * При работе в кластере статистика объединяется из сумм узлов и тоже передается без {@code ETag}: версия корпуса
+     * у каждого узла своя, а количество уникальных слов документов нескольких узлов оценивается приближенно.
      *
-     * @return {@link ResponseEntity} с картой, содержащей статистические данные по всем {@link Document}.
+     * @param approx {@code true}, если количество уникальных слов нужно оценить приближенно.
+     * @param ids идентификаторы документов группы; если не заданы, статистика вычисляется по всем документам.
+     * @param request запрос с заголовком {@code If-None-Match}.
+     * @return {@link ResponseEntity} с картой, содержащей статистические данные по {@link Document}.
      */
     @RequestMapping(value = "/statistics", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, Integer>> getAllDocumentsStatistics() {
-        return ResponseEntity.ok(documentService.getAllDocumentsStatistics());
+    public CompletableFuture<ResponseEntity<Map<String, Integer>>> getAllDocumentsStatistics(@RequestParam(value = "approx", defaultValue = "false") boolean approx,
+                                                                                             @RequestParam(value = "ids", required = false) List<Long> ids,
+                                                                                             WebRequest request) {
+        if (coordinating(request)) {
+            return clusterService.gather("GET", shardPath(request, "/shard/statistics", null), true, new TypeReference<StatisticTotalsDTO>() { },
+                            () -> corpusTaskExecutor.submit(() -> documentService.getAllDocumentsStatisticTotals(ids)))
+                    .thenApply(results -> merged(results, parts -> ShardMerger.mergeStatistics(parts, approx)));
+        }
+        String eTag = approx ? null : documentVersionService.getCorpusETag();
+        if (request.checkNotModified(eTag)) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_CONTROL).build());
+        }
+        return corpusTaskExecutor.submit(() -> ResponseEntity.ok()
+                .cacheControl(CACHE_CONTROL)
+                .body(documentService.getAllDocumentsStatistics(approx, ids)));
+    }
+
+    /**
+     * Метод для обработки запроса координатора кластера на получение сумм статистики по документам узла.
+     * Выполняется асинхронно в пуле тяжелых запросов.
+     *
+     * @param ids идентификаторы документов группы; если не заданы, суммы вычисляются по всем документам узла.
+     * @return {@link ResponseEntity} с объектом {@link StatisticTotalsDTO}, содержащим суммы и оценку уникальных слов.
+     */
+    @RequestMapping(value = "/shard/statistics", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<StatisticTotalsDTO>> getShardStatisticTotals(@RequestParam(value = "ids", required = false) List<Long> ids) {
+        return corpusTaskExecutor.submit(() -> ResponseEntity.ok(documentService.getAllDocumentsStatisticTotals(ids)));
     }
 
     /**
      * Метод для обработки запроса на получение наиболее часто встречающихся слов в документе по его идентификатору.
      *
      * @param id идентификатор документа, переданный в параметре пути.
+     * @param k количество слов в ответе.
+     * @param request запрос с заголовком {@code If-None-Match}.
      * @return {@link ResponseEntity} с картой, содержащей топ-слова в {@link Document}.
      */
     @RequestMapping(value = "/{id}/top-words", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, Integer>> getTopWordInDocument(@PathVariable("id") Long id) {
-        return ResponseEntity.ok(documentService.getTopWordInDocument(id));
+    public ResponseEntity<Map<String, Integer>> getTopWordInDocument(@PathVariable("id") Long id,
+                                                                     @RequestParam(value = "k", defaultValue = "10") int k,
+                                                                     WebRequest request) {
+        if (remote(id, request)) {
+            return forward(id, request, new TypeReference<>() { });
+        }
+        return conditional(request, documentVersionService.getAnalyticsETag(id),
+                () -> documentService.getTopWordInDocument(id, k));
+    }
+
+    /**
+     * Метод для обработки запроса на получение наиболее часто встречающихся слов во всех документах.
+     * Частоты читаются из оценки в памяти, поэтому запрос выполняется в потоке запроса, а не в пуле тяжелых запросов;
+     * при работе в кластере частоты слов узлов складываются.
+     *
+     * @param k количество слов в ответе.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с картой, содержащей топ-слова всех {@link Document} и оценку их частоты.
+     */
+    @RequestMapping(value = "/top-words", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<Map<String, Long>>> getTopWords(@RequestParam(value = "k", defaultValue = "10") int k,
+                                                                            WebRequest request) {
+        if (coordinating(request)) {
+            int candidates = clusterService.topKCandidates(k);
+            return clusterService.gather("GET", shardPath(request, "/top-words", "k=" + candidates), true,
+                            new TypeReference<Map<String, Long>>() { },
+                            () -> CompletableFuture.completedFuture(documentService.getTopWords(candidates)))
+                    .thenApply(results -> merged(results, parts -> ShardMerger.mergeCounts(parts, k)));
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok(documentService.getTopWords(k)));
+    }
+
+    /**
+     * Метод для обработки запроса на получение наиболее часто встречающихся n-грамм в документе по его идентификатору.
+     *
+     * @param id идентификатор документа, переданный в параметре пути.
+     * @param n длина n-граммы (от 2 до 5).
+     * @param k количество n-грамм в ответе.
+     * @param request запрос с заголовком {@code If-None-Match}.
+     * @return {@link ResponseEntity} с картой, содержащей n-граммы {@link Document} и их частоту.
+     */
+    @RequestMapping(value = "/{id}/ngrams", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Integer>> getNgramsInDocument(@PathVariable("id") Long id,
+                                                                    @RequestParam(value = "n", defaultValue = "2") int n,
+                                                                    @RequestParam(value = "k", defaultValue = "10") int k,
+                                                                    WebRequest request) {
+        if (remote(id, request)) {
+            return forward(id, request, new TypeReference<>() { });
+        }
+        return conditional(request, documentVersionService.getAnalyticsETag(id),
+                () -> documentService.getNgramsInDocument(id, n, k));
     }
 
     /**
-     * Метод для обработки запроса на поиск идентификаторов документов по заданному слову.
+     * Метод для обработки запроса на получение наиболее часто встречающихся n-грамм во всех документах.
+     * Выполняется асинхронно в пуле тяжелых запросов; при работе в кластере частоты n-грамм узлов складываются.
+     *
+     * @param n длина n-граммы (от 2 до 5).
+     * @param k количество n-грамм в ответе.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с картой, содержащей n-граммы всех {@link Document} и оценку их частоты.
+     */
+    @RequestMapping(value = "/ngrams", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<Map<String, Long>>> getNgrams(@RequestParam(value = "n", defaultValue = "2") int n,
+                                                                          @RequestParam(value = "k", defaultValue = "10") int k,
+                                                                          WebRequest request) {
+        if (coordinating(request)) {
+            int candidates = clusterService.topKCandidates(k);
+            return clusterService.gather("GET", shardPath(request, "/ngrams", "n=" + n + "&k=" + candidates), true,
+                            new TypeReference<Map<String, Long>>() { },
+                            () -> corpusTaskExecutor.submit(() -> documentService.getNgrams(n, candidates)))
+                    .thenApply(results -> merged(results, parts -> ShardMerger.mergeCounts(parts, k)));
+        }
+        return corpusTaskExecutor.submit(() -> ResponseEntity.ok(documentService.getNgrams(n, k)));
+    }
+
+    /**
+     * Метод для обработки запроса на постраничный поиск идентификаторов документов по заданному слову.
+     * Следующая страница запрашивается с параметром {@code after}, равным полю {@code next} предыдущей страницы.
+     *
+     * @param word слово для поиска в документах.
+     * @param after идентификатор, после которого начинается страница; если не задан, возвращается первая страница.
+     * @param limit размер страницы.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с объектом {@link DocumentIdsPageDTO}, содержащим страницу идентификаторов документов.
+     */
+    @RequestMapping(value = "/search/page", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<DocumentIdsPageDTO>> getDocumentIdPageByWords(@RequestParam("word") String word,
+                                                                                          @RequestParam(value = "after", required = false) Long after,
+                                                                                          @RequestParam(value = "limit", defaultValue = "1000") int limit,
+                                                                                          WebRequest request) {
+        if (coordinating(request)) {
+            return clusterService.gather("GET", shardPath(request), false, new TypeReference<DocumentIdsPageDTO>() { },
+                            () -> CompletableFuture.completedFuture(documentService.getDocumentIdPageByWords(word, after, limit)))
+                    .thenApply(results -> merged(results, pages -> ShardMerger.mergePages(pages, limit)));
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok(documentService.getDocumentIdPageByWords(word, after, limit)));
+    }
+
+    /**
+     * Метод для обработки запроса на потоковый поиск идентификаторов документов по заданному слову.
+     * Идентификаторы передаются в формате NDJSON (по одному на строку) по мере чтения из БД,
+     * не собираясь в один список. При работе в кластере потоки узлов объединяются слиянием по мере чтения;
+     * идентификаторы этого узла читаются в том же процессе страницами, без запроса к самому себе.
+     *
+     * @param word слово для поиска в документах.
+     * @param request запрос.
+     * @return {@link ResponseEntity} с потоком идентификаторов документов по возрастанию.
+     */
+    @RequestMapping(value = "/search/stream", method = RequestMethod.GET, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDocumentIdsByWords(@RequestParam("word") String word, WebRequest request) {
+        if (coordinating(request)) {
+            ClusterService.ShardResults<Stream<Long>> streams = clusterService.openStreams(shardPath(request), () -> {
+                documentService.checkDocumentsExist();
+                return documentService.streamDocumentIdsByWords(word);
+            });
+            StreamingResponseBody body = output -> {
+                try {
+                    writeIds(output, consumer -> ShardMerger.mergeSorted(streams.getValues().stream()
+                            .map(Stream::iterator)
+                            .toList(), consumer));
+                } finally {
+                    streams.getValues().forEach(Stream::close);
+                }
+            };
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+            if (streams.getFailedShards() > 0) {
+                response.header(ClusterService.FAILED_SHARDS_HEADER, Integer.toString(streams.getFailedShards()));
+            }
+            return response.body(body);
+        }
+        documentService.checkDocumentsExist();
+        StreamingResponseBody body = output -> writeIds(output, consumer -> documentService.forEachDocumentIdByWords(word, consumer));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Метод для записи идентификаторов документов в формате NDJSON.
+     *
+     * @param output поток ответа.
+     * @param source источник идентификаторов, передающий их получателю.
+     * @throws IOException если ответ не удалось записать.
+     */
+    private static void writeIds(OutputStream output, Consumer<LongConsumer> source) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        try {
+            source.accept(id -> {
+                try {
+                    writer.write(Long.toString(id));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Метод для обработки запроса на ранжированный поиск документов.
+     *
+     * @param query слова для поиска в документах.
+     * @param k количество документов в ответе.
+     * @param request запрос.
+     * @return {@link ResponseEntity} со списком идентификаторов документов и их релевантности по убыванию релевантности.
+     */
+    @RequestMapping(value = "/search/ranked", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<List<ScoredDocumentDTO>>> getRankedDocuments(@RequestParam("q") String query,
+                                                                                         @RequestParam(value = "k", defaultValue = "10") int k,
+                                                                                         WebRequest request) {
+        if (coordinating(request)) {
+            return clusterService.gather("GET", shardPath(request), false, new TypeReference<List<ScoredDocumentDTO>>() { },
+                            () -> CompletableFuture.completedFuture(documentService.getRankedDocuments(query, k)))
+                    .thenApply(results -> merged(results, parts -> ShardMerger.mergeRanked(parts, k)));
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok(documentService.getRankedDocuments(query, k)));
+    }
+
+    /**
+     * Метод для обработки запроса на поиск идентификаторов документов по заданному слову, поисковому запросу,
+     * префиксу слова или слову с опечатками.
+     * Используется первый переданный параметр в порядке {@code word}, {@code q}, {@code prefix}, {@code fuzzy};
+     * если не передан ни один из них, возвращается ошибка 400.
      *
      * @param word слово для поиска в документах.
-     * @return {@link ResponseEntity} со списком идентификаторов документов, содержащих указанное слово.
+     * @param query поисковый запрос из нескольких слов и фраз, например {@code кот "рыжий пес" -мышь OR попугай}.
+     * @param prefix префикс слов для поиска в документах.
+     * @param fuzzy слово для поиска в документах с учетом опечаток.
+     * @param distance максимальное количество опечаток для {@code fuzzy} (от 0 до 2).
+     * @param request запрос.
+     * @return {@link ResponseEntity} со списком идентификаторов документов, удовлетворяющих запросу.
      */
     @RequestMapping(value = "/search", method = RequestMethod.GET)
-    public ResponseEntity<List<Long>> getDocumentIdByWords(@RequestParam("word") String word) {
-        return ResponseEntity.ok(documentService.getDocumentIdByWords(word));
+    public CompletableFuture<ResponseEntity<List<Long>>> getDocumentIdByWords(@RequestParam(value = "word", required = false) String word,
+                                                                              @RequestParam(value = "q", required = false) String query,
+                                                                              @RequestParam(value = "prefix", required = false) String prefix,
+                                                                              @RequestParam(value = "fuzzy", required = false) String fuzzy,
+                                                                              @RequestParam(value = "distance", defaultValue = "1") int distance,
+                                                                              WebRequest request) {
+        if (coordinating(request)) {
+            return clusterService.gather("GET", shardPath(request), false, new TypeReference<List<Long>>() { },
+                            () -> CompletableFuture.completedFuture(searchDocumentIds(word, query, prefix, fuzzy, distance)))
+                    .thenApply(results -> merged(results, ShardMerger::mergeIds));
+        }
+        return CompletableFuture.completedFuture(ResponseEntity.ok(searchDocumentIds(word, query, prefix, fuzzy, distance)));
+    }
+
+    /**
+     * Метод для поиска идентификаторов документов узла по первому переданному параметру поиска.
+     *
+     * @param word слово для поиска в документах.
+     * @param query поисковый запрос из нескольких слов и фраз.
+     * @param prefix префикс слов для поиска в документах.
+     * @param fuzzy слово для поиска в документах с учетом опечаток.
+     * @param distance максимальное количество опечаток для {@code fuzzy}.
+     * @return список идентификаторов документов, удовлетворяющих запросу.
+     */
+    private List<Long> searchDocumentIds(String word, String query, String prefix, String fuzzy, int distance) {
+        if (word != null) {
+            return documentService.getDocumentIdByWords(word);
+        }
+        if (query == null && prefix != null) {
+            return documentService.getDocumentIdsByPrefix(prefix);
+        }
+        if (query == null && fuzzy != null) {
+            return documentService.getDocumentIdsBySimilarWord(fuzzy, distance);
+        }
+        return documentService.searchDocuments(query);
     }
 
 }
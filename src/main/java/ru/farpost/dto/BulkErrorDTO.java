@@ -0,0 +1,38 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO (Data Transfer Object) для представления ошибки загрузки одного документа из пакета.
+ * Содержит позицию документа в теле запроса, его идентификатор, код и сообщение ошибки.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkErrorDTO {
+
+    /**
+     * Позиция документа в теле запроса (начиная с {@code 0}).
+     */
+    private long index;
+
+    /**
+     * Идентификатор документа, если его удалось прочитать.
+     */
+    private Long id;
+
+    /**
+     * Код ошибки.
+     */
+    private int code;
+
+    /**
+     * Сообщение ошибки.
+     */
+    private String message;
+
+}
@@ -0,0 +1,40 @@
+package ru.farpost.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO (Data Transfer Object) для результата пакетной загрузки документов.
+ * Содержит количество сохраненных и отклоненных документов и список ошибок.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+public class BulkResultDTO {
+
+    /**
+     * Количество сохраненных документов.
+     */
+    private long savedCount;
+
+    /**
+     * Количество отклоненных документов.
+     */
+    private long failedCount;
+
+    /**
+     * Ошибки загрузки отдельных документов (не более заданного в настройках количества).
+     */
+    private List<BulkErrorDTO> errors = new ArrayList<>();
+
+    /**
+     * Номер последнего события сохранения, после применения которого изменения видны в индексе и аналитике,
+     * или {@code 0}, если они видны сразу.
+     */
+    private long visibleAfter;
+
+}
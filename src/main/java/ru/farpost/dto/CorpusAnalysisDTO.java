@@ -0,0 +1,65 @@
+package ru.farpost.dto;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DTO (Data Transfer Object) для результата разбора группы документов.
+ * Содержит результаты разбора каждого документа и суммарные метрики группы.
+ * Частичные результаты, вычисленные для разных частей группы, объединяются методом {@link #merge(CorpusAnalysisDTO)}.
+ */
+@Data
+public class CorpusAnalysisDTO {
+
+    /**
+     * Результаты разбора текстов документов по их идентификаторам в порядке следования документов.
+     */
+    private final Map<Long, TextAnalysisDTO> analyses = new LinkedHashMap<>();
+
+    /**
+     * Общее количество слов.
+     */
+    private long wordCount;
+
+    /**
+     * Суммарная длина всех слов.
+     */
+    private long wordsLength;
+
+    /**
+     * Количество предложений.
+     */
+    private long sentencesCount;
+
+    /**
+     * Метод для добавления результата разбора документа.
+     * Идентификаторы документов в группе должны быть уникальными.
+     *
+     * @param documentId идентификатор документа.
+     * @param analysis результат разбора текста документа.
+     */
+    public void add(Long documentId, TextAnalysisDTO analysis) {
+        analyses.put(documentId, analysis);
+        wordCount += analysis.getWordCount();
+        wordsLength += analysis.getWordsLength();
+        sentencesCount += analysis.getSentencesCount();
+    }
+
+    /**
+     * Метод для объединения с частичным результатом, вычисленным для следующей части группы.
+     * Порядок документов сохраняется: документы {@code other} следуют за документами текущего результата.
+     *
+     * @param other частичный результат следующей части группы.
+     * @return текущий объект с объединенным результатом.
+     */
+    public CorpusAnalysisDTO merge(CorpusAnalysisDTO other) {
+        analyses.putAll(other.analyses);
+        wordCount += other.wordCount;
+        wordsLength += other.wordsLength;
+        sentencesCount += other.sentencesCount;
+        return this;
+    }
+
+}
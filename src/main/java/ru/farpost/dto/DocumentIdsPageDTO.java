@@ -0,0 +1,28 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO (Data Transfer Object) для страницы идентификаторов найденных документов.
+ * Содержит идентификаторы документов страницы и курсор для запроса следующей страницы.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentIdsPageDTO {
+
+    /**
+     * Идентификаторы документов страницы по возрастанию.
+     */
+    private List<Long> ids;
+
+    /**
+     * Значение параметра {@code after} для следующей страницы или {@code null}, если страница последняя.
+     */
+    private Long next;
+
+}
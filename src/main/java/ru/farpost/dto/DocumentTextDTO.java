@@ -0,0 +1,36 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.farpost.utils.TextCompressor;
+
+/**
+ * DTO (Data Transfer Object) для текста документа.
+ * Используется для чтения только текста документа, без загрузки сущности в контекст персистентности.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentTextDTO {
+
+    /**
+     * Несжатый текст документа.
+     */
+    private String text;
+
+    /**
+     * Сжатый текст документа.
+     */
+    private byte[] compressedText;
+
+    /**
+     * Метод для получения текста документа; сжатый текст распаковывается.
+     *
+     * @return текст документа.
+     */
+    public String getText() {
+        return text != null || compressedText == null ? text : TextCompressor.decompress(compressedText);
+    }
+
+}
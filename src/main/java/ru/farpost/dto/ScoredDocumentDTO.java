@@ -0,0 +1,26 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO (Data Transfer Object) для документа, найденного ранжированным поиском.
+ * Содержит идентификатор документа и его релевантность запросу.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScoredDocumentDTO {
+
+    /**
+     * Идентификатор документа.
+     */
+    private Long id;
+
+    /**
+     * Релевантность документа запросу по формуле BM25.
+     */
+    private double score;
+
+}
@@ -0,0 +1,100 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.farpost.utils.HyperLogLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DTO (Data Transfer Object) для сумм, из которых вычисляется общая статистика документов.
+ * В отличие от готовой статистики суммы можно объединять: узлы кластера передают их координатору
+ * (см. {@link #merge(StatisticTotalsDTO)}), а статистика вычисляется по объединенным суммам методом {@link #toStatistic()}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatisticTotalsDTO {
+
+    /**
+     * Количество документов.
+     */
+    private long documentsCount;
+
+    /**
+     * Общее количество слов.
+     */
+    private long wordCount;
+
+    /**
+     * Количество уникальных слов.
+     */
+    private long uniqWordCount;
+
+    /**
+     * Суммарная длина всех слов.
+     */
+    private long wordsLength;
+
+    /**
+     * Количество предложений.
+     */
+    private long sentencesCount;
+
+    /**
+     * Регистры оценки уникальных слов {@link HyperLogLog} или {@code null}, если оценки нет.
+     */
+    private byte[] uniqueWordsSketch;
+
+    /**
+     * Метод для объединения с суммами другой группы документов, не пересекающейся с текущей.
+     * Уникальные слова групп могут совпадать, поэтому их количество после объединения оценивается
+     * объединением оценок {@link HyperLogLog}; если у одной из групп оценки нет, количества складываются.
+     *
+     * @param other суммы другой группы документов.
+     * @return текущий объект с объединенными суммами.
+     */
+    public StatisticTotalsDTO merge(StatisticTotalsDTO other) {
+        documentsCount += other.documentsCount;
+        wordCount += other.wordCount;
+        wordsLength += other.wordsLength;
+        sentencesCount += other.sentencesCount;
+        if (uniqueWordsSketch != null && other.uniqueWordsSketch != null) {
+            HyperLogLog sketch = new HyperLogLog(uniqueWordsSketch.clone());
+            sketch.merge(other.uniqueWordsSketch);
+            uniqueWordsSketch = sketch.toByteArray();
+            uniqWordCount = sketch.estimate();
+        } else {
+            uniqueWordsSketch = null;
+            uniqWordCount += other.uniqWordCount;
+        }
+        return this;
+    }
+
+    /**
+     * Метод для вычисления общей статистики по суммам.
+     *
+     * @return карта, содержащая ключевые метрики документов:
+     * <ul>
+     *     <li>{@code documents_count} – количество документов.</li>
+     *     <li>{@code word_count} – общее количество слов.</li>
+     *     <li>{@code uniq_word_count} – количество уникальных слов.</li>
+     *     <li>{@code avg_word_length} – средняя длина слова.</li>
+     *     <li>{@code sentences_count} – количество предложений.</li>
+     * </ul>
+     */
+    public Map<String, Integer> toStatistic() {
+        Map<String, Integer> statistic = new LinkedHashMap<>();
+
+        statistic.put("documents_count", Math.toIntExact(documentsCount));
+        statistic.put("word_count", Math.toIntExact(wordCount));
+        statistic.put("uniq_word_count", Math.toIntExact(uniqWordCount));
+        statistic.put("avg_word_length", wordCount == 0 ? 0 : (int) (wordsLength / wordCount));
+        statistic.put("sentences_count", Math.toIntExact(sentencesCount));
+
+        return statistic;
+    }
+
+}
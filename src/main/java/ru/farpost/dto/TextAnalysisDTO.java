@@ -0,0 +1,54 @@
+package ru.farpost.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * DTO (Data Transfer Object) для результата разбора текста документа.
+ * Содержит все метрики документа, вычисленные за один проход по тексту.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextAnalysisDTO {
+
+    /**
+     * Карта уникальных нормализованных слов и количества их вхождений.
+     */
+    private Map<String, Integer> termFrequencies;
+
+    /**
+     * Нормализованный текст документа.
+     */
+    private String normalizedText;
+
+    /**
+     * Общее количество слов.
+     */
+    private int wordCount;
+
+    /**
+     * Суммарная длина всех слов.
+     */
+    private long wordsLength;
+
+    /**
+     * Количество предложений.
+     */
+    private int sentencesCount;
+
+    /**
+     * Карта уникальных нормализованных слов и позиций их вхождений в нормализованном тексте по возрастанию.
+     * Используется для построения позиционного индекса.
+     * Однозначно определяется нормализованным текстом, поэтому не участвует в сравнении и строковом представлении.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Map<String, int[]> termPositions;
+
+}
@@ -24,4 +24,16 @@ public class ErrorResponse extends RuntimeException {
         super(ex.getMessage());
         this.code = ex.getCode();
     }
+
+    /**
+     * Конструктор для создания объекта {@link ErrorResponse} по коду и сообщению ошибки, полученной
+     * от другого узла кластера.
+     *
+     * @param code код ошибки.
+     * @param message сообщение об ошибке.
+     */
+    public ErrorResponse(int code, String message) {
+        super(message);
+        this.code = code;
+    }
 }
@@ -0,0 +1,64 @@
+package ru.farpost.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Сущность для хранения общей статистики по всем документам.
+ * Таблица {@code corpus_statistics} содержит одну строку с идентификатором {@link #SINGLETON_ID},
+ * которая обновляется приращениями при каждом сохранении документа.
+ * Поколение корпуса используется как версия общей статистики (например, для {@code ETag}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "corpus_statistics")
+public class CorpusStatistic {
+
+    /**
+     * Идентификатор единственной строки общей статистики.
+     */
+    public static final int SINGLETON_ID = 1;
+
+    /**
+     * Идентификатор строки.
+     */
+    @Id
+    private Integer id;
+
+    /**
+     * Количество документов.
+     */
+    private long documentsCount;
+
+    /**
+     * Общее количество слов.
+     */
+    private long wordCount;
+
+    /**
+     * Количество уникальных слов во всех документах (размер словаря {@code corpus_terms}).
+     */
+    private long uniqWordCount;
+
+    /**
+     * Суммарная длина всех слов.
+     */
+    private long wordsLength;
+
+    /**
+     * Количество предложений.
+     */
+    private long sentencesCount;
+
+    /**
+     * Поколение корпуса: увеличивается на единицу при каждом сохранении документов.
+     */
+    @Column(columnDefinition = "bigint not null default 0")
+    private long generation;
+
+}
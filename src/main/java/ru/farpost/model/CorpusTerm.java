@@ -0,0 +1,33 @@
+package ru.farpost.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Сущность для хранения слова общего словаря документов.
+ * Используется для представления строки в таблице {@code corpus_terms}.
+ * Слово присутствует в словаре, пока хотя бы один документ его содержит.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "corpus_terms")
+public class CorpusTerm {
+
+    /**
+     * Нормализованное слово.
+     */
+    @Id
+    @Column(name = "term")
+    private String term;
+
+    /**
+     * Количество документов, содержащих слово.
+     */
+    private int documentFrequency;
+
+}
@@ -1,17 +1,19 @@
 package ru.farpost.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
+import ru.farpost.utils.ContentHash;
+import ru.farpost.utils.TextCompressor;
 
 /**
  * Сущность для хранения данных документа в базе данных.
  * Используется для представления документа в таблице {@code documents}.
+ * Длинный текст может храниться сжатым в поле {@code compressed_text} (см. {@link TextCompressor});
+ * в этом случае поле {@code text} пусто, а текст распаковывается при первом вызове {@link #getText()}.
  */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @Entity(name = "documents")
 public class Document {
 
@@ -24,9 +26,105 @@ public class Document {
 
     /**
      * Текст документа.
-     * Хранится в поле {@code text} таблицы {@code documents}.
+     * Хранится в поле {@code text} таблицы {@code documents}, если текст не сжат.
      */
     @Column(name = "text", columnDefinition = "TEXT")
     private String text;
 
+    /**
+     * Сжатый текст документа.
+     * Хранится в поле {@code compressed_text} таблицы {@code documents}, если текст сжат.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    @Column(name = "compressed_text")
+    private byte[] compressedText;
+
+    /**
+     * Хеш текста документа (см. {@link ContentHash}), используемый как версия его содержимого.
+     * Хранится в поле {@code content_hash} таблицы {@code documents}; для документов, сохраненных до появления
+     * поля, вычисляется в фоне при запуске приложения.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    /**
+     * Признак того, что изменения документа еще не применены к индексу и аналитике
+     * (см. {@link ru.farpost.service.IndexPipelineService}). Хранится в поле {@code index_pending} таблицы
+     * {@code documents} и изменяется только запросами репозитория; по нему изменения применяются повторно
+     * после перезапуска приложения.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    @Column(name = "index_pending", columnDefinition = "boolean not null default false", insertable = false, updatable = false)
+    private boolean indexPending;
+
+    /**
+     * Распакованный текст документа; не сохраняется в БД.
+     */
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String decompressedText;
+
+    /**
+     * Конструктор для создания документа с несжатым текстом.
+     *
+     * @param id идентификатор документа.
+     * @param text текст документа.
+     */
+    public Document(Long id, String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    /**
+     * Метод для получения текста документа.
+     * Сжатый текст распаковывается при первом вызове и запоминается в документе.
+     *
+     * @return текст документа.
+     */
+    public String getText() {
+        if (text != null || compressedText == null) {
+            return text;
+        }
+        if (decompressedText == null) {
+            decompressedText = TextCompressor.decompress(compressedText);
+        }
+        return decompressedText;
+    }
+
+    /**
+     * Метод для замены текста документа несжатым текстом.
+     * Хеш текста сбрасывается и вычисляется заново при сохранении.
+     *
+     * @param text текст документа.
+     */
+    public void setText(String text) {
+        this.text = text;
+        this.compressedText = null;
+        this.decompressedText = null;
+        this.contentHash = null;
+    }
+
+    /**
+     * Метод для замены текста документа его сжатой формой.
+     * Исходный текст остается в документе, поэтому повторная распаковка не требуется.
+     *
+     * @param compressedText сжатый текст документа, полученный {@link TextCompressor#compress(String)}.
+     */
+    public void setCompressedText(byte[] compressedText) {
+        this.decompressedText = getText();
+        this.compressedText = compressedText;
+        this.text = null;
+    }
+
 }
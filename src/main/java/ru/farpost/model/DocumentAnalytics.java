@@ -0,0 +1,68 @@
+package ru.farpost.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.Map;
+
+/**
+ * Сущность для хранения аналитики документа, вычисленной при сохранении его текущей версии.
+ * Используется для представления строки в таблице {@code document_analytics}.
+ * Строка перезаписывается при каждом сохранении документа, поэтому всегда соответствует его тексту.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "document_analytics")
+public class DocumentAnalytics implements Persistable<Long> {
+
+    /**
+     * Идентификатор документа.
+     */
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    /**
+     * Нормализованный текст документа.
+     */
+    @Column(name = "normalized_text", columnDefinition = "TEXT")
+    private String normalizedText;
+
+    /**
+     * Наиболее часто встречающиеся слова документа и их количество.
+     * Хранятся в поле типа {@code json}; порядок ключей при чтении не гарантируется.
+     */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "top_words", columnDefinition = "json")
+    private Map<String, Integer> topWords;
+
+    /**
+     * Метод для получения идентификатора записи.
+     *
+     * @return идентификатор документа.
+     */
+    @Override
+    public Long getId() {
+        return documentId;
+    }
+
+    /**
+     * Строки таблицы всегда создаются заново после удаления строк предыдущих версий документов,
+     * поэтому при сохранении не требуется предварительный {@code select}.
+     *
+     * @return всегда {@code true}.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+}
@@ -0,0 +1,56 @@
+package ru.farpost.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import ru.farpost.utils.HyperLogLog;
+
+/**
+ * Сущность для хранения оценки уникальных слов документа ({@link HyperLogLog}), вычисленной при его сохранении.
+ * Используется для представления строки в таблице {@code document_sketches}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "document_sketches")
+public class DocumentSketch implements Persistable<Long> {
+
+    /**
+     * Идентификатор документа.
+     */
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    /**
+     * Регистры оценки уникальных слов документа.
+     */
+    @Column(name = "registers", nullable = false)
+    private byte[] registers;
+
+    /**
+     * Метод для получения идентификатора записи.
+     *
+     * @return идентификатор документа.
+     */
+    @Override
+    public Long getId() {
+        return documentId;
+    }
+
+    /**
+     * Строки таблицы всегда создаются заново после удаления строк предыдущих версий документов,
+     * поэтому при сохранении не требуется предварительный {@code select}.
+     *
+     * @return всегда {@code true}.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+}
@@ -0,0 +1,70 @@
+package ru.farpost.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Сущность для хранения статистики документа, вычисленной при его сохранении.
+ * Используется для представления строки в таблице {@code document_statistics}
+ * и для вычитания вклада документа из общей статистики при его перезаписи.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "document_statistics")
+public class DocumentStatistic implements Persistable<Long> {
+
+    /**
+     * Идентификатор документа.
+     */
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    /**
+     * Общее количество слов.
+     */
+    private int wordCount;
+
+    /**
+     * Количество уникальных слов.
+     */
+    private int uniqWordCount;
+
+    /**
+     * Суммарная длина всех слов.
+     */
+    private long wordsLength;
+
+    /**
+     * Количество предложений.
+     */
+    private int sentencesCount;
+
+    /**
+     * Метод для получения идентификатора записи.
+     *
+     * @return идентификатор документа.
+     */
+    @Override
+    public Long getId() {
+        return documentId;
+    }
+
+    /**
+     * Строки таблицы всегда создаются заново после удаления строк предыдущих версий документов,
+     * поэтому при сохранении не требуется предварительный {@code select}.
+     *
+     * @return всегда {@code true}.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+}
@@ -0,0 +1,75 @@
+package ru.farpost.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import ru.farpost.utils.PostingLists;
+
+/**
+ * Сущность для хранения записи инвертированного индекса (слово -> документ) с количеством и позициями вхождений слова.
+ * Используется для представления записи в таблице {@code document_terms}.
+ * Первичный ключ {@code (term, document_id)} хранит списки документов для каждого слова
+ * отсортированными по идентификатору, поэтому поиск по слову читает только его список.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "document_terms")
+@IdClass(DocumentTermId.class)
+@Table(indexes = @Index(name = "document_terms_document_id_idx", columnList = "document_id"))
+public class DocumentTerm implements Persistable<DocumentTermId> {
+
+    /**
+     * Нормализованное слово.
+     * Хранится в поле {@code term} таблицы {@code document_terms}.
+     */
+    @Id
+    @Column(name = "term")
+    private String term;
+
+    /**
+     * Идентификатор документа, содержащего слово.
+     * Хранится в поле {@code document_id} таблицы {@code document_terms}.
+     */
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    /**
+     * Количество вхождений слова в документ.
+     * Хранится в поле {@code frequency} таблицы {@code document_terms}.
+     */
+    @Column(name = "frequency", columnDefinition = "integer not null default 0")
+    private int frequency;
+
+    /**
+     * Позиции вхождений слова в нормализованном тексте документа, сжатые {@link PostingLists#encodePositions(int[])}.
+     * Хранится в поле {@code positions} таблицы {@code document_terms} и используется для поиска фраз.
+     */
+    @Column(name = "positions")
+    private byte[] positions;
+
+    /**
+     * Метод для получения составного идентификатора записи.
+     *
+     * @return объект {@link DocumentTermId}.
+     */
+    @Override
+    public DocumentTermId getId() {
+        return new DocumentTermId(term, documentId);
+    }
+
+    /**
+     * Записи индекса всегда создаются заново после удаления старых записей документа,
+     * поэтому при сохранении не требуется предварительный {@code select}.
+     *
+     * @return всегда {@code true}.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+}
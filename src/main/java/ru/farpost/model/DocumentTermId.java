@@ -0,0 +1,28 @@
+package ru.farpost.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Составной первичный ключ сущности {@link DocumentTerm}.
+ * Состоит из нормализованного слова и идентификатора документа.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentTermId implements Serializable {
+
+    /**
+     * Нормализованное слово.
+     */
+    private String term;
+
+    /**
+     * Идентификатор документа.
+     */
+    private Long documentId;
+
+}
@@ -0,0 +1,52 @@
+package ru.farpost.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.CorpusStatistic;
+
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с сущностью {@link CorpusStatistic}.
+ * Обеспечивает атомарное применение приращений к общей статистике через {@link JpaRepository}.
+ */
+@Repository
+public interface CorpusStatisticRepository extends JpaRepository<CorpusStatistic, Integer> {
+
+    /**
+     * Метод для атомарного применения приращений к строке общей статистики и увеличения поколения корпуса.
+     *
+     * @param id идентификатор строки общей статистики.
+     * @param documents приращение количества документов.
+     * @param words приращение количества слов.
+     * @param uniqWords приращение размера словаря.
+     * @param wordsLength приращение суммарной длины слов.
+     * @param sentences приращение количества предложений.
+     * @return количество обновленных строк.
+     */
+    @Modifying
+    @Query("update corpus_statistics c set c.documentsCount = c.documentsCount + :documents, " +
+            "c.wordCount = c.wordCount + :words, c.uniqWordCount = c.uniqWordCount + :uniqWords, " +
+            "c.wordsLength = c.wordsLength + :wordsLength, c.sentencesCount = c.sentencesCount + :sentences, " +
+            "c.generation = c.generation + 1 " +
+            "where c.id = :id")
+    int applyDelta(@Param("id") Integer id,
+                   @Param("documents") long documents,
+                   @Param("words") long words,
+                   @Param("uniqWords") long uniqWords,
+                   @Param("wordsLength") long wordsLength,
+                   @Param("sentences") long sentences);
+
+    /**
+     * Метод для получения поколения корпуса без загрузки общей статистики.
+     *
+     * @param id идентификатор строки общей статистики.
+     * @return поколение корпуса или пустой {@link Optional}, если документы еще не сохранялись.
+     */
+    @Query("select c.generation from corpus_statistics c where c.id = :id")
+    Optional<Long> findGenerationById(@Param("id") Integer id);
+
+}
@@ -0,0 +1,86 @@
+package ru.farpost.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.CorpusTerm;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий для работы с общим словарем документов {@link CorpusTerm}.
+ * Частоты слов обновляются по записям инвертированного индекса документов в таблице {@code document_terms}
+ * сразу для пакета документов.
+ */
+@Repository
+public interface CorpusTermRepository extends JpaRepository<CorpusTerm, String> {
+
+    /**
+     * Метод для уменьшения частот всех слов, проиндексированных для документов.
+     * Частота слова уменьшается на количество документов пакета, которые его содержат.
+     * Вызывается перед удалением старых записей индекса документов.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    @Modifying
+    @Query(value = "update corpus_terms c set document_frequency = c.document_frequency - t.documents " +
+            "from (select term, count(*) as documents from document_terms " +
+            "where document_id in (:documentIds) group by term) t where c.term = t.term",
+            nativeQuery = true)
+    void decrementDocumentTerms(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для удаления слов документов, которые больше не встречаются ни в одном документе.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return количество удаленных слов.
+     */
+    @Modifying
+    @Query("delete from corpus_terms c where c.documentFrequency <= 0 " +
+            "and c.term in (select t.term from document_terms t where t.documentId in :documentIds)")
+    int deleteUnusedDocumentTerms(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для увеличения частот всех слов, проиндексированных для документов.
+     * Отсутствующие в словаре слова добавляются с частотой, равной количеству содержащих их документов пакета.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    @Modifying
+    @Query(value = "insert into corpus_terms (term, document_frequency) " +
+            "select term, count(*) from document_terms where document_id in (:documentIds) group by term " +
+            "on conflict (term) do update set document_frequency = corpus_terms.document_frequency + excluded.document_frequency",
+            nativeQuery = true)
+    void incrementDocumentTerms(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для подсчета слов документов, которые встречаются только в них.
+     * После вызова {@link #incrementDocumentTerms(Collection)} это количество слов, добавленных в словарь.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return количество слов, частота которых равна количеству содержащих их документов пакета.
+     */
+    @Query(value = "select count(*) from corpus_terms c join (select term, count(*) as documents from document_terms " +
+            "where document_id in (:documentIds) group by term) t on c.term = t.term " +
+            "where c.document_frequency = t.documents",
+            nativeQuery = true)
+    long countNewDocumentTerms(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для потокового чтения всего словаря.
+     * Строки читаются курсором порциями по 1000, поэтому словарь не загружается в память целиком.
+     * Должен вызываться в транзакции, поток должен быть закрыт после использования.
+     *
+     * @return поток слов словаря с количеством содержащих их документов.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select c from corpus_terms c")
+    Stream<CorpusTerm> streamAll();
+
+}
@@ -0,0 +1,61 @@
+package ru.farpost.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.DocumentAnalytics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с сущностью {@link DocumentAnalytics}.
+ * Обеспечивает доступ к предварительно вычисленной аналитике документов через {@link JpaRepository}.
+ */
+@Repository
+public interface DocumentAnalyticsRepository extends JpaRepository<DocumentAnalytics, Long> {
+
+    /**
+     * Метод для удаления аналитики документов.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    @Modifying
+    @Query("delete from document_analytics a where a.documentId in :documentIds")
+    void deleteByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для получения нормализованного текста документа без загрузки остальных полей.
+     *
+     * @param documentId идентификатор документа.
+     * @return нормализованный текст или пустой {@link Optional}, если аналитика документа еще не вычислена.
+     */
+    @Query("select a.normalizedText from document_analytics a where a.documentId = :documentId")
+    Optional<String> findNormalizedTextById(@Param("documentId") Long documentId);
+
+    /**
+     * Метод для получения наиболее часто встречающихся слов документа без загрузки остальных полей.
+     *
+     * @param documentId идентификатор документа.
+     * @return проекция с картой слов или пустой {@link Optional}, если аналитика документа еще не вычислена.
+     */
+    Optional<TopWordsView> findTopWordsByDocumentId(Long documentId);
+
+    /**
+     * Проекция {@link DocumentAnalytics}, содержащая только наиболее часто встречающиеся слова.
+     */
+    interface TopWordsView {
+
+        /**
+         * Метод для получения наиболее часто встречающихся слов документа.
+         *
+         * @return карта слов и количества их вхождений.
+         */
+        Map<String, Integer> getTopWords();
+
+    }
+
+}
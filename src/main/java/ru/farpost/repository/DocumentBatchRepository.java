@@ -0,0 +1,76 @@
+package ru.farpost.repository;
+
+import ru.farpost.model.Document;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Дополнение {@link DocumentRepository} для пакетной записи документов и обновления способа их хранения.
+ */
+public interface DocumentBatchRepository {
+
+    /**
+     * Метод для пакетной вставки или перезаписи документов одним JDBC-пакетом.
+     * В отличие от {@code save()} не выполняет предварительный {@code select} для каждого документа.
+     *
+     * Длинные тексты сжимаются перед записью (см. {@link ru.farpost.utils.TextCompressor}),
+     * вместе с текстом записывается его хеш (см. {@link ru.farpost.utils.ContentHash}).
+     *
+     * @param documents список документов.
+     */
+    void upsertAll(List<Document> documents);
+
+    /**
+     * Метод для вставки или перезаписи документа со сжатым текстом, передаваемым потоком.
+     * Поток передается драйверу JDBC без длины, и драйвер читает его частями, не загружая текст в память целиком.
+     * Хеш текста сбрасывается; после чтения потока его нужно записать методом {@link #updateContentHash(Long, long)}
+     * в той же транзакции.
+     *
+     * @param id идентификатор документа.
+     * @param compressedText поток сжатого текста (см. {@link ru.farpost.utils.TextCompressor#compressStream(InputStream)}).
+     */
+    void upsertCompressedText(Long id, InputStream compressedText);
+
+    /**
+     * Метод для записи хеша текста документа.
+     *
+     * @param id идентификатор документа.
+     * @param contentHash хеш текста (см. {@link ru.farpost.utils.ContentHash}).
+     */
+    void updateContentHash(Long id, long contentHash);
+
+    /**
+     * Метод для сжатия ранее сохраненных несжатых текстов документов.
+     * Обрабатывает до {@code limit} документов с идентификаторами больше {@code afterId} в порядке возрастания
+     * идентификаторов. Строки блокируются с {@code skip locked}, поэтому документы, изменяемые параллельно,
+     * пропускаются и не ожидаются. Должен вызываться в транзакции.
+     *
+     * @param afterId идентификатор, после которого начинается обработка.
+     * @param limit максимальное количество просматриваемых документов.
+     * @return идентификатор последнего просмотренного документа или {@code null}, если документов больше нет.
+     */
+    Long compressTexts(long afterId, int limit);
+
+    /**
+     * Метод для снятия отметки об изменениях, не примененных к индексу, с проиндексированных документов.
+     * Отметка снимается, только если хеш текста в БД совпадает с хешем проиндексированной версии, поэтому
+     * новая версия документа, сохраненная во время индексации, остается отмеченной.
+     * Должен вызываться в транзакции индексации документов.
+     *
+     * @param documents проиндексированные документы.
+     */
+    void clearIndexPending(List<Document> documents);
+
+    /**
+     * Метод для вычисления хешей текстов документов, сохраненных без хеша.
+     * Обрабатывает до {@code limit} таких документов с идентификаторами больше {@code afterId} в порядке возрастания
+     * идентификаторов; строки блокируются с {@code skip locked}. Должен вызываться в транзакции.
+     *
+     * @param afterId идентификатор, после которого начинается обработка.
+     * @param limit максимальное количество обрабатываемых документов.
+     * @return идентификатор последнего обработанного документа или {@code null}, если документов больше нет.
+     */
+    Long hashTexts(long afterId, int limit);
+
+}
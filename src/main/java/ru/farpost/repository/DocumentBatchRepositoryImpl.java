@@ -0,0 +1,180 @@
+package ru.farpost.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.farpost.dto.DocumentTextDTO;
+import ru.farpost.model.Document;
+import ru.farpost.utils.CompressionProperties;
+import ru.farpost.utils.ContentHash;
+import ru.farpost.utils.TextCompressor;
+
+import java.io.InputStream;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация {@link DocumentBatchRepository} на основе {@link JdbcTemplate}.
+ * Использует {@code insert ... on conflict do update}, поэтому существующие документы перезаписываются.
+ */
+class DocumentBatchRepositoryImpl implements DocumentBatchRepository {
+
+    /**
+     * Запрос для вставки или перезаписи документа.
+     */
+    private static final String UPSERT_SQL =
+            "insert into documents (id, text, compressed_text, content_hash, index_pending) values (?, ?, ?, ?, false) " +
+            "on conflict (id) do update set text = excluded.text, compressed_text = excluded.compressed_text, " +
+            "content_hash = excluded.content_hash, index_pending = false";
+
+    /**
+     * Запрос для выборки и блокировки несжатых текстов не короче порога сжатия.
+     */
+    private static final String SELECT_UNCOMPRESSED_SQL = "select id, text from documents " +
+            "where id > ? and text is not null and length(text) >= ? order by id limit ? for update skip locked";
+
+    /**
+     * Запрос для замены текста документа сжатым.
+     */
+    private static final String COMPRESS_SQL = "update documents set text = null, compressed_text = ? where id = ?";
+
+    /**
+     * Запрос для выборки и блокировки документов без хеша текста.
+     */
+    private static final String SELECT_UNHASHED_SQL = "select id, text, compressed_text from documents " +
+            "where id > ? and content_hash is null order by id limit ? for update skip locked";
+
+    /**
+     * Запрос для записи хеша текста документа.
+     */
+    private static final String HASH_SQL = "update documents set content_hash = ? where id = ?";
+
+    /**
+     * Запрос для снятия отметки об изменениях, не примененных к индексу, с проиндексированной версии документа.
+     */
+    private static final String CLEAR_INDEX_PENDING_SQL = "update documents set index_pending = false " +
+            "where id = ? and index_pending and content_hash is not distinct from ?";
+
+    /**
+     * Шаблон для выполнения JDBC-запросов в текущей транзакции.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Компонент для сжатия текстов документов.
+     */
+    private final TextCompressor textCompressor;
+
+    /**
+     * Настройки сжатия текстов документов.
+     */
+    private final CompressionProperties compressionProperties;
+
+    /**
+     * Конструктор для создания репозитория с внедренными зависимостями.
+     *
+     * @param jdbcTemplate шаблон для выполнения JDBC-запросов.
+     * @param textCompressor компонент для сжатия текстов документов.
+     * @param compressionProperties настройки сжатия текстов документов.
+     */
+    @Autowired
+    DocumentBatchRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                TextCompressor textCompressor,
+                                CompressionProperties compressionProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.textCompressor = textCompressor;
+        this.compressionProperties = compressionProperties;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void upsertAll(List<Document> documents) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, documents, documents.size(), (statement, document) -> {
+            byte[] compressedText = document.getCompressedText() != null
+                    ? document.getCompressedText()
+                    : textCompressor.compress(document.getText());
+            statement.setLong(1, document.getId());
+            statement.setString(2, compressedText == null ? document.getText() : null);
+            statement.setBytes(3, compressedText);
+            statement.setLong(4, ContentHash.of(document.getText()));
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void upsertCompressedText(Long id, InputStream compressedText) {
+        jdbcTemplate.update(UPSERT_SQL, statement -> {
+            statement.setLong(1, id);
+            statement.setNull(2, Types.VARCHAR);
+            statement.setBinaryStream(3, compressedText);
+            statement.setNull(4, Types.BIGINT);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateContentHash(Long id, long contentHash) {
+        jdbcTemplate.update(HASH_SQL, contentHash, id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long compressTexts(long afterId, int limit) {
+        List<Document> documents = jdbcTemplate.query(SELECT_UNCOMPRESSED_SQL,
+                (resultSet, row) -> new Document(resultSet.getLong(1), resultSet.getString(2)),
+                afterId, compressionProperties.getThreshold(), limit);
+        if (documents.isEmpty()) {
+            return null;
+        }
+        List<Object[]> updates = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            byte[] compressedText = textCompressor.compress(document.getText());
+            if (compressedText != null) {
+                updates.add(new Object[]{compressedText, document.getId()});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(COMPRESS_SQL, updates);
+        }
+        return documents.getLast().getId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearIndexPending(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(CLEAR_INDEX_PENDING_SQL, documents, documents.size(), (statement, document) -> {
+            statement.setLong(1, document.getId());
+            statement.setObject(2, document.getContentHash(), Types.BIGINT);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long hashTexts(long afterId, int limit) {
+        List<Object[]> updates = jdbcTemplate.query(SELECT_UNHASHED_SQL, (resultSet, row) -> {
+            DocumentTextDTO document = new DocumentTextDTO(resultSet.getString(2), resultSet.getBytes(3));
+            return new Object[]{document.getText() == null ? null : ContentHash.of(document.getText()), resultSet.getLong(1)};
+        }, afterId, limit);
+        if (updates.isEmpty()) {
+            return null;
+        }
+        jdbcTemplate.batchUpdate(HASH_SQL, updates);
+        return (Long) updates.getLast()[1];
+    }
+
+}
@@ -1,13 +1,81 @@
 package ru.farpost.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.farpost.dto.DocumentTextDTO;
 import ru.farpost.model.Document;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Репозиторий для работы с сущностью {@link Document}.
- * Обеспечивает доступ к данным документов в базе данных через {@link JpaRepository}.
+ * Обеспечивает доступ к данным документов в базе данных через {@link JpaRepository}
+ * и пакетную запись через {@link DocumentBatchRepository}.
  */
 @Repository
-public interface DocumentRepository extends JpaRepository<Document, Long> {
+public interface DocumentRepository extends JpaRepository<Document, Long>, DocumentBatchRepository {
+
+    /**
+     * Метод для проверки наличия хотя бы одного документа в базе данных.
+     * В отличие от {@code count()} останавливается на первой найденной строке.
+     *
+     * @return {@code true}, если в базе данных есть документы.
+     */
+    boolean existsByIdIsNotNull();
+
+    /**
+     * Метод для получения очередной порции документов при обходе таблицы по возрастанию идентификатора.
+     *
+     * @param id идентификатор последнего документа предыдущей порции.
+     * @param limit максимальный размер порции.
+     * @return список документов с идентификатором больше {@code id}, упорядоченный по возрастанию.
+     */
+    List<Document> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Метод для получения текста документа без загрузки сущности.
+     *
+     * @param id идентификатор документа.
+     * @return текст документа или пустой {@link Optional}, если документ не найден.
+     */
+    @Query("select new ru.farpost.dto.DocumentTextDTO(d.text, d.compressedText) from documents d where d.id = :id")
+    Optional<DocumentTextDTO> findTextById(@Param("id") Long id);
+
+    /**
+     * Метод для получения хеша текста документа без загрузки текста.
+     *
+     * @param id идентификатор документа.
+     * @return хеш текста или пустой {@link Optional}, если документ не найден или его хеш еще не вычислен.
+     */
+    @Query("select d.contentHash from documents d where d.id = :id")
+    Optional<Long> findContentHashById(@Param("id") Long id);
+
+    /**
+     * Метод для отметки документов, изменения которых еще не применены к индексу и аналитике
+     * (см. {@link ru.farpost.service.IndexPipelineService}). Перед обновлением в БД записываются
+     * несохраненные изменения сущностей. Должен вызываться в транзакции сохранения документов.
+     *
+     * @param ids идентификаторы документов.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update documents d set d.indexPending = true where d.id in :ids")
+    void markIndexPending(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Метод для получения очередной порции идентификаторов документов, изменения которых не применены к индексу.
+     *
+     * @param after идентификатор, после которого начинается порция.
+     * @param pageable размер порции.
+     * @return список идентификаторов по возрастанию.
+     */
+    @Query("select d.id from documents d where d.indexPending = true and d.id > :after order by d.id")
+    List<Long> findIndexPendingIds(@Param("after") Long after, Pageable pageable);
+
 }
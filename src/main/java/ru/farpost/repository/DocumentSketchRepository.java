@@ -0,0 +1,54 @@
+package ru.farpost.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.DocumentSketch;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий для работы с сущностью {@link DocumentSketch}.
+ * Обеспечивает доступ к оценкам уникальных слов документов через {@link JpaRepository}.
+ */
+@Repository
+public interface DocumentSketchRepository extends JpaRepository<DocumentSketch, Long> {
+
+    /**
+     * Метод для получения регистров оценок группы документов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return список регистров документов, для которых есть оценка.
+     */
+    @Query("select s.registers from document_sketches s where s.documentId in :documentIds")
+    List<byte[]> findRegistersByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для потокового чтения регистров оценок всех документов.
+     * Строки читаются курсором порциями по 100, поэтому все оценки не загружаются в память.
+     * Должен вызываться в транзакции, поток должен быть закрыт после использования.
+     *
+     * @return поток регистров оценок документов.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query("select s.registers from document_sketches s")
+    Stream<byte[]> streamRegisters();
+
+    /**
+     * Метод для удаления оценок документов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return количество удаленных оценок.
+     */
+    @Modifying
+    @Query("delete from document_sketches s where s.documentId in :documentIds")
+    int deleteByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+}
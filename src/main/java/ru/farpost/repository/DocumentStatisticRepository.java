@@ -0,0 +1,67 @@
+package ru.farpost.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.DocumentStatistic;
+
+import java.util.Collection;
+
+/**
+ * Репозиторий для работы с сущностью {@link DocumentStatistic}.
+ * Обеспечивает доступ к статистике отдельных документов через {@link JpaRepository}.
+ */
+@Repository
+public interface DocumentStatisticRepository extends JpaRepository<DocumentStatistic, Long> {
+
+    /**
+     * Метод для получения суммарной статистики документов без загрузки отдельных строк.
+     * Используется для вычитания вклада предыдущих версий документов из общей статистики.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return проекция с суммарной статистикой.
+     */
+    @Query("select count(s) as documentsCount, coalesce(sum(s.wordCount), 0) as wordCount, " +
+            "coalesce(sum(s.wordsLength), 0) as wordsLength, coalesce(sum(s.sentencesCount), 0) as sentencesCount " +
+            "from document_statistics s where s.documentId in :documentIds")
+    TotalsView sumByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для удаления статистики документов.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    @Modifying
+    @Query("delete from document_statistics s where s.documentId in :documentIds")
+    void deleteByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Проекция с суммарной статистикой группы документов.
+     */
+    interface TotalsView {
+
+        /**
+         * @return количество документов, для которых есть статистика.
+         */
+        long getDocumentsCount();
+
+        /**
+         * @return общее количество слов.
+         */
+        long getWordCount();
+
+        /**
+         * @return суммарная длина всех слов.
+         */
+        long getWordsLength();
+
+        /**
+         * @return количество предложений.
+         */
+        long getSentencesCount();
+
+    }
+
+}
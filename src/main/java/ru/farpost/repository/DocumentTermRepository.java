@@ -0,0 +1,248 @@
+package ru.farpost.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.farpost.model.DocumentTerm;
+import ru.farpost.model.DocumentTermId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий для работы с инвертированным индексом {@link DocumentTerm}.
+ * Обеспечивает доступ к спискам документов по слову через {@link JpaRepository}.
+ */
+@Repository
+public interface DocumentTermRepository extends JpaRepository<DocumentTerm, DocumentTermId> {
+
+    /**
+     * Метод для получения отсортированного списка идентификаторов документов, содержащих слово.
+     *
+     * @param term нормализованное слово.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    @Query("select t.documentId from document_terms t where t.term = :term order by t.documentId")
+    List<Long> findDocumentIdsByTerm(@Param("term") String term);
+
+    /**
+     * Метод для получения страницы идентификаторов документов, содержащих слово, после заданного идентификатора.
+     * Страница читается диапазоном первичного ключа {@code (term, document_id)}, поэтому время чтения
+     * не зависит от номера страницы.
+     *
+     * @param term нормализованное слово.
+     * @param after идентификатор, после которого начинается страница.
+     * @param pageable размер страницы.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    @Query("select t.documentId from document_terms t where t.term = :term and t.documentId > :after " +
+            "order by t.documentId")
+    List<Long> findDocumentIdsByTermAfter(@Param("term") String term, @Param("after") long after, Pageable pageable);
+
+    /**
+     * Метод для потокового чтения идентификаторов документов, содержащих слово.
+     * Строки читаются из БД порциями, поэтому потребление памяти не зависит от количества документов.
+     * Поток должен обрабатываться и закрываться внутри транзакции.
+     *
+     * @param term нормализованное слово.
+     * @return поток идентификаторов документов по возрастанию.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t.documentId from document_terms t where t.term = :term order by t.documentId")
+    Stream<Long> streamDocumentIdsByTerm(@Param("term") String term);
+
+    /**
+     * Метод для получения отсортированного списка идентификаторов документов, содержащих хотя бы одно из слов.
+     *
+     * @param terms нормализованные слова.
+     * @return список идентификаторов документов по возрастанию без повторов.
+     */
+    @Query("select distinct t.documentId from document_terms t where t.term in :terms order by t.documentId")
+    List<Long> findDocumentIdsByTerms(@Param("terms") Collection<String> terms);
+
+    /**
+     * Метод для получения идентификаторов документов из заданного набора, содержащих слово.
+     * Читает только записи индекса для переданных документов по первичному ключу {@code (term, document_id)}.
+     *
+     * @param term нормализованное слово.
+     * @param documentIds идентификаторы документов, среди которых выполняется поиск.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    @Query("select t.documentId from document_terms t where t.term = :term and t.documentId in :documentIds " +
+            "order by t.documentId")
+    List<Long> findDocumentIdsByTermAndDocumentIds(@Param("term") String term,
+                                                    @Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для получения списка документов слова с количеством вхождений и длиной документа.
+     *
+     * @param term нормализованное слово.
+     * @return записи списка документов слова.
+     */
+    @Query("select t.documentId as documentId, t.frequency as frequency, s.wordCount as length " +
+            "from document_terms t join document_statistics s on s.documentId = t.documentId where t.term = :term")
+    List<PostingView> findPostingsByTerm(@Param("term") String term);
+
+    /**
+     * Метод для получения записей списка документов слова для заданных документов.
+     * Читает только записи индекса для переданных документов по первичному ключу {@code (term, document_id)}.
+     *
+     * @param term нормализованное слово.
+     * @param documentIds идентификаторы документов.
+     * @return записи списка документов слова для тех документов из набора, которые содержат слово.
+     */
+    @Query("select t.documentId as documentId, t.frequency as frequency, s.wordCount as length " +
+            "from document_terms t join document_statistics s on s.documentId = t.documentId " +
+            "where t.term = :term and t.documentId in :documentIds")
+    List<PostingView> findPostingsByTermAndDocumentIds(@Param("term") String term,
+                                                       @Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для получения позиций слов в документах.
+     *
+     * @param terms нормализованные слова.
+     * @param documentIds идентификаторы документов.
+     * @return список записей индекса с позициями для каждой пары слова и содержащего его документа.
+     */
+    @Query("select t.documentId as documentId, t.term as term, t.positions as positions from document_terms t " +
+            "where t.term in :terms and t.documentId in :documentIds")
+    List<TermPositionsView> findTermPositions(@Param("terms") Collection<String> terms,
+                                              @Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для получения слов документов и количества их вхождений.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return список слов с количеством вхождений; слово повторяется для каждого содержащего его документа.
+     */
+    @Query("select t.term as term, t.frequency as frequency from document_terms t where t.documentId in :documentIds")
+    List<TermFrequencyView> findTermFrequenciesByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для подсчета уникальных слов в группе документов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return количество различных слов во всех документах группы.
+     */
+    @Query("select count(distinct t.term) from document_terms t where t.documentId in :documentIds")
+    long countDistinctTermsByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для потокового чтения всех записей индекса.
+     * Строки читаются курсором порциями по 1000, поэтому весь индекс не загружается в память.
+     * Должен вызываться в транзакции, поток должен быть закрыт после использования.
+     *
+     * @return поток слов с количеством вхождений по всем документам.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t.term as term, t.frequency as frequency from document_terms t")
+    Stream<TermFrequencyView> streamTermFrequencies();
+
+    /**
+     * Метод для удаления всех записей индекса документов.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    @Modifying
+    @Query("delete from document_terms t where t.documentId in :documentIds")
+    void deleteByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
+    /**
+     * Метод для получения идентификаторов документов, которые еще не были проиндексированы
+     * (для них нет строки в таблице {@code document_analytics}) или проиндексированы без позиций слов.
+     * Используется для дозаполнения индекса при запуске приложения.
+     *
+     * @param after идентификатор, после которого начинается выборка.
+     * @param pageable ограничение размера выборки.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    @Query("select d.id from documents d where d.id > :after " +
+            "and (not exists (select 1 from document_analytics a where a.documentId = d.id) " +
+            "or exists (select 1 from document_terms t where t.documentId = d.id and t.positions is null)) order by d.id")
+    List<Long> findUnindexedDocumentIds(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * Проекция записи индекса: слово и количество его вхождений в документ.
+     */
+    interface TermFrequencyView {
+
+        /**
+         * Метод для получения слова.
+         *
+         * @return нормализованное слово.
+         */
+        String getTerm();
+
+        /**
+         * Метод для получения количества вхождений слова.
+         *
+         * @return количество вхождений слова в документ.
+         */
+        int getFrequency();
+
+    }
+
+    /**
+     * Проекция записи индекса: документ, слово и позиции его вхождений.
+     */
+    interface TermPositionsView {
+
+        /**
+         * Метод для получения идентификатора документа.
+         *
+         * @return идентификатор документа.
+         */
+        Long getDocumentId();
+
+        /**
+         * Метод для получения слова.
+         *
+         * @return нормализованное слово.
+         */
+        String getTerm();
+
+        /**
+         * Метод для получения позиций вхождений слова.
+         *
+         * @return позиции, сжатые {@link ru.farpost.utils.PostingLists#encodePositions(int[])}.
+         */
+        byte[] getPositions();
+
+    }
+
+    /**
+     * Проекция записи списка документов слова для ранжирования.
+     */
+    interface PostingView {
+
+        /**
+         * Метод для получения идентификатора документа.
+         *
+         * @return идентификатор документа.
+         */
+        Long getDocumentId();
+
+        /**
+         * Метод для получения количества вхождений слова.
+         *
+         * @return количество вхождений слова в документ.
+         */
+        int getFrequency();
+
+        /**
+         * Метод для получения длины документа.
+         *
+         * @return количество слов в документе.
+         */
+        int getLength();
+
+    }
+
+}
@@ -0,0 +1,626 @@
+package ru.farpost.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.BulkResultDTO;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.Document;
+import ru.farpost.utils.AnalyticsProperties;
+import ru.farpost.utils.ClusterProperties;
+import ru.farpost.utils.ShardMerger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для работы приложения узлом кластера.
+ * Если работа в кластере включена ({@code cluster.enabled}), документы распределяются между узлами
+ * ({@code cluster.shards}) по хешу идентификатора: каждый узел хранит, индексирует и обрабатывает только свою часть.
+ * Любой узел может быть координатором: запрос по документу он передает узлу документа, а запрос по всему корпусу
+ * параллельно отправляет остальным узлам, свою часть выполняет сам, без запроса по HTTP, и объединяет частичные
+ * результаты (см. {@link ShardMerger}). Ответы узлов ожидаются без блокировки потока обработки запросов.
+ * Запросы координатора передаются с заголовком {@value #SHARD_HEADER}; узел отвечает на них только по своей части.
+ * <p>
+ * Ожидание ответа каждого узла ограничено {@code cluster.timeout} (для тяжелых запросов и загрузки –
+ * {@code cluster.long-timeout}). Если узел не ответил, запрос завершается ошибкой
+ * {@link ExceptionsMessage#SHARD_UNAVAILABLE} либо, при {@code cluster.allow-partial}, возвращается результат
+ * остальных узлов с количеством недоступных узлов в заголовке {@value #FAILED_SHARDS_HEADER}.
+ * Узел, на котором нет документов, не участвует в результате.
+ * <p>
+ * Время запросов к узлам публикуется в метрике {@code cluster.shard.requests} с тегами {@code shard}
+ * и {@code outcome}.
+ */
+@Service
+public class ClusterService {
+
+    /**
+     * Заголовок запроса координатора к узлу: узел отвечает только по своей части документов.
+     */
+    public static final String SHARD_HEADER = "X-Shard-Request";
+
+    /**
+     * Заголовок ответа с количеством узлов, не ответивших на запрос.
+     */
+    public static final String FAILED_SHARDS_HEADER = "X-Failed-Shards";
+
+    /**
+     * Путь пакетной загрузки документов на узле.
+     */
+    private static final String BULK_PATH = "/api/documents/bulk";
+
+    /**
+     * Заголовки ответа узла, которые относятся к соединению с узлом и не передаются клиенту.
+     */
+    private static final Set<String> CONNECTION_HEADERS = Set.of(HttpHeaders.CONNECTION.toLowerCase(),
+            HttpHeaders.CONTENT_LENGTH.toLowerCase(), HttpHeaders.TRANSFER_ENCODING.toLowerCase(),
+            HttpHeaders.DATE.toLowerCase(), "keep-alive");
+
+    /**
+     * Журнал сервиса.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+
+    /**
+     * Настройки работы в кластере.
+     */
+    private final ClusterProperties clusterProperties;
+
+    /**
+     * Настройки аналитики документов.
+     */
+    private final AnalyticsProperties analyticsProperties;
+
+    /**
+     * Объект для разбора и формирования JSON.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Реестр метрик.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Клиент HTTP для запросов к узлам.
+     */
+    private final HttpClient httpClient;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param clusterProperties настройки работы в кластере.
+     * @param analyticsProperties настройки аналитики документов.
+     * @param objectMapper объект для разбора и формирования JSON.
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    ClusterService(ClusterProperties clusterProperties, AnalyticsProperties analyticsProperties,
+                   ObjectMapper objectMapper, MeterRegistry registry) {
+        this.clusterProperties = clusterProperties;
+        this.analyticsProperties = analyticsProperties;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(clusterProperties.getConnectTimeout())
+                .build();
+        if (clusterProperties.isEnabled() && (clusterProperties.getShardIndex() < 0
+                || clusterProperties.getShardIndex() >= clusterProperties.getShards().size())) {
+            throw new IllegalStateException("cluster.shard-index must point to this node in cluster.shards");
+        }
+    }
+
+    /**
+     * Метод для проверки, что приложение работает в кластере.
+     *
+     * @return {@code true}, если работа в кластере включена.
+     */
+    public boolean isEnabled() {
+        return clusterProperties.isEnabled();
+    }
+
+    /**
+     * Метод для получения номера узла, на котором хранится документ.
+     *
+     * @param id идентификатор документа.
+     * @return номер узла в списке {@code cluster.shards}.
+     */
+    public int shardOf(Long id) {
+        return Math.floorMod(Long.hashCode(id), clusterProperties.getShards().size());
+    }
+
+    /**
+     * Метод для проверки, что документ хранится на этом узле.
+     *
+     * @param id идентификатор документа.
+     * @return {@code true}, если работа в кластере выключена или документ относится к этому узлу.
+     */
+    public boolean isLocal(Long id) {
+        return !isEnabled() || shardOf(id) == clusterProperties.getShardIndex();
+    }
+
+    /**
+     * Метод для получения количества наиболее частых слов или n-грамм, запрашиваемого у каждого узла.
+     * Некорректное количество не изменяется, чтобы узел отклонил запрос.
+     *
+     * @param k количество слов в результате.
+     * @return количество слов, запрашиваемое у узла: {@code k}, умноженное на {@code cluster.top-k-oversampling},
+     * но не более {@code analytics.max-top-words}.
+     */
+    public int topKCandidates(int k) {
+        int max = analyticsProperties.getMaxTopWords();
+        return k < 1 || k > max ? k : (int) Math.min(max, (long) k * Math.max(1, clusterProperties.getTopKOversampling()));
+    }
+
+    /**
+     * Метод для формирования тела запроса к узлу в формате JSON.
+     *
+     * @param body объект тела запроса.
+     * @return тело запроса.
+     */
+    public HttpRequest.BodyPublisher jsonBody(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Метод для передачи запроса по документу узлу, на котором он хранится.
+     * Ответ узла передается клиенту вместе с заголовками, например {@code ETag} и {@code X-Visible-After};
+     * ошибка, которую вернул узел, выбрасывается исключением {@link ErrorResponse} с тем же кодом и сообщением.
+     * Если узел не ответил, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#SHARD_UNAVAILABLE}.
+     *
+     * @param id идентификатор документа.
+     * @param method метод запроса.
+     * @param pathAndQuery путь и строка запроса.
+     * @param headers заголовки запроса, которые нужно передать узлу, например {@code If-None-Match}.
+     * @param body тело запроса.
+     * @param longRunning {@code true}, если ответа нужно ждать {@code cluster.long-timeout}.
+     * @param type тип тела ответа.
+     * @return {@link ResponseEntity} с ответом узла.
+     * @param <T> тип тела ответа.
+     */
+    public <T> ResponseEntity<T> forward(Long id, String method, String pathAndQuery, HttpHeaders headers,
+                                         HttpRequest.BodyPublisher body, boolean longRunning, TypeReference<T> type) {
+        int shard = shardOf(id);
+        HttpRequest.Builder request = request(shard, pathAndQuery, longRunning).method(method, body);
+        headers.forEach((name, values) -> values.forEach(value -> request.header(name, value)));
+        HttpResponse<byte[]> response = await(send(shard, request.build(), HttpResponse.BodyHandlers.ofByteArray()));
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        response.headers().map().forEach((name, values) -> {
+            if (!CONNECTION_HEADERS.contains(name.toLowerCase())) {
+                responseHeaders.addAll(name, values);
+            }
+        });
+        if (response.statusCode() != HttpStatus.OK.value() || response.body().length == 0) {
+            return ResponseEntity.status(response.statusCode()).headers(responseHeaders).build();
+        }
+        return ResponseEntity.ok().headers(responseHeaders).body(parse(response.body(), type));
+    }
+
+    /**
+     * Метод для отправки запроса остальным узлам и получения их частичных результатов вместе с результатом этого узла.
+     * Ошибка, которую вернул один из узлов, выбрасывается исключением {@link ErrorResponse} с тем же кодом
+     * и сообщением; если ни на одном узле нет документов, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}. Ошибка результата этого узла
+     * (кроме {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}) завершает запрос.
+     *
+     * @param method метод запроса.
+     * @param pathAndQuery путь и строка запроса.
+     * @param longRunning {@code true}, если ответа нужно ждать {@code cluster.long-timeout}.
+     * @param type тип частичного результата.
+     * @param local функция для вычисления частичного результата этого узла.
+     * @return частичные результаты узлов, на которых есть документы.
+     * @param <T> тип частичного результата.
+     */
+    public <T> CompletableFuture<ShardResults<T>> gather(String method, String pathAndQuery, boolean longRunning,
+                                                         TypeReference<T> type, Supplier<CompletableFuture<T>> local) {
+        List<CompletableFuture<Object>> replies = new ArrayList<>(IntStream.range(0, clusterProperties.getShards().size())
+                .filter(shard -> shard != clusterProperties.getShardIndex())
+                .mapToObj(shard -> shardReply(shard, method, pathAndQuery, longRunning))
+                .toList());
+        replies.add(localReply(local));
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            ShardResults<T> results = new ShardResults<>();
+            for (CompletableFuture<Object> reply : replies) {
+                Object body = reply.join();
+                if (body instanceof ShardFailure failure) {
+                    results.failedShards++;
+                    log.warn("Shard {} did not respond to {}: {}", failure.shard, pathAndQuery, failure.cause.toString());
+                } else if (body instanceof Optional<?> value) {
+                    @SuppressWarnings("unchecked")
+                    Optional<T> localValue = (Optional<T>) value;
+                    localValue.ifPresent(results.values::add);
+                } else if (!isEmpty((byte[]) body)) {
+                    results.values.add(parse((byte[]) body, type));
+                }
+            }
+            return complete(results);
+        });
+    }
+
+    /**
+     * Метод для отправки запроса узлу и получения тела его ответа.
+     *
+     * @param shard номер узла.
+     * @param method метод запроса.
+     * @param pathAndQuery путь и строка запроса.
+     * @param longRunning {@code true}, если ответа нужно ждать {@code cluster.long-timeout}.
+     * @return тело ответа или {@link ShardFailure}, если узел не ответил.
+     */
+    private CompletableFuture<Object> shardReply(int shard, String method, String pathAndQuery, boolean longRunning) {
+        HttpRequest request = request(shard, pathAndQuery, longRunning)
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(shard, request, HttpResponse.BodyHandlers.ofByteArray())
+                .<Object>thenApply(response -> {
+                    if (response.statusCode() != HttpStatus.OK.value()) {
+                        throw new IllegalStateException("Shard " + shard + " responded with " + response.statusCode());
+                    }
+                    return response.body();
+                })
+                .exceptionally(e -> new ShardFailure(shard, e));
+    }
+
+    /**
+     * Метод для вычисления частичного результата этого узла.
+     *
+     * @param local функция для вычисления частичного результата.
+     * @return результат в {@link Optional}, пустой, если на узле нет документов; ошибка вычисления передается как есть.
+     * @param <T> тип частичного результата.
+     */
+    private static <T> CompletableFuture<Object> localReply(Supplier<CompletableFuture<T>> local) {
+        CompletableFuture<T> result;
+        try {
+            result = local.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.handle((value, e) -> {
+            if (e == null) {
+                return Optional.ofNullable(value);
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof ErrorResponse error && isDocumentsNotFound(error)) {
+                return Optional.empty();
+            }
+            throw e instanceof CompletionException completion ? completion : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Метод для проверки, что ошибка этого узла означает отсутствие на нем документов.
+     *
+     * @param error ошибка.
+     * @return {@code true}, если это ошибка {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     */
+    private static boolean isDocumentsNotFound(ErrorResponse error) {
+        return error.getCode() == ExceptionsMessage.DOCUMENTS_NOT_FOUND.getCode()
+                && ExceptionsMessage.DOCUMENTS_NOT_FOUND.getMessage().equals(error.getMessage());
+    }
+
+    /**
+     * Метод для открытия потоков идентификаторов документов на всех узлах.
+     * Остальным узлам отправляется запрос, и их ответы в формате NDJSON читаются построчно;
+     * поток этого узла открывается в том же процессе, без запроса к самому себе.
+     * Потоки открываются до передачи ответа клиенту, поэтому ошибки узлов обрабатываются так же,
+     * как в {@link #gather(String, String, boolean, TypeReference, Supplier)}. Открытые потоки нужно закрыть.
+     *
+     * @param pathAndQuery путь и строка запроса.
+     * @param local функция для открытия потока идентификаторов этого узла.
+     * @return потоки узлов, на которых есть документы, с идентификаторами по возрастанию.
+     */
+    public ShardResults<Stream<Long>> openStreams(String pathAndQuery, Supplier<Stream<Long>> local) {
+        Map<Integer, CompletableFuture<HttpResponse<Stream<String>>>> responses = new LinkedHashMap<>();
+        for (int shard = 0; shard < clusterProperties.getShards().size(); shard++) {
+            if (shard != clusterProperties.getShardIndex()) {
+                responses.put(shard, send(shard, request(shard, pathAndQuery, false).GET().build(),
+                        HttpResponse.BodyHandlers.ofLines()));
+            }
+        }
+        ShardResults<Stream<Long>> results = new ShardResults<>();
+        try {
+            try {
+                results.values.add(local.get());
+            } catch (ErrorResponse e) {
+                if (!isDocumentsNotFound(e)) {
+                    throw e;
+                }
+            }
+            for (Map.Entry<Integer, CompletableFuture<HttpResponse<Stream<String>>>> entry : responses.entrySet()) {
+                int shard = entry.getKey();
+                HttpResponse<Stream<String>> response;
+                try {
+                    response = await(entry.getValue());
+                } catch (ErrorResponse e) {
+                    results.failedShards++;
+                    log.warn("Shard {} did not respond to {}", shard, pathAndQuery);
+                    continue;
+                }
+                boolean error = response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                        .map(MediaType::parseMediaType)
+                        .filter(MediaType.APPLICATION_JSON::isCompatibleWith)
+                        .isPresent();
+                if (!error && response.statusCode() == HttpStatus.OK.value()) {
+                    results.values.add(response.body().filter(line -> !line.isEmpty()).map(Long::parseLong));
+                    continue;
+                }
+                byte[] body;
+                try (Stream<String> lines = response.body()) {
+                    body = String.join("\n", lines.toList()).getBytes(StandardCharsets.UTF_8);
+                }
+                if (response.statusCode() != HttpStatus.OK.value()) {
+                    results.failedShards++;
+                    log.warn("Shard {} responded to {} with {}", shard, pathAndQuery, response.statusCode());
+                } else if (!isEmpty(body)) {
+                    throw new IllegalStateException("Shard " + shard + " responded with unexpected JSON");
+                }
+            }
+            return complete(results);
+        } catch (RuntimeException e) {
+            results.values.forEach(Stream::close);
+            responses.values().forEach(response -> response.thenAccept(opened -> opened.body().close()));
+            throw e;
+        }
+    }
+
+    /**
+     * Метод для пакетной загрузки документов на узел, на котором они хранятся.
+     *
+     * @param shard номер узла.
+     * @param documents документы узла.
+     * @return результат загрузки на узле; позиции ошибок соответствуют позициям в {@code documents}.
+     * Если узел не ответил, результат завершается исключением {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#SHARD_UNAVAILABLE}; ошибка узла – исключением с ее кодом и сообщением.
+     */
+    public CompletableFuture<BulkResultDTO> sendDocuments(int shard, List<Document> documents) {
+        HttpRequest request = request(shard, BULK_PATH, true)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(jsonBody(documents))
+                .build();
+        return send(shard, request, HttpResponse.BodyHandlers.ofByteArray())
+                .exceptionally(e -> {
+                    log.warn("Shard {} did not accept {} documents: {}", shard, documents.size(), e.toString());
+                    throw new ErrorResponse(ExceptionsMessage.SHARD_UNAVAILABLE);
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpStatus.OK.value()) {
+                        throw new ErrorResponse(ExceptionsMessage.SHARD_UNAVAILABLE);
+                    }
+                    return parse(response.body(), new TypeReference<BulkResultDTO>() { });
+                });
+    }
+
+    /**
+     * Метод для создания запроса к узлу.
+     *
+     * @param shard номер узла.
+     * @param pathAndQuery путь и строка запроса.
+     * @param longRunning {@code true}, если ответа нужно ждать {@code cluster.long-timeout}.
+     * @return построитель запроса с заголовком {@value #SHARD_HEADER}.
+     */
+    private HttpRequest.Builder request(int shard, String pathAndQuery, boolean longRunning) {
+        String baseUrl = clusterProperties.getShards().get(shard);
+        return HttpRequest.newBuilder(URI.create(baseUrl.replaceAll("/+$", "") + pathAndQuery))
+                .timeout(longRunning ? clusterProperties.getLongTimeout() : clusterProperties.getTimeout())
+                .header(SHARD_HEADER, "true");
+    }
+
+    /**
+     * Метод для асинхронной отправки запроса узлу с учетом времени запроса в метриках.
+     *
+     * @param shard номер узла.
+     * @param request запрос.
+     * @param handler обработчик тела ответа.
+     * @return ответ узла.
+     * @param <T> тип тела ответа.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> send(int shard, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        Timer.Sample sample = Timer.start(registry);
+        Duration timeout = request.timeout().orElse(clusterProperties.getTimeout());
+        return httpClient.sendAsync(request, handler)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((response, e) -> sample.stop(Timer.builder("cluster.shard.requests")
+                        .description("Запросы к узлам кластера")
+                        .tag("shard", Integer.toString(shard))
+                        .tag("outcome", e != null ? "failure" : Integer.toString(response.statusCode()))
+                        .register(registry)));
+    }
+
+    /**
+     * Метод для ожидания ответа узла в текущем потоке.
+     * Ошибка, которую вернул узел, выбрасывается как есть; если узел не ответил, выбрасывается исключение
+     * {@link ErrorResponse} с сообщением {@link ExceptionsMessage#SHARD_UNAVAILABLE}.
+     *
+     * @param future ответ узла.
+     * @return результат.
+     * @param <T> тип результата.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ErrorResponse errorResponse) {
+                throw errorResponse;
+            }
+            throw new ErrorResponse(ExceptionsMessage.SHARD_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Метод для проверки собранных частичных результатов.
+     *
+     * @param results частичные результаты.
+     * @return те же частичные результаты.
+     * @param <T> тип частичного результата.
+     */
+    private <T> ShardResults<T> complete(ShardResults<T> results) {
+        if (results.failedShards > 0 && (!clusterProperties.isAllowPartial() || results.values.isEmpty())) {
+            throw new ErrorResponse(ExceptionsMessage.SHARD_UNAVAILABLE);
+        }
+        if (results.values.isEmpty()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        return results;
+    }
+
+    /**
+     * Метод для проверки, что узел ответил ошибкой {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Ответ с другой ошибкой выбрасывается исключением {@link ErrorResponse} с ее кодом и сообщением.
+     *
+     * @param body тело ответа узла.
+     * @return {@code true}, если на узле нет документов.
+     */
+    private boolean isEmpty(byte[] body) {
+        JsonNode error = readError(body);
+        if (error == null) {
+            return false;
+        }
+        int code = error.get("code").asInt();
+        String message = error.get("message").asText();
+        if (code == ExceptionsMessage.DOCUMENTS_NOT_FOUND.getCode()
+                && message.equals(ExceptionsMessage.DOCUMENTS_NOT_FOUND.getMessage())) {
+            return true;
+        }
+        throw new ErrorResponse(code, message);
+    }
+
+    /**
+     * Метод для разбора ответа узла.
+     * Ошибка, которую вернул узел, выбрасывается исключением {@link ErrorResponse} с ее кодом и сообщением.
+     *
+     * @param body тело ответа узла.
+     * @param type тип результата.
+     * @return результат.
+     * @param <T> тип результата.
+     */
+    private <T> T parse(byte[] body, TypeReference<T> type) {
+        JsonNode error = readError(body);
+        if (error != null) {
+            throw new ErrorResponse(error.get("code").asInt(), error.get("message").asText());
+        }
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Метод для чтения ошибки из ответа узла. Ошибки передаются объектом с полями {@code code} и {@code message}
+     * (см. {@link ru.farpost.exception.GlobalExceptionHandler}).
+     *
+     * @param body тело ответа узла.
+     * @return объект ошибки или {@code null}, если ответ не является ошибкой.
+     */
+    private JsonNode readError(byte[] body) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+        boolean error = node != null && node.isObject() && node.size() == 2
+                && node.path("code").isInt() && node.path("message").isTextual();
+        return error ? node : null;
+    }
+
+    /**
+     * Частичные результаты узлов.
+     *
+     * @param <T> тип частичного результата.
+     */
+    public static final class ShardResults<T> {
+
+        /**
+         * Результаты узлов, на которых есть документы.
+         */
+        private final List<T> values = new ArrayList<>();
+
+        /**
+         * Количество узлов, не ответивших на запрос.
+         */
+        private int failedShards;
+
+        /**
+         * Метод для получения результатов узлов.
+         *
+         * @return результаты узлов, на которых есть документы.
+         */
+        public List<T> getValues() {
+            return values;
+        }
+
+        /**
+         * Метод для получения количества узлов, не ответивших на запрос.
+         *
+         * @return количество узлов.
+         */
+        public int getFailedShards() {
+            return failedShards;
+        }
+
+    }
+
+    /**
+     * Узел, не ответивший на запрос.
+     */
+    private static final class ShardFailure {
+
+        /**
+         * Номер узла в списке узлов кластера.
+         */
+        private final int shard;
+
+        /**
+         * Причина сбоя запроса к узлу.
+         */
+        private final Throwable cause;
+
+        /**
+         * Конструктор для создания описания сбоя узла.
+         *
+         * @param shard номер узла в списке узлов кластера.
+         * @param cause причина сбоя запроса к узлу.
+         */
+        private ShardFailure(int shard, Throwable cause) {
+            this.shard = shard;
+            this.cause = cause;
+        }
+
+    }
+
+}
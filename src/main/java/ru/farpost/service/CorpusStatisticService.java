@@ -0,0 +1,156 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.dto.StatisticTotalsDTO;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.model.DocumentStatistic;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentStatisticRepository;
+import ru.farpost.repository.DocumentTermRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сервис для поддержки общей статистики по всем документам.
+ * Статистика обновляется приращениями при сохранении документов: при перезаписи документа
+ * вклад его предыдущей версии вычитается, поэтому запрос статистики не требует чтения текстов.
+ */
+@Service
+public class CorpusStatisticService {
+
+    /**
+     * Репозиторий для работы с {@link DocumentStatistic}.
+     */
+    private final DocumentStatisticRepository documentStatisticRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Репозиторий для работы с инвертированным индексом документов.
+     */
+    private final DocumentTermRepository documentTermRepository;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentStatisticRepository репозиторий для работы с {@link DocumentStatistic}.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param documentTermRepository репозиторий для работы с инвертированным индексом.
+     */
+    @Autowired
+    CorpusStatisticService(DocumentStatisticRepository documentStatisticRepository,
+                           CorpusStatisticRepository corpusStatisticRepository,
+                           DocumentTermRepository documentTermRepository) {
+        this.documentStatisticRepository = documentStatisticRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.documentTermRepository = documentTermRepository;
+    }
+
+    /**
+     * Метод для учета новых версий документов в общей статистике.
+     * Вклад предыдущих версий вычитается по их сохраненной статистике, после чего она заменяется новой.
+     * Должен вызываться в транзакции сохранения документов.
+     *
+     * @param analysis результат разбора текстов документов с их суммарными метриками.
+     * @param vocabularyDelta изменение размера общего словаря после индексации документов.
+     */
+    public void updateDocuments(CorpusAnalysisDTO analysis, long vocabularyDelta) {
+        Map<Long, TextAnalysisDTO> analyses = analysis.getAnalyses();
+        DocumentStatisticRepository.TotalsView previous = documentStatisticRepository.sumByDocumentIds(analyses.keySet());
+        documentStatisticRepository.deleteByDocumentIds(analyses.keySet());
+
+        List<DocumentStatistic> current = new ArrayList<>(analyses.size());
+        for (Map.Entry<Long, TextAnalysisDTO> entry : analyses.entrySet()) {
+            TextAnalysisDTO document = entry.getValue();
+            current.add(new DocumentStatistic(
+                    entry.getKey(),
+                    document.getWordCount(),
+                    document.getTermFrequencies().size(),
+                    document.getWordsLength(),
+                    document.getSentencesCount()
+            ));
+        }
+        documentStatisticRepository.saveAll(current);
+
+        long wordsDelta = analysis.getWordCount() - previous.getWordCount();
+        long lengthDelta = analysis.getWordsLength() - previous.getWordsLength();
+        long sentencesDelta = analysis.getSentencesCount() - previous.getSentencesCount();
+
+        long documentsDelta = analyses.size() - previous.getDocumentsCount();
+        int updated = corpusStatisticRepository.applyDelta(CorpusStatistic.SINGLETON_ID,
+                documentsDelta, wordsDelta, vocabularyDelta, lengthDelta, sentencesDelta);
+        if (updated == 0) {
+            corpusStatisticRepository.save(new CorpusStatistic(CorpusStatistic.SINGLETON_ID,
+                    documentsDelta, wordsDelta, vocabularyDelta, lengthDelta, sentencesDelta, 1));
+        }
+    }
+
+    /**
+     * Метод для получения общей статистики по всем документам.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @return карта, содержащая ключевые метрики для всех документов в формате {@link StatisticTotalsDTO#toStatistic()}.
+     */
+    public Map<String, Integer> getCorpusStatistic() {
+        return getCorpusTotals().toStatistic();
+    }
+
+    /**
+     * Метод для получения сумм общей статистики по всем документам.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @return объект {@link StatisticTotalsDTO} с суммами без оценки уникальных слов.
+     */
+    public StatisticTotalsDTO getCorpusTotals() {
+        CorpusStatistic statistic = corpusStatisticRepository.findById(CorpusStatistic.SINGLETON_ID)
+                .filter(it -> it.getDocumentsCount() > 0)
+                .orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND));
+
+        return new StatisticTotalsDTO(statistic.getDocumentsCount(), statistic.getWordCount(), statistic.getUniqWordCount(),
+                statistic.getWordsLength(), statistic.getSentencesCount(), null);
+    }
+
+    /**
+     * Метод для получения общей статистики по группе документов.
+     * Статистика суммируется по сохраненной статистике документов, а уникальные слова подсчитываются
+     * по инвертированному индексу, без чтения текстов документов.
+     * Если ни одного документа группы нет в БД, то выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return карта, содержащая ключевые метрики для документов группы в формате {@link StatisticTotalsDTO#toStatistic()}.
+     */
+    public Map<String, Integer> getDocumentsStatistic(Collection<Long> documentIds) {
+        return getDocumentsTotals(documentIds).toStatistic();
+    }
+
+    /**
+     * Метод для получения сумм общей статистики по группе документов.
+     * Если ни одного документа группы нет в БД, то выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return объект {@link StatisticTotalsDTO} с суммами без оценки уникальных слов.
+     */
+    public StatisticTotalsDTO getDocumentsTotals(Collection<Long> documentIds) {
+        DocumentStatisticRepository.TotalsView totals = documentStatisticRepository.sumByDocumentIds(documentIds);
+        if (totals.getDocumentsCount() == 0) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        return new StatisticTotalsDTO(totals.getDocumentsCount(), totals.getWordCount(),
+                documentTermRepository.countDistinctTermsByDocumentIds(documentIds),
+                totals.getWordsLength(), totals.getSentencesCount(), null);
+    }
+
+}
@@ -0,0 +1,196 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.AnalyticsProperties;
+import ru.farpost.utils.SpaceSavingSketch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для получения наиболее часто встречающихся слов всего корпуса.
+ * Частоты слов оцениваются приближенно в памяти алгоритмом Space-Saving ({@link SpaceSavingSketch}),
+ * поэтому запрос не требует подсчета всех слов корпуса. Оценка строится при запуске приложения
+ * потоковым чтением индекса и затем поддерживается при сохранении документов.
+ */
+@Service
+public class CorpusTopWordsService {
+
+    /**
+     * Репозиторий для работы с инвертированным индексом документов.
+     */
+    private final DocumentTermRepository documentTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Шаблон для чтения индекса и поколения корпуса в одном снимке БД, в транзакции только для чтения.
+     */
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Количество счетчиков оценки.
+     */
+    private final int capacity;
+
+    /**
+     * Оценка частот слов корпуса. Доступ синхронизирован по экземпляру сервиса.
+     */
+    private SpaceSavingSketch sketch;
+
+    /**
+     * Изменения оценки, зафиксированные во время ее построения, или {@code null}, если оценка не строится.
+     * Изменение принимает поколение корпуса снимка, по которому построена оценка, и применяется, только если
+     * его собственное поколение больше. Доступ синхронизирован по экземпляру сервиса.
+     */
+    private List<LongConsumer> pendingUpdates;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentTermRepository репозиторий для работы с инвертированным индексом.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param analyticsProperties настройки аналитики документов.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    CorpusTopWordsService(DocumentTermRepository documentTermRepository,
+                          CorpusStatisticRepository corpusStatisticRepository,
+                          AnalyticsProperties analyticsProperties,
+                          PlatformTransactionManager transactionManager) {
+        this.documentTermRepository = documentTermRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.capacity = analyticsProperties.getTopWordsCapacity();
+        this.sketch = new SpaceSavingSketch(capacity);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.readOnlyTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Метод для построения оценки по индексу при запуске приложения.
+     * Выполняется до дозаполнения индекса, чтобы документы, проиндексированные при дозаполнении,
+     * были учтены ровно один раз. Запросы принимаются уже во время построения, поэтому изменения запоминаются
+     * с начала построения, а после замены оценки применяются к ней только те, что зафиксированы после снимка БД,
+     * по которому она построена: их поколение корпуса больше поколения, прочитанного в том же снимке.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSketch() {
+        synchronized (this) {
+            pendingUpdates = new ArrayList<>();
+        }
+        SpaceSavingSketch loaded = new SpaceSavingSketch(capacity);
+        AtomicLong snapshotGeneration = new AtomicLong();
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                snapshotGeneration.set(corpusGeneration());
+                try (Stream<DocumentTermRepository.TermFrequencyView> terms = documentTermRepository.streamTermFrequencies()) {
+                    terms.forEach(term -> loaded.add(term.getTerm(), term.getFrequency()));
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingUpdates = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            sketch = loaded;
+            pendingUpdates.forEach(update -> update.accept(snapshotGeneration.get()));
+            pendingUpdates = null;
+        }
+    }
+
+    /**
+     * Метод для учета новых версий документов в оценке.
+     * Вхождения слов предыдущих версий вычитаются, вхождения новых версий добавляются.
+     * Если вызывается в транзакции, оценка обновляется только после ее успешной фиксации.
+     * Должен вызываться после обновления общей статистики в той же транзакции, чтобы изменение было помечено
+     * поколением корпуса этого сохранения.
+     *
+     * @param previous слова предыдущих версий документов с количеством вхождений.
+     * @param analyses результаты разбора текстов новых версий документов по их идентификаторам.
+     */
+    public void updateDocuments(List<DocumentTermRepository.TermFrequencyView> previous,
+                                Map<Long, TextAnalysisDTO> analyses) {
+        long generation = corpusGeneration();
+        Runnable apply = () -> {
+            previous.forEach(term -> sketch.subtract(term.getTerm(), term.getFrequency()));
+            analyses.values().forEach(analysis -> analysis.getTermFrequencies().forEach(sketch::add));
+        };
+        Runnable update = () -> {
+            synchronized (this) {
+                apply.run();
+                if (pendingUpdates != null) {
+                    pendingUpdates.add(snapshotGeneration -> {
+                        if (generation > snapshotGeneration) {
+                            apply.run();
+                        }
+                    });
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * Метод для получения наиболее часто встречающихся слов корпуса.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @param k количество слов в результате.
+     * @return карта слов и оценок их частоты в порядке убывания оценки (при равной оценке – по алфавиту).
+     */
+    public Map<String, Long> getTopWords(int k) {
+        Map<String, Long> topWords;
+        synchronized (this) {
+            topWords = sketch.top(k);
+        }
+        if (topWords.isEmpty()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        return topWords;
+    }
+
+    /**
+     * Метод для получения текущего поколения корпуса.
+     *
+     * @return поколение корпуса или {@code 0}, если документы еще не сохранялись.
+     */
+    private long corpusGeneration() {
+        return corpusStatisticRepository.findGenerationById(CorpusStatistic.SINGLETON_ID).orElse(0L);
+    }
+
+}
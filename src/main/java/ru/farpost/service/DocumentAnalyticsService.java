@@ -0,0 +1,148 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.DocumentAnalytics;
+import ru.farpost.model.DocumentStatistic;
+import ru.farpost.repository.DocumentAnalyticsRepository;
+import ru.farpost.repository.DocumentStatisticRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.DocumentsAnalyticFunctions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Сервис для работы с аналитикой документов, вычисленной при их сохранении.
+ * Нормализованный текст, статистика и наиболее часто встречающиеся слова вычисляются один раз
+ * на версию документа, а запросы на чтение сводятся к поиску по ключу.
+ */
+@Service
+public class DocumentAnalyticsService {
+
+    /**
+     * Репозиторий для работы с {@link DocumentAnalytics}.
+     */
+    private final DocumentAnalyticsRepository documentAnalyticsRepository;
+
+    /**
+     * Репозиторий для работы с {@link DocumentStatistic}.
+     */
+    private final DocumentStatisticRepository documentStatisticRepository;
+
+    /**
+     * Репозиторий для работы с инвертированным индексом документов.
+     */
+    private final DocumentTermRepository documentTermRepository;
+
+    /**
+     * Класс для аналитических функций, связанных с документами.
+     */
+    private final DocumentsAnalyticFunctions analyticFunctions;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentAnalyticsRepository репозиторий для работы с {@link DocumentAnalytics}.
+     * @param documentStatisticRepository репозиторий для работы с {@link DocumentStatistic}.
+     * @param documentTermRepository репозиторий для работы с инвертированным индексом.
+     * @param analyticFunctions класс для аналитических функций с документами.
+     */
+    @Autowired
+    DocumentAnalyticsService(DocumentAnalyticsRepository documentAnalyticsRepository,
+                             DocumentStatisticRepository documentStatisticRepository,
+                             DocumentTermRepository documentTermRepository,
+                             DocumentsAnalyticFunctions analyticFunctions) {
+        this.documentAnalyticsRepository = documentAnalyticsRepository;
+        this.documentStatisticRepository = documentStatisticRepository;
+        this.documentTermRepository = documentTermRepository;
+        this.analyticFunctions = analyticFunctions;
+    }
+
+    /**
+     * Метод для сохранения аналитики новых версий документов взамен предыдущих.
+     * Должен вызываться в транзакции сохранения документов.
+     *
+     * @param analyses результаты разбора текстов документов по их идентификаторам.
+     */
+    public void updateDocuments(Map<Long, TextAnalysisDTO> analyses) {
+        documentAnalyticsRepository.deleteByDocumentIds(analyses.keySet());
+        List<DocumentAnalytics> analytics = new ArrayList<>(analyses.size());
+        analyses.forEach((documentId, analysis) -> analytics.add(new DocumentAnalytics(
+                documentId,
+                analysis.getNormalizedText(),
+                analyticFunctions.getTopWords(analysis.getTermFrequencies(), DocumentsAnalyticFunctions.DEFAULT_TOP_WORDS_COUNT)
+        )));
+        documentAnalyticsRepository.saveAll(analytics);
+    }
+
+    /**
+     * Метод для получения нормализованного текста документа.
+     *
+     * @param documentId идентификатор документа.
+     * @return нормализованный текст или пустой {@link Optional}, если аналитика документа еще не вычислена.
+     */
+    public Optional<String> findNormalizedText(Long documentId) {
+        return documentAnalyticsRepository.findNormalizedTextById(documentId);
+    }
+
+    /**
+     * Метод для получения {@code k} наиболее часто встречающихся слов документа.
+     * При сохранении документа запоминаются {@value DocumentsAnalyticFunctions#DEFAULT_TOP_WORDS_COUNT}
+     * наиболее частых слов; если запрошено больше, слова отбираются по частотам из инвертированного индекса.
+     * Порядок ключей после чтения из БД не гарантируется, поэтому слова заново упорядочиваются по убыванию частоты.
+     *
+     * @param documentId идентификатор документа.
+     * @param k количество слов в результате.
+     * @return карта слов или пустой {@link Optional}, если аналитика документа еще не вычислена.
+     */
+    public Optional<Map<String, Integer>> findTopWords(Long documentId, int k) {
+        return documentAnalyticsRepository.findTopWordsByDocumentId(documentId)
+                .map(DocumentAnalyticsRepository.TopWordsView::getTopWords)
+                .map(topWords -> k <= topWords.size() || topWords.size() < DocumentsAnalyticFunctions.DEFAULT_TOP_WORDS_COUNT
+                        ? topWords
+                        : findTermFrequencies(documentId))
+                .map(wordsCount -> analyticFunctions.getTopWords(wordsCount, k));
+    }
+
+    /**
+     * Метод для получения частот всех слов документа из инвертированного индекса.
+     *
+     * @param documentId идентификатор документа.
+     * @return карта слов и количества их вхождений.
+     */
+    private Map<String, Integer> findTermFrequencies(Long documentId) {
+        Map<String, Integer> wordsCount = new HashMap<>();
+        documentTermRepository.findTermFrequenciesByDocumentIds(List.of(documentId))
+                .forEach(term -> wordsCount.put(term.getTerm(), term.getFrequency()));
+        return wordsCount;
+    }
+
+    /**
+     * Метод для получения статистики документа.
+     *
+     * @param documentId идентификатор документа.
+     * @return карта со статистикой документа (в формате
+     * {@link DocumentsAnalyticFunctions#getDocumentStatistic(String)}) или пустой {@link Optional},
+     * если статистика документа еще не вычислена.
+     */
+    public Optional<Map<String, Integer>> findStatistic(Long documentId) {
+        return documentStatisticRepository.findById(documentId).map(statistic -> {
+            Map<String, Integer> documentStatistic = new LinkedHashMap<>();
+            int wordCount = statistic.getWordCount();
+
+            documentStatistic.put("word_count", wordCount);
+            documentStatistic.put("uniq_word_count", statistic.getUniqWordCount());
+            documentStatistic.put("avg_word_length", wordCount == 0 ? 0 : (int) (statistic.getWordsLength() / wordCount));
+            documentStatistic.put("sentences_count", statistic.getSentencesCount());
+
+            return documentStatistic;
+        });
+    }
+
+}
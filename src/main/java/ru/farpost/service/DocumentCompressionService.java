@@ -0,0 +1,116 @@
+package ru.farpost.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.CompressionProperties;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Сервис для сжатия текстов документов, сохраненных до включения сжатия.
+ * Тексты сжимаются в фоне порциями, каждая порция – в отдельной короткой транзакции, поэтому приложение
+ * обслуживает запросы во время сжатия, а документы, изменяемые параллельно, не блокируются
+ * (см. {@link DocumentRepository#compressTexts(long, int)}). Сжатые и несжатые тексты читаются одинаково,
+ * поэтому сжатие можно прервать и продолжить при следующем запуске.
+ */
+@Service
+public class DocumentCompressionService {
+
+    /**
+     * Журнал сервиса.
+     */
+    private static final Logger log = LoggerFactory.getLogger(DocumentCompressionService.class);
+
+    /**
+     * Репозиторий для работы с документами.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Настройки сжатия текстов документов.
+     */
+    private final CompressionProperties compressionProperties;
+
+    /**
+     * Шаблон для сжатия каждой порции в отдельной транзакции.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Поток для сжатия ранее сохраненных текстов.
+     */
+    private final ExecutorService background = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "document-compression");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentRepository репозиторий для работы с документами.
+     * @param compressionProperties настройки сжатия текстов документов.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    DocumentCompressionService(DocumentRepository documentRepository,
+                               CompressionProperties compressionProperties,
+                               PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.compressionProperties = compressionProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Метод для запуска сжатия ранее сохраненных текстов при запуске приложения, если сжатие включено.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void compressStoredTexts() {
+        if (compressionProperties.isEnabled()) {
+            background.execute(this::compressAll);
+        }
+    }
+
+    /**
+     * Метод для сжатия всех несжатых текстов не короче порога сжатия.
+     *
+     * @return количество просмотренных порций.
+     */
+    long compressAll() {
+        long chunks = 0;
+        try {
+            Long lastId = Long.MIN_VALUE;
+            while (!Thread.currentThread().isInterrupted()) {
+                long afterId = lastId;
+                lastId = transactionTemplate.execute(status ->
+                        documentRepository.compressTexts(afterId, compressionProperties.getMigrationChunkSize()));
+                if (lastId == null) {
+                    break;
+                }
+                chunks++;
+            }
+            log.info("Compressed stored document texts in {} chunks", chunks);
+        } catch (RuntimeException e) {
+            log.error("Failed to compress stored document texts", e);
+        }
+        return chunks;
+    }
+
+    /**
+     * Метод для остановки фонового потока при завершении работы приложения.
+     */
+    @PreDestroy
+    void shutdown() {
+        background.shutdownNow();
+    }
+
+}
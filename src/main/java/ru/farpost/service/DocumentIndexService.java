@@ -0,0 +1,308 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.model.CorpusTerm;
+import ru.farpost.model.Document;
+import ru.farpost.model.DocumentTerm;
+import ru.farpost.repository.CorpusTermRepository;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.AnalyticsMetrics;
+import ru.farpost.utils.CorpusAnalyzer;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.PostingLists;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для работы с инвертированным индексом документов.
+ * Поддерживает в актуальном состоянии таблицу {@code document_terms}, общий словарь {@code corpus_terms},
+ * общую статистику и предварительно вычисленную аналитику документов, а также выполняет поиск по индексу.
+ */
+@Service
+public class DocumentIndexService {
+
+    /**
+     * Количество документов, индексируемых в одной транзакции при дозаполнении индекса.
+     */
+    private static final int BACKFILL_CHUNK_SIZE = 500;
+
+    /**
+     * Репозиторий для работы с {@link DocumentTerm}.
+     */
+    private final DocumentTermRepository documentTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusTerm}.
+     */
+    private final CorpusTermRepository corpusTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link Document}.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Сервис для поддержки общей статистики по всем документам.
+     */
+    private final CorpusStatisticService corpusStatisticService;
+
+    /**
+     * Сервис для работы с предварительно вычисленной аналитикой документов.
+     */
+    private final DocumentAnalyticsService documentAnalyticsService;
+
+    /**
+     * Сервис для получения наиболее часто встречающихся слов корпуса.
+     */
+    private final CorpusTopWordsService corpusTopWordsService;
+
+    /**
+     * Сервис для приближенного подсчета уникальных слов.
+     */
+    private final UniqueWordsSketchService uniqueWordsSketchService;
+
+    /**
+     * Сервис для поиска слов словаря корпуса по префиксу и с опечатками.
+     */
+    private final VocabularyService vocabularyService;
+
+    /**
+     * Сервис для работы с сегментами индекса в файлах, отображаемых в память.
+     */
+    private final SegmentService segmentService;
+
+    /**
+     * Сервис для обхода всех документов корпуса порциями.
+     */
+    private final DocumentScanService documentScanService;
+
+    /**
+     * Компонент для параллельного разбора группы документов.
+     */
+    private final CorpusAnalyzer corpusAnalyzer;
+
+    /**
+     * Компонент для сбора метрик аналитики документов.
+     */
+    private final AnalyticsMetrics analyticsMetrics;
+
+    /**
+     * Кеш текстов документов и результатов их аналитики.
+     */
+    private final DocumentCache documentCache;
+
+    /**
+     * Шаблон для выполнения дозаполнения индекса порциями в отдельных транзакциях.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentTermRepository репозиторий для работы с {@link DocumentTerm}.
+     * @param corpusTermRepository репозиторий для работы с {@link CorpusTerm}.
+     * @param documentRepository репозиторий для работы с {@link Document}.
+     * @param corpusStatisticService сервис для поддержки общей статистики.
+     * @param documentAnalyticsService сервис для работы с аналитикой документов.
+     * @param corpusTopWordsService сервис для получения наиболее часто встречающихся слов корпуса.
+     * @param uniqueWordsSketchService сервис для приближенного подсчета уникальных слов.
+     * @param vocabularyService сервис для поиска слов словаря корпуса.
+     * @param segmentService сервис для работы с сегментами индекса.
+     * @param documentScanService сервис для обхода всех документов корпуса.
+     * @param corpusAnalyzer компонент для параллельного разбора группы документов.
+     * @param analyticsMetrics компонент для сбора метрик аналитики документов.
+     * @param documentCache кеш текстов документов и результатов их аналитики.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    DocumentIndexService(DocumentTermRepository documentTermRepository,
+                         CorpusTermRepository corpusTermRepository,
+                         DocumentRepository documentRepository,
+                         CorpusStatisticService corpusStatisticService,
+                         DocumentAnalyticsService documentAnalyticsService,
+                         CorpusTopWordsService corpusTopWordsService,
+                         UniqueWordsSketchService uniqueWordsSketchService,
+                         VocabularyService vocabularyService,
+                         SegmentService segmentService,
+                         DocumentScanService documentScanService,
+                         CorpusAnalyzer corpusAnalyzer,
+                         AnalyticsMetrics analyticsMetrics,
+                         DocumentCache documentCache,
+                         PlatformTransactionManager transactionManager) {
+        this.documentTermRepository = documentTermRepository;
+        this.corpusTermRepository = corpusTermRepository;
+        this.documentRepository = documentRepository;
+        this.corpusStatisticService = corpusStatisticService;
+        this.documentAnalyticsService = documentAnalyticsService;
+        this.corpusTopWordsService = corpusTopWordsService;
+        this.uniqueWordsSketchService = uniqueWordsSketchService;
+        this.vocabularyService = vocabularyService;
+        this.segmentService = segmentService;
+        this.documentScanService = documentScanService;
+        this.corpusAnalyzer = corpusAnalyzer;
+        this.analyticsMetrics = analyticsMetrics;
+        this.documentCache = documentCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Метод для индексации документа.
+     * Должен вызываться в транзакции сохранения документа.
+     *
+     * @param document объект {@link Document}, который нужно проиндексировать.
+     * @see #indexDocuments(List)
+     */
+    public void indexDocument(Document document) {
+        indexDocuments(List.of(document));
+    }
+
+    /**
+     * Метод для индексации пакета документов.
+     * Вычитает слова старых версий документов из общего словаря, заменяет записи индекса документов
+     * записями для каждого уникального слова новых текстов с количеством и позициями вхождений, добавляет их в словарь,
+     * обновляет общую статистику, оценки частот и уникальных слов, словарь для поиска по префиксу,
+     * записывает новые версии документов в сегмент индекса, перезаписывает аналитику документов
+     * и удаляет предыдущие версии документов из кеша.
+     * Тексты документов разбираются параллельно, а все изменения выполняются запросами на весь пакет,
+     * а не на каждый документ.
+     * Если документ встречается в пакете несколько раз, учитывается его последняя версия.
+     * Должен вызываться в транзакции сохранения документов.
+     *
+     * @param documents список документов, которые нужно проиндексировать.
+     */
+    public void indexDocuments(List<Document> documents) {
+        CorpusAnalysisDTO analysis = analyticsMetrics.time("analyze", () -> corpusAnalyzer.analyze(documents));
+        analyticsMetrics.recordAnalysis(documents, analysis);
+        indexAnalysis(analysis);
+    }
+
+    /**
+     * Метод для индексации документов по готовым результатам разбора их текстов.
+     * Используется, когда тексты разобраны без загрузки в память целиком (например, при потоковой загрузке);
+     * обновляет те же данные, что и {@link #indexDocuments(List)}.
+     * Должен вызываться в транзакции сохранения документов.
+     *
+     * @param analysis результаты разбора текстов документов.
+     */
+    public void indexAnalysis(CorpusAnalysisDTO analysis) {
+        Set<Long> documentIds = analysis.getAnalyses().keySet();
+        documentCache.invalidate(documentIds);
+        List<DocumentTermRepository.TermFrequencyView> previousTerms =
+                documentTermRepository.findTermFrequenciesByDocumentIds(documentIds);
+
+        long changedTerms = analyticsMetrics.time("postings", () -> {
+            corpusTermRepository.decrementDocumentTerms(documentIds);
+            long removedTerms = corpusTermRepository.deleteUnusedDocumentTerms(documentIds);
+            documentTermRepository.deleteByDocumentIds(documentIds);
+
+            List<DocumentTerm> terms = new ArrayList<>();
+            analysis.getAnalyses().forEach((documentId, document) -> document.getTermPositions()
+                    .forEach((term, positions) -> terms.add(new DocumentTerm(term, documentId, positions.length,
+                            PostingLists.encodePositions(positions)))));
+            documentTermRepository.saveAllAndFlush(terms);
+
+            corpusTermRepository.incrementDocumentTerms(documentIds);
+            return corpusTermRepository.countNewDocumentTerms(documentIds) - removedTerms;
+        });
+
+        analyticsMetrics.time("corpus_update", () -> {
+            corpusStatisticService.updateDocuments(analysis, changedTerms);
+            documentAnalyticsService.updateDocuments(analysis.getAnalyses());
+            corpusTopWordsService.updateDocuments(previousTerms, analysis.getAnalyses());
+            uniqueWordsSketchService.updateDocuments(analysis.getAnalyses());
+            vocabularyService.updateDocuments(previousTerms, analysis.getAnalyses());
+            segmentService.updateDocuments(analysis.getAnalyses());
+        });
+    }
+
+    /**
+     * Метод для поиска идентификаторов документов, содержащих заданное слово.
+     * Если сегменты индекса готовы, списки документов читаются из них, иначе – из таблицы {@code document_terms}.
+     *
+     * @param word слово, которое необходимо найти в документах.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> findDocumentIds(String word) {
+        if (segmentService.isReady()) {
+            return segmentService.findDocumentIds(word.toLowerCase());
+        }
+        return documentTermRepository.findDocumentIdsByTerm(word.toLowerCase());
+    }
+
+    /**
+     * Метод для поиска страницы идентификаторов документов, содержащих заданное слово.
+     *
+     * @param word слово, которое необходимо найти в документах.
+     * @param after идентификатор, после которого начинается страница.
+     * @param limit размер страницы.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> findDocumentIds(String word, long after, int limit) {
+        return documentTermRepository.findDocumentIdsByTermAfter(word.toLowerCase(), after, PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Метод для обхода идентификаторов документов, содержащих заданное слово, без загрузки их всех в память.
+     * Идентификаторы читаются из БД порциями в одной транзакции только для чтения.
+     *
+     * @param word слово, которое необходимо найти в документах.
+     * @param consumer получатель идентификаторов документов в порядке возрастания.
+     * @return количество найденных документов.
+     */
+    @Transactional(readOnly = true)
+    public long forEachDocumentId(String word, LongConsumer consumer) {
+        long count = 0;
+        try (Stream<Long> ids = documentTermRepository.streamDocumentIdsByTerm(word.toLowerCase())) {
+            for (var iterator = ids.iterator(); iterator.hasNext(); count++) {
+                consumer.accept(iterator.next());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Метод для дозаполнения индекса при запуске приложения.
+     * Индексирует документы, сохраненные до появления индекса или позиций слов в нем, порциями по {@value #BACKFILL_CHUNK_SIZE}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexMissingDocuments() {
+        Long lastId = Long.MIN_VALUE;
+        while (lastId != null) {
+            Long after = lastId;
+            lastId = transactionTemplate.execute(status -> {
+                List<Long> ids = documentTermRepository.findUnindexedDocumentIds(after, PageRequest.of(0, BACKFILL_CHUNK_SIZE));
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                indexDocuments(documentRepository.findAllById(ids));
+                return ids.get(ids.size() - 1);
+            });
+        }
+    }
+
+    /**
+     * Метод для повторной индексации всех документов.
+     * Используется, когда изменились правила нормализации (например, список стоп-слов) и индекс,
+     * общая статистика и аналитика документов должны быть пересчитаны. Документы читаются и индексируются
+     * порциями в отдельных транзакциях, поэтому весь корпус никогда не находится в памяти целиком.
+     *
+     * @return количество проиндексированных документов.
+     */
+    public long reindexAllDocuments() {
+        return documentScanService.forEachChunk(this::indexDocuments);
+    }
+
+}
@@ -0,0 +1,424 @@
+package ru.farpost.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.BulkErrorDTO;
+import ru.farpost.dto.BulkResultDTO;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.Document;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.AnalyticsMetrics;
+import ru.farpost.utils.DocumentsAnalyticFunctions;
+import ru.farpost.utils.IngestProperties;
+import ru.farpost.utils.StreamedText;
+import ru.farpost.utils.TextCompressor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Сервис для пакетной и потоковой загрузки документов.
+ * Читает документы из тела запроса потоком, проверяет каждый документ так же, как при одиночном сохранении,
+ * и записывает их пакетами заданного размера. В памяти одновременно находится не более одного пакета,
+ * поэтому потребление памяти не зависит от размера тела запроса.
+ * Текст одного большого документа может быть загружен потоком (см. {@link #ingestText(Long, Reader)}).
+ * При работе в кластере документы других узлов передаются этим узлам пакетами (см. {@link ClusterService}).
+ */
+@Service
+public class DocumentIngestService {
+
+    /**
+     * Репозиторий для работы с {@link Document}.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Сервис для работы с документами.
+     */
+    private final DocumentService documentService;
+
+    /**
+     * Сервис для работы с инвертированным индексом документов.
+     */
+    private final DocumentIndexService documentIndexService;
+
+    /**
+     * Сервис для отложенного применения изменений документов к индексу и аналитике.
+     */
+    private final IndexPipelineService indexPipelineService;
+
+    /**
+     * Сервис для работы приложения узлом кластера.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * Класс для аналитических функций, связанных с документами.
+     */
+    private final DocumentsAnalyticFunctions analyticFunctions;
+
+    /**
+     * Компонент для сжатия текстов документов.
+     */
+    private final TextCompressor textCompressor;
+
+    /**
+     * Компонент для сбора метрик аналитики документов.
+     */
+    private final AnalyticsMetrics analyticsMetrics;
+
+    /**
+     * Настройки пакетной загрузки.
+     */
+    private final IngestProperties ingestProperties;
+
+    /**
+     * Объект для чтения {@link Document} из JSON.
+     */
+    private final ObjectReader documentReader;
+
+    /**
+     * Шаблон для записи каждого пакета в отдельной транзакции.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentRepository репозиторий для работы с {@link Document}.
+     * @param documentService сервис для работы с документами.
+     * @param documentIndexService сервис для работы с инвертированным индексом.
+     * @param indexPipelineService сервис для отложенного применения изменений к индексу.
+     * @param clusterService сервис для работы приложения узлом кластера.
+     * @param analyticFunctions класс для аналитических функций с документами.
+     * @param textCompressor компонент для сжатия текстов документов.
+     * @param analyticsMetrics компонент для сбора метрик аналитики документов.
+     * @param ingestProperties настройки пакетной загрузки.
+     * @param objectMapper объект для преобразования JSON.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    DocumentIngestService(DocumentRepository documentRepository,
+                          DocumentService documentService,
+                          DocumentIndexService documentIndexService,
+                          IndexPipelineService indexPipelineService,
+                          ClusterService clusterService,
+                          DocumentsAnalyticFunctions analyticFunctions,
+                          TextCompressor textCompressor,
+                          AnalyticsMetrics analyticsMetrics,
+                          IngestProperties ingestProperties,
+                          ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.documentService = documentService;
+        this.documentIndexService = documentIndexService;
+        this.indexPipelineService = indexPipelineService;
+        this.clusterService = clusterService;
+        this.analyticFunctions = analyticFunctions;
+        this.textCompressor = textCompressor;
+        this.analyticsMetrics = analyticsMetrics;
+        this.ingestProperties = ingestProperties;
+        this.documentReader = objectMapper.readerFor(Document.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Метод для загрузки документов из JSON-массива.
+     * Если массив синтаксически поврежден, загрузка останавливается на месте повреждения,
+     * а уже прочитанные документы сохраняются.
+     *
+     * @param body тело запроса.
+     * @param route {@code true}, если документы других узлов кластера нужно передать этим узлам.
+     * @return объект {@link BulkResultDTO} с результатом загрузки.
+     * @throws IOException если тело запроса не удалось прочитать.
+     */
+    public BulkResultDTO ingestJsonArray(InputStream body, boolean route) throws IOException {
+        Batch batch = new Batch(route);
+        long index = 0;
+        try (MappingIterator<Document> documents = documentReader.readValues(body)) {
+            while (documents.hasNextValue()) {
+                try {
+                    batch.add(index, documents.nextValue());
+                } catch (JsonProcessingException e) {
+                    batch.reject(index, null, ExceptionsMessage.PARSE_ERROR);
+                }
+                index++;
+            }
+        } catch (JsonProcessingException e) {
+            batch.reject(index, null, ExceptionsMessage.PARSE_ERROR);
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Метод для загрузки документов в формате NDJSON (один JSON-документ на строку).
+     * Строки разбираются независимо, поэтому ошибка в одной строке не влияет на остальные.
+     * Пустые строки пропускаются.
+     *
+     * @param body тело запроса.
+     * @param route {@code true}, если документы других узлов кластера нужно передать этим узлам.
+     * @return объект {@link BulkResultDTO} с результатом загрузки.
+     * @throws IOException если тело запроса не удалось прочитать.
+     */
+    public BulkResultDTO ingestNdjson(InputStream body, boolean route) throws IOException {
+        Batch batch = new Batch(route);
+        long index = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(index, documentReader.readValue(line));
+                } catch (JsonProcessingException e) {
+                    batch.reject(index, null, ExceptionsMessage.PARSE_ERROR);
+                }
+                index++;
+            }
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Метод для потоковой загрузки текста документа.
+     * Текст читается частями по {@code ingest.stream-chunk-size} символов; каждая часть разбирается, учитывается
+     * в хеше текста и сжимается по мере того, как драйвер JDBC читает поток для записи в БД (см. {@link StreamedText}),
+     * поэтому ни тело запроса, ни текст документа не находятся в памяти целиком. Текст всегда сохраняется сжатым:
+     * драйвер передает потоком только двоичные значения. Документ сохраняется и индексируется в одной транзакции
+     * по результату разбора, без повторного чтения текста, в том числе при включенном отложенном применении
+     * изменений (см. {@link IndexPipelineService}); в памяти остаются только нормализованные слова,
+     * необходимые для индекса и аналитики документа. Поэтому длина текста ограничена {@code ingest.max-stream-chars}
+     * символами: если текст длиннее, выбрасывается исключение {@link ErrorResponse} с сообщением
+     * {@link ExceptionsMessage#DOCUMENT_TOO_LARGE}, и документ не сохраняется.
+     * Если текст пуст или состоит только из пробельных символов, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#CREATE_ERROR}, и документ не сохраняется.
+     *
+     * @param id идентификатор документа.
+     * @param reader поток текста документа.
+     * @return карта со статистикой документа в формате {@link DocumentsAnalyticFunctions#getDocumentStatistic(String)}.
+     */
+    public Map<String, Integer> ingestText(Long id, Reader reader) {
+        return transactionTemplate.execute(status -> {
+            StreamedText text = analyticFunctions.analyzeText(reader, ingestProperties.getStreamChunkSize(),
+                    ingestProperties.getMaxStreamChars());
+            try (InputStream compressedText = textCompressor.compressStream(text)) {
+                documentRepository.upsertCompressedText(id, compressedText);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (text.isBlank()) {
+                throw new ErrorResponse(ExceptionsMessage.CREATE_ERROR);
+            }
+            documentRepository.updateContentHash(id, text.getContentHash());
+
+            CorpusAnalysisDTO analysis = new CorpusAnalysisDTO();
+            analysis.add(id, text.getAnalysis());
+            analyticsMetrics.recordAnalysis(text.getLength(), analysis);
+            documentIndexService.indexAnalysis(analysis);
+            return analyticFunctions.getDocumentStatistic(text.getAnalysis());
+        });
+    }
+
+    /**
+     * Накопитель текущего пакета документов и результата загрузки.
+     */
+    private class Batch {
+
+        /**
+         * Результат загрузки.
+         */
+        private final BulkResultDTO result = new BulkResultDTO();
+
+        /**
+         * Документы текущего пакета.
+         */
+        private final List<Document> documents = new ArrayList<>();
+
+        /**
+         * Позиции документов текущего пакета в теле запроса.
+         */
+        private final List<Long> indexes = new ArrayList<>();
+
+        /**
+         * Признак того, что документы других узлов кластера нужно передать этим узлам.
+         */
+        private final boolean route;
+
+        /**
+         * Конструктор для создания накопителя.
+         *
+         * @param route {@code true}, если документы других узлов кластера нужно передать этим узлам.
+         */
+        Batch(boolean route) {
+            this.route = route && clusterService.isEnabled();
+        }
+
+        /**
+         * Метод для добавления прочитанного документа в пакет.
+         * Документ, не прошедший проверку, сразу отклоняется.
+         *
+         * @param index позиция документа в теле запроса.
+         * @param document прочитанный документ.
+         */
+        void add(long index, Document document) {
+            try {
+                documentService.validateDocument(document);
+            } catch (ErrorResponse e) {
+                reject(index, document.getId(), ExceptionsMessage.CREATE_ERROR);
+                return;
+            }
+            documents.add(document);
+            indexes.add(index);
+            if (documents.size() >= ingestProperties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        /**
+         * Метод для учета отклоненного документа.
+         *
+         * @param index позиция документа в теле запроса.
+         * @param id идентификатор документа, если он известен.
+         * @param message сообщение об ошибке.
+         */
+        void reject(long index, Long id, ExceptionsMessage message) {
+            reject(index, id, message.getCode(), message.getMessage());
+        }
+
+        /**
+         * Метод для учета отклоненного документа с ошибкой, полученной от другого узла кластера.
+         *
+         * @param index позиция документа в теле запроса.
+         * @param id идентификатор документа, если он известен.
+         * @param code код ошибки.
+         * @param message сообщение об ошибке.
+         */
+        void reject(long index, Long id, int code, String message) {
+            result.setFailedCount(result.getFailedCount() + 1);
+            if (result.getErrors().size() < ingestProperties.getMaxReportedErrors()) {
+                result.getErrors().add(new BulkErrorDTO(index, id, code, message));
+            }
+        }
+
+        /**
+         * Метод для записи текущего пакета в одной транзакции.
+         * Если запись не удалась, отклоняются все документы пакета.
+         */
+        void flush() {
+            if (route) {
+                sendToShards();
+            }
+            if (documents.isEmpty()) {
+                return;
+            }
+            try {
+                Long sequence = transactionTemplate.execute(status -> {
+                    documentRepository.upsertAll(documents);
+                    return indexPipelineService.submit(documents);
+                });
+                if (sequence != null) {
+                    result.setVisibleAfter(Math.max(result.getVisibleAfter(), sequence));
+                }
+                result.setSavedCount(result.getSavedCount() + documents.size());
+            } catch (RuntimeException e) {
+                ExceptionsMessage message = e instanceof ErrorResponse error
+                        && error.getCode() == ExceptionsMessage.SERVER_BUSY.getCode()
+                        ? ExceptionsMessage.SERVER_BUSY : ExceptionsMessage.CREATE_ERROR;
+                for (int i = 0; i < documents.size(); i++) {
+                    reject(indexes.get(i), documents.get(i).getId(), message);
+                }
+            }
+            documents.clear();
+            indexes.clear();
+        }
+
+        /**
+         * Метод для передачи документов других узлов кластера этим узлам и исключения их из текущего пакета.
+         * Узлам документы передаются параллельно; ошибки узлов учитываются с позициями документов в теле запроса,
+         * а если узел не ответил, отклоняются все переданные ему документы.
+         */
+        private void sendToShards() {
+            Map<Integer, List<Integer>> positions = new TreeMap<>();
+            for (int i = 0; i < documents.size(); i++) {
+                Long id = documents.get(i).getId();
+                if (!clusterService.isLocal(id)) {
+                    positions.computeIfAbsent(clusterService.shardOf(id), shard -> new ArrayList<>()).add(i);
+                }
+            }
+            if (positions.isEmpty()) {
+                return;
+            }
+            Map<Integer, CompletableFuture<BulkResultDTO>> sent = new TreeMap<>();
+            positions.forEach((shard, shardPositions) -> sent.put(shard,
+                    clusterService.sendDocuments(shard, shardPositions.stream().map(documents::get).toList())));
+
+            for (Map.Entry<Integer, CompletableFuture<BulkResultDTO>> entry : sent.entrySet()) {
+                List<Integer> shardPositions = positions.get(entry.getKey());
+                try {
+                    BulkResultDTO shardResult = entry.getValue().join();
+                    result.setSavedCount(result.getSavedCount() + shardResult.getSavedCount());
+                    for (BulkErrorDTO error : shardResult.getErrors()) {
+                        reject(indexes.get(shardPositions.get((int) error.getIndex())), error.getId(),
+                                error.getCode(), error.getMessage());
+                    }
+                    result.setFailedCount(result.getFailedCount() + shardResult.getFailedCount() - shardResult.getErrors().size());
+                } catch (CompletionException e) {
+                    ErrorResponse error = e.getCause() instanceof ErrorResponse errorResponse
+                            ? errorResponse : new ErrorResponse(ExceptionsMessage.SHARD_UNAVAILABLE);
+                    for (int position : shardPositions) {
+                        reject(indexes.get(position), documents.get(position).getId(), error.getCode(), error.getMessage());
+                    }
+                }
+            }
+
+            Set<Integer> remote = new HashSet<>();
+            positions.values().forEach(remote::addAll);
+            List<Document> localDocuments = new ArrayList<>();
+            List<Long> localIndexes = new ArrayList<>();
+            for (int i = 0; i < documents.size(); i++) {
+                if (!remote.contains(i)) {
+                    localDocuments.add(documents.get(i));
+                    localIndexes.add(indexes.get(i));
+                }
+            }
+            documents.clear();
+            documents.addAll(localDocuments);
+            indexes.clear();
+            indexes.addAll(localIndexes);
+        }
+
+        /**
+         * Метод для записи последнего неполного пакета.
+         *
+         * @return объект {@link BulkResultDTO} с результатом загрузки.
+         */
+        BulkResultDTO finish() {
+            flush();
+            return result;
+        }
+
+    }
+
+}
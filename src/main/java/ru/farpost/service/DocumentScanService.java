@@ -0,0 +1,117 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.model.Document;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.IngestProperties;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Сервис для последовательного обхода всех документов корпуса.
+ * Загружает документы порциями по возрастанию идентификатора (keyset-пагинация) и обрабатывает каждую порцию
+ * в отдельной транзакции. Контекст персистентности закрывается вместе с транзакцией, поэтому загруженные
+ * сущности отсоединяются после обработки порции, и потребление памяти не зависит от размера таблицы.
+ */
+@Service
+public class DocumentScanService {
+
+    /**
+     * Репозиторий для работы с {@link Document}.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Настройки пакетной обработки документов.
+     */
+    private final IngestProperties ingestProperties;
+
+    /**
+     * Шаблон для обработки каждой порции в отдельной транзакции.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Шаблон для обработки каждой порции в отдельной транзакции только для чтения.
+     */
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentRepository репозиторий для работы с {@link Document}.
+     * @param ingestProperties настройки пакетной обработки документов.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    DocumentScanService(DocumentRepository documentRepository,
+                        IngestProperties ingestProperties,
+                        PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.ingestProperties = ingestProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Метод для обхода всех документов порциями.
+     * Каждая порция читается запросом {@code id > последний id предыдущей порции}, поэтому стоимость
+     * чтения порции не растет по мере продвижения по таблице, в отличие от пагинации через {@code offset}.
+     *
+     * @param chunkConsumer обработчик порции документов; вызывается внутри транзакции порции.
+     * @return количество обработанных документов.
+     */
+    public long forEachChunk(Consumer<List<Document>> chunkConsumer) {
+        return forEachChunk(chunkConsumer, transactionTemplate);
+    }
+
+    /**
+     * Метод для обхода всех документов порциями в транзакциях только для чтения.
+     * Используется для вычислений по всему корпусу, которые не изменяют данные.
+     *
+     * @param chunkConsumer обработчик порции документов; вызывается внутри транзакции порции.
+     * @return количество обработанных документов.
+     * @see #forEachChunk(Consumer)
+     */
+    public long forEachChunkReadOnly(Consumer<List<Document>> chunkConsumer) {
+        return forEachChunk(chunkConsumer, readOnlyTransactionTemplate);
+    }
+
+    /**
+     * Метод для обхода всех документов порциями в транзакциях, созданных шаблоном.
+     *
+     * @param chunkConsumer обработчик порции документов.
+     * @param template шаблон транзакции порции.
+     * @return количество обработанных документов.
+     */
+    private long forEachChunk(Consumer<List<Document>> chunkConsumer, TransactionTemplate template) {
+        Limit limit = Limit.of(ingestProperties.getScanChunkSize());
+        long processed = 0;
+        Long lastId = Long.MIN_VALUE;
+        while (true) {
+            Long after = lastId;
+            List<Document> chunk = template.execute(status -> {
+                List<Document> documents = documentRepository.findByIdGreaterThanOrderByIdAsc(after, limit);
+                if (!documents.isEmpty()) {
+                    chunkConsumer.accept(documents);
+                }
+                return documents;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                return processed;
+            }
+            processed += chunk.size();
+            if (chunk.size() < limit.max()) {
+                return processed;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+}
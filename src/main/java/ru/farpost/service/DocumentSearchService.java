@@ -0,0 +1,324 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.model.CorpusTerm;
+import ru.farpost.model.DocumentTerm;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.CorpusTermRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.Bm25Ranker;
+import ru.farpost.utils.PostingLists;
+import ru.farpost.utils.SearchProperties;
+import ru.farpost.utils.SearchQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сервис для поиска документов по запросам из нескольких слов и фраз.
+ * Запрос вычисляется по позиционному инвертированному индексу {@code document_terms}:
+ * <ul>
+ *     <li>слова альтернативы пересекаются в порядке возрастания количества содержащих их документов,
+ *     поэтому первым читается самый короткий список, а остальные сужают уже найденных кандидатов;</li>
+ *     <li>если кандидатов намного меньше, чем документов со следующим словом, наличие слова проверяется
+ *     только для кандидатов по первичному ключу индекса, иначе список слова читается целиком
+ *     и пересекается галопирующим поиском;</li>
+ *     <li>фразы проверяются по позициям слов только в документах, содержащих все слова фразы;</li>
+ *     <li>исключающие условия проверяются только для оставшихся кандидатов.</li>
+ * </ul>
+ * Поэтому стоимость запроса определяется самым коротким списком, а не суммой длин списков всех слов.
+ */
+@Service
+public class DocumentSearchService {
+
+    /**
+     * Во сколько раз список документов слова должен быть длиннее списка кандидатов,
+     * чтобы проверять слово только для кандидатов вместо чтения всего списка.
+     */
+    private static final int PROBE_RATIO = 8;
+
+    /**
+     * Максимальное количество идентификаторов документов или слов в одном запросе к индексу.
+     */
+    private static final int QUERY_CHUNK_SIZE = 1000;
+
+    /**
+     * Репозиторий для работы с {@link DocumentTerm}.
+     */
+    private final DocumentTermRepository documentTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusTerm}.
+     */
+    private final CorpusTermRepository corpusTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Настройки поиска документов.
+     */
+    private final SearchProperties searchProperties;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentTermRepository репозиторий для работы с {@link DocumentTerm}.
+     * @param corpusTermRepository репозиторий для работы с {@link CorpusTerm}.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param searchProperties настройки поиска документов.
+     */
+    @Autowired
+    DocumentSearchService(DocumentTermRepository documentTermRepository,
+                          CorpusTermRepository corpusTermRepository,
+                          CorpusStatisticRepository corpusStatisticRepository,
+                          SearchProperties searchProperties) {
+        this.documentTermRepository = documentTermRepository;
+        this.corpusTermRepository = corpusTermRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.searchProperties = searchProperties;
+    }
+
+    /**
+     * Метод для поиска документов, удовлетворяющих запросу.
+     *
+     * @param query разобранный поисковый запрос.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> search(SearchQuery query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (SearchQuery.Clause clause : query.getClauses()) {
+            clause.getRequired().forEach(terms::addAll);
+            clause.getExcluded().forEach(terms::addAll);
+        }
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (CorpusTerm term : corpusTermRepository.findAllById(terms)) {
+            documentFrequencies.put(term.getTerm(), term.getDocumentFrequency());
+        }
+
+        long[] result = PostingLists.EMPTY;
+        for (SearchQuery.Clause clause : query.getClauses()) {
+            if (clause.getRequired().isEmpty()) {
+                continue;
+            }
+            long[] documents = findRequired(clause.getRequired(), documentFrequencies);
+            for (List<String> excluded : clause.getExcluded()) {
+                if (documents.length == 0) {
+                    break;
+                }
+                documents = PostingLists.difference(documents, findMatching(excluded, documents, documentFrequencies));
+            }
+            result = PostingLists.union(result, documents);
+        }
+        return Arrays.stream(result).boxed().toList();
+    }
+
+    /**
+     * Метод для поиска {@code k} документов, наиболее релевантных словам запроса по формуле BM25.
+     * Количество вхождений слов и длины документов берутся из индекса, вычисленного при сохранении документов.
+     * Списки документов частых слов читаются только для документов-кандидатов, если это не может изменить
+     * результат (см. {@link Bm25Ranker}).
+     *
+     * @param terms нормализованные слова запроса.
+     * @param k количество документов в результате.
+     * @return до {@code k} документов по убыванию релевантности.
+     */
+    @Transactional(readOnly = true)
+    public List<ScoredDocumentDTO> rank(Collection<String> terms, int k) {
+        CorpusStatistic statistic = corpusStatisticRepository.findById(CorpusStatistic.SINGLETON_ID).orElse(null);
+        if (statistic == null || statistic.getDocumentsCount() == 0) {
+            return List.of();
+        }
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (CorpusTerm term : corpusTermRepository.findAllById(terms)) {
+            documentFrequencies.put(term.getTerm(), term.getDocumentFrequency());
+        }
+        Bm25Ranker ranker = new Bm25Ranker(searchProperties.getBm25K1(), searchProperties.getBm25B(),
+                statistic.getDocumentsCount(), (double) statistic.getWordCount() / statistic.getDocumentsCount());
+        return ranker.rank(documentFrequencies, k, new Bm25Ranker.PostingSource() {
+            @Override
+            public void readAll(String term, Bm25Ranker.PostingConsumer consumer) {
+                documentTermRepository.findPostingsByTerm(term).forEach(posting ->
+                        consumer.accept(posting.getDocumentId(), posting.getFrequency(), posting.getLength()));
+            }
+
+            @Override
+            public void readForDocuments(String term, List<Long> documentIds, Bm25Ranker.PostingConsumer consumer) {
+                for (int from = 0; from < documentIds.size(); from += QUERY_CHUNK_SIZE) {
+                    List<Long> chunk = documentIds.subList(from, Math.min(documentIds.size(), from + QUERY_CHUNK_SIZE));
+                    documentTermRepository.findPostingsByTermAndDocumentIds(term, chunk).forEach(posting ->
+                            consumer.accept(posting.getDocumentId(), posting.getFrequency(), posting.getLength()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Метод для поиска документов, содержащих хотя бы одно из слов.
+     * Используется для раскрытия поиска по префиксу и нечеткого поиска в идентификаторы документов.
+     *
+     * @param terms нормализованные слова.
+     * @return список идентификаторов документов по возрастанию без повторов.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findDocumentIdsByTerms(Collection<String> terms) {
+        List<String> termList = new ArrayList<>(terms);
+        long[] result = PostingLists.EMPTY;
+        for (int from = 0; from < termList.size(); from += QUERY_CHUNK_SIZE) {
+            List<String> chunk = termList.subList(from, Math.min(termList.size(), from + QUERY_CHUNK_SIZE));
+            result = PostingLists.union(result, toArray(documentTermRepository.findDocumentIdsByTerms(chunk)));
+        }
+        return Arrays.stream(result).boxed().toList();
+    }
+
+    /**
+     * Метод для поиска документов, удовлетворяющих всем условиям альтернативы.
+     *
+     * @param items условия: слова и фразы.
+     * @param documentFrequencies количество документов для каждого слова запроса.
+     * @return идентификаторы документов по возрастанию.
+     */
+    private long[] findRequired(List<List<String>> items, Map<String, Integer> documentFrequencies) {
+        Set<String> terms = new LinkedHashSet<>();
+        items.forEach(terms::addAll);
+        long[] documents = intersectTerms(terms, null, documentFrequencies);
+        for (List<String> item : items) {
+            if (item.size() > 1 && documents.length > 0) {
+                documents = filterPhrase(item, documents);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Метод для поиска документов из заданного набора, удовлетворяющих условию.
+     *
+     * @param item условие: слово или фраза.
+     * @param candidates идентификаторы документов по возрастанию, среди которых выполняется поиск.
+     * @param documentFrequencies количество документов для каждого слова запроса.
+     * @return идентификаторы документов по возрастанию.
+     */
+    private long[] findMatching(List<String> item, long[] candidates, Map<String, Integer> documentFrequencies) {
+        long[] documents = intersectTerms(new LinkedHashSet<>(item), candidates, documentFrequencies);
+        return item.size() > 1 && documents.length > 0 ? filterPhrase(item, documents) : documents;
+    }
+
+    /**
+     * Метод для пересечения списков документов слов, начиная с самого короткого.
+     *
+     * @param terms слова.
+     * @param candidates идентификаторы документов по возрастанию, среди которых выполняется поиск,
+     *                   или {@code null} для поиска по всем документам.
+     * @param documentFrequencies количество документов для каждого слова запроса.
+     * @return идентификаторы документов, содержащих все слова, по возрастанию.
+     */
+    private long[] intersectTerms(Set<String> terms, long[] candidates, Map<String, Integer> documentFrequencies) {
+        List<String> ordered = new ArrayList<>(terms);
+        ordered.sort(Comparator.comparingInt(term -> documentFrequencies.getOrDefault(term, 0)));
+        long[] documents = candidates;
+        for (String term : ordered) {
+            int documentFrequency = documentFrequencies.getOrDefault(term, 0);
+            if (documentFrequency == 0) {
+                return PostingLists.EMPTY;
+            }
+            if (documents == null) {
+                documents = toArray(documentTermRepository.findDocumentIdsByTerm(term));
+            } else if ((long) documents.length * PROBE_RATIO < documentFrequency) {
+                documents = probeTerm(term, documents);
+            } else {
+                documents = PostingLists.intersect(documents, toArray(documentTermRepository.findDocumentIdsByTerm(term)));
+            }
+            if (documents.length == 0) {
+                return documents;
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Метод для проверки наличия слова в документах-кандидатах по первичному ключу индекса.
+     *
+     * @param term слово.
+     * @param candidates идентификаторы документов по возрастанию.
+     * @return идентификаторы документов, содержащих слово, по возрастанию.
+     */
+    private long[] probeTerm(String term, long[] candidates) {
+        List<Long> documents = new ArrayList<>();
+        for (int from = 0; from < candidates.length; from += QUERY_CHUNK_SIZE) {
+            documents.addAll(documentTermRepository.findDocumentIdsByTermAndDocumentIds(term,
+                    toList(candidates, from, Math.min(candidates.length, from + QUERY_CHUNK_SIZE))));
+        }
+        return toArray(documents);
+    }
+
+    /**
+     * Метод для отбора документов, в которых слова фразы встречаются подряд.
+     *
+     * @param phrase слова фразы.
+     * @param candidates идентификаторы документов, содержащих все слова фразы, по возрастанию.
+     *                   Документы, проиндексированные без позиций слов, не подходят до их переиндексации.
+     * @return идентификаторы документов, содержащих фразу, по возрастанию.
+     */
+    private long[] filterPhrase(List<String> phrase, long[] candidates) {
+        Set<String> terms = new LinkedHashSet<>(phrase);
+        long[] result = new long[candidates.length];
+        int size = 0;
+        for (int from = 0; from < candidates.length; from += QUERY_CHUNK_SIZE) {
+            int to = Math.min(candidates.length, from + QUERY_CHUNK_SIZE);
+            Map<Long, Map<String, int[]>> positions = new HashMap<>();
+            for (DocumentTermRepository.TermPositionsView view :
+                    documentTermRepository.findTermPositions(terms, toList(candidates, from, to))) {
+                if (view.getPositions() == null) {
+                    continue;
+                }
+                positions.computeIfAbsent(view.getDocumentId(), id -> new HashMap<>())
+                        .put(view.getTerm(), PostingLists.decodePositions(view.getPositions()));
+            }
+            for (int i = from; i < to; i++) {
+                Map<String, int[]> documentPositions = positions.get(candidates[i]);
+                if (documentPositions != null && documentPositions.size() == terms.size()
+                        && PostingLists.containsPhrase(phrase.stream().map(documentPositions::get).toArray(int[][]::new))) {
+                    result[size++] = candidates[i];
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Метод для преобразования списка идентификаторов в массив.
+     *
+     * @param ids список идентификаторов.
+     * @return массив идентификаторов в том же порядке.
+     */
+    private static long[] toArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Метод для преобразования части массива идентификаторов в список.
+     *
+     * @param ids массив идентификаторов.
+     * @param from начало части (включительно).
+     * @param to конец части (не включительно).
+     * @return список идентификаторов в том же порядке.
+     */
+    private static List<Long> toList(long[] ids, int from, int to) {
+        return Arrays.stream(ids, from, to).boxed().toList();
+    }
+
+}
@@ -2,15 +2,37 @@ package ru.farpost.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.farpost.components.ExceptionsMessage;
 import ru.farpost.dto.DocumentDTO;
+import ru.farpost.dto.DocumentIdsPageDTO;
+import ru.farpost.dto.DocumentTextDTO;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.dto.StatisticTotalsDTO;
 import ru.farpost.exception.ErrorResponse;
 import ru.farpost.model.Document;
 import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.AnalyticsMetrics;
+import ru.farpost.utils.AnalyticsProperties;
+import ru.farpost.utils.ContentHash;
+import ru.farpost.utils.DocumentCache;
 import ru.farpost.utils.DocumentsAnalyticFunctions;
+import ru.farpost.utils.NgramCounter;
+import ru.farpost.utils.SearchProperties;
+import ru.farpost.utils.SearchQuery;
+import ru.farpost.utils.SpaceSavingSketch;
+import ru.farpost.utils.TextCompressor;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Сервис для работы с документами.
@@ -29,35 +51,184 @@ public class DocumentService {
      */
     private final DocumentsAnalyticFunctions analyticFunctions;
 
+    /**
+     * Сервис для работы с инвертированным индексом документов.
+     */
+    private final DocumentIndexService documentIndexService;
+
+    /**
+     * Сервис для поддержки общей статистики по всем документам.
+     */
+    private final CorpusStatisticService corpusStatisticService;
+
+    /**
+     * Сервис для работы с предварительно вычисленной аналитикой документов.
+     */
+    private final DocumentAnalyticsService documentAnalyticsService;
+
+    /**
+     * Сервис для получения наиболее часто встречающихся слов корпуса.
+     */
+    private final CorpusTopWordsService corpusTopWordsService;
+
+    /**
+     * Сервис для приближенного подсчета уникальных слов.
+     */
+    private final UniqueWordsSketchService uniqueWordsSketchService;
+
+    /**
+     * Сервис для обхода всех документов корпуса порциями.
+     */
+    private final DocumentScanService documentScanService;
+
+    /**
+     * Сервис для поиска документов по запросам из нескольких слов и фраз.
+     */
+    private final DocumentSearchService documentSearchService;
+
+    /**
+     * Сервис для поиска слов словаря корпуса по префиксу и с опечатками.
+     */
+    private final VocabularyService vocabularyService;
+
+    /**
+     * Сервис для работы с сегментами индекса в файлах, отображаемых в память.
+     */
+    private final SegmentService segmentService;
+
+    /**
+     * Настройки аналитики документов.
+     */
+    private final AnalyticsProperties analyticsProperties;
+
+    /**
+     * Настройки поиска документов.
+     */
+    private final SearchProperties searchProperties;
+
+    /**
+     * Компонент для сбора метрик аналитики документов.
+     */
+    private final AnalyticsMetrics analyticsMetrics;
+
+    /**
+     * Компонент для сжатия текстов документов.
+     */
+    private final TextCompressor textCompressor;
+
+    /**
+     * Кеш текстов документов и результатов их аналитики.
+     */
+    private final DocumentCache documentCache;
+
+    /**
+     * Сервис для отложенного применения изменений документов к индексу и аналитике.
+     */
+    private final IndexPipelineService indexPipelineService;
+
     /**
      * Конструктор для создания сервиса с внедренными зависимостями.
      *
      * @param documentRepository репозиторий для работы с {@link Document}.
      * @param analyticFunctions класс для аналитических функций с {@link Document}.
+     * @param documentIndexService сервис для работы с инвертированным индексом.
+     * @param corpusStatisticService сервис для поддержки общей статистики.
+     * @param documentAnalyticsService сервис для работы с аналитикой документов.
+     * @param corpusTopWordsService сервис для получения наиболее часто встречающихся слов корпуса.
+     * @param uniqueWordsSketchService сервис для приближенного подсчета уникальных слов.
+     * @param documentScanService сервис для обхода всех документов корпуса.
+     * @param documentSearchService сервис для поиска документов по запросам.
+     * @param vocabularyService сервис для поиска слов словаря корпуса.
+     * @param segmentService сервис для работы с сегментами индекса.
+     * @param analyticsProperties настройки аналитики документов.
+     * @param searchProperties настройки поиска документов.
+     * @param analyticsMetrics компонент для сбора метрик аналитики документов.
+     * @param textCompressor компонент для сжатия текстов документов.
+     * @param documentCache кеш текстов документов и результатов их аналитики.
+     * @param indexPipelineService сервис для отложенного применения изменений к индексу.
      */
     @Autowired
-    DocumentService(DocumentRepository documentRepository, DocumentsAnalyticFunctions analyticFunctions) {
+    DocumentService(DocumentRepository documentRepository,
+                    DocumentsAnalyticFunctions analyticFunctions,
+                    DocumentIndexService documentIndexService,
+                    CorpusStatisticService corpusStatisticService,
+                    DocumentAnalyticsService documentAnalyticsService,
+                    CorpusTopWordsService corpusTopWordsService,
+                    UniqueWordsSketchService uniqueWordsSketchService,
+                    DocumentScanService documentScanService,
+                    DocumentSearchService documentSearchService,
+                    VocabularyService vocabularyService,
+                    SegmentService segmentService,
+                    AnalyticsProperties analyticsProperties,
+                    SearchProperties searchProperties,
+                    AnalyticsMetrics analyticsMetrics,
+                    TextCompressor textCompressor,
+                    DocumentCache documentCache,
+                    IndexPipelineService indexPipelineService) {
         this.documentRepository = documentRepository;
         this.analyticFunctions = analyticFunctions;
+        this.documentIndexService = documentIndexService;
+        this.corpusStatisticService = corpusStatisticService;
+        this.documentAnalyticsService = documentAnalyticsService;
+        this.corpusTopWordsService = corpusTopWordsService;
+        this.uniqueWordsSketchService = uniqueWordsSketchService;
+        this.documentScanService = documentScanService;
+        this.documentSearchService = documentSearchService;
+        this.vocabularyService = vocabularyService;
+        this.segmentService = segmentService;
+        this.analyticsProperties = analyticsProperties;
+        this.searchProperties = searchProperties;
+        this.analyticsMetrics = analyticsMetrics;
+        this.textCompressor = textCompressor;
+        this.documentCache = documentCache;
+        this.indexPipelineService = indexPipelineService;
     }
 
     /**
-     * Метод для преобразования {@link Document} в {@link DocumentDTO}.
+     * Метод для проверки документа перед сохранением.
+     * Если у документа нет идентификатора или его текст пуст, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#CREATE_ERROR}.
      *
-     * @param document объект {@link Document}, который необходимо преобразовать в {@link DocumentDTO}.
-     * @return объект {@link DocumentDTO}, содержащий данные из {@link Document}.
+     * @param document объект {@link Document}, который нужно проверить.
      */
-    private DocumentDTO convertToDTO(Document document) {
-        return new DocumentDTO(document.getId(), document.getText());
+    public void validateDocument(Document document) {
+        if (document.getId() == null || document.getText() == null || document.getText().isBlank()) {
+            throw new ErrorResponse(ExceptionsMessage.CREATE_ERROR);
+        }
     }
 
     /**
      * Метод для сохранения документа в базе данных.
+     * Инвертированный индекс документа, общая статистика и аналитика документа, вычисленная для предыдущей версии,
+     * обновляются в той же транзакции или, если включено отложенное применение изменений, в фоне после ее фиксации
+     * (см. {@link IndexPipelineService}).
+     * Вместе с текстом сохраняется его хеш (см. {@link ContentHash}); длинный текст сохраняется сжатым
+     * (см. {@link TextCompressor}).
      *
      * @param document объект {@link Document}, который нужно сохранить.
+     * @return номер события сохранения, после применения которого изменения видны в индексе и аналитике,
+     * или {@code 0}, если они видны сразу.
      */
-    public void saveDocument(Document document) {
+    @Transactional
+    public long saveDocument(Document document) {
+        document.setContentHash(ContentHash.of(document.getText()));
+        byte[] compressedText = textCompressor.compress(document.getText());
+        if (compressedText != null) {
+            document.setCompressedText(compressedText);
+        }
         documentRepository.save(document);
+        return indexPipelineService.submit(List.of(document));
+    }
+
+    /**
+     * Метод для повторной индексации всех документов.
+     * Документы обходятся порциями, поэтому потребление памяти не зависит от количества документов.
+     *
+     * @return количество проиндексированных документов.
+     * @see DocumentIndexService#reindexAllDocuments()
+     */
+    public long reindexAllDocuments() {
+        return documentIndexService.reindexAllDocuments();
     }
 
     /**
@@ -68,78 +239,448 @@ public class DocumentService {
      * @return объект {@link DocumentDTO}, содержащий данные найденного документа.
      */
     public DocumentDTO findDocument(Long id) {
-        Document document = documentRepository.findById(id).orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND));
-        return convertToDTO(document);
+        return new DocumentDTO(id, loadText(id));
+    }
+
+    /**
+     * Метод для загрузки текста документа по его идентификатору.
+     * Текст читается из кеша документов, а при его отсутствии – из БД без загрузки сущности {@link Document}.
+     * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
+     *
+     * @param id идентификатор документа.
+     * @return текст документа.
+     */
+    private String loadText(Long id) {
+        return documentCache.get(id, "text", () -> documentRepository.findTextById(id)
+                .map(DocumentTextDTO::getText)
+                .orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND)));
+    }
+
+    /**
+     * Метод для получения нормализованного текста документа из кеша документов, предварительно вычисленной
+     * аналитики или, если аналитика документа еще не вычислена, по тексту документа.
+     *
+     * @param id идентификатор документа.
+     * @return нормализованный текст документа.
+     */
+    private String loadNormalizedText(Long id) {
+        return documentCache.get(id, "normalized_text", () ->
+                analyticsMetrics.lookup("normalized_text", documentAnalyticsService.findNormalizedText(id))
+                        .orElseGet(() -> {
+                            String text = loadText(id);
+                            return analyticsMetrics.time("normalize", () -> analyticFunctions.normalizeDocumentText(text));
+                        }));
     }
 
     /**
      * Метод для нормализации текста в документе.
+     * Нормализованный текст вычисляется при сохранении документа; текст документа читается
+     * и нормализуется только для документов, аналитика которых еще не вычислена.
      * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
      *
      * @param id идентификатор документа.
      * @return объект {@link DocumentDTO}, содержащий документ с нормализованным текстом.
      */
     public DocumentDTO getNormalizedDocument(Long id) {
-        Document document = documentRepository.findById(id).orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND));
-        document.setText(analyticFunctions.normalizeDocumentText(document.getText()));
-        return convertToDTO(document);
+        return new DocumentDTO(id, loadNormalizedText(id));
     }
 
     /**
      * Метод для получения статистики по документу.
+     * Статистика вычисляется при сохранении документа; текст документа читается
+     * только для документов, аналитика которых еще не вычислена.
+     * В приближенном режиме количество уникальных слов оценивается по сохраненной оценке {@code HyperLogLog}
+     * (стандартная ошибка около 1,6%).
      * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
      *
      * @param id идентификатор документа.
+     * @param approx {@code true}, если количество уникальных слов нужно оценить приближенно.
      * @return карта, содержащая статистику по документу.
      */
-    public Map<String, Integer> getDocumentStatistics(Long id) {
-        Document document = documentRepository.findById(id).orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND));
-        return analyticFunctions.getDocumentStatistic(document.getText());
+    public Map<String, Integer> getDocumentStatistics(Long id, boolean approx) {
+        Map<String, Integer> statistic = new LinkedHashMap<>(documentCache.get(id, "statistic", () ->
+                analyticsMetrics.lookup("statistic", documentAnalyticsService.findStatistic(id))
+                        .orElseGet(() -> {
+                            String text = loadText(id);
+                            return analyticsMetrics.time("statistic", () -> analyticFunctions.getDocumentStatistic(text));
+                        })));
+        if (approx) {
+            uniqueWordsSketchService.estimateDocuments(List.of(id))
+                    .ifPresent(estimate -> statistic.put("uniq_word_count", Math.toIntExact(estimate)));
+        }
+        return statistic;
     }
 
     /**
-     * Метод для получения статистики по всем документам.
+     * Метод для получения статистики по всем документам или по группе документов.
+     * Статистика поддерживается приращениями при сохранении документов и не требует чтения их текстов.
+     * В приближенном режиме количество уникальных слов оценивается объединением оценок {@code HyperLogLog}
+     * документов (стандартная ошибка около 1,6%) вместо точного подсчета по словарю или индексу.
      * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
      *
-     * @return карта, содержащая статистику по всем документам.
+     * @param approx {@code true}, если количество уникальных слов нужно оценить приближенно.
+     * @param ids идентификаторы документов группы или {@code null} для всех документов.
+     * @return карта, содержащая статистику по документам.
      */
-    public Map<String, Integer> getAllDocumentsStatistics() {
-        List<Document> documents = documentRepository.findAll();
-        if (documents.isEmpty()) {
-            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+    public Map<String, Integer> getAllDocumentsStatistics(boolean approx, List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            Map<String, Integer> statistic = corpusStatisticService.getCorpusStatistic();
+            if (approx) {
+                statistic.put("uniq_word_count", Math.toIntExact(uniqueWordsSketchService.estimateCorpus()));
+            }
+            return statistic;
         }
-        return analyticFunctions.getAllDocumentStatistic(documents);
+        Map<String, Integer> statistic = corpusStatisticService.getDocumentsStatistic(ids);
+        if (approx) {
+            uniqueWordsSketchService.estimateDocuments(ids)
+                    .ifPresent(estimate -> statistic.put("uniq_word_count", Math.toIntExact(estimate)));
+        }
+        return statistic;
+    }
+
+    /**
+     * Метод для получения сумм общей статистики по всем документам или по группе документов вместе с оценкой
+     * уникальных слов {@code HyperLogLog}. Используется координатором кластера для объединения статистики узлов.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     *
+     * @param ids идентификаторы документов группы или {@code null} для всех документов.
+     * @return объект {@link StatisticTotalsDTO} с суммами статистики.
+     */
+    public StatisticTotalsDTO getAllDocumentsStatisticTotals(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            StatisticTotalsDTO totals = corpusStatisticService.getCorpusTotals();
+            totals.setUniqueWordsSketch(uniqueWordsSketchService.getCorpusRegisters());
+            return totals;
+        }
+        StatisticTotalsDTO totals = corpusStatisticService.getDocumentsTotals(ids);
+        totals.setUniqueWordsSketch(uniqueWordsSketchService.getDocumentsRegisters(ids).orElse(null));
+        return totals;
     }
 
     /**
      * Метод для получения статистики по наиболее часто встречающимся словам в документе.
+     * Наиболее часто встречающиеся слова вычисляются при сохранении документа; текст документа читается
+     * только для документов, аналитика которых еще не вычислена.
      * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
+     * Если {@code k} вне допустимого диапазона, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
      *
      * @param id идентификатор документа.
-     * @return карта, содержащая 10 наиболее часто встречающихся слов в документе и их частоту.
+     * @param k количество слов в результате.
+     * @return карта, содержащая {@code k} наиболее часто встречающихся слов в документе и их частоту.
+     */
+    public Map<String, Integer> getTopWordInDocument(Long id, int k) {
+        validateTopWordsCount(k);
+        return documentCache.get(id, "top_words:" + k, () ->
+                analyticsMetrics.lookup("top_words", documentAnalyticsService.findTopWords(id, k))
+                        .orElseGet(() -> {
+                            String text = loadText(id);
+                            return analyticsMetrics.time("top_words", () -> analyticFunctions.getTopWords(text, k));
+                        }));
+    }
+
+    /**
+     * Метод для получения наиболее часто встречающихся слов во всех документах.
+     * Частоты оцениваются приближенно и могут быть завышены не более чем на долю от общего количества слов,
+     * обратную количеству счетчиков оценки ({@code analytics.top-words-capacity}).
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если {@code k} вне допустимого диапазона, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param k количество слов в результате.
+     * @return карта, содержащая {@code k} наиболее часто встречающихся слов и оценку их частоты.
      */
-    public Map<String, Integer> getTopWordInDocument(Long id) {
-        Document document = documentRepository.findById(id).orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND));
-        return analyticFunctions.getTopWords(document.getText());
+    public Map<String, Long> getTopWords(int k) {
+        validateTopWordsCount(k);
+        return corpusTopWordsService.getTopWords(k);
+    }
+
+    /**
+     * Метод для проверки запрошенного количества наиболее часто встречающихся слов.
+     *
+     * @param k количество слов.
+     */
+    private void validateTopWordsCount(int k) {
+        if (k < 1 || k > analyticsProperties.getMaxTopWords()) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
     }
 
     /**
      * Метод для получения идентификаторов документов, содержащих заданное слово.
+     * Поиск выполняется по инвертированному индексу, без чтения текстов документов.
      * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
      *
      * @param word слово, которое необходимо искать в документах.
      * @return список идентификаторов документов, содержащих заданное слово.
      */
     public List<Long> getDocumentIdByWords(String word) {
-        List<Document> documents = documentRepository.findAll();
-        if (documents.isEmpty()) {
+        if (!documentRepository.existsByIdIsNotNull()) {
             throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
         }
-        return analyticFunctions.getDocumentIdByWords(documents, word);
+        return documentIndexService.findDocumentIds(word);
     }
 
-    public Map<String, Integer> getBigramsInDocument(Long id) {
-        Document document = documentRepository.findById(id).orElseThrow(() -> new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND));
-        return analyticFunctions.getBigramsInDocument(document.getText());
+    /**
+     * Метод для получения страницы идентификаторов документов, содержащих заданное слово.
+     * Страница задается курсором: идентификатором, после которого она начинается, поэтому память сервера
+     * не зависит от общего количества найденных документов.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если {@code limit} вне допустимого диапазона, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param word слово, которое необходимо искать в документах.
+     * @param after идентификатор, после которого начинается страница, или {@code null} для первой страницы.
+     * @param limit размер страницы.
+     * @return объект {@link DocumentIdsPageDTO} с идентификаторами документов и курсором следующей страницы.
+     */
+    public DocumentIdsPageDTO getDocumentIdPageByWords(String word, Long after, int limit) {
+        if (limit < 1 || limit > searchProperties.getMaxPageSize()) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        checkDocumentsExist();
+        List<Long> ids = documentIndexService.findDocumentIds(word, after == null ? Long.MIN_VALUE : after, limit);
+        Long next = ids.size() == limit ? ids.get(ids.size() - 1) : null;
+        return new DocumentIdsPageDTO(ids, next);
+    }
+
+    /**
+     * Метод для проверки, что поиск документов возможен.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Вызывается перед потоковой передачей результата, пока ошибку еще можно вернуть обычным ответом.
+     */
+    public void checkDocumentsExist() {
+        if (!documentRepository.existsByIdIsNotNull()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+    }
+
+    /**
+     * Метод для обхода идентификаторов документов, содержащих заданное слово, по мере их чтения из БД.
+     * В отличие от {@link #getDocumentIdByWords(String)} идентификаторы не собираются в список,
+     * поэтому память не зависит от количества найденных документов.
+     *
+     * @param word слово, которое необходимо искать в документах.
+     * @param consumer получатель идентификаторов документов в порядке возрастания.
+     * @return количество найденных документов.
+     */
+    public long forEachDocumentIdByWords(String word, LongConsumer consumer) {
+        return documentIndexService.forEachDocumentId(word, consumer);
+    }
+
+    /**
+     * Метод для получения ленивого потока идентификаторов документов, содержащих заданное слово.
+     * Идентификаторы читаются из БД страницами по {@code search.max-page-size} по мере чтения потока,
+     * каждая страница – отдельным запросом, поэтому транзакция не удерживается, пока поток читается медленно.
+     *
+     * @param word слово, которое необходимо искать в документах.
+     * @return поток идентификаторов документов в порядке возрастания.
+     */
+    public Stream<Long> streamDocumentIdsByWords(String word) {
+        int pageSize = searchProperties.getMaxPageSize();
+        Iterator<Long> ids = new Iterator<>() {
+
+            /**
+             * Текущая страница идентификаторов.
+             */
+            private List<Long> page = List.of();
+
+            /**
+             * Позиция следующего идентификатора на странице.
+             */
+            private int position;
+
+            /**
+             * Признак того, что текущая страница последняя.
+             */
+            private boolean last;
+
+            /**
+             * Метод для проверки наличия следующего идентификатора; при необходимости читает следующую страницу.
+             *
+             * @return {@code true}, если идентификаторы еще есть.
+             */
+            @Override
+            public boolean hasNext() {
+                if (position == page.size() && !last) {
+                    long after = page.isEmpty() ? Long.MIN_VALUE : page.getLast();
+                    page = documentIndexService.findDocumentIds(word, after, pageSize);
+                    position = 0;
+                    last = page.size() < pageSize;
+                }
+                return position < page.size();
+            }
+
+            /**
+             * Метод для получения следующего идентификатора.
+             *
+             * @return идентификатор документа.
+             */
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(position++);
+            }
+
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ids, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Метод для получения идентификаторов документов, удовлетворяющих поисковому запросу.
+     * Запрос может содержать несколько слов, фразы в кавычках, исключения ({@code -слово}, {@code NOT слово})
+     * и альтернативы ({@code OR}); формат описан в {@link SearchQuery}.
+     * Поиск выполняется по позиционному инвертированному индексу, без чтения текстов документов.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если запрос не передан или некорректен, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param query текст поискового запроса.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> searchDocuments(String query) {
+        if (query == null) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        SearchQuery searchQuery;
+        try {
+            searchQuery = analyticFunctions.parseSearchQuery(query);
+        } catch (IllegalArgumentException e) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        if (!documentRepository.existsByIdIsNotNull()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        return documentSearchService.search(searchQuery);
+    }
+
+    /**
+     * Метод для получения документов, наиболее релевантных запросу, с оценкой релевантности по формуле BM25.
+     * Документ подходит, если содержит хотя бы одно слово запроса; слова запроса нормализуются так же, как тексты документов.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если запрос пуст или {@code k} вне диапазона от 1 до {@code search.max-results},
+     * выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param query текст запроса.
+     * @param k количество документов в результате.
+     * @return до {@code k} документов по убыванию релевантности.
+     */
+    public List<ScoredDocumentDTO> getRankedDocuments(String query, int k) {
+        if (query.isBlank() || k < 1 || k > searchProperties.getMaxResults()) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        if (!documentRepository.existsByIdIsNotNull()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        List<String> terms = analyticFunctions.getQueryTerms(query);
+        return terms.isEmpty() ? List.of() : documentSearchService.rank(terms, k);
+    }
+
+    /**
+     * Метод для получения идентификаторов документов, содержащих слова с заданным префиксом.
+     * Префикс раскрывается по словарю корпуса не более чем в {@code search.max-expansions} слов
+     * в алфавитном порядке.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если префикс пуст, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param prefix префикс слова.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> getDocumentIdsByPrefix(String prefix) {
+        if (prefix.isBlank()) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        if (!documentRepository.existsByIdIsNotNull()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        List<String> terms = vocabularyService.findTermsByPrefix(prefix.strip().toLowerCase(), searchProperties.getMaxExpansions());
+        return terms.isEmpty() ? List.of() : documentSearchService.findDocumentIdsByTerms(terms);
+    }
+
+    /**
+     * Метод для получения идентификаторов документов, содержащих слова, похожие на заданное.
+     * Слово раскрывается по словарю корпуса в слова, отличающиеся от него не более чем на {@code distance}
+     * вставок, удалений или замен символа; при превышении {@code search.max-expansions}
+     * учитываются ближайшие слова.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если слово пусто или расстояние вне диапазона от 0 до {@value VocabularyService#MAX_EDITS},
+     * выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param word слово, которое может содержать опечатки.
+     * @param distance максимальное расстояние редактирования.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> getDocumentIdsBySimilarWord(String word, int distance) {
+        if (word.isBlank() || distance < 0 || distance > VocabularyService.MAX_EDITS) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+        if (!documentRepository.existsByIdIsNotNull()) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        Map<String, Integer> terms = vocabularyService.findTermsWithinDistance(word.strip().toLowerCase(), distance,
+                searchProperties.getMaxExpansions());
+        return terms.isEmpty() ? List.of() : documentSearchService.findDocumentIdsByTerms(terms.keySet());
     }
+
+    /**
+     * Метод для получения наиболее часто встречающихся n-грамм в документе.
+     * N-граммы строятся по нормализованному тексту, вычисленному при сохранении документа; текст документа
+     * читается только для документов, аналитика которых еще не вычислена.
+     * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
+     * Если {@code n} или {@code k} вне допустимого диапазона, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param id идентификатор документа.
+     * @param n длина n-граммы.
+     * @param k количество n-грамм в результате.
+     * @return карта, содержащая {@code k} наиболее часто встречающихся n-грамм документа и их частоту.
+     */
+    public Map<String, Integer> getNgramsInDocument(Long id, int n, int k) {
+        validateNgramLength(n);
+        validateTopWordsCount(k);
+        String text = loadNormalizedText(id);
+        return analyticsMetrics.time("ngrams", () -> analyticFunctions.getNgrams(text, n, k));
+    }
+
+    /**
+     * Метод для получения наиболее часто встречающихся n-грамм во всех документах.
+     * Документы обходятся порциями; n-граммы каждого документа подсчитываются точно и добавляются
+     * в приближенный подсчет {@link SpaceSavingSketch}, поэтому память не зависит от размера корпуса.
+     * Если сегменты индекса готовы, документы читаются из них уже разбитыми на слова, без обращения к БД.
+     * Если документов в БД нет, то выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENTS_NOT_FOUND}.
+     * Если {@code n} или {@code k} вне допустимого диапазона, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#INVALID_PARAMETER}.
+     *
+     * @param n длина n-граммы.
+     * @param k количество n-грамм в результате.
+     * @return карта, содержащая {@code k} наиболее часто встречающихся n-грамм и оценку их частоты.
+     */
+    public Map<String, Long> getNgrams(int n, int k) {
+        validateNgramLength(n);
+        validateTopWordsCount(k);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(analyticsProperties.getTopWordsCapacity());
+        long documentsCount = analyticsMetrics.time("corpus_ngrams", () -> segmentService.isReady()
+                ? segmentService.forEachDocument((tokens, dictionary) ->
+                        new NgramCounter(tokens, dictionary, n).forEach(sketch::add))
+                : documentScanService.forEachChunkReadOnly(chunk -> chunk.forEach(document ->
+                        analyticFunctions.countNgrams(document.getText(), n).forEach(sketch::add))));
+        if (documentsCount == 0) {
+            throw new ErrorResponse(ExceptionsMessage.DOCUMENTS_NOT_FOUND);
+        }
+        return sketch.top(k);
+    }
+
+    /**
+     * Метод для проверки запрошенной длины n-граммы.
+     *
+     * @param n длина n-граммы.
+     */
+    private void validateNgramLength(int n) {
+        if (n < NgramCounter.MIN_N || n > NgramCounter.MAX_N) {
+            throw new ErrorResponse(ExceptionsMessage.INVALID_PARAMETER);
+        }
+    }
+
 }
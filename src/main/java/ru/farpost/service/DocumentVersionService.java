@@ -0,0 +1,192 @@
+package ru.farpost.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.ContentHash;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.IngestProperties;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Сервис для получения версий документов и корпуса, используемых как {@code ETag} ответов.
+ * Версия документа – хеш его текста ({@link ContentHash}), сохраняемый вместе с документом; версия корпуса –
+ * поколение общей статистики, увеличиваемое при каждом сохранении документов. Версии читаются без загрузки
+ * и разбора текстов, поэтому неизменившийся ответ можно подтвердить до его вычисления.
+ * Хеши документов, сохраненных до появления хешей, вычисляются в фоне при запуске приложения;
+ * до этого ответы для них отдаются без {@code ETag}. Результаты аналитики документа, изменения которого еще
+ * не применены к индексу (см. {@link IndexPipelineService}), тоже отдаются без {@code ETag}, поскольку они
+ * могут относиться к предыдущей версии текста.
+ */
+@Service
+public class DocumentVersionService {
+
+    /**
+     * Журнал сервиса.
+     */
+    private static final Logger log = LoggerFactory.getLogger(DocumentVersionService.class);
+
+    /**
+     * Репозиторий для работы с документами.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Кеш текстов документов и результатов их аналитики.
+     */
+    private final DocumentCache documentCache;
+
+    /**
+     * Сервис для отложенного применения изменений документов к индексу и аналитике.
+     */
+    private final IndexPipelineService indexPipelineService;
+
+    /**
+     * Настройки пакетной загрузки; размер порции обхода документов.
+     */
+    private final IngestProperties ingestProperties;
+
+    /**
+     * Шаблон для вычисления хешей каждой порции в отдельной транзакции.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Поток для вычисления хешей ранее сохраненных текстов.
+     */
+    private final ExecutorService background = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "document-hashing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentRepository репозиторий для работы с документами.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param documentCache кеш текстов документов и результатов их аналитики.
+     * @param indexPipelineService сервис для отложенного применения изменений к индексу.
+     * @param ingestProperties настройки пакетной загрузки.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    DocumentVersionService(DocumentRepository documentRepository,
+                           CorpusStatisticRepository corpusStatisticRepository,
+                           DocumentCache documentCache,
+                           IndexPipelineService indexPipelineService,
+                           IngestProperties ingestProperties,
+                           PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.documentCache = documentCache;
+        this.indexPipelineService = indexPipelineService;
+        this.ingestProperties = ingestProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Метод для получения {@code ETag} документа и результатов его аналитики.
+     * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
+     *
+     * @param id идентификатор документа.
+     * @return {@code ETag} или {@code null}, если хеш текста документа еще не вычислен.
+     */
+    public String getDocumentETag(Long id) {
+        Long contentHash = documentCache.get(id, "content_hash", () -> documentRepository.findContentHashById(id)
+                .orElseGet(() -> {
+                    if (!documentRepository.existsById(id)) {
+                        throw new ErrorResponse(ExceptionsMessage.DOCUMENT_NOT_FOUND);
+                    }
+                    return null;
+                }));
+        return contentHash == null ? null : "\"" + Long.toHexString(contentHash) + "\"";
+    }
+
+    /**
+     * Метод для получения {@code ETag} результатов аналитики документа (нормализованного текста, статистики,
+     * частых слов и n-грамм).
+     * Если документ не найден, выбрасывается исключение {@link ErrorResponse} с сообщением {@link ExceptionsMessage#DOCUMENT_NOT_FOUND}.
+     *
+     * @param id идентификатор документа.
+     * @return {@code ETag} или {@code null}, если хеш текста еще не вычислен или изменения документа еще
+     * не применены к аналитике.
+     */
+    public String getAnalyticsETag(Long id) {
+        String eTag = getDocumentETag(id);
+        return eTag == null || indexPipelineService.isPending(id) ? null : eTag;
+    }
+
+    /**
+     * Метод для получения {@code ETag} общей статистики корпуса.
+     *
+     * @return {@code ETag} или {@code null}, если документы еще не сохранялись.
+     */
+    public String getCorpusETag() {
+        return corpusStatisticRepository.findGenerationById(CorpusStatistic.SINGLETON_ID)
+                .map(generation -> "\"corpus-" + generation + "\"")
+                .orElse(null);
+    }
+
+    /**
+     * Метод для запуска вычисления хешей ранее сохраненных текстов при запуске приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void hashStoredTexts() {
+        background.execute(this::hashAll);
+    }
+
+    /**
+     * Метод для вычисления хешей всех текстов, сохраненных без хеша.
+     *
+     * @return количество обработанных порций.
+     */
+    long hashAll() {
+        long chunks = 0;
+        try {
+            Long lastId = Long.MIN_VALUE;
+            while (!Thread.currentThread().isInterrupted()) {
+                long afterId = lastId;
+                lastId = transactionTemplate.execute(status ->
+                        documentRepository.hashTexts(afterId, ingestProperties.getScanChunkSize()));
+                if (lastId == null) {
+                    break;
+                }
+                chunks++;
+            }
+            if (chunks > 0) {
+                log.info("Hashed stored document texts in {} chunks", chunks);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to hash stored document texts", e);
+        }
+        return chunks;
+    }
+
+    /**
+     * Метод для остановки фонового потока при завершении работы приложения.
+     */
+    @PreDestroy
+    void shutdown() {
+        background.shutdownNow();
+    }
+
+}
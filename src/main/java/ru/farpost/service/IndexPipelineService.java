@@ -0,0 +1,567 @@
+package ru.farpost.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.Document;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.IndexPipelineProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сервис для отложенного применения изменений документов к индексу и аналитике.
+ * Если отложенное применение включено ({@code index-pipeline.enabled}), транзакция сохранения только записывает
+ * документы, отмечает их в БД ({@code index_pending}) и резервирует место в очереди, а после фиксации транзакции
+ * событие с идентификаторами документов передается фоновым потокам. Потоки объединяют события в пакеты
+ * до {@code index-pipeline.batch-size} документов и применяют их методом {@link DocumentIndexService#indexDocuments(List)}
+ * к текущим версиям документов в БД. Документ всегда обрабатывается одним и тем же потоком, поэтому его версии
+ * применяются по порядку.
+ * <p>
+ * Событиям присваиваются возрастающие номера; водяной знак – наибольший номер, все события до которого включительно
+ * применены. Номер события возвращается при сохранении, и клиент может дождаться, когда водяной знак его достигнет
+ * (см. {@link #awaitWatermark(long, Duration)}). Очередь ограничена {@code index-pipeline.queue-capacity} документами;
+ * при ее заполнении сохранение ожидает места и отклоняется либо применяет изменения само
+ * (см. {@link IndexPipelineProperties.Overflow}).
+ * <p>
+ * События хранятся только в памяти: после перезапуска приложения отмеченные документы читаются из таблицы
+ * {@code documents} и применяются повторно. Документ, который не удалось проиндексировать, остается отмеченным
+ * до следующего перезапуска.
+ * <p>
+ * Метрики: {@code index.pipeline.queued} (документы, ожидающие применения изменений) и {@code index.pipeline.lag}
+ * (количество событий после водяного знака).
+ */
+@Service
+public class IndexPipelineService {
+
+    /**
+     * Журнал сервиса.
+     */
+    private static final Logger log = LoggerFactory.getLogger(IndexPipelineService.class);
+
+    /**
+     * Репозиторий для работы с документами.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Сервис для работы с инвертированным индексом документов.
+     */
+    private final DocumentIndexService documentIndexService;
+
+    /**
+     * Кеш текстов документов и результатов их аналитики.
+     */
+    private final DocumentCache documentCache;
+
+    /**
+     * Настройки отложенного применения изменений.
+     */
+    private final IndexPipelineProperties indexPipelineProperties;
+
+    /**
+     * Шаблон для применения каждого пакета в отдельной транзакции.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Свободные места в очереди; одно место соответствует одному документу события.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Очереди фоновых потоков; документ попадает в очередь по остатку от деления хеша идентификатора.
+     */
+    private final List<BlockingQueue<Part>> queues = new ArrayList<>();
+
+    /**
+     * Фоновые потоки, применяющие изменения.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Поток для повторного применения изменений после перезапуска.
+     */
+    private final ExecutorService replay = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "index-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Номер последнего события. Изменяется под блокировкой сервиса.
+     */
+    private long issued;
+
+    /**
+     * Номера незавершенных событий. Изменяются под блокировкой сервиса.
+     */
+    private final TreeSet<Long> unfinished = new TreeSet<>();
+
+    /**
+     * Ожидания водяного знака по номерам событий. Изменяются под блокировкой сервиса.
+     */
+    private final TreeMap<Long, List<CompletableFuture<Long>>> waiters = new TreeMap<>();
+
+    /**
+     * Количество незавершенных событий по идентификаторам документов. Изменяется под блокировкой сервиса.
+     */
+    private final Map<Long, Integer> unfinishedDocuments = new HashMap<>();
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     * Если отложенное применение включено, запускает фоновые потоки.
+     *
+     * @param documentRepository репозиторий для работы с документами.
+     * @param documentIndexService сервис для работы с инвертированным индексом.
+     * @param documentCache кеш текстов документов и результатов их аналитики.
+     * @param indexPipelineProperties настройки отложенного применения изменений.
+     * @param registry реестр метрик.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    IndexPipelineService(DocumentRepository documentRepository,
+                         DocumentIndexService documentIndexService,
+                         DocumentCache documentCache,
+                         IndexPipelineProperties indexPipelineProperties,
+                         MeterRegistry registry,
+                         PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.documentIndexService = documentIndexService;
+        this.documentCache = documentCache;
+        this.indexPipelineProperties = indexPipelineProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.permits = new Semaphore(Math.max(1, indexPipelineProperties.getQueueCapacity()), true);
+
+        int workerCount = Math.max(1, indexPipelineProperties.getWorkers());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "index-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Part> queue = new LinkedBlockingQueue<>();
+            queues.add(queue);
+            if (indexPipelineProperties.isEnabled()) {
+                workers.execute(() -> work(queue));
+            }
+        }
+
+        Gauge.builder("index.pipeline.queued", this, IndexPipelineService::getQueuedCount)
+                .description("Документы, ожидающие применения изменений к индексу")
+                .register(registry);
+        Gauge.builder("index.pipeline.lag", this, service -> service.getLatestSequence() - service.getWatermark())
+                .description("Количество событий сохранения после водяного знака индекса")
+                .register(registry);
+    }
+
+    /**
+     * Метод для применения изменений сохраненных документов к индексу и аналитике.
+     * Если отложенное применение выключено, документов больше, чем помещается в очередь, или очередь заполнена
+     * при поведении {@link IndexPipelineProperties.Overflow#CALLER_RUNS}, изменения применяются сразу. Иначе документы отмечаются
+     * в БД, их значения удаляются из кеша, а событие передается фоновым потокам после фиксации транзакции
+     * (при ее откате событие отменяется). Если очередь заполнена при поведении {@link IndexPipelineProperties.Overflow#BLOCK}
+     * и место не освободилось за {@code index-pipeline.offer-timeout}, выбрасывается исключение {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#SERVER_BUSY}.
+     * Должен вызываться в транзакции сохранения документов после их записи.
+     *
+     * @param documents сохраненные документы.
+     * @return номер события или {@code 0}, если изменения уже применены.
+     */
+    public long submit(List<Document> documents) {
+        if (!indexPipelineProperties.isEnabled()) {
+            documentIndexService.indexDocuments(documents);
+            return 0;
+        }
+        List<Long> ids = documents.stream().map(Document::getId).distinct().toList();
+        if (!reserve(ids.size())) {
+            documentIndexService.indexDocuments(documents);
+            return 0;
+        }
+        try {
+            documentRepository.markIndexPending(ids);
+        } catch (RuntimeException e) {
+            permits.release(ids.size());
+            throw e;
+        }
+        documentCache.invalidate(ids);
+
+        Event event = register(ids);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(event);
+            return event.sequence;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    enqueue(event);
+                } else {
+                    permits.release(event.ids.size());
+                    finish(event);
+                }
+            }
+        });
+        return event.sequence;
+    }
+
+    /**
+     * Метод для резервирования мест в очереди.
+     *
+     * @param count количество документов.
+     * @return {@code true}, если места зарезервированы, или {@code false}, если изменения нужно применить сразу.
+     */
+    private boolean reserve(int count) {
+        if (count > indexPipelineProperties.getQueueCapacity()) {
+            return false;
+        }
+        boolean blocking = indexPipelineProperties.getOverflow() == IndexPipelineProperties.Overflow.BLOCK;
+        try {
+            long timeout = blocking ? indexPipelineProperties.getOfferTimeout().toMillis() : 0;
+            if (permits.tryAcquire(count, timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (blocking) {
+            throw new ErrorResponse(ExceptionsMessage.SERVER_BUSY);
+        }
+        return false;
+    }
+
+    /**
+     * Метод для регистрации нового события.
+     *
+     * @param ids идентификаторы документов события.
+     * @return событие с присвоенным номером.
+     */
+    private synchronized Event register(List<Long> ids) {
+        Event event = new Event(++issued, ids);
+        unfinished.add(event.sequence);
+        ids.forEach(id -> unfinishedDocuments.merge(id, 1, Integer::sum));
+        return event;
+    }
+
+    /**
+     * Метод для передачи события фоновым потокам.
+     * Документы события распределяются по очередям потоков; событие завершается, когда все части применены.
+     *
+     * @param event событие.
+     */
+    private void enqueue(Event event) {
+        Map<Integer, List<Long>> partitions = new HashMap<>();
+        for (Long id : event.ids) {
+            partitions.computeIfAbsent(Math.floorMod(Long.hashCode(id), queues.size()), partition -> new ArrayList<>()).add(id);
+        }
+        event.remainingParts.set(partitions.size());
+        partitions.forEach((partition, ids) -> queues.get(partition).add(new Part(event, ids)));
+    }
+
+    /**
+     * Метод для завершения события: снимает его с учета и завершает ожидания достигнутого водяного знака.
+     *
+     * @param event событие.
+     */
+    private void finish(Event event) {
+        List<CompletableFuture<Long>> completed = new ArrayList<>();
+        long watermark;
+        synchronized (this) {
+            unfinished.remove(event.sequence);
+            event.ids.forEach(id -> unfinishedDocuments.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1));
+            watermark = getWatermark();
+            Map<Long, List<CompletableFuture<Long>>> reached = waiters.headMap(watermark, true);
+            reached.values().forEach(completed::addAll);
+            reached.clear();
+        }
+        completed.forEach(future -> future.complete(watermark));
+    }
+
+    /**
+     * Метод фонового потока: объединяет события своей очереди в пакеты и применяет их.
+     *
+     * @param queue очередь потока.
+     */
+    private void work(BlockingQueue<Part> queue) {
+        List<Part> parts = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                parts.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            int count = parts.getFirst().ids.size();
+            Part next;
+            while (count < indexPipelineProperties.getBatchSize() && (next = queue.poll()) != null) {
+                parts.add(next);
+                count += next.ids.size();
+            }
+
+            Set<Long> ids = new LinkedHashSet<>();
+            parts.forEach(part -> ids.addAll(part.ids));
+            try {
+                index(ids);
+            } finally {
+                for (Part part : parts) {
+                    permits.release(part.ids.size());
+                    if (part.event.remainingParts.decrementAndGet() == 0) {
+                        finish(part.event);
+                    }
+                }
+                parts.clear();
+            }
+        }
+    }
+
+    /**
+     * Метод для индексации текущих версий документов и снятия с них отметки в одной транзакции.
+     * Если пакет проиндексировать не удалось, документы индексируются по одному, а документы с ошибкой
+     * остаются отмеченными.
+     *
+     * @param ids идентификаторы документов.
+     */
+    private void index(Collection<Long> ids) {
+        try {
+            indexInTransaction(ids);
+        } catch (RuntimeException e) {
+            log.warn("Failed to index {} documents in one batch, indexing them one by one", ids.size(), e);
+            for (Long id : ids) {
+                try {
+                    indexInTransaction(List.of(id));
+                } catch (RuntimeException documentException) {
+                    log.error("Failed to index document {}, it will be indexed after restart", id, documentException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод для индексации текущих версий документов и снятия с них отметки в отдельной транзакции.
+     *
+     * @param ids идентификаторы документов.
+     */
+    private void indexInTransaction(Collection<Long> ids) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Document> documents = documentRepository.findAllById(ids);
+            if (!documents.isEmpty()) {
+                documentIndexService.indexDocuments(documents);
+                documentRepository.clearIndexPending(documents);
+            }
+        });
+    }
+
+    /**
+     * Метод для повторного применения изменений документов, отмеченных до перезапуска приложения.
+     * Выполняется в фоне; при включенном отложенном применении документы передаются в очередь,
+     * иначе индексируются порциями сразу.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayPendingDocuments() {
+        replay.execute(this::replayAll);
+    }
+
+    /**
+     * Метод для повторного применения изменений всех отмеченных документов.
+     *
+     * @return количество отмеченных документов.
+     */
+    long replayAll() {
+        long count = 0;
+        int chunkSize = Math.max(1, Math.min(indexPipelineProperties.getReplayChunkSize(),
+                indexPipelineProperties.getQueueCapacity()));
+        try {
+            Long lastId = Long.MIN_VALUE;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> ids = documentRepository.findIndexPendingIds(lastId, PageRequest.ofSize(chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                if (indexPipelineProperties.isEnabled()) {
+                    permits.acquire(ids.size());
+                    enqueue(register(ids));
+                } else {
+                    index(ids);
+                }
+                lastId = ids.getLast();
+                count += ids.size();
+            }
+            if (count > 0) {
+                log.info("Replayed pending index changes of {} documents", count);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Failed to replay pending index changes", e);
+        }
+        return count;
+    }
+
+    /**
+     * Метод для ожидания водяного знака.
+     *
+     * @param sequence номер события, применения которого нужно дождаться.
+     * @param timeout максимальное время ожидания; ограничивается {@code index-pipeline.max-wait}.
+     * @return водяной знак, когда он достигнет {@code sequence}, или по истечении времени ожидания.
+     */
+    public CompletableFuture<Long> awaitWatermark(long sequence, Duration timeout) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (this) {
+            long watermark = getWatermark();
+            if (watermark >= sequence || timeout.isZero() || timeout.isNegative()) {
+                return CompletableFuture.completedFuture(watermark);
+            }
+            waiters.computeIfAbsent(sequence, key -> new ArrayList<>()).add(future);
+        }
+        Duration wait = timeout.compareTo(indexPipelineProperties.getMaxWait()) < 0 ? timeout : indexPipelineProperties.getMaxWait();
+        return future.orTimeout(wait.toMillis(), TimeUnit.MILLISECONDS).exceptionally(e -> {
+            synchronized (this) {
+                List<CompletableFuture<Long>> futures = waiters.get(sequence);
+                if (futures != null && futures.remove(future) && futures.isEmpty()) {
+                    waiters.remove(sequence);
+                }
+                return getWatermark();
+            }
+        });
+    }
+
+    /**
+     * Метод для получения водяного знака.
+     *
+     * @return наибольший номер события, все события до которого включительно применены.
+     */
+    public synchronized long getWatermark() {
+        return unfinished.isEmpty() ? issued : unfinished.first() - 1;
+    }
+
+    /**
+     * Метод для получения номера последнего события.
+     *
+     * @return номер последнего события.
+     */
+    public synchronized long getLatestSequence() {
+        return issued;
+    }
+
+    /**
+     * Метод для получения количества документов, ожидающих применения изменений.
+     *
+     * @return количество документов в очереди и в обработке.
+     */
+    public int getQueuedCount() {
+        return Math.max(1, indexPipelineProperties.getQueueCapacity()) - permits.availablePermits();
+    }
+
+    /**
+     * Метод для проверки, что изменения документа еще не применены к индексу и аналитике.
+     *
+     * @param id идентификатор документа.
+     * @return {@code true}, если событие с документом еще не завершено.
+     */
+    public synchronized boolean isPending(Long id) {
+        return unfinishedDocuments.containsKey(id);
+    }
+
+    /**
+     * Метод для остановки фоновых потоков при завершении работы приложения.
+     * Незавершенные события применяются после перезапуска по отметкам в БД.
+     */
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        replay.shutdownNow();
+    }
+
+    /**
+     * Событие сохранения документов.
+     */
+    private static final class Event {
+
+        /**
+         * Порядковый номер события.
+         */
+        private final long sequence;
+
+        /**
+         * Идентификаторы сохраненных документов.
+         */
+        private final List<Long> ids;
+
+        /**
+         * Количество еще не обработанных частей события.
+         */
+        private final AtomicInteger remainingParts = new AtomicInteger();
+
+        /**
+         * Конструктор для создания события сохранения документов.
+         *
+         * @param sequence порядковый номер события.
+         * @param ids      идентификаторы сохраненных документов.
+         */
+        private Event(long sequence, List<Long> ids) {
+            this.sequence = sequence;
+            this.ids = ids;
+        }
+
+    }
+
+    /**
+     * Часть события с документами одной очереди.
+     */
+    private static final class Part {
+
+        /**
+         * Событие, к которому относится часть.
+         */
+        private final Event event;
+
+        /**
+         * Идентификаторы документов части.
+         */
+        private final List<Long> ids;
+
+        /**
+         * Конструктор для создания части события.
+         *
+         * @param event событие, к которому относится часть.
+         * @param ids   идентификаторы документов части.
+         */
+        private Part(Event event, List<Long> ids) {
+            this.event = event;
+            this.ids = ids;
+        }
+
+    }
+
+}
@@ -0,0 +1,747 @@
+package ru.farpost.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.model.Document;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.Segment;
+import ru.farpost.utils.SegmentProperties;
+import ru.farpost.utils.TextTokenizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Сервис для хранения текстов документов в виде слов и инвертированного индекса в неизменяемых сегментах
+ * ({@link Segment}) – файлах, отображаемых в память. Запросы по всему корпусу читают сегменты вместо таблиц БД,
+ * поэтому не загружают тексты документов и не создают сущности для каждой строки.
+ * <p>
+ * Каждое сохранение документов записывает новый небольшой сегмент после фиксации транзакции. У сегмента есть
+ * поколение: чем оно больше, тем новее версии документов в нем. Если документ встречается в нескольких сегментах,
+ * действующей считается версия из самого нового сегмента, а в остальных документ помечается удаленным (только в
+ * памяти: при открытии сегментов пометки восстанавливаются по поколениям). Когда сегментов становится больше
+ * {@code segments.merge-factor}, наименьшие из них сливаются в фоновом потоке в один, без удаленных
+ * документов; читатели продолжают работать с прежним списком сегментов, пока новый не опубликован.
+ * <p>
+ * Вместе с сегментами хранится отметка – поколение корпуса ({@link CorpusStatistic}), до которого включительно
+ * все сохранения записаны в сегменты. При запуске приложения отметка и количество действующих документов
+ * сегментов сверяются с БД, и если сегменты устарели или отсутствуют (например, документы сохранялись при
+ * выключенных сегментах или приложение остановилось между фиксацией транзакции и записью сегмента), они
+ * перестраиваются в фоне по всем документам. До окончания проверки или перестроения {@link #isReady()}
+ * возвращает {@code false}, и запросы выполняются по БД.
+ */
+@Service
+public class SegmentService {
+
+    /**
+     * Журнал сервиса.
+     */
+    private static final Logger log = LoggerFactory.getLogger(SegmentService.class);
+
+    /**
+     * Шаблон имени файла сегмента: поколение и порядковый номер сегмента.
+     */
+    private static final Pattern FILE_NAME = Pattern.compile("segment-(\\d+)-(\\d+)\\.seg");
+
+    /**
+     * Имя файла отметки поколения корпуса, записанного в сегменты.
+     */
+    private static final String WATERMARK_FILE = "watermark";
+
+    /**
+     * Настройки сегментов.
+     */
+    private final SegmentProperties segmentProperties;
+
+    /**
+     * Репозиторий для работы с {@link Document}.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Сервис для обхода всех документов корпуса.
+     */
+    private final DocumentScanService documentScanService;
+
+    /**
+     * Компонент для разбиения текста на нормализованные слова.
+     */
+    private final TextTokenizer textTokenizer;
+
+    /**
+     * Поток для слияния и перестроения сегментов.
+     */
+    private final ExecutorService background = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "segment-merge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Блокировка изменения списка сегментов.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Действующие сегменты. Список и его элементы не изменяются, изменения публикуют новый список.
+     */
+    private volatile List<LiveSegment> segments = List.of();
+
+    /**
+     * Признак того, что сегменты содержат все документы БД.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Поколение следующего сегмента с новыми версиями документов.
+     */
+    private long nextGeneration = 1;
+
+    /**
+     * Порядковый номер следующего сегмента.
+     */
+    private long nextSequence = 1;
+
+    /**
+     * Признак запланированного слияния.
+     */
+    private boolean mergeScheduled;
+
+    /**
+     * Поколение корпуса, до которого включительно все сохранения записаны в сегменты,
+     * или {@code -1}, если сегменты перестраиваются.
+     */
+    private long watermark;
+
+    /**
+     * Поколения корпуса больше {@link #watermark}, сохранения которых уже записаны в сегменты.
+     * Транзакции сохранения фиксируются в порядке поколений, но сегменты после фиксации могут записываться
+     * в другом порядке, поэтому отметка продвигается только по непрерывной последовательности поколений.
+     */
+    private final TreeSet<Long> appliedGenerations = new TreeSet<>();
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param segmentProperties настройки сегментов.
+     * @param documentRepository репозиторий для работы с {@link Document}.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param documentScanService сервис для обхода всех документов корпуса.
+     * @param textTokenizer компонент для разбиения текста на нормализованные слова.
+     */
+    @Autowired
+    SegmentService(SegmentProperties segmentProperties,
+                   DocumentRepository documentRepository,
+                   CorpusStatisticRepository corpusStatisticRepository,
+                   DocumentScanService documentScanService,
+                   TextTokenizer textTokenizer) {
+        this.segmentProperties = segmentProperties;
+        this.documentRepository = documentRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.documentScanService = documentScanService;
+        this.textTokenizer = textTokenizer;
+    }
+
+    /**
+     * Метод для открытия файлов сегментов при создании сервиса.
+     * Сегменты открываются до обработки запросов, чтобы новые версии документов всегда записывались
+     * с поколением больше, чем у существующих сегментов. Недописанные временные файлы удаляются.
+     * Если файла отметки нет, считается, что в сегменты не записано ни одно поколение корпуса.
+     */
+    @PostConstruct
+    void openSegments() {
+        if (!segmentProperties.isEnabled()) {
+            return;
+        }
+        List<LiveSegment> opened = new ArrayList<>();
+        long openedWatermark = 0;
+        try {
+            Path directory = directory();
+            Files.createDirectories(directory);
+            Path watermarkFile = directory.resolve(WATERMARK_FILE);
+            if (Files.exists(watermarkFile)) {
+                try {
+                    openedWatermark = Long.parseLong(Files.readString(watermarkFile).trim());
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring malformed segments watermark {}", watermarkFile, e);
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        opened.add(new LiveSegment(Segment.open(file), file, Long.parseLong(matcher.group(1)),
+                                Long.parseLong(matcher.group(2)), new BitSet()));
+                    } else if (file.getFileName().toString().endsWith(".tmp")) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        opened.sort(LiveSegment.ORDER);
+        synchronized (writeLock) {
+            watermark = openedWatermark;
+            for (LiveSegment segment : opened) {
+                nextGeneration = Math.max(nextGeneration, segment.generation + 1);
+                nextSequence = Math.max(nextSequence, segment.sequence + 1);
+                addSegment(segment);
+            }
+        }
+    }
+
+    /**
+     * Метод для проверки сегментов при запуске приложения.
+     * Если отметка сегментов не совпадает с поколением корпуса в БД или количество действующих документов
+     * сегментов не совпадает с количеством документов в БД, сегменты удаляются и перестраиваются в фоне;
+     * новые версии документов, сохраненные во время перестроения, при этом не теряются, так как поколение
+     * их сегментов больше.
+     * Выполняется до дозаполнения индекса, чтобы документы, проиндексированные при дозаполнении, попали в сегменты.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkSegments() {
+        if (!segmentProperties.isEnabled()) {
+            return;
+        }
+        long corpusGeneration = corpusGeneration();
+        synchronized (writeLock) {
+            long documents = segments.stream().mapToLong(LiveSegment::liveCount).sum();
+            if (watermark == corpusGeneration && documents == documentRepository.count()) {
+                ready = true;
+                scheduleMerge();
+                return;
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Метод для записи новых версий документов в сегмент.
+     * Если вызывается в транзакции, сегмент записывается только после ее успешной фиксации.
+     * Если сегмент записать не удалось, все сегменты перестраиваются.
+     * Должен вызываться после обновления общей статистики в той же транзакции, чтобы отметка сегментов
+     * продвинулась до поколения корпуса этого сохранения.
+     *
+     * @param analyses результаты разбора текстов новых версий документов по их идентификаторам.
+     */
+    public void updateDocuments(Map<Long, TextAnalysisDTO> analyses) {
+        if (!segmentProperties.isEnabled()) {
+            return;
+        }
+        long corpusGeneration = corpusGeneration();
+        Runnable update = () -> {
+            if (analyses.isEmpty()) {
+                synchronized (writeLock) {
+                    applied(corpusGeneration);
+                }
+                return;
+            }
+            TreeMap<Long, List<String>> documents = new TreeMap<>();
+            analyses.forEach((id, analysis) -> documents.put(id, analysis.getNormalizedText().isEmpty()
+                    ? List.of() : Arrays.asList(analysis.getNormalizedText().split(" "))));
+            try {
+                synchronized (writeLock) {
+                    addSegment(writeSegment(documents, nextGeneration++));
+                    scheduleMerge();
+                    applied(corpusGeneration);
+                }
+            } catch (IOException e) {
+                log.error("Failed to write segment, rebuilding segments", e);
+                invalidate();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * Метод для проверки готовности сегментов.
+     *
+     * @return {@code true}, если сегменты содержат все документы БД и по ним можно выполнять запросы.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Метод для поиска идентификаторов документов, содержащих заданное слово.
+     *
+     * @param term нормализованное слово.
+     * @return список идентификаторов документов по возрастанию.
+     */
+    public List<Long> findDocumentIds(String term) {
+        List<Long> ids = new ArrayList<>();
+        for (LiveSegment live : segments) {
+            int termId = live.segment.findTerm(term);
+            if (termId >= 0) {
+                live.segment.forEachPosting(termId, (ordinal, frequency) -> {
+                    if (!live.deleted.get(ordinal)) {
+                        ids.add(live.segment.documentId(ordinal));
+                    }
+                });
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * Метод для обхода текстов всех действующих документов сегментов.
+     * Тексты передаются как идентификаторы слов словаря сегмента вместе с функцией получения слова
+     * по идентификатору; слова сегмента создаются не более одного раза за обход.
+     *
+     * @param consumer получатель идентификаторов слов текста документа и словаря.
+     * @return количество обработанных документов.
+     */
+    public long forEachDocument(BiConsumer<int[], IntFunction<String>> consumer) {
+        long processed = 0;
+        for (LiveSegment live : segments) {
+            String[] terms = new String[live.segment.termCount()];
+            IntFunction<String> dictionary = termId -> {
+                String term = terms[termId];
+                if (term == null) {
+                    term = live.segment.term(termId);
+                    terms[termId] = term;
+                }
+                return term;
+            };
+            for (int ordinal = live.deleted.nextClearBit(0); ordinal < live.segment.documentCount();
+                 ordinal = live.deleted.nextClearBit(ordinal + 1)) {
+                consumer.accept(live.segment.tokens(ordinal), dictionary);
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Метод для удаления всех сегментов и их перестроения в фоне по документам БД.
+     */
+    private void invalidate() {
+        List<LiveSegment> removed;
+        synchronized (writeLock) {
+            ready = false;
+            removed = segments;
+            segments = List.of();
+            watermark = -1;
+            appliedGenerations.clear();
+            try {
+                Files.deleteIfExists(directory().resolve(WATERMARK_FILE));
+            } catch (IOException e) {
+                log.warn("Failed to delete segments watermark", e);
+            }
+        }
+        removed.forEach(this::deleteFile);
+        background.execute(this::rebuild);
+    }
+
+    /**
+     * Метод для перестроения сегментов по всем документам БД.
+     * Сегменты перестроения имеют нулевое поколение, поэтому версии документов, записанные параллельно
+     * с перестроением, считаются более новыми. Поколение корпуса читается до обхода документов:
+     * все сохранения до него включительно попадают в сегменты перестроения, а более поздние записываются
+     * в сегменты параллельно и продвигают отметку после окончания перестроения.
+     */
+    private void rebuild() {
+        try {
+            long corpusGeneration = corpusGeneration();
+            TreeMap<Long, List<String>> pending = new TreeMap<>();
+            long documents = documentScanService.forEachChunkReadOnly(chunk -> {
+                for (Document document : chunk) {
+                    pending.put(document.getId(), textTokenizer.tokenize(document.getText()));
+                }
+                if (pending.size() >= segmentProperties.getRebuildDocuments()) {
+                    flushRebuilt(pending);
+                }
+            });
+            flushRebuilt(pending);
+            synchronized (writeLock) {
+                watermark = corpusGeneration;
+                saveWatermark();
+            }
+            ready = true;
+            log.info("Rebuilt segments for {} documents", documents);
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild segments", e);
+        }
+    }
+
+    /**
+     * Метод для записи накопленных при перестроении документов в сегмент нулевого поколения.
+     *
+     * @param pending документы по идентификаторам; очищается после записи.
+     */
+    private void flushRebuilt(TreeMap<Long, List<String>> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                addSegment(writeSegment(pending, 0));
+                scheduleMerge();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Метод для учета записанного в сегменты сохранения. Должен вызываться под блокировкой {@link #writeLock}.
+     * Пока сегменты перестраиваются, поколения только накапливаются.
+     *
+     * @param corpusGeneration поколение корпуса сохранения.
+     */
+    private void applied(long corpusGeneration) {
+        if (corpusGeneration > watermark) {
+            appliedGenerations.add(corpusGeneration);
+        }
+        if (watermark >= 0 && !appliedGenerations.isEmpty() && appliedGenerations.first() == watermark + 1) {
+            saveWatermark();
+        }
+    }
+
+    /**
+     * Метод для продвижения отметки по записанным следующим за ней поколениям и ее сохранения в файл.
+     * Должен вызываться под блокировкой {@link #writeLock}. Если отметку не удалось сохранить,
+     * при следующем запуске сегменты будут перестроены.
+     */
+    private void saveWatermark() {
+        appliedGenerations.headSet(watermark, true).clear();
+        while (!appliedGenerations.isEmpty() && appliedGenerations.first() == watermark + 1) {
+            watermark = appliedGenerations.pollFirst();
+        }
+        Path temporary = directory().resolve(WATERMARK_FILE + ".tmp");
+        try {
+            Files.writeString(temporary, Long.toString(watermark));
+            Files.move(temporary, directory().resolve(WATERMARK_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save segments watermark", e);
+        }
+    }
+
+    /**
+     * Метод для получения текущего поколения корпуса.
+     *
+     * @return поколение корпуса или {@code 0}, если документы еще не сохранялись.
+     */
+    private long corpusGeneration() {
+        return corpusStatisticRepository.findGenerationById(CorpusStatistic.SINGLETON_ID).orElse(0L);
+    }
+
+    /**
+     * Метод для записи сегмента. Должен вызываться под блокировкой {@link #writeLock}.
+     *
+     * @param documents нормализованные слова текстов документов по идентификаторам.
+     * @param generation поколение сегмента.
+     * @return записанный и открытый сегмент.
+     * @throws IOException если сегмент не удалось записать.
+     */
+    private LiveSegment writeSegment(TreeMap<Long, List<String>> documents, long generation) throws IOException {
+        long sequence = nextSequence++;
+        Path file = file(generation, sequence);
+        Segment.write(file, documents);
+        return new LiveSegment(Segment.open(file), file, generation, sequence, new BitSet());
+    }
+
+    /**
+     * Метод для добавления сегмента в список действующих. Должен вызываться под блокировкой {@link #writeLock}.
+     * Документы, встречающиеся и в добавляемом, и в действующих сегментах, остаются действующими только
+     * в более новом сегменте. Сегменты без действующих документов удаляются.
+     *
+     * @param added добавляемый сегмент.
+     */
+    private void addSegment(LiveSegment added) {
+        BitSet addedDeleted = (BitSet) added.deleted.clone();
+        List<LiveSegment> updated = new ArrayList<>(segments.size() + 1);
+        for (LiveSegment existing : segments) {
+            boolean existingIsOlder = LiveSegment.ORDER.compare(existing, added) < 0;
+            BitSet existingDeleted = existing.deleted;
+            for (int ordinal = addedDeleted.nextClearBit(0); ordinal < added.segment.documentCount();
+                 ordinal = addedDeleted.nextClearBit(ordinal + 1)) {
+                int existingOrdinal = existing.segment.findDocument(added.segment.documentId(ordinal));
+                if (existingOrdinal < 0 || existingDeleted.get(existingOrdinal)) {
+                    continue;
+                }
+                if (existingIsOlder) {
+                    if (existingDeleted == existing.deleted) {
+                        existingDeleted = (BitSet) existing.deleted.clone();
+                    }
+                    existingDeleted.set(existingOrdinal);
+                } else {
+                    addedDeleted.set(ordinal);
+                }
+            }
+            updated.add(existingDeleted == existing.deleted ? existing : existing.withDeleted(existingDeleted));
+        }
+        updated.add(added.withDeleted(addedDeleted));
+
+        List<LiveSegment> live = new ArrayList<>(updated.size());
+        for (LiveSegment segment : updated) {
+            if (segment.liveCount() > 0) {
+                live.add(segment);
+            } else {
+                deleteFile(segment);
+            }
+        }
+        segments = List.copyOf(live);
+    }
+
+    /**
+     * Метод для планирования фонового слияния, если сегментов стало слишком много.
+     * Должен вызываться под блокировкой {@link #writeLock}.
+     */
+    private void scheduleMerge() {
+        if (!mergeScheduled && segments.size() > segmentProperties.getMergeFactor()) {
+            mergeScheduled = true;
+            background.execute(this::merge);
+        }
+    }
+
+    /**
+     * Метод для слияния наименьших сегментов, пока их количество превышает {@code segments.merge-factor}.
+     * Сегмент слияния получает поколение самого нового из исходных сегментов: документы, сохраненные во время
+     * слияния, попадают в сегменты большего поколения и остаются действующими.
+     */
+    private void merge() {
+        while (true) {
+            List<LiveSegment> sources;
+            long generation;
+            long sequence;
+            synchronized (writeLock) {
+                sources = selectMergeSources();
+                if (sources.size() < 2) {
+                    mergeScheduled = false;
+                    return;
+                }
+                generation = sources.stream().mapToLong(segment -> segment.generation).max().orElseThrow();
+                sequence = nextSequence++;
+            }
+            Path file = file(generation, sequence);
+            try {
+                Segment.merge(file, sources.stream().map(segment -> segment.segment).toList(),
+                        sources.stream().map(segment -> segment.deleted).toList());
+                LiveSegment merged = new LiveSegment(Segment.open(file), file, generation, sequence, new BitSet());
+                boolean published;
+                synchronized (writeLock) {
+                    List<Path> sourceFiles = sources.stream().map(segment -> segment.file).toList();
+                    List<LiveSegment> remaining = segments.stream()
+                            .filter(segment -> !sourceFiles.contains(segment.file)).toList();
+                    published = remaining.size() + sources.size() == segments.size();
+                    if (published) {
+                        segments = remaining;
+                        addSegment(merged);
+                    }
+                }
+                sources.forEach(this::deleteFile);
+                if (!published) {
+                    deleteFile(merged);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to merge segments", e);
+                synchronized (writeLock) {
+                    mergeScheduled = false;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Метод для выбора сливаемых сегментов: до {@code segments.merge-factor} наименьших сегментов,
+     * суммарный размер действующих документов которых не превышает {@code segments.max-segment-bytes}.
+     * Должен вызываться под блокировкой {@link #writeLock}.
+     *
+     * @return сливаемые сегменты или пустой список, если слияние не требуется.
+     */
+    private List<LiveSegment> selectMergeSources() {
+        if (segments.size() <= segmentProperties.getMergeFactor()) {
+            return List.of();
+        }
+        List<LiveSegment> sources = new ArrayList<>();
+        long size = 0;
+        for (LiveSegment segment : segments.stream().sorted(Comparator.comparingLong(LiveSegment::liveBytes)).toList()) {
+            if (sources.size() == segmentProperties.getMergeFactor()
+                    || size + segment.liveBytes() > segmentProperties.getMaxSegmentBytes()) {
+                break;
+            }
+            sources.add(segment);
+            size += segment.liveBytes();
+        }
+        return sources;
+    }
+
+    /**
+     * Метод для удаления файла сегмента. Отображение файла в память остается действительным
+     * для читателей, которые еще используют сегмент.
+     *
+     * @param segment сегмент.
+     */
+    private void deleteFile(LiveSegment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete segment file {}", segment.file, e);
+        }
+    }
+
+    /**
+     * Метод для получения пути к файлу сегмента.
+     *
+     * @param generation поколение сегмента.
+     * @param sequence порядковый номер сегмента.
+     * @return путь к файлу.
+     */
+    private Path file(long generation, long sequence) {
+        return directory().resolve("segment-" + generation + "-" + sequence + ".seg");
+    }
+
+    /**
+     * Метод для получения каталога сегментов.
+     *
+     * @return путь к каталогу.
+     */
+    private Path directory() {
+        return Path.of(segmentProperties.getDirectory());
+    }
+
+    /**
+     * Метод для остановки фонового потока при завершении работы приложения.
+     */
+    @PreDestroy
+    void shutdown() {
+        background.shutdownNow();
+    }
+
+    /**
+     * Действующий сегмент с пометками удаленных документов.
+     */
+    private static final class LiveSegment {
+
+        /**
+         * Порядок сегментов от старых к новым: по поколению, затем по порядковому номеру.
+         */
+        private static final Comparator<LiveSegment> ORDER = Comparator
+                .<LiveSegment>comparingLong(segment -> segment.generation)
+                .thenComparingLong(segment -> segment.sequence);
+
+        /**
+         * Открытый сегмент.
+         */
+        private final Segment segment;
+
+        /**
+         * Файл сегмента.
+         */
+        private final Path file;
+
+        /**
+         * Поколение сегмента.
+         */
+        private final long generation;
+
+        /**
+         * Порядковый номер сегмента.
+         */
+        private final long sequence;
+
+        /**
+         * Порядковые номера документов, более новые версии которых находятся в других сегментах.
+         */
+        private final BitSet deleted;
+
+        /**
+         * Конструктор для создания действующего сегмента.
+         *
+         * @param segment    открытый сегмент.
+         * @param file       файл сегмента.
+         * @param generation поколение сегмента.
+         * @param sequence   порядковый номер сегмента.
+         * @param deleted    порядковые номера удаленных документов.
+         */
+        private LiveSegment(Segment segment, Path file, long generation, long sequence, BitSet deleted) {
+            this.segment = segment;
+            this.file = file;
+            this.generation = generation;
+            this.sequence = sequence;
+            this.deleted = deleted;
+        }
+
+        /**
+         * Метод для получения копии сегмента с другими пометками удаленных документов.
+         *
+         * @param deleted порядковые номера удаленных документов.
+         * @return копия сегмента.
+         */
+        private LiveSegment withDeleted(BitSet deleted) {
+            return new LiveSegment(segment, file, generation, sequence, deleted);
+        }
+
+        /**
+         * Метод для подсчета неудаленных документов сегмента.
+         *
+         * @return количество неудаленных документов.
+         */
+        private int liveCount() {
+            return segment.documentCount() - deleted.cardinality();
+        }
+
+        /**
+         * Метод для оценки объема неудаленных документов сегмента.
+         *
+         * @return оценка объема в байтах.
+         */
+        private long liveBytes() {
+            return segment.documentCount() == 0 ? 0 : segment.sizeInBytes() * liveCount() / segment.documentCount();
+        }
+
+    }
+
+}
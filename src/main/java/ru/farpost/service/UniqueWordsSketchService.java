@@ -0,0 +1,187 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.DocumentSketch;
+import ru.farpost.repository.DocumentSketchRepository;
+import ru.farpost.utils.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для приближенного подсчета уникальных слов с помощью {@link HyperLogLog}.
+ * Для каждого документа при сохранении вычисляется и сохраняется оценка его уникальных слов;
+ * оценка всего корпуса хранится в памяти как объединение оценок документов.
+ * Объединение нельзя уменьшить, поэтому после перезаписи документов оценка корпуса
+ * перестраивается по сохраненным оценкам при следующем запросе.
+ */
+@Service
+public class UniqueWordsSketchService {
+
+    /**
+     * Репозиторий для работы с {@link DocumentSketch}.
+     */
+    private final DocumentSketchRepository documentSketchRepository;
+
+    /**
+     * Шаблон для чтения оценок в транзакции только для чтения.
+     */
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Оценка уникальных слов корпуса. Доступ синхронизирован по экземпляру сервиса.
+     */
+    private HyperLogLog corpusSketch = new HyperLogLog();
+
+    /**
+     * Признак того, что оценка корпуса содержит слова перезаписанных версий документов и должна быть перестроена.
+     */
+    private boolean corpusSketchStale = true;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param documentSketchRepository репозиторий для работы с {@link DocumentSketch}.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    UniqueWordsSketchService(DocumentSketchRepository documentSketchRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.documentSketchRepository = documentSketchRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Метод для построения оценки корпуса при запуске приложения.
+     * Выполняется до дозаполнения индекса, чтобы документы, проиндексированные при дозаполнении,
+     * были добавлены к уже построенной оценке.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadCorpusSketch() {
+        HyperLogLog loaded = new HyperLogLog();
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            try (Stream<byte[]> registers = documentSketchRepository.streamRegisters()) {
+                registers.forEach(loaded::merge);
+            }
+        });
+        corpusSketch = loaded;
+        corpusSketchStale = false;
+    }
+
+    /**
+     * Метод для сохранения оценок новых версий документов взамен предыдущих.
+     * Если вызывается в транзакции, оценка корпуса обновляется только после ее успешной фиксации.
+     * Должен вызываться в транзакции сохранения документов.
+     *
+     * @param analyses результаты разбора текстов документов по их идентификаторам.
+     */
+    public void updateDocuments(Map<Long, TextAnalysisDTO> analyses) {
+        boolean overwritten = documentSketchRepository.deleteByDocumentIds(analyses.keySet()) > 0;
+
+        HyperLogLog batchSketch = new HyperLogLog();
+        List<DocumentSketch> sketches = new ArrayList<>(analyses.size());
+        analyses.forEach((documentId, analysis) -> {
+            HyperLogLog sketch = new HyperLogLog();
+            analysis.getTermFrequencies().keySet().forEach(sketch::add);
+            batchSketch.merge(sketch);
+            sketches.add(new DocumentSketch(documentId, sketch.toByteArray()));
+        });
+        documentSketchRepository.saveAll(sketches);
+
+        Runnable update = () -> {
+            synchronized (this) {
+                corpusSketch.merge(batchSketch);
+                corpusSketchStale |= overwritten;
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * Метод для получения оценки количества уникальных слов во всех документах.
+     *
+     * @return оценка количества уникальных слов.
+     */
+    public synchronized long estimateCorpus() {
+        if (corpusSketchStale) {
+            loadCorpusSketch();
+        }
+        return corpusSketch.estimate();
+    }
+
+    /**
+     * Метод для получения регистров оценки уникальных слов во всех документах, например для объединения
+     * с оценками других узлов кластера.
+     *
+     * @return копия регистров оценки корпуса.
+     */
+    public synchronized byte[] getCorpusRegisters() {
+        if (corpusSketchStale) {
+            loadCorpusSketch();
+        }
+        return corpusSketch.toByteArray();
+    }
+
+    /**
+     * Метод для получения оценки количества уникальных слов в группе документов.
+     * Оценки документов объединяются без чтения их текстов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return оценка количества уникальных слов или пустой {@link Optional}, если ни для одного документа нет оценки.
+     */
+    public Optional<Long> estimateDocuments(Collection<Long> documentIds) {
+        return mergeDocuments(documentIds).map(HyperLogLog::estimate);
+    }
+
+    /**
+     * Метод для получения регистров объединенной оценки уникальных слов группы документов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return регистры оценки или пустой {@link Optional}, если ни для одного документа нет оценки.
+     */
+    public Optional<byte[]> getDocumentsRegisters(Collection<Long> documentIds) {
+        return mergeDocuments(documentIds).map(HyperLogLog::toByteArray);
+    }
+
+    /**
+     * Метод для объединения сохраненных оценок группы документов.
+     *
+     * @param documentIds идентификаторы документов.
+     * @return объединенная оценка или пустой {@link Optional}, если ни для одного документа нет оценки.
+     */
+    private Optional<HyperLogLog> mergeDocuments(Collection<Long> documentIds) {
+        List<byte[]> registers = documentSketchRepository.findRegistersByDocumentIds(documentIds);
+        if (registers.isEmpty()) {
+            return Optional.empty();
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        registers.forEach(sketch::merge);
+        return Optional.of(sketch);
+    }
+
+}
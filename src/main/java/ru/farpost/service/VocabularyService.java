@@ -0,0 +1,225 @@
+package ru.farpost.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.model.CorpusTerm;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.CorpusTermRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.TermTrie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для поиска слов словаря корпуса по префиксу и с опечатками.
+ * Словарь хранится в памяти в сжатом префиксном дереве ({@link TermTrie}), поэтому поиск не перебирает
+ * слова по одному. Дерево строится при запуске приложения потоковым чтением таблицы {@code corpus_terms}
+ * и затем поддерживается при сохранении документов.
+ */
+@Service
+public class VocabularyService {
+
+    /**
+     * Максимальное расстояние редактирования при нечетком поиске.
+     */
+    public static final int MAX_EDITS = 2;
+
+    /**
+     * Репозиторий для работы с общим словарем документов.
+     */
+    private final CorpusTermRepository corpusTermRepository;
+
+    /**
+     * Репозиторий для работы с {@link CorpusStatistic}.
+     */
+    private final CorpusStatisticRepository corpusStatisticRepository;
+
+    /**
+     * Шаблон для чтения словаря и поколения корпуса в одном снимке БД, в транзакции только для чтения.
+     */
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * Блокировка словаря: поиск выполняется параллельно, изменения – монопольно.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Словарь корпуса.
+     */
+    private TermTrie vocabulary = new TermTrie();
+
+    /**
+     * Изменения словаря, зафиксированные во время его построения, или {@code null}, если словарь не строится.
+     * Изменение принимает поколение корпуса снимка, по которому построен словарь, и применяется, только если
+     * его собственное поколение больше. Доступ под блокировкой записи {@link #lock}.
+     */
+    private List<LongConsumer> pendingUpdates;
+
+    /**
+     * Конструктор для создания сервиса с внедренными зависимостями.
+     *
+     * @param corpusTermRepository репозиторий для работы с общим словарем документов.
+     * @param corpusStatisticRepository репозиторий для работы с {@link CorpusStatistic}.
+     * @param transactionManager менеджер транзакций.
+     */
+    @Autowired
+    VocabularyService(CorpusTermRepository corpusTermRepository, CorpusStatisticRepository corpusStatisticRepository,
+                      PlatformTransactionManager transactionManager) {
+        this.corpusTermRepository = corpusTermRepository;
+        this.corpusStatisticRepository = corpusStatisticRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.readOnlyTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Метод для построения словаря при запуске приложения.
+     * Выполняется до дозаполнения индекса, чтобы документы, проиндексированные при дозаполнении,
+     * были учтены ровно один раз. Запросы принимаются уже во время построения, поэтому изменения запоминаются
+     * с начала построения, а после замены словаря применяются к нему только те, что зафиксированы после снимка БД,
+     * по которому он построен: их поколение корпуса больше поколения, прочитанного в том же снимке.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadVocabulary() {
+        lock.writeLock().lock();
+        try {
+            pendingUpdates = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        TermTrie loaded = new TermTrie();
+        AtomicLong snapshotGeneration = new AtomicLong();
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                snapshotGeneration.set(corpusGeneration());
+                try (Stream<CorpusTerm> terms = corpusTermRepository.streamAll()) {
+                    terms.forEach(term -> loaded.add(term.getTerm(), term.getDocumentFrequency()));
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingUpdates = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            vocabulary = loaded;
+            pendingUpdates.forEach(update -> update.accept(snapshotGeneration.get()));
+            pendingUpdates = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод для учета новых версий документов в словаре.
+     * Слова предыдущих версий вычитаются, слова новых версий добавляются.
+     * Если вызывается в транзакции, словарь обновляется только после ее успешной фиксации.
+     * Должен вызываться после обновления общей статистики в той же транзакции, чтобы изменение было помечено
+     * поколением корпуса этого сохранения.
+     *
+     * @param previous слова предыдущих версий документов; слово повторяется для каждого содержащего его документа.
+     * @param analyses результаты разбора текстов новых версий документов по их идентификаторам.
+     */
+    public void updateDocuments(List<DocumentTermRepository.TermFrequencyView> previous,
+                                Map<Long, TextAnalysisDTO> analyses) {
+        long generation = corpusGeneration();
+        Runnable apply = () -> {
+            previous.forEach(term -> vocabulary.add(term.getTerm(), -1));
+            analyses.values().forEach(analysis -> analysis.getTermFrequencies()
+                    .keySet().forEach(term -> vocabulary.add(term, 1)));
+        };
+        Runnable update = () -> {
+            lock.writeLock().lock();
+            try {
+                apply.run();
+                if (pendingUpdates != null) {
+                    pendingUpdates.add(snapshotGeneration -> {
+                        if (generation > snapshotGeneration) {
+                            apply.run();
+                        }
+                    });
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * Метод для поиска слов словаря, начинающихся с префикса.
+     *
+     * @param prefix нормализованный префикс.
+     * @param limit максимальное количество слов в результате.
+     * @return до {@code limit} слов с префиксом в алфавитном порядке.
+     */
+    public List<String> findTermsByPrefix(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return vocabulary.findByPrefix(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод для поиска слов словаря, отличающихся от заданного не более чем на {@code maxEdits} правок.
+     *
+     * @param term нормализованное слово.
+     * @param maxEdits максимальное расстояние редактирования, не больше {@value #MAX_EDITS}.
+     * @param limit максимальное количество слов в результате.
+     * @return до {@code limit} ближайших слов и расстояния до них в порядке возрастания расстояния.
+     */
+    public Map<String, Integer> findTermsWithinDistance(String term, int maxEdits, int limit) {
+        lock.readLock().lock();
+        try {
+            return vocabulary.findWithinDistance(term, maxEdits, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод для получения текущего поколения корпуса.
+     *
+     * @return поколение корпуса или {@code 0}, если документы еще не сохранялись.
+     */
+    private long corpusGeneration() {
+        return corpusStatisticRepository.findGenerationById(CorpusStatistic.SINGLETON_ID).orElse(0L);
+    }
+
+}
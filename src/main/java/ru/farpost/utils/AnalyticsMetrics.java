@@ -0,0 +1,166 @@
+package ru.farpost.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.model.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Компонент для сбора метрик аналитики документов в {@link MeterRegistry}.
+ * <ul>
+ *     <li>{@code analytics.stage} – время этапов обработки документов (тег {@code stage});</li>
+ *     <li>{@code analytics.tokens} – количество разобранных слов, скорость разбора – производная счетчика;</li>
+ *     <li>{@code analytics.document.length} и {@code analytics.document.words} – распределения размеров
+ *     разобранных документов в символах и словах;</li>
+ *     <li>{@code analytics.cache.requests} – обращения к предварительно вычисленным результатам
+ *     (теги {@code cache} и {@code result} со значениями {@code hit} и {@code miss}).</li>
+ * </ul>
+ * Гистограммы процентилей включаются настройкой {@code management.metrics.distribution.percentiles-histogram.analytics}.
+ */
+@Component
+public class AnalyticsMetrics {
+
+    /**
+     * Реестр метрик.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Таймеры этапов по их названиям.
+     */
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Счетчик разобранных слов.
+     */
+    private final Counter tokens;
+
+    /**
+     * Распределение длины документов в символах.
+     */
+    private final DistributionSummary documentLength;
+
+    /**
+     * Распределение количества слов в документах.
+     */
+    private final DistributionSummary documentWords;
+
+    /**
+     * Конструктор для создания компонента с внедренными зависимостями.
+     *
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    public AnalyticsMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.tokens = Counter.builder("analytics.tokens")
+                .description("Количество разобранных слов")
+                .register(registry);
+        this.documentLength = DistributionSummary.builder("analytics.document.length")
+                .description("Длина разобранных документов")
+                .baseUnit("chars")
+                .register(registry);
+        this.documentWords = DistributionSummary.builder("analytics.document.words")
+                .description("Количество слов в разобранных документах")
+                .baseUnit("words")
+                .register(registry);
+    }
+
+    /**
+     * Метод для измерения времени этапа обработки.
+     *
+     * @param stage название этапа.
+     * @param supplier этап обработки.
+     * @return результат этапа.
+     * @param <T> тип результата.
+     */
+    public <T> T time(String stage, Supplier<T> supplier) {
+        return stageTimer(stage).record(supplier);
+    }
+
+    /**
+     * Метод для измерения времени этапа обработки без результата.
+     *
+     * @param stage название этапа.
+     * @param runnable этап обработки.
+     */
+    public void time(String stage, Runnable runnable) {
+        stageTimer(stage).record(runnable);
+    }
+
+    /**
+     * Метод для учета разобранных документов: количества слов и размеров документов.
+     *
+     * @param documents разобранные документы.
+     * @param analysis результат разбора документов.
+     */
+    public void recordAnalysis(List<Document> documents, CorpusAnalysisDTO analysis) {
+        for (Document document : documents) {
+            documentLength.record(document.getText().length());
+        }
+        recordWords(analysis);
+    }
+
+    /**
+     * Метод для учета документа, текст которого разобран при потоковой загрузке.
+     *
+     * @param textLength длина текста документа.
+     * @param analysis результат разбора документа.
+     */
+    public void recordAnalysis(long textLength, CorpusAnalysisDTO analysis) {
+        documentLength.record(textLength);
+        recordWords(analysis);
+    }
+
+    /**
+     * Метод для учета количества слов разобранных документов.
+     *
+     * @param analysis результат разбора документов.
+     */
+    private void recordWords(CorpusAnalysisDTO analysis) {
+        tokens.increment(analysis.getWordCount());
+        analysis.getAnalyses().values().forEach(text -> documentWords.record(text.getWordCount()));
+    }
+
+    /**
+     * Метод для учета обращения к предварительно вычисленному результату.
+     *
+     * @param cache название предварительно вычисленного результата.
+     * @param value найденное значение или пустой {@link Optional}, если его нет.
+     * @return переданное значение.
+     * @param <T> тип значения.
+     */
+    public <T> Optional<T> lookup(String cache, Optional<T> value) {
+        Counter.builder("analytics.cache.requests")
+                .description("Обращения к предварительно вычисленным результатам")
+                .tag("cache", cache)
+                .tag("result", value.isPresent() ? "hit" : "miss")
+                .register(registry)
+                .increment();
+        return value;
+    }
+
+    /**
+     * Метод для получения таймера этапа.
+     *
+     * @param stage название этапа.
+     * @return таймер этапа.
+     */
+    private Timer stageTimer(String stage) {
+        return stageTimers.computeIfAbsent(stage, name -> Timer.builder("analytics.stage")
+                .description("Время этапов обработки документов")
+                .tag("stage", name)
+                .register(registry));
+    }
+
+}
@@ -0,0 +1,36 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек аналитики документов.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code analytics}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "analytics")
+public class AnalyticsProperties {
+
+    /**
+     * Количество потоков пула разбора документов. Значение {@code 0} означает количество доступных процессоров.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Количество документов, до которого часть группы разбирается последовательно и не делится дальше.
+     */
+    private int parallelThreshold = 16;
+
+    /**
+     * Количество счетчиков приближенного подсчета наиболее часто встречающихся слов всего корпуса.
+     */
+    private int topWordsCapacity = 10000;
+
+    /**
+     * Максимальное количество наиболее часто встречающихся слов, которое можно запросить.
+     */
+    private int maxTopWords = 1000;
+
+}
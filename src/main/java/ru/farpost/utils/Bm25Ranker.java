@@ -0,0 +1,190 @@
+package ru.farpost.utils;
+
+import ru.farpost.dto.ScoredDocumentDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс для ранжирования документов по формуле BM25 с отбором {@code k} лучших документов.
+ * Вклад слова в релевантность документа: {@code idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * dl / avgdl))},
+ * где {@code tf} – количество вхождений слова в документ, {@code dl} – длина документа, {@code avgdl} – средняя
+ * длина документа корпуса, а {@code idf = ln(1 + (N - df + 0.5) / (df + 0.5))}.
+ * <p>
+ * Вклад слова не превышает {@code idf * (k1 + 1)}, что используется для отсечения по алгоритму MaxScore:
+ * слова обрабатываются от самого редкого (с наибольшей верхней оценкой) к самому частому; как только
+ * {@code k}-я лучшая релевантность уже найденных документов превышает сумму верхних оценок оставшихся слов,
+ * документ, не содержащий ни одного из обработанных слов, в результат попасть не может. После этого списки
+ * документов оставшихся слов не читаются целиком: вклад слова вычисляется только для документов-кандидатов,
+ * а кандидаты, которые даже с максимальным вкладом оставшихся слов не догонят {@code k}-й документ, отбрасываются.
+ * Итоговые {@code k} документов отбираются ограниченной кучей ({@link TopKSelector}).
+ */
+public class Bm25Ranker {
+
+    /**
+     * Порядок результатов: по убыванию релевантности, при равной релевантности – по возрастанию идентификатора.
+     */
+    static final Comparator<ScoredDocumentDTO> ORDER = Comparator.comparingDouble(ScoredDocumentDTO::getScore)
+            .reversed().thenComparing(ScoredDocumentDTO::getId);
+
+    /**
+     * Параметр {@code k1} формулы BM25.
+     */
+    private final double k1;
+
+    /**
+     * Параметр {@code b} формулы BM25.
+     */
+    private final double b;
+
+    /**
+     * Количество документов корпуса.
+     */
+    private final long documentsCount;
+
+    /**
+     * Средняя длина документа корпуса.
+     */
+    private final double averageLength;
+
+    /**
+     * Конструктор для создания экземпляра.
+     *
+     * @param k1 параметр {@code k1} формулы BM25.
+     * @param b параметр {@code b} формулы BM25.
+     * @param documentsCount количество документов корпуса.
+     * @param averageLength средняя длина документа корпуса.
+     */
+    public Bm25Ranker(double k1, double b, long documentsCount, double averageLength) {
+        this.k1 = k1;
+        this.b = b;
+        this.documentsCount = documentsCount;
+        this.averageLength = averageLength > 0 ? averageLength : 1;
+    }
+
+    /**
+     * Метод для вычисления обратной документной частоты слова.
+     *
+     * @param documentFrequency количество документов, содержащих слово.
+     * @return значение {@code idf}.
+     */
+    public double idf(int documentFrequency) {
+        return Math.log(1 + (documentsCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Метод для вычисления вклада слова в релевантность документа.
+     *
+     * @param idf обратная документная частота слова.
+     * @param frequency количество вхождений слова в документ.
+     * @param length длина документа.
+     * @return вклад слова.
+     */
+    public double score(double idf, int frequency, int length) {
+        return idf * frequency * (k1 + 1) / (frequency + k1 * (1 - b + b * length / averageLength));
+    }
+
+    /**
+     * Метод для отбора {@code k} наиболее релевантных документов.
+     *
+     * @param documentFrequencies слова запроса и количество содержащих их документов.
+     * @param k количество документов в результате.
+     * @param source источник списков документов слов.
+     * @return до {@code k} документов по убыванию релевантности (при равной релевантности – по возрастанию идентификатора).
+     */
+    public List<ScoredDocumentDTO> rank(Map<String, Integer> documentFrequencies, int k, PostingSource source) {
+        List<Map.Entry<String, Integer>> terms = new ArrayList<>();
+        documentFrequencies.entrySet().stream().filter(term -> term.getValue() > 0).forEach(terms::add);
+        terms.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+
+        double[] remainingBounds = new double[terms.size() + 1];
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            remainingBounds[i] = remainingBounds[i + 1] + idf(terms.get(i).getValue()) * (k1 + 1);
+        }
+
+        Map<Long, double[]> scores = new HashMap<>();
+        boolean pruning = false;
+        for (int i = 0; i < terms.size(); i++) {
+            double idf = idf(terms.get(i).getValue());
+            String term = terms.get(i).getKey();
+            if (scores.size() >= k) {
+                double threshold = kthScore(scores, k);
+                pruning = pruning || threshold > remainingBounds[i];
+                if (pruning) {
+                    double remaining = remainingBounds[i];
+                    scores.values().removeIf(score -> score[0] + remaining < threshold);
+                }
+            }
+            if (pruning) {
+                source.readForDocuments(term, new ArrayList<>(scores.keySet()),
+                        (documentId, frequency, length) -> scores.get(documentId)[0] += score(idf, frequency, length));
+            } else {
+                source.readAll(term, (documentId, frequency, length) ->
+                        scores.computeIfAbsent(documentId, id -> new double[1])[0] += score(idf, frequency, length));
+            }
+        }
+
+        TopKSelector<ScoredDocumentDTO> selector = new TopKSelector<>(k, ORDER);
+        scores.forEach((documentId, score) -> selector.offer(new ScoredDocumentDTO(documentId, score[0])));
+        return selector.toList();
+    }
+
+    /**
+     * Метод для получения {@code k}-й по убыванию релевантности среди документов.
+     *
+     * @param scores релевантность документов.
+     * @param k номер документа.
+     * @return {@code k}-я релевантность.
+     */
+    private static double kthScore(Map<Long, double[]> scores, int k) {
+        TopKSelector<Double> selector = new TopKSelector<>(k, Comparator.reverseOrder());
+        scores.values().forEach(score -> selector.offer(score[0]));
+        List<Double> best = selector.toList();
+        return best.get(best.size() - 1);
+    }
+
+    /**
+     * Источник списков документов слов.
+     */
+    public interface PostingSource {
+
+        /**
+         * Метод для чтения всего списка документов слова.
+         *
+         * @param term нормализованное слово.
+         * @param consumer получатель записей списка.
+         */
+        void readAll(String term, PostingConsumer consumer);
+
+        /**
+         * Метод для чтения записей списка документов слова только для заданных документов.
+         *
+         * @param term нормализованное слово.
+         * @param documentIds идентификаторы документов.
+         * @param consumer получатель записей списка для документов, содержащих слово.
+         */
+        void readForDocuments(String term, List<Long> documentIds, PostingConsumer consumer);
+
+    }
+
+    /**
+     * Получатель записи списка документов слова.
+     */
+    @FunctionalInterface
+    public interface PostingConsumer {
+
+        /**
+         * Метод для обработки записи списка.
+         *
+         * @param documentId идентификатор документа.
+         * @param frequency количество вхождений слова в документ.
+         * @param length длина документа.
+         */
+        void accept(long documentId, int frequency, int length);
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс для хранения настроек работы приложения узлом кластера.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code cluster}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+
+    /**
+     * Признак работы в кластере. Если он выключен, приложение хранит и обрабатывает все документы само.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Базовые адреса всех узлов кластера, включая этот, например {@code http://localhost:8081}.
+     * Порядок адресов должен совпадать на всех узлах: документ хранится на узле с номером,
+     * равным остатку от деления хеша его идентификатора на количество узлов.
+     */
+    private List<String> shards = new ArrayList<>();
+
+    /**
+     * Номер этого узла в списке {@link #shards}.
+     */
+    private int shardIndex = 0;
+
+    /**
+     * Время ожидания ответа узла на запрос по документу или поиск.
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+
+    /**
+     * Время ожидания ответа узла на тяжелый запрос по всему корпусу (статистика, частые слова, n-граммы,
+     * повторная индексация) или на загрузку документов.
+     */
+    private Duration longTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Время ожидания соединения с узлом.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Признак того, что при недоступности части узлов возвращается результат остальных узлов.
+     * Если он выключен, запрос завершается ошибкой.
+     */
+    private boolean allowPartial = false;
+
+    /**
+     * Во сколько раз больше наиболее частых слов и n-грамм запрашивается у каждого узла, чтобы слово, частое
+     * во всем корпусе, но не вошедшее в первые {@code k} на одном из узлов, реже терялось при объединении.
+     */
+    private int topKOversampling = 2;
+
+}
@@ -0,0 +1,37 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек сжатия текстов документов.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code compression}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "compression")
+public class CompressionProperties {
+
+    /**
+     * Признак сжатия текстов при сохранении и сжатия ранее сохраненных текстов при запуске приложения.
+     * Сжатые тексты читаются независимо от этой настройки.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Минимальная длина текста в символах, начиная с которой текст сжимается. Более короткие тексты хранятся как есть.
+     */
+    private int threshold = 4096;
+
+    /**
+     * Уровень сжатия {@link java.util.zip.Deflater} от 1 (быстрее) до 9 (компактнее).
+     */
+    private int level = 6;
+
+    /**
+     * Количество документов, сжимаемых в одной транзакции при сжатии ранее сохраненных текстов.
+     */
+    private int migrationChunkSize = 500;
+
+}
@@ -0,0 +1,56 @@
+package ru.farpost.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Класс для вычисления хеша содержимого документа.
+ * Хеш – первые 8 байт SHA-256 текста в UTF-8; он сохраняется вместе с документом и используется как версия
+ * его содержимого (например, для {@code ETag}), поэтому не зависит от способа хранения текста.
+ */
+public final class ContentHash {
+
+    /**
+     * Закрытый конструктор: класс содержит только статические методы.
+     */
+    private ContentHash() {
+    }
+
+    /**
+     * Метод для вычисления хеша текста документа.
+     *
+     * @param text текст документа.
+     * @return хеш текста.
+     */
+    public static long of(String text) {
+        return of(digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Метод для создания объекта вычисления хеша текста, передаваемого частями.
+     * Байты текста в UTF-8 передаются в {@link MessageDigest#update(byte[], int, int)},
+     * а хеш получается вызовом {@link #of(byte[])} для результата {@link MessageDigest#digest()}.
+     *
+     * @return новый объект {@link MessageDigest}.
+     */
+    public static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Метод для получения хеша по результату SHA-256.
+     *
+     * @param digest результат SHA-256 текста в UTF-8.
+     * @return хеш текста.
+     */
+    public static long of(byte[] digest) {
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+}
@@ -0,0 +1,153 @@
+package ru.farpost.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.model.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Компонент для параллельного разбора группы документов.
+ * Группа делится пополам, пока части не станут меньше порога {@code analytics.parallel-threshold};
+ * каждая часть разбирается в собственном пуле {@link ForkJoinPool}, после чего частичные результаты
+ * объединяются в исходном порядке документов. Результат совпадает с последовательным разбором.
+ */
+@Component
+public class CorpusAnalyzer {
+
+    /**
+     * Класс для аналитических функций, связанных с документами.
+     */
+    private final DocumentsAnalyticFunctions analyticFunctions;
+
+    /**
+     * Количество документов, до которого часть группы разбирается последовательно.
+     */
+    private final int parallelThreshold;
+
+    /**
+     * Пул потоков для разбора документов.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Конструктор для создания компонента с внедренными зависимостями.
+     *
+     * @param analyticFunctions класс для аналитических функций с {@link Document}.
+     * @param analyticsProperties настройки параллельного разбора документов.
+     */
+    @Autowired
+    CorpusAnalyzer(DocumentsAnalyticFunctions analyticFunctions, AnalyticsProperties analyticsProperties) {
+        this.analyticFunctions = analyticFunctions;
+        this.parallelThreshold = Math.max(1, analyticsProperties.getParallelThreshold());
+        int parallelism = analyticsProperties.getParallelism() > 0
+                ? analyticsProperties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Метод для разбора группы документов.
+     * Если документ встречается в группе несколько раз, учитывается его последняя версия.
+     *
+     * @param documents список документов.
+     * @return объект {@link CorpusAnalysisDTO} с результатами разбора документов и суммарными метриками.
+     */
+    public CorpusAnalysisDTO analyze(List<Document> documents) {
+        Map<Long, Document> latest = new LinkedHashMap<>();
+        for (Document document : documents) {
+            latest.put(document.getId(), document);
+        }
+        List<Document> unique = new ArrayList<>(latest.values());
+        if (unique.size() <= parallelThreshold) {
+            return analyzeRange(unique, 0, unique.size());
+        }
+        return pool.invoke(new AnalyzeTask(unique, 0, unique.size()));
+    }
+
+    /**
+     * Метод для последовательного разбора части группы документов.
+     *
+     * @param documents список документов без повторяющихся идентификаторов.
+     * @param from индекс первого документа части (включительно).
+     * @param to индекс последнего документа части (не включительно).
+     * @return частичный результат разбора.
+     */
+    private CorpusAnalysisDTO analyzeRange(List<Document> documents, int from, int to) {
+        CorpusAnalysisDTO result = new CorpusAnalysisDTO();
+        for (int i = from; i < to; i++) {
+            Document document = documents.get(i);
+            result.add(document.getId(), analyticFunctions.analyzeText(document.getText()));
+        }
+        return result;
+    }
+
+    /**
+     * Метод для остановки пула потоков при завершении работы приложения.
+     */
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Задача разбора части группы документов.
+     * Делит часть пополам, пока она больше порога, и объединяет частичные результаты левой и правой половин.
+     */
+    private class AnalyzeTask extends RecursiveTask<CorpusAnalysisDTO> {
+
+        /**
+         * Список документов без повторяющихся идентификаторов.
+         */
+        private final List<Document> documents;
+
+        /**
+         * Индекс первого документа части (включительно).
+         */
+        private final int from;
+
+        /**
+         * Индекс последнего документа части (не включительно).
+         */
+        private final int to;
+
+        /**
+         * Конструктор для создания задачи разбора части группы документов.
+         *
+         * @param documents список документов без повторяющихся идентификаторов.
+         * @param from      индекс первого документа части (включительно).
+         * @param to        индекс последнего документа части (не включительно).
+         */
+        private AnalyzeTask(List<Document> documents, int from, int to) {
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Метод для разбора части группы документов.
+         *
+         * @return результат разбора части.
+         */
+        @Override
+        protected CorpusAnalysisDTO compute() {
+            if (to - from <= parallelThreshold) {
+                return analyzeRange(documents, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            AnalyzeTask right = new AnalyzeTask(documents, middle, to);
+            right.fork();
+            CorpusAnalysisDTO left = new AnalyzeTask(documents, from, middle).compute();
+            return left.merge(right.join());
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package ru.farpost.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.exception.ErrorResponse;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Компонент для выполнения тяжелых запросов по всему корпусу в отдельном ограниченном пуле потоков.
+ * Поток обработки HTTP-запроса освобождается сразу, а количество одновременно выполняемых тяжелых запросов
+ * (и занятых ими соединений с БД) не превышает {@code corpus-tasks.pool-size}, поэтому легкие запросы
+ * не ждут их завершения. Если очередь ожидающих запросов заполнена, запрос отклоняется
+ * с сообщением {@link ExceptionsMessage#SERVER_BUSY}.
+ * Загрузка пула публикуется в метриках {@code executor.*} с тегом {@code name=corpus}.
+ */
+@Component
+public class CorpusTaskExecutor {
+
+    /**
+     * Пул потоков для тяжелых запросов.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Конструктор для создания компонента с внедренными зависимостями.
+     *
+     * @param corpusTaskProperties настройки выполнения тяжелых запросов.
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    public CorpusTaskExecutor(CorpusTaskProperties corpusTaskProperties, MeterRegistry registry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int poolSize = corpusTaskProperties.getPoolSize() > 0
+                ? corpusTaskProperties.getPoolSize()
+                : Math.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 4);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, corpusTaskProperties.getQueueCapacity())),
+                task -> new Thread(task, "corpus-task-" + threadNumber.incrementAndGet()));
+        new ExecutorServiceMetrics(executor, "corpus", List.of()).bindTo(registry);
+    }
+
+    /**
+     * Метод для асинхронного выполнения тяжелого запроса.
+     * Если очередь заполнена, возвращается результат, завершенный исключением {@link ErrorResponse}
+     * с сообщением {@link ExceptionsMessage#SERVER_BUSY}.
+     *
+     * @param task запрос.
+     * @return результат запроса.
+     * @param <T> тип результата.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ErrorResponse(ExceptionsMessage.SERVER_BUSY));
+        }
+    }
+
+    /**
+     * Метод для остановки пула потоков при завершении работы приложения.
+     */
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+}
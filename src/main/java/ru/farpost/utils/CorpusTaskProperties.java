@@ -0,0 +1,29 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек выполнения тяжелых запросов по всему корпусу.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code corpus-tasks}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "corpus-tasks")
+public class CorpusTaskProperties {
+
+    /**
+     * Количество потоков, одновременно выполняющих тяжелые запросы.
+     * Должно быть меньше размера пула соединений с БД, чтобы легким запросам всегда оставались соединения.
+     * Значение {@code 0} означает половину доступных процессоров, но не больше 4: легким запросам остаются
+     * свободные процессоры, и задержка их обработки не растет, пока тяжелые запросы занимают весь пул.
+     */
+    private int poolSize = 0;
+
+    /**
+     * Максимальное количество тяжелых запросов, ожидающих выполнения. Запросы сверх очереди отклоняются.
+     */
+    private int queueCapacity = 64;
+
+}
@@ -0,0 +1,179 @@
+package ru.farpost.utils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кеш текстов документов и результатов их аналитики в памяти приложения.
+ * Для каждого документа хранится карта значений по видам ({@code text}, {@code normalized_text} и т.д.), поэтому
+ * все значения документа удаляются одним обращением при его сохранении. Объем кеша ограничен оценкой занимаемой
+ * памяти ({@code document-cache.max-bytes}), значения вытесняются по алгоритму сегментированного LRU
+ * (см. {@link WeightedCache}).
+ * <p>
+ * Значения документа удаляются при его индексации и повторно – после завершения транзакции сохранения;
+ * до завершения транзакции значения документа не кешируются. Значение, загрузка которого пересеклась с удалением
+ * значений каких-либо документов, тоже не кешируется, поэтому в кеш не попадают данные предыдущей версии документа,
+ * а значение в кеше не старше версии документа в БД.
+ * <p>
+ * Метрики: {@code document.cache.requests} (тег {@code result} со значениями {@code hit} и {@code miss}; обращение
+ * считается попаданием, только если в кеше есть значение запрошенного вида),
+ * {@code document.cache.size} и {@code document.cache.weight}.
+ */
+@Component
+public class DocumentCache {
+
+    /**
+     * Оценка объема объекта без полей в байтах.
+     */
+    private static final long OBJECT_BYTES = 16;
+
+    /**
+     * Оценка объема записи карты в байтах без ключа и значения.
+     */
+    private static final long MAP_ENTRY_BYTES = 40;
+
+    /**
+     * Значения документов по их идентификаторам.
+     */
+    private final WeightedCache<Long, Map<String, Object>> cache;
+
+    /**
+     * Счетчик удалений значений; значение, при загрузке которого счетчик изменился, не кешируется.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Количество незавершенных транзакций сохранения по идентификаторам документов. Изменяется под блокировкой кеша.
+     */
+    private final Map<Long, Integer> pending = new HashMap<>();
+
+    /**
+     * Конструктор для создания кеша с внедренными зависимостями.
+     *
+     * @param documentCacheProperties настройки кеша документов.
+     * @param registry реестр метрик.
+     */
+    @Autowired
+    public DocumentCache(DocumentCacheProperties documentCacheProperties, MeterRegistry registry) {
+        this.cache = new WeightedCache<>(documentCacheProperties.getMaxBytes(), DocumentCache::weigh);
+        FunctionCounter.builder("document.cache.requests", cache, WeightedCache::hitCount)
+                .description("Обращения к кешу документов")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("document.cache.requests", cache, WeightedCache::missCount)
+                .description("Обращения к кешу документов")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("document.cache.size", cache, WeightedCache::size)
+                .description("Количество документов в кеше")
+                .register(registry);
+        Gauge.builder("document.cache.weight", cache, WeightedCache::weight)
+                .description("Оценка объема кеша документов")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Метод для получения значения документа из кеша или его загрузки.
+     * Исключение загрузки передается вызывающему, и значение не кешируется.
+     *
+     * @param documentId идентификатор документа.
+     * @param kind вид значения.
+     * @param loader функция для загрузки значения при его отсутствии в кеше.
+     * @return значение.
+     * @param <T> тип значения.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Long documentId, String kind, Supplier<T> loader) {
+        Map<String, Object> values = cache.get(documentId, documentValues -> documentValues.containsKey(kind));
+        if (values != null) {
+            return (T) values.get(kind);
+        }
+        long generation = invalidations.get();
+        T loaded = loader.get();
+        if (loaded != null) {
+            synchronized (cache) {
+                if (invalidations.get() == generation && !pending.containsKey(documentId)) {
+                    cache.merge(documentId, Map.of(kind, loaded), (current, added) -> {
+                        Map<String, Object> merged = new HashMap<>(current);
+                        merged.putAll(added);
+                        return merged;
+                    });
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Метод для удаления значений документов.
+     * Если вызывается в транзакции, значения удаляются повторно после ее завершения, а до этого не кешируются.
+     *
+     * @param documentIds идентификаторы документов.
+     */
+    public void invalidate(Collection<Long> documentIds) {
+        List<Long> ids = List.copyOf(documentIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remove(ids, 0);
+            return;
+        }
+        remove(ids, 1);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                remove(ids, -1);
+            }
+        });
+    }
+
+    /**
+     * Метод для удаления значений документов из кеша.
+     *
+     * @param documentIds идентификаторы документов.
+     * @param pendingDelta изменение количества незавершенных транзакций сохранения документов.
+     */
+    private void remove(Collection<Long> documentIds, int pendingDelta) {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            for (Long documentId : documentIds) {
+                cache.invalidate(documentId);
+                if (pendingDelta != 0) {
+                    pending.merge(documentId, pendingDelta, (current, delta) -> current + delta == 0 ? null : current + delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод для оценки объема строки, числа или карты в памяти.
+     *
+     * @param value значение.
+     * @return оценка объема в байтах.
+     */
+    private static long weigh(Object value) {
+        if (value instanceof String string) {
+            return OBJECT_BYTES * 3 + 2L * string.length();
+        }
+        if (value instanceof Map<?, ?> map) {
+            long weight = OBJECT_BYTES * 4;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                weight += MAP_ENTRY_BYTES + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        }
+        return OBJECT_BYTES;
+    }
+
+}
@@ -0,0 +1,22 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек кеша документов.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code document-cache}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "document-cache")
+public class DocumentCacheProperties {
+
+    /**
+     * Максимальный оценочный объем текстов и результатов аналитики в кеше в байтах.
+     * Значение {@code 0} отключает кеш.
+     */
+    private long maxBytes = 64L * 1024 * 1024;
+
+}
@@ -2,8 +2,9 @@ package ru.farpost.utils;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import ru.farpost.model.Document;
+import ru.farpost.dto.TextAnalysisDTO;
 
+import java.io.Reader;
 import java.util.*;
 
 /**
@@ -13,35 +14,30 @@ import java.util.*;
 public class DocumentsAnalyticFunctions {
 
     /**
-     * Утилита для работы со списком стоп-слов.
+     * Количество наиболее часто встречающихся слов, возвращаемое по умолчанию.
      */
-    private final StopWordsListUtil stopWordsUtil;
+    public static final int DEFAULT_TOP_WORDS_COUNT = 10;
 
     /**
-     * Метод для создания экземпляра с внедренной зависимостью {@link StopWordsListUtil}.
-     *
-     * @param stopWordsUtil утилита для обработки стоп-слов.
+     * Компонент для разбиения текста на нормализованные слова.
      */
-    @Autowired
-    DocumentsAnalyticFunctions(StopWordsListUtil stopWordsUtil) {
-        this.stopWordsUtil = stopWordsUtil;
-    }
+    private final TextTokenizer textTokenizer;
+
+    /**
+     * Общий словарь нормализованных слов.
+     */
+    private final TermDictionary termDictionary;
 
     /**
-     * Приватный метод для нормализации текста документа.
-     * Удаляет знаки препинания, приводит текст к нижнему регистру и удаляет стоп-слова.
+     * Метод для создания экземпляра с внедренными зависимостями {@link TextTokenizer} и {@link TermDictionary}.
      *
-     * @param text текст документа, который необходимо нормализовать.
-     * @return список нормализованных слов из текста документа.
-     */
-    private List<String> getNormalizeWords(String text) {
-        Set<String> stopWords = new HashSet<>(stopWordsUtil.getWords());
-        String[] words =
-                text
-                        .replaceAll("[^a-zA-Zа-яА-ЯёЁ\\s]", "")
-                        .toLowerCase()
-                        .split("\\s+");
-        return Arrays.stream(words).filter(word -> !stopWords.contains(word)).toList();
+     * @param textTokenizer компонент для разбиения текста на нормализованные слова.
+     * @param termDictionary общий словарь нормализованных слов.
+     */
+    @Autowired
+    DocumentsAnalyticFunctions(TextTokenizer textTokenizer, TermDictionary termDictionary) {
+        this.textTokenizer = textTokenizer;
+        this.termDictionary = termDictionary;
     }
 
     /**
@@ -51,12 +47,21 @@ public class DocumentsAnalyticFunctions {
      * @return нормализованный текст в виде строки.
      */
     public String normalizeDocumentText(String text) {
-        return String.join(" ", getNormalizeWords(text));
+        StringBuilder normalizedText = new StringBuilder(text.length());
+        textTokenizer.forEachToken(text, (buffer, length) -> {
+            if (!normalizedText.isEmpty()) {
+                normalizedText.append(' ');
+            }
+            normalizedText.append(buffer, 0, length);
+        });
+        return normalizedText.toString();
     }
 
 
     /**
      * Метод для получения статистики по тексту документа.
+     * Уникальные слова подсчитываются по идентификаторам общего словаря ({@link TermCounts}),
+     * без построения нормализованного текста и позиций слов.
      *
      * @param text текст документа, по которому необходимо вычислить статистику.
      * @return карта, содержащая ключевые метрики текста:
@@ -69,120 +74,278 @@ public class DocumentsAnalyticFunctions {
      */
     public Map<String, Integer> getDocumentStatistic(String text) {
 
-        List<String> normalizeWords = getNormalizeWords(text);
-        Map<String, Integer> documentStatistic = new LinkedHashMap<>();
+        TermCounts counts = new TermCounts();
+        int[] wordCount = new int[1];
+        long[] wordsLength = new long[1];
+        int sentencesCount = textTokenizer.forEachToken(text, (buffer, length) -> {
+            counts.add(termDictionary.id(buffer, length));
+            wordCount[0]++;
+            wordsLength[0] += length;
+        });
+        return statistic(wordCount[0], counts.size(), wordsLength[0], sentencesCount);
+
+    }
 
-        int wordCount = normalizeWords.size();
-        int uniqWordCount = (int) normalizeWords.stream().distinct().count();
-        int avgWordCount = normalizeWords.stream().mapToInt(String::length).sum() / wordCount;
-        int sentencesCount = (int) Arrays.stream(text.split("[.!?]+")).map(String::trim).filter(it -> !it.isEmpty()).count();
+    /**
+     * Метод для получения статистики по результату разбора текста документа.
+     *
+     * @param analysis результат разбора текста документа.
+     * @return карта со статистикой в формате {@link #getDocumentStatistic(String)}.
+     */
+    public Map<String, Integer> getDocumentStatistic(TextAnalysisDTO analysis) {
+        return statistic(analysis.getWordCount(), analysis.getTermFrequencies().size(), analysis.getWordsLength(),
+                analysis.getSentencesCount());
+    }
+
+    /**
+     * Метод для формирования карты статистики документа.
+     *
+     * @param wordCount количество слов.
+     * @param uniqWordCount количество уникальных слов.
+     * @param wordsLength суммарная длина слов.
+     * @param sentencesCount количество предложений.
+     * @return карта со статистикой в формате {@link #getDocumentStatistic(String)}.
+     */
+    private static Map<String, Integer> statistic(int wordCount, int uniqWordCount, long wordsLength, int sentencesCount) {
+        Map<String, Integer> documentStatistic = new LinkedHashMap<>();
 
         documentStatistic.put("word_count", wordCount);
         documentStatistic.put("uniq_word_count", uniqWordCount);
-        documentStatistic.put("avg_word_length", avgWordCount);
+        documentStatistic.put("avg_word_length", wordCount == 0 ? 0 : (int) (wordsLength / wordCount));
         documentStatistic.put("sentences_count", sentencesCount);
 
         return documentStatistic;
-
     }
 
     /**
-     * Метод для получения списка идентификаторов документов, содержащих заданное слово.
-     * Поиск осуществляется по нормализованному тексту документов.
+     * Метод для разбора поискового запроса.
+     * Слова запроса нормализуются так же, как тексты документов.
      *
-     * @param documents список документов, среди которых выполняется поиск.
-     * @param word      слово, которое необходимо найти в документах.
-     * @return список идентификаторов документов, содержащих указанное слово.
+     * @param query текст запроса.
+     * @return разобранный запрос.
+     * @throws IllegalArgumentException если запрос некорректен.
+     * @see SearchQuery#parse(String, TextTokenizer)
      */
-    public List<Long> getDocumentIdByWords(List<Document> documents, String word) {
-
-        List<Long> documentIds = new ArrayList<>();
-
-        for (Document document : documents) {
-            if (getNormalizeWords(document.getText()).contains(word.toLowerCase()))
-                documentIds.add(document.getId());
-        }
-
-        return documentIds;
+    public SearchQuery parseSearchQuery(String query) {
+        return SearchQuery.parse(query, textTokenizer);
+    }
 
+    /**
+     * Метод для получения уникальных нормализованных слов запроса.
+     *
+     * @param query текст запроса.
+     * @return слова запроса без повторов в порядке первого вхождения.
+     */
+    public List<String> getQueryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        textTokenizer.forEachToken(query, (buffer, length) -> {
+            int id = termDictionary.find(buffer, length);
+            terms.add(id >= 0 ? termDictionary.term(id) : new String(buffer, 0, length));
+        });
+        return new ArrayList<>(terms);
     }
 
     /**
-     * Метод для обработки запроса на получение общей статистики по всем документам.
-     * Объединяет тексты всех документов и вычисляет их суммарную статистику.
+     * Метод для разбора текста документа за один проход.
+     * Вычисляет частоты и позиции уникальных слов, нормализованный текст, количество и суммарную длину слов
+     * и количество предложений. Используется для построения инвертированного индекса,
+     * общей статистики и предварительно вычисленной аналитики документа.
+     * Текст разбирается в массив локальных номеров слов ({@link TermCounts}), по которому затем строятся
+     * позиции; ключами результата являются строки общего словаря, поэтому новые строки создаются только
+     * для слов, которых еще нет в словаре.
      *
-     * @param documents список документов, по которым необходимо вычислить общую статистику.
-     * @return карта, содержащая ключевые метрики для всех документов:
-     * <ul>
-     *     <li>{@code documents_count} – количество документов.</li>
-     *     <li>{@code word_count} – общее количество слов.</li>
-     *     <li>{@code uniq_word_count} – количество уникальных слов.</li>
-     *     <li>{@code avg_word_length} – средняя длина слова.</li>
-     *     <li>{@code sentences_count} – количество предложений.</li>
-     * </ul>
+     * @param text текст документа.
+     * @return объект {@link TextAnalysisDTO} с результатами разбора.
      */
-    public Map<String, Integer> getAllDocumentStatistic(List<Document> documents) {
+    public TextAnalysisDTO analyzeText(String text) {
+        TextAnalysisBuilder builder = new TextAnalysisBuilder(text.length());
+        return builder.build(textTokenizer.forEachToken(text, builder));
+    }
 
-        Map<String, Integer> allDocumentsStatistic = new LinkedHashMap<>();
-        StringBuilder allTextsFromDocuments = new StringBuilder();
+    /**
+     * Метод для разбора текста, читаемого из потока частями, без загрузки текста в память целиком.
+     * Результат разбора совпадает с {@link #analyzeText(String)} для того же текста.
+     *
+     * @param reader поток текста документа.
+     * @param chunkSize размер части текста в символах.
+     * @param maxLength максимальная длина текста в символах.
+     * @return поток байтов текста в UTF-8, по мере чтения которого текст разбирается (см. {@link StreamedText}).
+     */
+    public StreamedText analyzeText(Reader reader, int chunkSize, long maxLength) {
+        TextAnalysisBuilder builder = new TextAnalysisBuilder(chunkSize);
+        return new StreamedText(reader, chunkSize, maxLength, textTokenizer.session(builder), builder::build);
+    }
 
-        for (Document document : documents) {
-            allTextsFromDocuments.append(document.getText()).append(" ");
+    /**
+     * Метод для получения {@code k} наиболее часто встречающихся слов в тексте.
+     * Вхождения подсчитываются за один проход по тексту в массиве счетчиков по идентификаторам общего словаря
+     * ({@link TermCounts}); строки создаются только для слов, которых еще нет в словаре.
+     *
+     * @param text текст документа, в котором необходимо найти наиболее частотные слова.
+     * @param k количество слов в результате.
+     * @return карта, содержащая до {@code k} самых часто встречающихся слов и их количество
+     * в порядке убывания частоты (при равной частоте – по алфавиту).
+     */
+    public Map<String, Integer> getTopWords(String text, int k) {
+
+        TermCounts counts = new TermCounts();
+        textTokenizer.forEachToken(text, (buffer, length) -> counts.add(termDictionary.id(buffer, length)));
+
+        TopKSelector<Integer> selector = new TopKSelector<>(k, (local1, local2) -> {
+            int result = Integer.compare(counts.count(local2), counts.count(local1));
+            return result != 0 ? result
+                    : termDictionary.term(counts.termId(local1)).compareTo(termDictionary.term(counts.termId(local2)));
+        });
+        for (int local = 0; local < counts.size(); local++) {
+            selector.offer(local);
         }
 
-        allDocumentsStatistic.put("documents_count", documents.size());
-        allDocumentsStatistic.putAll(getDocumentStatistic(String.valueOf(allTextsFromDocuments).trim()));
-
-        return allDocumentsStatistic;
+        Map<String, Integer> topWords = new LinkedHashMap<>();
+        for (int local : selector.toList()) {
+            topWords.put(termDictionary.term(counts.termId(local)), counts.count(local));
+        }
+        return topWords;
 
     }
 
     /**
-     * Метод для получения топ-10 наиболее часто встречающихся слов в тексте.
-     * Текст предварительно нормализуется, после чего выполняется подсчет количества вхождений каждого слова.
+     * Метод для получения {@code k} наиболее часто встречающихся слов по уже подсчитанным частотам.
+     * Слова отбираются ограниченной кучей за {@code O(n log k)}, без сортировки всех слов.
      *
-     * @param text текст документа, в котором необходимо найти наиболее частотные слова.
-     * @return карта, содержащая до 10 самых часто встречающихся слов и их количество.
+     * @param wordsCount карта слов и количества их вхождений.
+     * @param k количество слов в результате.
+     * @return карта, содержащая до {@code k} самых часто встречающихся слов и их количество
+     * в порядке убывания частоты (при равной частоте – по алфавиту).
      */
-    public Map<String, Integer> getTopWords(String text) {
+    public Map<String, Integer> getTopWords(Map<String, Integer> wordsCount, int k) {
 
-        List<String> normalizeWords = getNormalizeWords(text);
-        Map<String, Integer> wordsCount = new HashMap<>();
-        Map<String, Integer> topWords = new LinkedHashMap<>();
+        TopKSelector<Map.Entry<String, Integer>> selector = new TopKSelector<>(k, new TopWordsSorter());
+        wordsCount.entrySet().forEach(selector::offer);
 
-        for (String word : normalizeWords) {
-            if (wordsCount.containsKey(word)) {
-                wordsCount.put(word, wordsCount.get(word) + 1);
-            } else {
-                wordsCount.put(word, 1);
-            }
+        Map<String, Integer> topWords = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : selector.toList()) {
+            topWords.put(entry.getKey(), entry.getValue());
         }
+        return topWords;
 
-        ArrayList<Map.Entry<String, Integer>> entryWordsCount = new ArrayList<>(wordsCount.entrySet());
+    }
 
-        entryWordsCount.sort(new TopWordsSorter());
+    /**
+     * Метод для подсчета n-грамм текста.
+     * Нормализованные слова заменяются идентификаторами общего словаря, и n-граммы подсчитываются
+     * за один проход по тексту (см. {@link NgramCounter}).
+     *
+     * @param text текст документа.
+     * @param n длина n-граммы, от {@value NgramCounter#MIN_N} до {@value NgramCounter#MAX_N}.
+     * @return объект {@link NgramCounter} с подсчитанными n-граммами.
+     */
+    public NgramCounter countNgrams(String text, int n) {
+        return new NgramCounter(textTokenizer, termDictionary, text, n);
+    }
 
-        int minWordsCount = Math.min(10, entryWordsCount.size());
+    /**
+     * Метод для получения {@code k} наиболее часто встречающихся n-грамм в тексте.
+     *
+     * @param text текст документа.
+     * @param n длина n-граммы, от {@value NgramCounter#MIN_N} до {@value NgramCounter#MAX_N}.
+     * @param k количество n-грамм в результате.
+     * @return карта n-грамм (слова разделены пробелом) и количества их вхождений в порядке убывания частоты
+     * (при равной частоте – по алфавиту).
+     */
+    public Map<String, Integer> getNgrams(String text, int n, int k) {
+        return countNgrams(text, n).top(k);
+    }
 
-        for (int i = 0; i < minWordsCount; i++) {
-            topWords.put(entryWordsCount.get(i).getKey(), entryWordsCount.get(i).getValue());
+    /**
+     * Накопитель результата разбора текста: получает нормализованные слова от {@link TextTokenizer}
+     * и строит по ним частоты и позиции уникальных слов, нормализованный текст, количество и суммарную длину слов.
+     * Слова запоминаются в виде массива локальных номеров ({@link TermCounts}), по которому затем строятся
+     * позиции; ключами результата являются строки общего словаря, поэтому новые строки создаются только
+     * для слов, которых еще нет в словаре.
+     */
+    private final class TextAnalysisBuilder implements TextTokenizer.TokenConsumer {
+
+        /**
+         * Количество вхождений слов документа по локальным номерам.
+         */
+        private final TermCounts counts = new TermCounts();
+
+        /**
+         * Нормализованный текст.
+         */
+        private final StringBuilder normalizedText;
+
+        /**
+         * Локальные номера слов в порядке их следования в тексте.
+         */
+        private int[] tokens = new int[64];
+
+        /**
+         * Количество слов.
+         */
+        private int wordCount;
+
+        /**
+         * Суммарная длина слов.
+         */
+        private long wordsLength;
+
+        /**
+         * Конструктор для создания накопителя.
+         *
+         * @param capacity начальный размер буфера нормализованного текста.
+         */
+        private TextAnalysisBuilder(int capacity) {
+            this.normalizedText = new StringBuilder(capacity);
         }
 
-        return topWords;
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void accept(char[] buffer, int length) {
+            int position = wordCount++;
+            if (position > 0) {
+                normalizedText.append(' ');
+            }
+            normalizedText.append(buffer, 0, length);
+            wordsLength += length;
 
-    }
+            if (position == tokens.length) {
+                tokens = Arrays.copyOf(tokens, position * 2);
+            }
+            tokens[position] = counts.add(termDictionary.id(buffer, length));
+        }
 
-    public Map<String, Integer> getBigramsInDocument(String text) {
-        List<String> normalizedWords = getNormalizeWords(text);
-        int wordsCount = normalizedWords.size();
-        int bigramsCount = 0;
-        String bigram = null;
-        for (int i = 0; i < wordsCount - 2; i++) {
-            bigram = normalizedWords.get(i) + " " + normalizedWords.get(i + 1);
-            for (int j = 0; j <; j++) {
+        /**
+         * Метод для построения результата разбора.
+         *
+         * @param sentencesCount количество предложений в тексте.
+         * @return объект {@link TextAnalysisDTO} с результатами разбора.
+         */
+        private TextAnalysisDTO build(int sentencesCount) {
+            int[][] positions = new int[counts.size()][];
+            for (int local = 0; local < positions.length; local++) {
+                positions[local] = new int[counts.count(local)];
+            }
+            int[] filled = new int[positions.length];
+            for (int position = 0; position < wordCount; position++) {
+                int local = tokens[position];
+                positions[local][filled[local]++] = position;
+            }
 
+            Map<String, Integer> termFrequencies = new HashMap<>(positions.length * 4 / 3 + 1);
+            Map<String, int[]> termPositions = new HashMap<>(positions.length * 4 / 3 + 1);
+            for (int local = 0; local < positions.length; local++) {
+                String term = termDictionary.term(counts.termId(local));
+                termFrequencies.put(term, positions[local].length);
+                termPositions.put(term, positions[local]);
             }
+
+            return new TextAnalysisDTO(termFrequencies, normalizedText.toString(), wordCount, wordsLength,
+                    sentencesCount, termPositions);
         }
 
     }
+
 }
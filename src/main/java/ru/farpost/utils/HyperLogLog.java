@@ -0,0 +1,139 @@
+package ru.farpost.utils;
+
+/**
+ * Класс для приближенного подсчета количества уникальных слов (алгоритм HyperLogLog).
+ * Хранит {@value #REGISTERS} однобайтовых регистров (4 КБ) независимо от количества слов.
+ * Стандартная ошибка оценки – {@code 1.04 / sqrt(4096)}, около 1,6%; примерно в 95% случаев
+ * оценка отличается от точного значения не более чем на 3,3%. Для небольших множеств используется
+ * линейный подсчет по пустым регистрам, поэтому оценка близка к точной.
+ * Экземпляры объединяются поэлементным максимумом регистров, поэтому оценку объединения любого
+ * подмножества документов можно получить из их сохраненных регистров без повторного разбора текстов.
+ * Класс не потокобезопасен.
+ */
+public class HyperLogLog {
+
+    /**
+     * Количество бит хеша, определяющих номер регистра.
+     */
+    private static final int PRECISION = 12;
+
+    /**
+     * Количество регистров.
+     */
+    public static final int REGISTERS = 1 << PRECISION;
+
+    /**
+     * Поправочный коэффициент оценки для {@value #REGISTERS} регистров.
+     */
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    /**
+     * Регистры: максимальный ранг хешей, попавших в регистр.
+     */
+    private final byte[] registers;
+
+    /**
+     * Конструктор для создания пустого экземпляра.
+     */
+    public HyperLogLog() {
+        this(new byte[REGISTERS]);
+    }
+
+    /**
+     * Конструктор для создания экземпляра по сохраненным регистрам.
+     *
+     * @param registers регистры, полученные методом {@link #toByteArray()}.
+     */
+    public HyperLogLog(byte[] registers) {
+        if (registers.length != REGISTERS) {
+            throw new IllegalArgumentException("HyperLogLog registers must have length " + REGISTERS);
+        }
+        this.registers = registers;
+    }
+
+    /**
+     * Метод для добавления слова.
+     *
+     * @param term слово.
+     */
+    public void add(CharSequence term) {
+        long hash = hash(term);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Метод для объединения с другим экземпляром.
+     *
+     * @param other другой экземпляр.
+     */
+    public void merge(HyperLogLog other) {
+        merge(other.registers);
+    }
+
+    /**
+     * Метод для объединения с сохраненными регистрами другого экземпляра.
+     *
+     * @param otherRegisters регистры, полученные методом {@link #toByteArray()}.
+     */
+    public void merge(byte[] otherRegisters) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (otherRegisters[i] > registers[i]) {
+                registers[i] = otherRegisters[i];
+            }
+        }
+    }
+
+    /**
+     * Метод для получения оценки количества уникальных слов.
+     *
+     * @return оценка количества уникальных слов.
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Метод для получения регистров для сохранения.
+     *
+     * @return копия регистров.
+     */
+    public byte[] toByteArray() {
+        return registers.clone();
+    }
+
+    /**
+     * Метод для вычисления 64-битного хеша слова (FNV-1a с финальным перемешиванием MurmurHash3).
+     *
+     * @param term слово.
+     * @return хеш слова.
+     */
+    private static long hash(CharSequence term) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            hash = (hash ^ term.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,75 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Класс для хранения настроек отложенного применения изменений документов к индексу и аналитике.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code index-pipeline}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "index-pipeline")
+public class IndexPipelineProperties {
+
+    /**
+     * Признак отложенного применения изменений. Если он выключен, документы индексируются в транзакции сохранения.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Количество фоновых потоков, применяющих изменения; документ всегда обрабатывается одним и тем же потоком.
+     */
+    private int workers = 1;
+
+    /**
+     * Максимальное количество документов, ожидающих применения изменений.
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * Максимальное количество документов, изменения которых применяются в одной транзакции.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Поведение при заполненной очереди.
+     */
+    private Overflow overflow = Overflow.BLOCK;
+
+    /**
+     * Время ожидания места в очереди при поведении {@link Overflow#BLOCK}.
+     */
+    private Duration offerTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Максимальное время ожидания применения изменений в запросе водяного знака.
+     */
+    private Duration maxWait = Duration.ofSeconds(10);
+
+    /**
+     * Количество документов, читаемых одной порцией при повторном применении изменений после перезапуска.
+     */
+    private int replayChunkSize = 500;
+
+    /**
+     * Поведение при заполненной очереди.
+     */
+    public enum Overflow {
+
+        /**
+         * Ожидать места в очереди не дольше {@code offer-timeout}, после чего отклонить сохранение.
+         */
+        BLOCK,
+
+        /**
+         * Применить изменения сразу в транзакции сохранения.
+         */
+        CALLER_RUNS
+
+    }
+
+}
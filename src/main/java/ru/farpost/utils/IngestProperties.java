@@ -0,0 +1,42 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек пакетной загрузки документов.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code ingest}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    /**
+     * Количество документов, записываемых в БД одним пакетом и в одной транзакции.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Максимальное количество ошибок, перечисляемых в ответе. Остальные ошибки только подсчитываются.
+     */
+    private int maxReportedErrors = 100;
+
+    /**
+     * Количество документов, загружаемых из БД одной порцией при обходе всего корпуса.
+     */
+    private int scanChunkSize = 500;
+
+    /**
+     * Размер части текста в символах, читаемой за один раз при потоковой загрузке текста документа.
+     */
+    private int streamChunkSize = 8192;
+
+    /**
+     * Максимальная длина текста в символах при потоковой загрузке текста документа. Текст не хранится в памяти,
+     * но результат его разбора (нормализованный текст и позиции слов) занимает память пропорционально длине текста.
+     */
+    private long maxStreamChars = 20_000_000;
+
+}
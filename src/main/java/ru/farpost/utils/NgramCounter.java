@@ -0,0 +1,248 @@
+package ru.farpost.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Класс для подсчета n-грамм (последовательностей из {@code n} соседних слов) одного текста.
+ * Каждое слово текста заменяется идентификатором общего словаря ({@link TermDictionary}), и текст хранится
+ * как массив идентификаторов.
+ * N-грамма представлена позицией своего первого вхождения в этом массиве, а ее счетчик хранится
+ * в хеш-таблице с открытой адресацией, где хеш вычисляется скользящим окном по идентификаторам.
+ * Поэтому подсчет выполняется за один проход по тексту, без создания строк для каждого вхождения n-граммы.
+ * Строки создаются только для слов, которых еще нет в словаре, и для n-грамм, попавших в результат.
+ */
+public class NgramCounter {
+
+    /**
+     * Минимальная длина n-граммы.
+     */
+    public static final int MIN_N = 2;
+
+    /**
+     * Максимальная длина n-граммы.
+     */
+    public static final int MAX_N = 5;
+
+    /**
+     * Основание полиномиального хеша окна.
+     */
+    private static final int HASH_BASE = 0x9E3779B1;
+
+    /**
+     * Функция получения слова по идентификатору.
+     */
+    private final IntFunction<String> dictionary;
+
+    /**
+     * Текст в виде идентификаторов слов.
+     */
+    private int[] tokens = new int[64];
+
+    /**
+     * Количество слов в тексте.
+     */
+    private int length;
+
+    /**
+     * Длина n-граммы.
+     */
+    private final int n;
+
+    /**
+     * Позиции первых вхождений n-грамм по ячейкам хеш-таблицы ({@code -1} – пустая ячейка).
+     */
+    private int[] positions;
+
+    /**
+     * Счетчики n-грамм по ячейкам хеш-таблицы.
+     */
+    private int[] counts;
+
+    /**
+     * Конструктор для подсчета n-грамм заданной длины в тексте.
+     *
+     * @param textTokenizer компонент для разбиения текста на нормализованные слова.
+     * @param termDictionary общий словарь нормализованных слов.
+     * @param text текст.
+     * @param n длина n-граммы, от {@value #MIN_N} до {@value #MAX_N}.
+     */
+    public NgramCounter(TextTokenizer textTokenizer, TermDictionary termDictionary, CharSequence text, int n) {
+        validateLength(n);
+        this.n = n;
+        this.dictionary = termDictionary::term;
+        textTokenizer.forEachToken(text, (buffer, tokenLength) -> {
+            if (length == tokens.length) {
+                tokens = Arrays.copyOf(tokens, length * 2);
+            }
+            tokens[length++] = termDictionary.id(buffer, tokenLength);
+        });
+        count();
+    }
+
+    /**
+     * Конструктор для подсчета n-грамм заданной длины в тексте, уже разбитом на идентификаторы слов
+     * (например, в тексте документа из сегмента индекса).
+     *
+     * @param tokens текст в виде идентификаторов слов.
+     * @param dictionary функция получения слова по идентификатору.
+     * @param n длина n-граммы, от {@value #MIN_N} до {@value #MAX_N}.
+     */
+    public NgramCounter(int[] tokens, IntFunction<String> dictionary, int n) {
+        validateLength(n);
+        this.n = n;
+        this.dictionary = dictionary;
+        this.tokens = tokens;
+        this.length = tokens.length;
+        count();
+    }
+
+    /**
+     * Метод для проверки длины n-граммы.
+     *
+     * @param n длина n-граммы.
+     */
+    private static void validateLength(int n) {
+        if (n < MIN_N || n > MAX_N) {
+            throw new IllegalArgumentException("n must be between " + MIN_N + " and " + MAX_N);
+        }
+    }
+
+    /**
+     * Метод для подсчета n-грамм текста.
+     */
+    private void count() {
+        int ngrams = Math.max(0, length - n + 1);
+        int capacity = Integer.highestOneBit(Math.max(2, ngrams) * 2 - 1) << 1;
+        positions = new int[capacity];
+        counts = new int[capacity];
+        Arrays.fill(positions, -1);
+        if (ngrams == 0) {
+            return;
+        }
+
+        int power = 1;
+        int hash = 0;
+        for (int i = 0; i < n; i++) {
+            hash = hash * HASH_BASE + tokens[i];
+            if (i > 0) {
+                power *= HASH_BASE;
+            }
+        }
+        int mask = capacity - 1;
+        for (int start = 0; ; start++) {
+            int slot = mix(hash) & mask;
+            while (positions[slot] >= 0 && !sameNgram(positions[slot], start)) {
+                slot = (slot + 1) & mask;
+            }
+            if (positions[slot] < 0) {
+                positions[slot] = start;
+            }
+            counts[slot]++;
+            if (start + n >= length) {
+                break;
+            }
+            hash = (hash - tokens[start] * power) * HASH_BASE + tokens[start + n];
+        }
+    }
+
+    /**
+     * Метод для перемешивания бит хеша перед выбором ячейки.
+     *
+     * @param hash хеш окна.
+     * @return перемешанный хеш.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * Метод для проверки совпадения n-грамм, начинающихся в двух позициях текста.
+     *
+     * @param first позиция первой n-граммы.
+     * @param second позиция второй n-граммы.
+     * @return {@code true}, если n-граммы совпадают.
+     */
+    private boolean sameNgram(int first, int second) {
+        return Arrays.equals(tokens, first, first + n, tokens, second, second + n);
+    }
+
+    /**
+     * Метод для сравнения n-грамм по словам в алфавитном порядке.
+     * Порядок совпадает с порядком строк n-грамм, в которых слова разделены пробелом.
+     *
+     * @param first позиция первой n-граммы.
+     * @param second позиция второй n-граммы.
+     * @return результат сравнения.
+     */
+    private int compareNgrams(int first, int second) {
+        for (int i = 0; i < n; i++) {
+            int result = dictionary.apply(tokens[first + i]).compareTo(dictionary.apply(tokens[second + i]));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Метод для получения строки n-граммы.
+     *
+     * @param position позиция n-граммы.
+     * @return слова n-граммы, разделенные пробелом.
+     */
+    private String ngram(int position) {
+        StringBuilder ngram = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                ngram.append(' ');
+            }
+            ngram.append(dictionary.apply(tokens[position + i]));
+        }
+        return ngram.toString();
+    }
+
+    /**
+     * Метод для получения {@code k} наиболее часто встречающихся n-грамм.
+     *
+     * @param k количество n-грамм в результате.
+     * @return карта n-грамм и количества их вхождений в порядке убывания частоты (при равной частоте – по алфавиту).
+     */
+    public Map<String, Integer> top(int k) {
+        TopKSelector<Integer> selector = new TopKSelector<>(k, (slot1, slot2) -> {
+            int result = Integer.compare(counts[slot2], counts[slot1]);
+            return result != 0 ? result : compareNgrams(positions[slot1], positions[slot2]);
+        });
+        for (int slot = 0; slot < positions.length; slot++) {
+            if (positions[slot] >= 0) {
+                selector.offer(slot);
+            }
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int slot : selector.toList()) {
+            result.put(ngram(positions[slot]), counts[slot]);
+        }
+        return result;
+    }
+
+    /**
+     * Метод для перебора всех уникальных n-грамм текста с количеством их вхождений.
+     * Используется для объединения n-грамм нескольких текстов.
+     *
+     * @param consumer получатель n-граммы и количества ее вхождений.
+     */
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int slot = 0; slot < positions.length; slot++) {
+            if (positions[slot] >= 0) {
+                consumer.accept(ngram(positions[slot]), counts[slot]);
+            }
+        }
+    }
+
+}
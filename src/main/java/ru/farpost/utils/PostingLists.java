@@ -0,0 +1,248 @@
+package ru.farpost.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Класс с операциями над отсортированными списками инвертированного индекса.
+ * Пересечение и разность выполняются галопирующим поиском: для каждого элемента меньшего списка
+ * позиция в большем списке ищется экспоненциальными шагами от предыдущей найденной позиции,
+ * поэтому стоимость операции пропорциональна {@code m * log(n / m)}, где {@code m} и {@code n} – длины
+ * меньшего и большего списков, а не их сумме.
+ * Позиции слова в документе хранятся в сжатом виде: разности соседних позиций в кодировке переменной длины.
+ */
+public final class PostingLists {
+
+    /**
+     * Пустой список идентификаторов документов.
+     */
+    public static final long[] EMPTY = new long[0];
+
+    /**
+     * Закрытый конструктор: класс содержит только статические методы.
+     */
+    private PostingLists() {
+    }
+
+    /**
+     * Метод для пересечения двух отсортированных списков идентификаторов.
+     *
+     * @param first первый список по возрастанию.
+     * @param second второй список по возрастанию.
+     * @return идентификаторы, присутствующие в обоих списках, по возрастанию.
+     */
+    public static long[] intersect(long[] first, long[] second) {
+        long[] smaller = first.length <= second.length ? first : second;
+        long[] larger = smaller == first ? second : first;
+        long[] result = new long[smaller.length];
+        int size = 0;
+        int from = 0;
+        for (long value : smaller) {
+            from = gallop(larger, from, value);
+            if (from == larger.length) {
+                break;
+            }
+            if (larger[from] == value) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Метод для вычитания одного отсортированного списка идентификаторов из другого.
+     *
+     * @param from список, из которого вычитаются идентификаторы, по возрастанию.
+     * @param excluded вычитаемый список по возрастанию.
+     * @return идентификаторы {@code from}, отсутствующие в {@code excluded}, по возрастанию.
+     */
+    public static long[] difference(long[] from, long[] excluded) {
+        if (excluded.length == 0) {
+            return from;
+        }
+        long[] result = new long[from.length];
+        int size = 0;
+        int index = 0;
+        for (long value : from) {
+            index = gallop(excluded, index, value);
+            if (index == excluded.length || excluded[index] != value) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Метод для объединения двух отсортированных списков идентификаторов.
+     *
+     * @param first первый список по возрастанию.
+     * @param second второй список по возрастанию.
+     * @return идентификаторы, присутствующие хотя бы в одном из списков, по возрастанию без повторов.
+     */
+    public static long[] union(long[] first, long[] second) {
+        long[] result = new long[first.length + second.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            long value = Math.min(first[i], second[j]);
+            if (first[i] == value) {
+                i++;
+            }
+            if (second[j] == value) {
+                j++;
+            }
+            result[size++] = value;
+        }
+        while (i < first.length) {
+            result[size++] = first[i++];
+        }
+        while (j < second.length) {
+            result[size++] = second[j++];
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Метод для проверки, образуют ли слова фразу хотя бы в одном месте документа.
+     * Перебираются позиции самого редкого слова фразы, а наличие остальных слов на соответствующих
+     * позициях проверяется галопирующим поиском, продолжающимся с места предыдущей проверки.
+     *
+     * @param positions позиции слов фразы в документе по возрастанию, в порядке слов фразы.
+     * @return {@code true}, если слова фразы встречаются в документе подряд.
+     */
+    public static boolean containsPhrase(int[][] positions) {
+        int rarest = 0;
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i].length < positions[rarest].length) {
+                rarest = i;
+            }
+        }
+        int[] cursors = new int[positions.length];
+        for (int position : positions[rarest]) {
+            int start = position - rarest;
+            if (start < 0) {
+                continue;
+            }
+            boolean matched = true;
+            for (int i = 0; i < positions.length && matched; i++) {
+                if (i == rarest) {
+                    continue;
+                }
+                cursors[i] = gallop(positions[i], cursors[i], start + i);
+                if (cursors[i] == positions[i].length) {
+                    return false;
+                }
+                matched = positions[i][cursors[i]] == start + i;
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Метод для сжатия позиций слова в документе.
+     *
+     * @param positions позиции по возрастанию.
+     * @return разности соседних позиций в кодировке переменной длины (по 7 бит в байте).
+     */
+    public static byte[] encodePositions(int[] positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(positions.length + 4);
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            while ((delta & ~0x7F) != 0) {
+                out.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Метод для распаковки позиций слова в документе.
+     *
+     * @param encoded позиции, сжатые методом {@link #encodePositions(int[])}.
+     * @return позиции по возрастанию.
+     */
+    public static int[] decodePositions(byte[] encoded) {
+        int[] positions = new int[encoded.length];
+        int size = 0;
+        int previous = 0;
+        int index = 0;
+        while (index < encoded.length) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = encoded[index++];
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            previous += delta;
+            positions[size++] = previous;
+        }
+        return Arrays.copyOf(positions, size);
+    }
+
+    /**
+     * Метод для поиска первого элемента, не меньшего заданного, начиная с позиции {@code from}.
+     *
+     * @param values список по возрастанию.
+     * @param from позиция, с которой начинается поиск.
+     * @param target искомое значение.
+     * @return индекс первого элемента не меньше {@code target} или длина списка, если такого нет.
+     */
+    private static int gallop(long[] values, int from, long target) {
+        int step = 1;
+        int high = from;
+        while (high < values.length && values[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, values.length);
+        while (from < high) {
+            int middle = (from + high) >>> 1;
+            if (values[middle] < target) {
+                from = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Метод для поиска первого элемента, не меньшего заданного, начиная с позиции {@code from}.
+     *
+     * @param values список по возрастанию.
+     * @param from позиция, с которой начинается поиск.
+     * @param target искомое значение.
+     * @return индекс первого элемента не меньше {@code target} или длина списка, если такого нет.
+     */
+    private static int gallop(int[] values, int from, int target) {
+        int step = 1;
+        int high = from;
+        while (high < values.length && values[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, values.length);
+        while (from < high) {
+            int middle = (from + high) >>> 1;
+            if (values[middle] < target) {
+                from = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return from;
+    }
+
+}
@@ -0,0 +1,41 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек поиска документов.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code search}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "search")
+public class SearchProperties {
+
+    /**
+     * Максимальное количество слов словаря, в которые раскрывается поиск по префиксу или нечеткий поиск.
+     */
+    private int maxExpansions = 1000;
+
+    /**
+     * Максимальное количество документов в результате ранжированного поиска.
+     */
+    private int maxResults = 1000;
+
+    /**
+     * Максимальный размер страницы идентификаторов документов при постраничном поиске.
+     */
+    private int maxPageSize = 10000;
+
+    /**
+     * Параметр {@code k1} формулы BM25: насколько быстро насыщается вклад повторных вхождений слова.
+     */
+    private double bm25K1 = 1.2;
+
+    /**
+     * Параметр {@code b} формулы BM25: степень нормализации вклада слова по длине документа (от 0 до 1).
+     */
+    private double bm25B = 0.75;
+
+}
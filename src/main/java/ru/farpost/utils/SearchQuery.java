@@ -0,0 +1,133 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс для разбора поискового запроса.
+ * Запрос состоит из условий, разделенных пробелами; все условия должны выполняться одновременно.
+ * Условие – слово или фраза в двойных кавычках; условие с префиксом {@code -} или после {@code NOT}
+ * исключает документы. Оператор {@code OR} разделяет запрос на альтернативы, каждая из которых
+ * должна содержать хотя бы одно не исключающее условие; оператор {@code AND} допускается и ничего не меняет.
+ * Слова условий нормализуются так же, как тексты документов; условия, состоящие только из стоп-слов, отбрасываются.
+ * Слово, которое разбивается нормализацией на несколько слов, ищется как фраза.
+ * <p>
+ * Пример: {@code кот "рыжий пес" -мышь OR попугай}.
+ */
+@Data
+public class SearchQuery {
+
+    /**
+     * Альтернативы запроса; документ подходит, если подходит хотя бы под одну из них.
+     */
+    private final List<Clause> clauses;
+
+    /**
+     * Метод для разбора текста поискового запроса.
+     *
+     * @param query текст запроса.
+     * @param textTokenizer компонент для нормализации слов запроса.
+     * @return разобранный запрос.
+     * @throws IllegalArgumentException если запрос пуст, содержит незакрытую кавычку,
+     * пустую альтернативу или альтернативу только из исключающих условий.
+     */
+    public static SearchQuery parse(String query, TextTokenizer textTokenizer) {
+        List<Clause> clauses = new ArrayList<>();
+        Clause clause = new Clause();
+        boolean hasRequired = false;
+        boolean negated = false;
+        int index = 0;
+        while (true) {
+            while (index < query.length() && Character.isWhitespace(query.charAt(index))) {
+                index++;
+            }
+            if (index == query.length()) {
+                break;
+            }
+            boolean itemNegated = negated;
+            negated = false;
+            if (query.charAt(index) == '-') {
+                itemNegated = true;
+                index++;
+            }
+            String item;
+            boolean phrase = index < query.length() && query.charAt(index) == '"';
+            if (phrase) {
+                int end = query.indexOf('"', index + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated phrase in search query");
+                }
+                item = query.substring(index + 1, end);
+                index = end + 1;
+            } else {
+                int end = index;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                item = query.substring(index, end);
+                index = end;
+            }
+            if (!phrase && !itemNegated) {
+                if (item.equals("OR")) {
+                    clauses.add(checkClause(clause, hasRequired));
+                    clause = new Clause();
+                    hasRequired = false;
+                    continue;
+                }
+                if (item.equals("AND")) {
+                    continue;
+                }
+                if (item.equals("NOT")) {
+                    negated = true;
+                    continue;
+                }
+            }
+            List<String> terms = textTokenizer.tokenize(item);
+            if (!itemNegated) {
+                hasRequired = true;
+            }
+            if (!terms.isEmpty()) {
+                (itemNegated ? clause.getExcluded() : clause.getRequired()).add(terms);
+            }
+        }
+        clauses.add(checkClause(clause, hasRequired));
+        return new SearchQuery(clauses);
+    }
+
+    /**
+     * Метод для проверки завершенной альтернативы запроса.
+     *
+     * @param clause альтернатива запроса.
+     * @param hasRequired содержит ли альтернатива хотя бы одно не исключающее условие до нормализации.
+     * @return альтернатива запроса.
+     */
+    private static Clause checkClause(Clause clause, boolean hasRequired) {
+        if (!hasRequired) {
+            throw new IllegalArgumentException("Search query clause has no required terms");
+        }
+        return clause;
+    }
+
+    /**
+     * Альтернатива поискового запроса.
+     * Каждое условие представлено списком нормализованных слов: одно слово или фраза из нескольких слов.
+     */
+    @Data
+    public static class Clause {
+
+        /**
+         * Условия, которым документ должен удовлетворять.
+         * Может быть пустым, если все условия состояли из стоп-слов; такой альтернативе не подходит ни один документ.
+         */
+        private final List<List<String>> required = new ArrayList<>();
+
+        /**
+         * Условия, которым документ не должен удовлетворять.
+         */
+        private final List<List<String>> excluded = new ArrayList<>();
+
+    }
+
+}
@@ -0,0 +1,623 @@
+package ru.farpost.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+
+/**
+ * Неизменяемый сегмент индекса документов в файле, отображаемом в память ({@link FileChannel#map}).
+ * Сегмент хранит для группы документов тексты в виде массивов идентификаторов нормализованных слов,
+ * отсортированный словарь слов сегмента и списки документов слов с количеством вхождений.
+ * Данные читаются напрямую из отображенного файла, без копирования в кучу, поэтому объем сегментов
+ * может превышать объем памяти: в памяти остаются только используемые страницы файла.
+ * <p>
+ * Формат файла (числа – big-endian):
+ * <pre>
+ * int магическое число, int версия, int documentCount, int termCount, int tokenCount, int postingCount,
+ * long[documentCount] идентификаторы документов по возрастанию,
+ * int[documentCount + 1] начала текстов документов в массиве слов,
+ * int[tokenCount] идентификаторы слов текстов,
+ * int[termCount + 1] начала слов в массиве байтов словаря,
+ * byte[] слова словаря в UTF-8 по возрастанию байтов,
+ * int[termCount + 1] начала списков документов слов,
+ * int[postingCount] порядковые номера документов списков по возрастанию,
+ * int[postingCount] количество вхождений слова в документы списков.
+ * </pre>
+ * Размер файла ограничен {@code 2 ГБ}.
+ */
+public class Segment {
+
+    /**
+     * Магическое число файла сегмента ({@code SEG1}).
+     */
+    private static final int MAGIC = 0x53454731;
+
+    /**
+     * Версия формата файла.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Размер заголовка файла в байтах.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Содержимое файла.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Количество документов.
+     */
+    private final int documentCount;
+
+    /**
+     * Количество слов словаря.
+     */
+    private final int termCount;
+
+    /**
+     * Смещение идентификаторов документов.
+     */
+    private final int documentIdsOffset;
+
+    /**
+     * Смещение начал текстов документов.
+     */
+    private final int tokenStartsOffset;
+
+    /**
+     * Смещение идентификаторов слов текстов.
+     */
+    private final int tokensOffset;
+
+    /**
+     * Смещение начал слов словаря.
+     */
+    private final int termStartsOffset;
+
+    /**
+     * Смещение байтов слов словаря.
+     */
+    private final int termBytesOffset;
+
+    /**
+     * Смещение начал списков документов.
+     */
+    private final int postingStartsOffset;
+
+    /**
+     * Смещение порядковых номеров документов списков.
+     */
+    private final int postingDocumentsOffset;
+
+    /**
+     * Смещение количества вхождений слов списков.
+     */
+    private final int postingFrequenciesOffset;
+
+    /**
+     * Конструктор для чтения сегмента из содержимого файла.
+     *
+     * @param buffer содержимое файла.
+     * @throws IOException если файл не является сегментом.
+     */
+    private Segment(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a segment file");
+        }
+        this.buffer = buffer;
+        this.documentCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        int tokenCount = buffer.getInt(16);
+        int postingCount = buffer.getInt(20);
+        this.documentIdsOffset = HEADER_SIZE;
+        this.tokenStartsOffset = documentIdsOffset + Long.BYTES * documentCount;
+        this.tokensOffset = tokenStartsOffset + Integer.BYTES * (documentCount + 1);
+        this.termStartsOffset = tokensOffset + Integer.BYTES * tokenCount;
+        this.termBytesOffset = termStartsOffset + Integer.BYTES * (termCount + 1);
+        this.postingStartsOffset = termBytesOffset + buffer.getInt(termStartsOffset + Integer.BYTES * termCount);
+        this.postingDocumentsOffset = postingStartsOffset + Integer.BYTES * (termCount + 1);
+        this.postingFrequenciesOffset = postingDocumentsOffset + Integer.BYTES * postingCount;
+        if (postingFrequenciesOffset + Integer.BYTES * postingCount != buffer.capacity()) {
+            throw new IOException("Corrupted segment file");
+        }
+    }
+
+    /**
+     * Метод для открытия файла сегмента.
+     *
+     * @param file путь к файлу.
+     * @return сегмент, отображенный в память.
+     * @throws IOException если файл не удалось прочитать или он не является сегментом.
+     */
+    public static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Метод для записи сегмента из текстов документов.
+     *
+     * @param file путь к файлу.
+     * @param documents нормализованные слова текстов документов по идентификаторам документов.
+     * @throws IOException если файл не удалось записать.
+     */
+    public static void write(Path file, SortedMap<Long, List<String>> documents) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        long[] documentIds = new long[documents.size()];
+        int[] tokenStarts = new int[documents.size() + 1];
+        int[] tokens = new int[documents.values().stream().mapToInt(List::size).sum()];
+        int document = 0;
+        int token = 0;
+        for (Map.Entry<Long, List<String>> entry : documents.entrySet()) {
+            documentIds[document++] = entry.getKey();
+            for (String term : entry.getValue()) {
+                Integer id = ids.get(term);
+                if (id == null) {
+                    id = terms.size();
+                    ids.put(term, id);
+                    terms.add(term);
+                }
+                tokens[token++] = id;
+            }
+            tokenStarts[document] = token;
+        }
+
+        byte[][] termBytes = new byte[terms.size()][];
+        for (int i = 0; i < termBytes.length; i++) {
+            termBytes[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] order = new Integer[termBytes.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (first, second) -> Arrays.compareUnsigned(termBytes[first], termBytes[second]));
+        int[] remap = new int[order.length];
+        byte[][] sorted = new byte[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            remap[order[i]] = i;
+            sorted[i] = termBytes[order[i]];
+        }
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = remap[tokens[i]];
+        }
+        writeFile(file, documentIds, tokenStarts, tokens, sorted);
+    }
+
+    /**
+     * Метод для слияния сегментов в один.
+     * В новый сегмент попадают только действующие документы; слова, не встречающиеся в них, отбрасываются.
+     * Каждый документ должен быть действующим не более чем в одном из сегментов.
+     *
+     * @param file путь к файлу нового сегмента.
+     * @param sources сливаемые сегменты.
+     * @param deleted удаленные (замененные более новыми версиями) документы сегментов по их порядковым номерам.
+     * @throws IOException если файл не удалось записать.
+     */
+    public static void merge(Path file, List<Segment> sources, List<BitSet> deleted) throws IOException {
+        int documents = 0;
+        int tokenCount = 0;
+        boolean[][] used = new boolean[sources.size()][];
+        for (int s = 0; s < sources.size(); s++) {
+            Segment source = sources.get(s);
+            used[s] = new boolean[source.termCount];
+            for (int ordinal = 0; ordinal < source.documentCount; ordinal++) {
+                if (deleted.get(s).get(ordinal)) {
+                    continue;
+                }
+                documents++;
+                int end = source.tokenStart(ordinal + 1);
+                for (int i = source.tokenStart(ordinal); i < end; i++) {
+                    used[s][source.token(i)] = true;
+                }
+                tokenCount += end - source.tokenStart(ordinal);
+            }
+        }
+
+        int[][] remap = new int[sources.size()][];
+        List<byte[]> terms = new ArrayList<>();
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((first, second) -> Arrays.compareUnsigned(
+                sources.get(first[0]).termBytes(first[1]), sources.get(second[0]).termBytes(second[1])));
+        for (int s = 0; s < sources.size(); s++) {
+            remap[s] = new int[sources.get(s).termCount];
+            int first = nextUsed(used[s], 0);
+            if (first < used[s].length) {
+                cursors.add(new int[]{s, first});
+            }
+        }
+        byte[] previous = null;
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            byte[] term = sources.get(cursor[0]).termBytes(cursor[1]);
+            if (previous == null || !Arrays.equals(previous, term)) {
+                terms.add(term);
+                previous = term;
+            }
+            remap[cursor[0]][cursor[1]] = terms.size() - 1;
+            cursor[1] = nextUsed(used[cursor[0]], cursor[1] + 1);
+            if (cursor[1] < used[cursor[0]].length) {
+                cursors.add(cursor);
+            }
+        }
+
+        long[] documentIds = new long[documents];
+        int[] tokenStarts = new int[documents + 1];
+        int[] tokens = new int[tokenCount];
+        int document = 0;
+        int token = 0;
+        PriorityQueue<int[]> next = new PriorityQueue<>((first, second) -> Long.compare(
+                sources.get(first[0]).documentId(first[1]), sources.get(second[0]).documentId(second[1])));
+        for (int s = 0; s < sources.size(); s++) {
+            int first = deleted.get(s).nextClearBit(0);
+            if (first < sources.get(s).documentCount) {
+                next.add(new int[]{s, first});
+            }
+        }
+        while (!next.isEmpty()) {
+            int[] cursor = next.poll();
+            Segment source = sources.get(cursor[0]);
+            documentIds[document++] = source.documentId(cursor[1]);
+            int end = source.tokenStart(cursor[1] + 1);
+            for (int i = source.tokenStart(cursor[1]); i < end; i++) {
+                tokens[token++] = remap[cursor[0]][source.token(i)];
+            }
+            tokenStarts[document] = token;
+            cursor[1] = deleted.get(cursor[0]).nextClearBit(cursor[1] + 1);
+            if (cursor[1] < source.documentCount) {
+                next.add(cursor);
+            }
+        }
+        writeFile(file, documentIds, tokenStarts, tokens, terms.toArray(new byte[0][]));
+    }
+
+    /**
+     * Метод для поиска следующего используемого слова.
+     *
+     * @param used признаки использования слов.
+     * @param from индекс, с которого начинается поиск.
+     * @return индекс следующего используемого слова или длина массива, если таких нет.
+     */
+    private static int nextUsed(boolean[] used, int from) {
+        while (from < used.length && !used[from]) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Метод для записи файла сегмента.
+     * Файл записывается во временный файл и переименовывается, поэтому читатели никогда не видят его частично.
+     *
+     * @param file путь к файлу.
+     * @param documentIds идентификаторы документов по возрастанию.
+     * @param tokenStarts начала текстов документов в массиве слов.
+     * @param tokens идентификаторы слов текстов.
+     * @param terms слова словаря в UTF-8 по возрастанию байтов.
+     * @throws IOException если файл не удалось записать.
+     */
+    private static void writeFile(Path file, long[] documentIds, int[] tokenStarts, int[] tokens,
+                                  byte[][] terms) throws IOException {
+        int[] postingStarts = new int[terms.length + 1];
+        int[] frequencies = new int[terms.length];
+        for (int document = 0; document < documentIds.length; document++) {
+            for (int i = tokenStarts[document]; i < tokenStarts[document + 1]; i++) {
+                if (frequencies[tokens[i]]++ == 0) {
+                    postingStarts[tokens[i] + 1]++;
+                }
+            }
+            for (int i = tokenStarts[document]; i < tokenStarts[document + 1]; i++) {
+                frequencies[tokens[i]] = 0;
+            }
+        }
+        for (int i = 0; i < terms.length; i++) {
+            postingStarts[i + 1] += postingStarts[i];
+        }
+        int postingCount = postingStarts[terms.length];
+        int[] postingDocuments = new int[postingCount];
+        int[] postingFrequencies = new int[postingCount];
+        int[] fill = Arrays.copyOf(postingStarts, terms.length);
+        for (int document = 0; document < documentIds.length; document++) {
+            for (int i = tokenStarts[document]; i < tokenStarts[document + 1]; i++) {
+                frequencies[tokens[i]]++;
+            }
+            for (int i = tokenStarts[document]; i < tokenStarts[document + 1]; i++) {
+                int term = tokens[i];
+                if (frequencies[term] > 0) {
+                    postingDocuments[fill[term]] = document;
+                    postingFrequencies[fill[term]++] = frequencies[term];
+                    frequencies[term] = 0;
+                }
+            }
+        }
+
+        long termBytesLength = 0;
+        for (byte[] term : terms) {
+            termBytesLength += term.length;
+        }
+        long size = HEADER_SIZE + (long) Long.BYTES * documentIds.length
+                + (long) Integer.BYTES * (tokenStarts.length + tokens.length + terms.length + 1) + termBytesLength
+                + (long) Integer.BYTES * (postingStarts.length + 2L * postingCount);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Segment is too large: " + size + " bytes");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(documentIds.length);
+            output.writeInt(terms.length);
+            output.writeInt(tokens.length);
+            output.writeInt(postingCount);
+            for (long documentId : documentIds) {
+                output.writeLong(documentId);
+            }
+            writeInts(output, tokenStarts);
+            writeInts(output, tokens);
+            int termStart = 0;
+            output.writeInt(termStart);
+            for (byte[] term : terms) {
+                termStart += term.length;
+                output.writeInt(termStart);
+            }
+            for (byte[] term : terms) {
+                output.write(term);
+            }
+            writeInts(output, postingStarts);
+            writeInts(output, postingDocuments);
+            writeInts(output, postingFrequencies);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Метод для записи массива чисел.
+     *
+     * @param output поток записи.
+     * @param values числа.
+     * @throws IOException если числа не удалось записать.
+     */
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    /**
+     * Метод для получения количества документов сегмента.
+     *
+     * @return количество документов.
+     */
+    public int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Метод для получения идентификатора документа по его порядковому номеру.
+     *
+     * @param ordinal порядковый номер документа в сегменте.
+     * @return идентификатор документа.
+     */
+    public long documentId(int ordinal) {
+        return buffer.getLong(documentIdsOffset + Long.BYTES * ordinal);
+    }
+
+    /**
+     * Метод для поиска порядкового номера документа по его идентификатору.
+     *
+     * @param documentId идентификатор документа.
+     * @return порядковый номер документа или {@code -1}, если документа в сегменте нет.
+     */
+    public int findDocument(long documentId) {
+        int low = 0;
+        int high = documentCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = documentId(middle);
+            if (id < documentId) {
+                low = middle + 1;
+            } else if (id > documentId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Метод для получения текста документа в виде идентификаторов слов словаря сегмента.
+     *
+     * @param ordinal порядковый номер документа в сегменте.
+     * @return идентификаторы слов текста по порядку.
+     */
+    public int[] tokens(int ordinal) {
+        int start = tokenStart(ordinal);
+        int[] tokens = new int[tokenStart(ordinal + 1) - start];
+        buffer.slice(tokensOffset + Integer.BYTES * start, Integer.BYTES * tokens.length).asIntBuffer().get(tokens);
+        return tokens;
+    }
+
+    /**
+     * Метод для получения количества слов словаря сегмента.
+     *
+     * @return количество слов.
+     */
+    public int termCount() {
+        return termCount;
+    }
+
+    /**
+     * Метод для получения слова словаря по его идентификатору.
+     *
+     * @param termId идентификатор слова в сегменте.
+     * @return слово.
+     */
+    public String term(int termId) {
+        return new String(termBytes(termId), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Метод для поиска идентификатора слова в словаре сегмента.
+     *
+     * @param term нормализованное слово.
+     * @return идентификатор слова или {@code -1}, если слова в сегменте нет.
+     */
+    public int findTerm(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int start = termStart(middle);
+            int result = compareUnsigned(start, termStart(middle + 1) - start, key);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Метод для получения количества документов сегмента, содержащих слово.
+     *
+     * @param termId идентификатор слова в сегменте.
+     * @return количество документов.
+     */
+    public int documentFrequency(int termId) {
+        return postingStart(termId + 1) - postingStart(termId);
+    }
+
+    /**
+     * Метод для обхода списка документов слова в порядке возрастания идентификаторов документов.
+     *
+     * @param termId идентификатор слова в сегменте.
+     * @param consumer получатель порядкового номера документа и количества вхождений слова в него.
+     */
+    public void forEachPosting(int termId, PostingConsumer consumer) {
+        int end = postingStart(termId + 1);
+        for (int i = postingStart(termId); i < end; i++) {
+            consumer.accept(buffer.getInt(postingDocumentsOffset + Integer.BYTES * i),
+                    buffer.getInt(postingFrequenciesOffset + Integer.BYTES * i));
+        }
+    }
+
+    /**
+     * Метод для получения размера файла сегмента.
+     *
+     * @return размер в байтах.
+     */
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Метод для получения начала слов документа в массиве слов.
+     *
+     * @param ordinal порядковый номер документа в сегменте.
+     * @return индекс первого слова документа.
+     */
+    private int tokenStart(int ordinal) {
+        return buffer.getInt(tokenStartsOffset + Integer.BYTES * ordinal);
+    }
+
+    /**
+     * Метод для получения идентификатора слова из массива слов документов.
+     *
+     * @param index индекс в массиве слов.
+     * @return идентификатор слова.
+     */
+    private int token(int index) {
+        return buffer.getInt(tokensOffset + Integer.BYTES * index);
+    }
+
+    /**
+     * Метод для получения смещения байтов слова словаря.
+     *
+     * @param termId идентификатор слова.
+     * @return смещение байтов слова.
+     */
+    private int termStart(int termId) {
+        return buffer.getInt(termStartsOffset + Integer.BYTES * termId);
+    }
+
+    /**
+     * Метод для получения начала списка документов слова.
+     *
+     * @param termId идентификатор слова.
+     * @return индекс первого элемента списка документов слова.
+     */
+    private int postingStart(int termId) {
+        return buffer.getInt(postingStartsOffset + Integer.BYTES * termId);
+    }
+
+    /**
+     * Метод для получения байтов слова словаря.
+     *
+     * @param termId идентификатор слова в сегменте.
+     * @return слово в UTF-8.
+     */
+    private byte[] termBytes(int termId) {
+        int start = termStart(termId);
+        byte[] bytes = new byte[termStart(termId + 1) - start];
+        buffer.get(termBytesOffset + start, bytes);
+        return bytes;
+    }
+
+    /**
+     * Метод для сравнения слова словаря с ключом без копирования слова.
+     *
+     * @param start начало слова в массиве байтов словаря.
+     * @param length длина слова в байтах.
+     * @param key ключ в UTF-8.
+     * @return результат беззнакового сравнения байтов слова и ключа.
+     */
+    private int compareUnsigned(int start, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int result = Integer.compare(buffer.get(termBytesOffset + start + i) & 0xFF, key[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Получатель записи списка документов слова.
+     */
+    @FunctionalInterface
+    public interface PostingConsumer {
+
+        /**
+         * Метод для обработки записи списка.
+         *
+         * @param ordinal порядковый номер документа в сегменте.
+         * @param frequency количество вхождений слова в документ.
+         */
+        void accept(int ordinal, int frequency);
+
+    }
+
+}
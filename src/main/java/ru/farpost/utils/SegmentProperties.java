@@ -0,0 +1,42 @@
+package ru.farpost.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Класс для хранения настроек сегментов индекса в файлах, отображаемых в память.
+ * Загружает настройки из конфигурационного файла {@code application.yaml} с префиксом {@code segments}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "segments")
+public class SegmentProperties {
+
+    /**
+     * Признак использования сегментов. Если сегменты выключены, все запросы выполняются по БД.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Каталог файлов сегментов.
+     */
+    private String directory = "data/segments";
+
+    /**
+     * Количество сегментов, при превышении которого наименьшие сегменты сливаются в один.
+     */
+    private int mergeFactor = 10;
+
+    /**
+     * Максимальный размер сегмента, получаемого слиянием, в байтах.
+     * Размер файла отображения ограничен {@code 2 ГБ}, а при слиянии данные сегмента собираются в памяти.
+     */
+    private long maxSegmentBytes = 256L * 1024 * 1024;
+
+    /**
+     * Количество документов в сегменте при перестроении сегментов по всем документам БД.
+     */
+    private int rebuildDocuments = 10000;
+
+}
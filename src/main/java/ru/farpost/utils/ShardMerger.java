@@ -0,0 +1,172 @@
+package ru.farpost.utils;
+
+import ru.farpost.dto.DocumentIdsPageDTO;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.dto.StatisticTotalsDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Класс для объединения частичных результатов, полученных от узлов кластера.
+ * Документы распределены между узлами без пересечений, поэтому списки документов объединяются слиянием,
+ * а счетчики – сложением.
+ */
+public final class ShardMerger {
+
+    /**
+     * Закрытый конструктор: класс содержит только статические методы.
+     */
+    private ShardMerger() {
+    }
+
+    /**
+     * Метод для слияния возрастающих последовательностей идентификаторов документов.
+     * Последовательности читаются по мере слияния, поэтому их не нужно загружать целиком.
+     *
+     * @param sources возрастающие последовательности идентификаторов.
+     * @param consumer получатель идентификаторов в порядке возрастания, без повторов.
+     * @return количество переданных идентификаторов.
+     */
+    public static long mergeSorted(List<? extends Iterator<Long>> sources, LongConsumer consumer) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sources.size()), Comparator.comparingLong(head -> head.value));
+        for (Iterator<Long> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head(source.next(), source));
+            }
+        }
+        long count = 0;
+        Long last = null;
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            if (last == null || head.value != last) {
+                consumer.accept(head.value);
+                last = head.value;
+                count++;
+            }
+            if (head.source.hasNext()) {
+                head.value = head.source.next();
+                heads.add(head);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Метод для объединения списков идентификаторов документов, упорядоченных по возрастанию.
+     *
+     * @param parts списки идентификаторов узлов.
+     * @return объединенный список по возрастанию.
+     */
+    public static List<Long> mergeIds(List<List<Long>> parts) {
+        List<Long> result = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        mergeSorted(parts.stream().map(List::iterator).toList(), result::add);
+        return result;
+    }
+
+    /**
+     * Метод для объединения страниц идентификаторов документов, запрошенных у узлов с одинаковыми
+     * {@code after} и {@code limit}. Объединенная страница содержит первые {@code limit} идентификаторов,
+     * курсор следующей страницы вычисляется так же, как для одного узла.
+     *
+     * @param pages страницы узлов.
+     * @param limit размер страницы.
+     * @return объединенная страница.
+     */
+    public static DocumentIdsPageDTO mergePages(List<DocumentIdsPageDTO> pages, int limit) {
+        List<Long> ids = mergeIds(pages.stream().map(DocumentIdsPageDTO::getIds).toList());
+        boolean more = ids.size() > limit || pages.stream().anyMatch(page -> page.getNext() != null);
+        List<Long> page = ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+        Long next = more && page.size() == limit ? page.getLast() : null;
+        return new DocumentIdsPageDTO(page, next);
+    }
+
+    /**
+     * Метод для объединения результатов ранжированного поиска узлов.
+     * Каждый узел оценивает релевантность по статистике своей части корпуса, которая при распределении
+     * документов по хешу близка к статистике всего корпуса.
+     *
+     * @param parts результаты узлов.
+     * @param k количество документов в результате.
+     * @return до {@code k} документов по убыванию релевантности.
+     */
+    public static List<ScoredDocumentDTO> mergeRanked(List<List<ScoredDocumentDTO>> parts, int k) {
+        TopKSelector<ScoredDocumentDTO> selector = new TopKSelector<>(k, Bm25Ranker.ORDER);
+        parts.forEach(part -> part.forEach(selector::offer));
+        return selector.toList();
+    }
+
+    /**
+     * Метод для объединения частот наиболее часто встречающихся слов или n-грамм узлов.
+     * Частоты одного слова на разных узлах складываются.
+     *
+     * @param parts частоты узлов.
+     * @param k количество слов в результате.
+     * @return карта {@code k} слов с наибольшей частотой в порядке убывания частоты (при равной частоте – по алфавиту).
+     */
+    public static Map<String, Long> mergeCounts(List<Map<String, Long>> parts, int k) {
+        Map<String, Long> counts = new HashMap<>();
+        parts.forEach(part -> part.forEach((term, count) -> counts.merge(term, count, Long::sum)));
+        TopKSelector<Map.Entry<String, Long>> selector = new TopKSelector<>(k,
+                Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        counts.entrySet().forEach(selector::offer);
+        Map<String, Long> result = new LinkedHashMap<>();
+        selector.toList().forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * Метод для объединения сумм статистики узлов.
+     * Если документы есть на нескольких узлах или нужна приближенная статистика, количество уникальных слов
+     * оценивается объединением оценок {@code HyperLogLog} узлов (см. {@link StatisticTotalsDTO#merge(StatisticTotalsDTO)}).
+     *
+     * @param parts суммы статистики узлов, на которых есть документы.
+     * @param approx {@code true}, если количество уникальных слов нужно оценить приближенно.
+     * @return карта, содержащая статистику в формате {@link StatisticTotalsDTO#toStatistic()}.
+     */
+    public static Map<String, Integer> mergeStatistics(List<StatisticTotalsDTO> parts, boolean approx) {
+        StatisticTotalsDTO totals = new StatisticTotalsDTO();
+        totals.setUniqueWordsSketch(new HyperLogLog().toByteArray());
+        parts.forEach(totals::merge);
+        if (!approx && parts.size() == 1) {
+            totals.setUniqWordCount(parts.getFirst().getUniqWordCount());
+        }
+        return totals.toStatistic();
+    }
+
+    /**
+     * Текущий элемент последовательности при слиянии.
+     */
+    private static final class Head {
+
+        /**
+         * Текущее значение последовательности.
+         */
+        private long value;
+
+        /**
+         * Оставшиеся значения последовательности.
+         */
+        private final Iterator<Long> source;
+
+        /**
+         * Конструктор для создания текущего элемента последовательности.
+         *
+         * @param value  текущее значение последовательности.
+         * @param source оставшиеся значения последовательности.
+         */
+        private Head(long value, Iterator<Long> source) {
+            this.value = value;
+            this.source = source;
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package ru.farpost.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс для приближенного подсчета наиболее часто встречающихся слов потока (алгоритм Space-Saving).
+ * Хранит не более {@code capacity} счетчиков. Когда встречается новое слово, а все счетчики заняты,
+ * вытесняется слово с наименьшим счетчиком, и новое слово продолжает его значение.
+ * Оценка частоты слова завышена не более чем на {@code N / capacity}, где {@code N} – суммарный вес потока,
+ * а любое слово с частотой больше {@code N / capacity} гарантированно присутствует среди счетчиков.
+ * Счетчики хранятся в двоичной куче по возрастанию значения, поэтому обновление выполняется за {@code O(log capacity)}.
+ * Класс не потокобезопасен.
+ */
+public class SpaceSavingSketch {
+
+    /**
+     * Максимальное количество счетчиков.
+     */
+    private final int capacity;
+
+    /**
+     * Счетчики по словам.
+     */
+    private final Map<String, Counter> counters;
+
+    /**
+     * Двоичная куча счетчиков с наименьшим значением на вершине.
+     */
+    private final Counter[] heap;
+
+    /**
+     * Количество занятых счетчиков.
+     */
+    private int size;
+
+    /**
+     * Конструктор для создания экземпляра.
+     *
+     * @param capacity максимальное количество счетчиков.
+     */
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Метод для учета вхождений слова.
+     *
+     * @param term слово.
+     * @param weight количество вхождений.
+     */
+    public void add(String term, long weight) {
+        Counter counter = counters.get(term);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+        } else if (size < capacity) {
+            counter = new Counter(term, weight, size);
+            counters.put(term, counter);
+            heap[size++] = counter;
+            siftUp(counter.position);
+        } else if (capacity > 0) {
+            counter = heap[0];
+            counters.remove(counter.term);
+            counter.count += weight;
+            counter.term = term;
+            counters.put(term, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Метод для вычитания вхождений слова, например при удалении или перезаписи документа.
+     * Если слова нет среди счетчиков, его вхождения уже учтены только в погрешности других слов, и оценки не меняются.
+     *
+     * @param term слово.
+     * @param weight количество вхождений.
+     */
+    public void subtract(String term, long weight) {
+        Counter counter = counters.get(term);
+        if (counter == null) {
+            return;
+        }
+        counter.count = Math.max(0, counter.count - weight);
+        siftUp(counter.position);
+    }
+
+    /**
+     * Метод для получения {@code k} слов с наибольшей оценкой частоты.
+     *
+     * @param k количество слов в результате.
+     * @return карта слов и оценок их частоты в порядке убывания оценки (при равной оценке – по алфавиту).
+     */
+    public Map<String, Long> top(int k) {
+        TopKSelector<Counter> selector = new TopKSelector<>(k, (o1, o2) -> {
+            int result = Long.compare(o2.count, o1.count);
+            return result != 0 ? result : o1.term.compareTo(o2.term);
+        });
+        for (int i = 0; i < size; i++) {
+            if (heap[i].count > 0) {
+                selector.offer(heap[i]);
+            }
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Counter counter : selector.toList()) {
+            result.put(counter.term, counter.count);
+        }
+        return result;
+    }
+
+    /**
+     * Метод для объединения с другим экземпляром, например построенным по другой части корпуса.
+     * Счетчики другого экземпляра добавляются как вхождения соответствующих слов.
+     *
+     * @param other другой экземпляр.
+     */
+    public void merge(SpaceSavingSketch other) {
+        List<Counter> others = new ArrayList<>(other.size);
+        for (int i = 0; i < other.size; i++) {
+            others.add(other.heap[i]);
+        }
+        for (Counter counter : others) {
+            add(counter.term, counter.count);
+        }
+    }
+
+    /**
+     * Метод для восстановления порядка кучи от узла к вершине.
+     *
+     * @param position позиция узла.
+     */
+    private void siftUp(int position) {
+        Counter counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+
+    /**
+     * Метод для восстановления порядка кучи от узла к листьям.
+     *
+     * @param position позиция узла.
+     */
+    private void siftDown(int position) {
+        Counter counter = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+
+    /**
+     * Метод для размещения счетчика в позиции кучи.
+     *
+     * @param counter счетчик.
+     * @param position позиция.
+     */
+    private void place(Counter counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+
+    /**
+     * Счетчик слова.
+     */
+    private static final class Counter {
+
+        /**
+         * Слово.
+         */
+        private String term;
+
+        /**
+         * Оценка частоты слова.
+         */
+        private long count;
+
+        /**
+         * Позиция счетчика в куче.
+         */
+        private int position;
+
+        /**
+         * Конструктор для создания счетчика слова.
+         *
+         * @param term     слово.
+         * @param count    оценка частоты слова.
+         * @param position позиция счетчика в куче.
+         */
+        private Counter(String term, long count, int position) {
+            this.term = term;
+            this.count = count;
+            this.position = position;
+        }
+
+    }
+
+}
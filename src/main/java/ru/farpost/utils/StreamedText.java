@@ -0,0 +1,260 @@
+package ru.farpost.utils;
+
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.function.IntFunction;
+
+/**
+ * Поток байтов текста документа в UTF-8, читаемого из {@link Reader} частями фиксированного размера.
+ * Каждая прочитанная часть передается сеансу разбора {@link TextTokenizer} (слово или предложение, разрезанное
+ * границей частей, продолжается следующей частью), учитывается в хеше текста ({@link ContentHash})
+ * и кодируется в UTF-8 для записи в БД; суррогатная пара, разрезанная границей, кодируется вместе со следующей частью.
+ * В памяти одновременно находится одна часть текста; результат разбора, хеш и длина текста доступны после
+ * чтения потока до конца. Результат разбора растет вместе с текстом, поэтому длина текста ограничена: если она
+ * превышает заданную, чтение прерывается исключением {@link ErrorResponse} с сообщением
+ * {@link ExceptionsMessage#DOCUMENT_TOO_LARGE}. Поток не является потокобезопасным.
+ */
+public class StreamedText extends InputStream {
+
+    /**
+     * Поток текста документа.
+     */
+    private final Reader reader;
+
+    /**
+     * Буфер для части текста; кроме прочитанной части может содержать начало суррогатной пары из предыдущей.
+     */
+    private final char[] chunk;
+
+    /**
+     * Символы буфера, еще не закодированные в UTF-8.
+     */
+    private final CharBuffer chars;
+
+    /**
+     * Закодированные в UTF-8 байты, еще не прочитанные из потока.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Кодировщик текста в UTF-8; некорректные символы заменяются так же, как в {@link String#getBytes}.
+     */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Сеанс разбора текста.
+     */
+    private final TextTokenizer.Session session;
+
+    /**
+     * Функция для построения результата разбора по количеству предложений.
+     */
+    private final IntFunction<TextAnalysisDTO> analysis;
+
+    /**
+     * Максимальная длина текста в символах.
+     */
+    private final long maxLength;
+
+    /**
+     * Объект для вычисления хеша текста.
+     */
+    private final MessageDigest digest = ContentHash.digest();
+
+    /**
+     * Длина прочитанного текста в символах.
+     */
+    private long length;
+
+    /**
+     * Признак того, что прочитанный текст состоит только из пробельных символов.
+     */
+    private boolean blank = true;
+
+    /**
+     * Признак того, что текст прочитан из {@link #reader} до конца.
+     */
+    private boolean endOfInput;
+
+    /**
+     * Результат разбора текста; вычисляется после чтения потока до конца.
+     */
+    private TextAnalysisDTO result;
+
+    /**
+     * Хеш текста; вычисляется после чтения потока до конца.
+     */
+    private long contentHash;
+
+    /**
+     * Конструктор для создания потока.
+     *
+     * @param reader поток текста документа.
+     * @param chunkSize размер части текста в символах.
+     * @param maxLength максимальная длина текста в символах.
+     * @param session сеанс разбора текста.
+     * @param analysis функция для построения результата разбора по количеству предложений.
+     */
+    StreamedText(Reader reader, int chunkSize, long maxLength, TextTokenizer.Session session,
+                 IntFunction<TextAnalysisDTO> analysis) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+        this.chunk = new char[Math.max(chunkSize, 2)];
+        this.chars = CharBuffer.wrap(chunk).limit(0);
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(chunk.length * encoder.maxBytesPerChar())).limit(0);
+        this.session = session;
+        this.analysis = analysis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        return fill() ? bytes.get() & 0xFF : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(count, bytes.remaining());
+        bytes.get(buffer, offset, read);
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Метод для чтения и обработки следующей части текста, если прочитанные байты закончились.
+     *
+     * @return {@code false}, если текст прочитан до конца.
+     * @throws IOException если текст не удалось прочитать.
+     * @throws ErrorResponse если текст длиннее максимальной длины.
+     */
+    private boolean fill() throws IOException {
+        while (!bytes.hasRemaining()) {
+            if (endOfInput) {
+                finish();
+                return false;
+            }
+            chars.compact();
+            int start = chars.position();
+            int count = reader.read(chunk, start, chars.remaining());
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                if (length + count > maxLength) {
+                    throw new ErrorResponse(ExceptionsMessage.DOCUMENT_TOO_LARGE);
+                }
+                session.feed(chunk, start, count);
+                for (int i = start; blank && i < start + count; i++) {
+                    blank = Character.isWhitespace(chunk[i]);
+                }
+                length += count;
+                chars.position(start + count);
+            }
+            chars.flip();
+            bytes.clear();
+            encoder.encode(chars, bytes, endOfInput);
+            if (endOfInput) {
+                encoder.flush(bytes);
+            }
+            bytes.flip();
+            digest.update(bytes.array(), 0, bytes.limit());
+        }
+        return true;
+    }
+
+    /**
+     * Метод для завершения разбора и вычисления хеша текста после чтения потока до конца.
+     */
+    private void finish() {
+        if (result == null) {
+            result = analysis.apply(session.finish());
+            contentHash = ContentHash.of(digest.digest());
+        }
+    }
+
+    /**
+     * Метод для получения результата разбора текста.
+     *
+     * @return объект {@link TextAnalysisDTO} с результатами разбора.
+     * @throws IllegalStateException если поток не прочитан до конца.
+     */
+    public TextAnalysisDTO getAnalysis() {
+        checkFinished();
+        return result;
+    }
+
+    /**
+     * Метод для получения хеша текста (см. {@link ContentHash}).
+     *
+     * @return хеш текста.
+     * @throws IllegalStateException если поток не прочитан до конца.
+     */
+    public long getContentHash() {
+        checkFinished();
+        return contentHash;
+    }
+
+    /**
+     * Метод для получения длины текста.
+     *
+     * @return длина текста в символах.
+     * @throws IllegalStateException если поток не прочитан до конца.
+     */
+    public long getLength() {
+        checkFinished();
+        return length;
+    }
+
+    /**
+     * Метод для проверки, что текст пуст или состоит только из пробельных символов.
+     *
+     * @return {@code true}, если текст пуст или состоит только из пробельных символов.
+     * @throws IllegalStateException если поток не прочитан до конца.
+     */
+    public boolean isBlank() {
+        checkFinished();
+        return blank;
+    }
+
+    /**
+     * Метод для проверки, что поток прочитан до конца.
+     *
+     * @throws IllegalStateException если поток не прочитан до конца.
+     */
+    private void checkFinished() {
+        if (result == null) {
+            throw new IllegalStateException("Text has not been read to the end");
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package ru.farpost.utils;
+
+import java.util.Arrays;
+
+/**
+ * Счетчики вхождений слов одного текста по идентификаторам общего словаря ({@link TermDictionary}).
+ * Каждому встреченному слову присваивается локальный номер в порядке первого вхождения, а счетчики хранятся
+ * в массиве по локальным номерам, поэтому подсчет не упаковывает числа и не создает объект для каждого слова.
+ * Соответствие идентификаторов словаря локальным номерам хранится в хеш-таблице с открытой адресацией.
+ */
+public class TermCounts {
+
+    /**
+     * Ячейки хеш-таблицы: локальный номер слова, увеличенный на единицу ({@code 0} – пустая ячейка).
+     */
+    private int[] slots = new int[32];
+
+    /**
+     * Идентификаторы слов словаря по локальным номерам.
+     */
+    private int[] termIds = new int[16];
+
+    /**
+     * Количество вхождений слов по локальным номерам.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * Количество различных слов.
+     */
+    private int size;
+
+    /**
+     * Метод для учета вхождения слова.
+     *
+     * @param termId идентификатор слова в словаре.
+     * @return локальный номер слова.
+     */
+    public int add(int termId) {
+        int mask = slots.length - 1;
+        int slot = spread(termId) & mask;
+        while (slots[slot] != 0) {
+            int local = slots[slot] - 1;
+            if (termIds[local] == termId) {
+                counts[local]++;
+                return local;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == termIds.length) {
+            termIds = Arrays.copyOf(termIds, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        int local = size++;
+        termIds[local] = termId;
+        counts[local] = 1;
+        slots[slot] = local + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return local;
+    }
+
+    /**
+     * Метод для получения количества различных слов.
+     *
+     * @return количество слов.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Метод для получения идентификатора слова в словаре по локальному номеру.
+     *
+     * @param local локальный номер слова.
+     * @return идентификатор слова.
+     */
+    public int termId(int local) {
+        return termIds[local];
+    }
+
+    /**
+     * Метод для получения количества вхождений слова по локальному номеру.
+     *
+     * @param local локальный номер слова.
+     * @return количество вхождений.
+     */
+    public int count(int local) {
+        return counts[local];
+    }
+
+    /**
+     * Метод для увеличения хеш-таблицы вдвое.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int local = 0; local < size; local++) {
+            int slot = spread(termIds[local]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = local + 1;
+        }
+    }
+
+    /**
+     * Метод для перемешивания битов идентификатора слова перед выбором ячейки.
+     *
+     * @param termId идентификатор слова.
+     * @return перемешанное значение.
+     */
+    private static int spread(int termId) {
+        return termId * 0x9E3779B1 ^ termId >>> 16;
+    }
+
+}
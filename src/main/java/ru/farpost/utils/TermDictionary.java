@@ -0,0 +1,279 @@
+package ru.farpost.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Общий словарь нормализованных слов, присваивающий каждому слову плотный целочисленный идентификатор.
+ * Тексты обрабатываются как массивы идентификаторов, а подсчеты выполняются в массивах чисел вместо карт
+ * со строковыми ключами. Строка создается один раз для каждого слова за все время работы приложения и
+ * используется всеми документами, поэтому результаты разбора разных документов не хранят копии одних и тех же слов.
+ * <p>
+ * Слова хранятся в хеш-таблице с открытой адресацией. Поиск слова выполняется без блокировок и без создания
+ * строки – по символам из буфера разбора; добавление нового слова выполняется под блокировкой, а при
+ * расширении таблица копируется и публикуется целиком. Слова из словаря не удаляются: его размер ограничен
+ * количеством различных слов всех разобранных текстов.
+ */
+@Component
+public class TermDictionary {
+
+    /**
+     * Начальное количество ячеек хеш-таблицы.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    /**
+     * Текущая хеш-таблица.
+     */
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    /**
+     * Количество слов словаря. Изменяется только под блокировкой.
+     */
+    private int size;
+
+    /**
+     * Метод для получения идентификатора слова из буфера разбора; отсутствующее слово добавляется в словарь.
+     *
+     * @param buffer буфер с символами слова.
+     * @param length длина слова.
+     * @return идентификатор слова.
+     */
+    public int id(char[] buffer, int length) {
+        int hash = hash(buffer, length);
+        int id = table.find(buffer, length, hash);
+        return id >= 0 ? id : add(new String(buffer, 0, length), hash);
+    }
+
+    /**
+     * Метод для получения идентификатора слова; отсутствующее слово добавляется в словарь.
+     *
+     * @param term нормализованное слово.
+     * @return идентификатор слова.
+     */
+    public int id(String term) {
+        int id = find(term);
+        return id >= 0 ? id : add(term, term.hashCode());
+    }
+
+    /**
+     * Метод для поиска идентификатора слова без добавления в словарь.
+     *
+     * @param term нормализованное слово.
+     * @return идентификатор слова или {@code -1}, если слова в словаре нет.
+     */
+    public int find(String term) {
+        return table.find(term, term.hashCode());
+    }
+
+    /**
+     * Метод для поиска идентификатора слова из буфера разбора без добавления в словарь.
+     *
+     * @param buffer буфер с символами слова.
+     * @param length длина слова.
+     * @return идентификатор слова или {@code -1}, если слова в словаре нет.
+     */
+    public int find(char[] buffer, int length) {
+        return table.find(buffer, length, hash(buffer, length));
+    }
+
+    /**
+     * Метод для получения слова по идентификатору.
+     *
+     * @param id идентификатор слова.
+     * @return слово.
+     */
+    public String term(int id) {
+        return table.terms[id];
+    }
+
+    /**
+     * Метод для получения количества слов словаря.
+     *
+     * @return количество слов.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Метод для добавления слова в словарь.
+     * Слово могло быть добавлено другим потоком, поэтому сначала повторно ищется под блокировкой.
+     *
+     * @param term нормализованное слово.
+     * @param hash хеш слова.
+     * @return идентификатор слова.
+     */
+    private synchronized int add(String term, int hash) {
+        Table current = table;
+        int id = current.find(term, hash);
+        if (id >= 0) {
+            return id;
+        }
+        if (size == current.terms.length) {
+            current = current.grow(size);
+            table = current;
+        }
+        id = size++;
+        current.terms[id] = term;
+        current.hashes[id] = hash;
+        current.insert(id, hash);
+        return id;
+    }
+
+    /**
+     * Метод для вычисления хеша слова из буфера; совпадает с {@link String#hashCode()}.
+     *
+     * @param buffer буфер с символами слова.
+     * @param length длина слова.
+     * @return хеш слова.
+     */
+    private static int hash(char[] buffer, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Хеш-таблица словаря.
+     * Ячейки содержат идентификатор слова, увеличенный на единицу ({@code 0} – пустая ячейка). Слово и его хеш
+     * записываются до публикации идентификатора в ячейке, поэтому читатель, увидевший идентификатор,
+     * видит и слово.
+     */
+    private static final class Table {
+
+        /**
+         * Ячейки хеш-таблицы.
+         */
+        private final AtomicIntegerArray slots;
+
+        /**
+         * Слова по идентификаторам; заполняется не более чем наполовину количества ячеек.
+         */
+        private final String[] terms;
+
+        /**
+         * Хеши слов по идентификаторам.
+         */
+        private final int[] hashes;
+
+        /**
+         * Конструктор для создания пустой таблицы.
+         *
+         * @param capacity количество ячеек, степень двойки.
+         */
+        private Table(int capacity) {
+            this.slots = new AtomicIntegerArray(capacity);
+            this.terms = new String[capacity / 2];
+            this.hashes = new int[capacity / 2];
+        }
+
+        /**
+         * Метод для создания таблицы вдвое большего размера с теми же словами.
+         *
+         * @param size количество слов.
+         * @return новая таблица.
+         */
+        private Table grow(int size) {
+            Table grown = new Table(slots.length() * 2);
+            System.arraycopy(terms, 0, grown.terms, 0, size);
+            System.arraycopy(hashes, 0, grown.hashes, 0, size);
+            for (int id = 0; id < size; id++) {
+                grown.insert(id, hashes[id]);
+            }
+            return grown;
+        }
+
+        /**
+         * Метод для добавления идентификатора слова в свободную ячейку.
+         *
+         * @param id   идентификатор слова.
+         * @param hash хеш слова.
+         */
+        private void insert(int id, int hash) {
+            int mask = slots.length() - 1;
+            int slot = spread(hash) & mask;
+            while (slots.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.set(slot, id + 1);
+        }
+
+        /**
+         * Метод для поиска идентификатора слова.
+         *
+         * @param term слово.
+         * @param hash хеш слова.
+         * @return идентификатор слова или -1, если слова нет в таблице.
+         */
+        private int find(String term, int hash) {
+            int mask = slots.length() - 1;
+            for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots.get(slot) - 1;
+                if (id < 0) {
+                    return -1;
+                }
+                if (hashes[id] == hash && terms[id].equals(term)) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * Метод для поиска идентификатора слова, заданного символами буфера.
+         *
+         * @param buffer символы слова.
+         * @param length длина слова.
+         * @param hash   хеш слова.
+         * @return идентификатор слова или -1, если слова нет в таблице.
+         */
+        private int find(char[] buffer, int length, int hash) {
+            int mask = slots.length() - 1;
+            for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots.get(slot) - 1;
+                if (id < 0) {
+                    return -1;
+                }
+                if (hashes[id] == hash && sameChars(terms[id], buffer, length)) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * Метод для сравнения слова с символами буфера.
+         *
+         * @param term   слово.
+         * @param buffer символы.
+         * @param length количество символов.
+         * @return {@code true}, если символы совпадают со словом.
+         */
+        private static boolean sameChars(String term, char[] buffer, int length) {
+            if (term.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (term.charAt(i) != buffer[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Метод для перемешивания битов хеша перед выбором ячейки.
+         *
+         * @param hash хеш слова.
+         * @return перемешанный хеш.
+         */
+        private static int spread(int hash) {
+            hash ^= hash >>> 16;
+            return hash * 0x9E3779B1;
+        }
+
+    }
+
+}
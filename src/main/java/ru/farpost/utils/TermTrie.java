@@ -0,0 +1,547 @@
+package ru.farpost.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс для хранения словаря корпуса в виде сжатого префиксного дерева (radix trie).
+ * Цепочки узлов с единственным потомком объединены в одно ребро с меткой из нескольких символов,
+ * потомки узла хранятся в массиве, отсортированном по первому символу метки.
+ * Для каждого слова хранится количество содержащих его документов; слово удаляется, когда оно становится нулевым.
+ * <p>
+ * Поиск по префиксу спускается по дереву за {@code O(длина префикса)} и обходит только поддерево префикса.
+ * Нечеткий поиск моделирует автомат Левенштейна для искомого слова: состоянием автомата служит строка
+ * таблицы расстояний редактирования, которая пересчитывается для каждого символа ребра, а поддерево
+ * отсекается, как только все значения строки превышают допустимое расстояние. Поэтому обходится только
+ * часть словаря, совместимая с искомым словом, а не все слова подряд.
+ * Класс не потокобезопасен.
+ */
+public class TermTrie {
+
+    /**
+     * Пустой массив потомков, общий для всех листьев.
+     */
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * Корень дерева с пустой меткой.
+     */
+    private final Node root = new Node(new char[0]);
+
+    /**
+     * Количество слов в словаре.
+     */
+    private int size;
+
+    /**
+     * Метод для изменения количества документов, содержащих слово.
+     * Слово добавляется в словарь при первом положительном значении и удаляется, когда значение становится нулевым.
+     *
+     * @param term нормализованное слово.
+     * @param delta изменение количества документов.
+     */
+    public void add(String term, int delta) {
+        if (delta > 0) {
+            Node node = insert(term);
+            if (node.documentFrequency == 0) {
+                size++;
+            }
+            node.documentFrequency += delta;
+        } else if (delta < 0) {
+            remove(root, term, 0, -delta);
+        }
+    }
+
+    /**
+     * Метод для получения количества документов, содержащих слово.
+     *
+     * @param term нормализованное слово.
+     * @return количество документов или {@code 0}, если слова нет в словаре.
+     */
+    public int documentFrequency(String term) {
+        Node node = root;
+        int offset = 0;
+        while (offset < term.length()) {
+            Node child = node.child(term.charAt(offset));
+            if (child == null || !child.labelMatches(term, offset)) {
+                return 0;
+            }
+            offset += child.label.length;
+            node = child;
+        }
+        return node.documentFrequency;
+    }
+
+    /**
+     * Метод для получения количества слов в словаре.
+     *
+     * @return количество слов.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Метод для поиска слов, начинающихся с префикса.
+     *
+     * @param prefix префикс.
+     * @param limit максимальное количество слов в результате.
+     * @return до {@code limit} слов с префиксом в алфавитном порядке.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node node = root;
+        int offset = 0;
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        while (offset < prefix.length()) {
+            Node child = node.child(prefix.charAt(offset));
+            if (child == null) {
+                return result;
+            }
+            int common = child.commonPrefix(prefix, offset);
+            if (common < child.label.length && offset + common < prefix.length()) {
+                return result;
+            }
+            path.append(child.label);
+            offset += child.label.length;
+            node = child;
+        }
+        collect(node, path, result, limit);
+        return result;
+    }
+
+    /**
+     * Метод для поиска слов, отличающихся от заданного не более чем на {@code maxEdits} правок
+     * (вставок, удалений или замен символа).
+     *
+     * @param term искомое слово.
+     * @param maxEdits максимальное расстояние Левенштейна.
+     * @param limit максимальное количество слов в результате.
+     * @return до {@code limit} ближайших слов и расстояния до них в порядке возрастания расстояния
+     * (при равном расстоянии – по алфавиту).
+     */
+    public Map<String, Integer> findWithinDistance(String term, int maxEdits, int limit) {
+        DistanceSearch search = search(term, maxEdits);
+        search.matches.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> match : search.matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.put(match.getKey(), match.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Метод для подсчета узлов, посещаемых при поиске слов, отличающихся от заданного не более чем
+     * на {@code maxEdits} правок. Позволяет проверить, что поиск не обходит поддеревья, в которых
+     * совпадений заведомо нет.
+     *
+     * @param term искомое слово.
+     * @param maxEdits максимальное расстояние Левенштейна.
+     * @return количество посещенных узлов.
+     */
+    int countVisitedNodes(String term, int maxEdits) {
+        return search(term, maxEdits).visitedNodes;
+    }
+
+    /**
+     * Метод для обхода дерева при поиске слов, отличающихся от заданного не более чем на {@code maxEdits} правок.
+     *
+     * @param term искомое слово.
+     * @param maxEdits максимальное расстояние Левенштейна.
+     * @return завершенный обход с найденными словами.
+     */
+    private DistanceSearch search(String term, int maxEdits) {
+        DistanceSearch search = new DistanceSearch(term.toCharArray(), maxEdits);
+        for (Node child : root.children) {
+            search.visit(child, 0);
+        }
+        return search;
+    }
+
+    /**
+     * Метод для сбора слов поддерева в алфавитном порядке.
+     *
+     * @param node корень поддерева.
+     * @param path слово, соответствующее узлу.
+     * @param result найденные слова.
+     * @param limit максимальное количество слов в результате.
+     */
+    private void collect(Node node, StringBuilder path, List<String> result, int limit) {
+        if (result.size() >= limit) {
+            return;
+        }
+        if (node.documentFrequency > 0) {
+            result.add(path.toString());
+        }
+        int pathLength = path.length();
+        for (Node child : node.children) {
+            path.append(child.label);
+            collect(child, path, result, limit);
+            path.setLength(pathLength);
+        }
+    }
+
+    /**
+     * Метод для получения узла слова с созданием недостающих узлов.
+     * Если слово заканчивается внутри метки ребра, ребро разделяется.
+     *
+     * @param term нормализованное слово.
+     * @return узел слова.
+     */
+    private Node insert(String term) {
+        Node node = root;
+        int offset = 0;
+        while (offset < term.length()) {
+            Node child = node.child(term.charAt(offset));
+            if (child == null) {
+                Node leaf = new Node(term.substring(offset).toCharArray());
+                node.addChild(leaf);
+                return leaf;
+            }
+            int common = child.commonPrefix(term, offset);
+            if (common < child.label.length) {
+                Node split = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                split.children = new Node[]{child};
+                node.replaceChild(child, split);
+                child = split;
+            }
+            offset += common;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Метод для уменьшения количества документов слова с удалением опустевших узлов.
+     * После удаления узел с единственным потомком объединяется с ним.
+     *
+     * @param node текущий узел.
+     * @param term нормализованное слово.
+     * @param offset количество символов слова, соответствующих узлу.
+     * @param delta уменьшение количества документов.
+     */
+    private void remove(Node node, String term, int offset, int delta) {
+        if (offset == term.length()) {
+            if (node.documentFrequency > 0) {
+                node.documentFrequency -= delta;
+                if (node.documentFrequency <= 0) {
+                    node.documentFrequency = 0;
+                    size--;
+                }
+            }
+            return;
+        }
+        Node child = node.child(term.charAt(offset));
+        if (child == null || !child.labelMatches(term, offset)) {
+            return;
+        }
+        remove(child, term, offset + child.label.length, delta);
+        if (child.documentFrequency == 0) {
+            if (child.children.length == 0) {
+                node.removeChild(child);
+            } else if (child.children.length == 1) {
+                Node grandchild = child.children[0];
+                char[] label = Arrays.copyOf(child.label, child.label.length + grandchild.label.length);
+                System.arraycopy(grandchild.label, 0, label, child.label.length, grandchild.label.length);
+                grandchild.label = label;
+                node.replaceChild(child, grandchild);
+            }
+        }
+    }
+
+    /**
+     * Обход дерева с моделированием автомата Левенштейна для одного искомого слова.
+     * Состояние автомата после {@code d} символов пути – строка {@code d} таблицы расстояний редактирования;
+     * строки хранятся в общем массиве по глубине и переиспользуются при обходе соседних ветвей.
+     * В строке вычисляются только ячейки в полосе шириной {@code 2 * maxEdits + 1} вокруг диагонали,
+     * остальные заведомо больше {@code maxEdits}.
+     */
+    private static final class DistanceSearch {
+
+        /**
+         * Искомое слово.
+         */
+        private final char[] query;
+
+        /**
+         * Максимальное расстояние Левенштейна.
+         */
+        private final int maxEdits;
+
+        /**
+         * Строки таблицы расстояний по глубине пути; значения больше {@code maxEdits} хранятся как {@code maxEdits + 1}.
+         */
+        private int[][] rows;
+
+        /**
+         * Символы текущего пути от корня.
+         */
+        private char[] path = new char[32];
+
+        /**
+         * Найденные слова и расстояния до них.
+         */
+        private final List<Map.Entry<String, Integer>> matches = new ArrayList<>();
+
+        /**
+         * Количество посещенных узлов.
+         */
+        private int visitedNodes;
+
+        /**
+         * Конструктор для создания обхода.
+         *
+         * @param query искомое слово.
+         * @param maxEdits максимальное расстояние Левенштейна.
+         */
+        private DistanceSearch(char[] query, int maxEdits) {
+            this.query = query;
+            this.maxEdits = maxEdits;
+            this.rows = new int[path.length + 1][];
+            rows[0] = new int[query.length + 1];
+            for (int i = 0; i <= query.length; i++) {
+                rows[0][i] = Math.min(i, maxEdits + 1);
+            }
+        }
+
+        /**
+         * Метод для обхода поддерева с пересчетом состояния автомата для каждого символа метки.
+         *
+         * @param node текущий узел.
+         * @param depth длина пути до начала метки узла.
+         */
+        private void visit(Node node, int depth) {
+            visitedNodes++;
+            for (char symbol : node.label) {
+                if (!step(depth++, symbol)) {
+                    return;
+                }
+            }
+            int distance = rows[depth][query.length];
+            if (node.documentFrequency > 0 && distance <= maxEdits) {
+                matches.add(Map.entry(new String(path, 0, depth), distance));
+            }
+            int[] row = rows[depth];
+            int minimum = maxEdits + 1;
+            for (int i = 0; i < row.length; i++) {
+                minimum = Math.min(minimum, row[i]);
+            }
+            if (minimum < maxEdits) {
+                for (Node child : node.children) {
+                    visit(child, depth);
+                }
+                return;
+            }
+            // Правки исчерпаны: продолжить путь можно только символом, совпадающим с символом искомого слова
+            // на позиции ячейки со значением maxEdits, поэтому потомки ищутся по этим символам, а не перебираются.
+            for (int i = 0; i < query.length; i++) {
+                if (row[i] == maxEdits && firstOccurrence(row, i)) {
+                    Node child = node.child(query[i]);
+                    if (child != null) {
+                        visit(child, depth);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Метод для проверки, что символ искомого слова на позиции {@code index} не встречался левее
+         * в ячейках со значением {@code maxEdits}, чтобы каждый потомок посещался один раз.
+         *
+         * @param row текущая строка таблицы расстояний.
+         * @param index позиция символа искомого слова.
+         * @return {@code true}, если символ встречается впервые.
+         */
+        private boolean firstOccurrence(int[] row, int index) {
+            for (int i = 0; i < index; i++) {
+                if (row[i] == maxEdits && query[i] == query[index]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Метод для перехода автомата по символу пути.
+         *
+         * @param depth длина пути до символа.
+         * @param symbol символ пути.
+         * @return {@code false}, если после перехода ни одно продолжение пути не укладывается в {@code maxEdits}.
+         */
+        private boolean step(int depth, char symbol) {
+            if (depth + 1 >= rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            if (rows[depth + 1] == null) {
+                rows[depth + 1] = new int[query.length + 1];
+            }
+            path[depth] = symbol;
+            int[] row = rows[depth];
+            int[] next = rows[depth + 1];
+            int limit = maxEdits + 1;
+            int from = Math.max(1, depth + 1 - maxEdits);
+            int to = Math.min(query.length, depth + 1 + maxEdits);
+            next[0] = Math.min(depth + 1, limit);
+            // Ячейки левее полосы могут хранить значения другой ветви обхода: заполняются, чтобы минимум строки
+            // в visit учитывал только достижимые ячейки.
+            for (int i = 1; i < from; i++) {
+                next[i] = limit;
+            }
+            int minimum = next[0];
+            for (int i = from; i <= to; i++) {
+                int substitution = row[i - 1] + (query[i - 1] == symbol ? 0 : 1);
+                int value = Math.min(substitution, Math.min(row[i], next[i - 1]) + 1);
+                next[i] = Math.min(value, limit);
+                minimum = Math.min(minimum, next[i]);
+            }
+            for (int i = Math.max(to + 1, 1); i <= query.length; i++) {
+                next[i] = limit;
+            }
+            return minimum <= maxEdits;
+        }
+
+    }
+
+    /**
+     * Узел дерева: ребро от родителя с меткой и слово, заканчивающееся в узле.
+     */
+    private static final class Node {
+
+        /**
+         * Порядок потомков по первому символу метки.
+         */
+        private static final Comparator<Node> ORDER = Comparator.comparingInt(node -> node.label[0]);
+
+        /**
+         * Метка ребра от родителя.
+         */
+        private char[] label;
+
+        /**
+         * Потомки, отсортированные по первому символу метки.
+         */
+        private Node[] children = NO_CHILDREN;
+
+        /**
+         * Количество документов со словом, заканчивающимся в узле, или {@code 0}, если слова нет.
+         */
+        private int documentFrequency;
+
+        /**
+         * Конструктор для создания узла.
+         *
+         * @param label метка ребра от родителя.
+         */
+        private Node(char[] label) {
+            this.label = label;
+        }
+
+        /**
+         * Метод для поиска потомка по первому символу метки.
+         *
+         * @param first первый символ метки.
+         * @return потомок или {@code null}.
+         */
+        private Node child(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label[0];
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Метод для добавления потомка с сохранением порядка.
+         *
+         * @param child новый потомок.
+         */
+        private void addChild(Node child) {
+            Node[] extended = Arrays.copyOf(children, children.length + 1);
+            extended[children.length] = child;
+            Arrays.sort(extended, ORDER);
+            children = extended;
+        }
+
+        /**
+         * Метод для замены потомка узлом с тем же первым символом метки.
+         *
+         * @param child заменяемый потомок.
+         * @param replacement новый потомок.
+         */
+        private void replaceChild(Node child, Node replacement) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    children[i] = replacement;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Метод для удаления потомка.
+         *
+         * @param child удаляемый потомок.
+         */
+        private void removeChild(Node child) {
+            if (children.length == 1) {
+                children = NO_CHILDREN;
+                return;
+            }
+            Node[] reduced = new Node[children.length - 1];
+            int index = 0;
+            for (Node current : children) {
+                if (current != child) {
+                    reduced[index++] = current;
+                }
+            }
+            children = reduced;
+        }
+
+        /**
+         * Метод для получения длины общего начала метки и части слова.
+         *
+         * @param term слово.
+         * @param offset начало части слова.
+         * @return количество совпадающих символов.
+         */
+        private int commonPrefix(String term, int offset) {
+            int length = Math.min(label.length, term.length() - offset);
+            int common = 0;
+            while (common < length && label[common] == term.charAt(offset + common)) {
+                common++;
+            }
+            return common;
+        }
+
+        /**
+         * Метод для проверки, что часть слова начинается с метки целиком.
+         *
+         * @param term слово.
+         * @param offset начало части слова.
+         * @return {@code true}, если метка совпадает с частью слова.
+         */
+        private boolean labelMatches(String term, int offset) {
+            return commonPrefix(term, offset) == label.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,163 @@
+package ru.farpost.utils;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Компонент для сжатия текстов документов перед сохранением в БД.
+ * Текст кодируется в UTF-8 и сжимается {@link Deflater}; перед сжатыми данными записывается длина исходных байтов
+ * (4 байта, big-endian), чтобы при распаковке буфер выделялся один раз точного размера. Для текста, сжимаемого
+ * потоком, длина заранее неизвестна, и вместо нее записывается {@value #UNKNOWN_LENGTH}.
+ * Тексты короче {@code compression.threshold} символов и тексты, которые не уменьшаются при сжатии,
+ * хранятся как есть.
+ */
+@Component
+public class TextCompressor {
+
+    /**
+     * Значение длины исходных байтов для текста, сжатого потоком.
+     */
+    static final int UNKNOWN_LENGTH = -1;
+
+    /**
+     * Настройки сжатия текстов документов.
+     */
+    private final CompressionProperties compressionProperties;
+
+    /**
+     * Конструктор для создания компонента с внедренными зависимостями.
+     *
+     * @param compressionProperties настройки сжатия текстов документов.
+     */
+    @Autowired
+    public TextCompressor(CompressionProperties compressionProperties) {
+        this.compressionProperties = compressionProperties;
+    }
+
+    /**
+     * Метод для сжатия текста, если сжатие включено и выгодно.
+     *
+     * @param text текст документа.
+     * @return сжатый текст или {@code null}, если текст нужно хранить как есть.
+     */
+    public byte[] compress(String text) {
+        if (!compressionProperties.isEnabled() || text == null || text.length() < compressionProperties.getThreshold()) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = compress(bytes, compressionProperties.getLevel());
+        return compressed.length < bytes.length ? compressed : null;
+    }
+
+    /**
+     * Метод для сжатия текста, передаваемого потоком.
+     * Текст сжимается по мере чтения результата независимо от настройки {@code compression.enabled}
+     * и порога сжатия, поскольку его длина заранее неизвестна.
+     *
+     * @param bytes поток текста в UTF-8.
+     * @return поток сжатого текста в формате {@link #compress(String)}; закрывает переданный поток.
+     */
+    public InputStream compressStream(InputStream bytes) {
+        InputStream header = new ByteArrayInputStream(ByteBuffer.allocate(Integer.BYTES).putInt(UNKNOWN_LENGTH).array());
+        Deflater deflater = new Deflater(compressionProperties.getLevel());
+        return new SequenceInputStream(header, new DeflaterInputStream(bytes, deflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * Метод для сжатия байтов текста.
+     *
+     * @param bytes текст в UTF-8.
+     * @param level уровень сжатия.
+     * @return длина исходных байтов и сжатые данные.
+     */
+    static byte[] compress(byte[] bytes, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            output.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Метод для распаковки сжатого текста.
+     *
+     * @param compressed сжатый текст, полученный {@link #compress(String)}.
+     * @return исходный текст.
+     * @throws IllegalStateException если сжатые данные повреждены.
+     */
+    public static String decompress(byte[] compressed) {
+        int length = ByteBuffer.wrap(compressed).getInt();
+        if (length == UNKNOWN_LENGTH) {
+            return decompressStream(compressed);
+        }
+        byte[] bytes = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, Integer.BYTES, compressed.length - Integer.BYTES);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(bytes, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new IllegalStateException("Corrupted compressed text");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed text", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Метод для распаковки текста, сжатого потоком.
+     *
+     * @param compressed сжатый текст, полученный {@link #compressStream(InputStream)}.
+     * @return исходный текст.
+     * @throws IllegalStateException если сжатые данные повреждены.
+     */
+    private static String decompressStream(byte[] compressed) {
+        InputStream input = new ByteArrayInputStream(compressed, Integer.BYTES, compressed.length - Integer.BYTES);
+        try (InflaterInputStream inflater = new InflaterInputStream(input)) {
+            return new String(inflater.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted compressed text", e);
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package ru.farpost.utils;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Компонент для разбиения текста документа на нормализованные слова.
+ * Проходит по тексту один раз: символы классифицируются по заранее построенной таблице,
+ * буквы сразу приводятся к нижнему регистру, прочие символы (кроме пробельных) отбрасываются,
+ * а стоп-слова отфильтровываются без создания промежуточных строк.
+ * Попутно подсчитывается количество предложений (непустых фрагментов между {@code .}, {@code !} и {@code ?}).
+ */
+@Component
+public class TextTokenizer {
+
+    /**
+     * Значение в таблице символов, обозначающее разделитель слов.
+     */
+    private static final char SEPARATOR = ' ';
+
+    /**
+     * Значение в таблице символов, обозначающее отбрасываемый символ.
+     */
+    private static final char SKIP = 0;
+
+    /**
+     * Таблица классификации символов: для букв содержит букву в нижнем регистре,
+     * для пробельных символов – {@link #SEPARATOR}, для остальных – {@link #SKIP}.
+     * Символы за пределами таблицы отбрасываются.
+     */
+    private static final char[] CHAR_TABLE = buildCharTable();
+
+    /**
+     * Начальный размер буфера для накопления слова.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 32;
+
+    /**
+     * Множество стоп-слов, построенное один раз при создании компонента.
+     */
+    private final Set<CharBuffer> stopWords;
+
+    /**
+     * Конструктор для создания экземпляра с внедренной зависимостью {@link StopWordsListUtil}.
+     *
+     * @param stopWordsUtil утилита для обработки стоп-слов.
+     */
+    @Autowired
+    TextTokenizer(StopWordsListUtil stopWordsUtil) {
+        Set<CharBuffer> words = new HashSet<>();
+        if (stopWordsUtil.getWords() != null) {
+            for (String word : stopWordsUtil.getWords()) {
+                words.add(CharBuffer.wrap(word));
+            }
+        }
+        this.stopWords = Set.copyOf(words);
+    }
+
+    /**
+     * Метод для построения таблицы классификации символов.
+     * Допустимые символы совпадают с классом {@code [a-zA-Zа-яА-ЯёЁ\s]}.
+     *
+     * @return таблица классификации символов.
+     */
+    private static char[] buildCharTable() {
+        char[] table = new char['ё' + 1];
+        for (char c = 'a'; c <= 'z'; c++) {
+            table[c] = c;
+            table[Character.toUpperCase(c)] = c;
+        }
+        for (char c = 'а'; c <= 'я'; c++) {
+            table[c] = c;
+            table[Character.toUpperCase(c)] = c;
+        }
+        table['ё'] = 'ё';
+        table['Ё'] = 'ё';
+        for (char c : new char[]{' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+            table[c] = SEPARATOR;
+        }
+        return table;
+    }
+
+    /**
+     * Метод для создания сеанса разбора текста, передаваемого частями.
+     *
+     * @param consumer получатель нормализованных слов.
+     * @return новый сеанс разбора.
+     */
+    public Session session(TokenConsumer consumer) {
+        return new Session(consumer);
+    }
+
+    /**
+     * Метод для разбора текста с передачей каждого нормализованного слова получателю.
+     *
+     * @param text текст документа.
+     * @param consumer получатель нормализованных слов.
+     * @return количество предложений в тексте.
+     */
+    public int forEachToken(CharSequence text, TokenConsumer consumer) {
+        Session session = new Session(consumer);
+        session.feed(text);
+        return session.finish();
+    }
+
+    /**
+     * Метод для получения списка нормализованных слов текста.
+     *
+     * @param text текст документа.
+     * @return список нормализованных слов в порядке их следования в тексте.
+     */
+    public List<String> tokenize(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        forEachToken(text, (buffer, length) -> words.add(new String(buffer, 0, length)));
+        return words;
+    }
+
+    /**
+     * Получатель нормализованных слов.
+     * Буфер переиспользуется между вызовами, поэтому его содержимое нельзя сохранять без копирования.
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+
+        /**
+         * Метод, вызываемый для каждого нормализованного слова.
+         *
+         * @param buffer буфер, содержащий слово с позиции {@code 0}.
+         * @param length длина слова.
+         */
+        void accept(char[] buffer, int length);
+
+    }
+
+    /**
+     * Сеанс разбора текста.
+     * Хранит недописанное слово и состояние текущего предложения,
+     * поэтому текст можно передавать произвольными частями.
+     * Сеанс не является потокобезопасным.
+     */
+    public final class Session {
+
+        /**
+         * Получатель нормализованных слов.
+         */
+        private final TokenConsumer consumer;
+
+        /**
+         * Буфер для накопления текущего слова.
+         */
+        private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+
+        /**
+         * Представление буфера для поиска в множестве стоп-слов без копирования.
+         */
+        private CharBuffer view = CharBuffer.wrap(buffer);
+
+        /**
+         * Длина текущего слова.
+         */
+        private int length;
+
+        /**
+         * Признак того, что в текущем предложении встретился непробельный символ.
+         */
+        private boolean inSentence;
+
+        /**
+         * Количество завершенных предложений.
+         */
+        private int sentencesCount;
+
+        /**
+         * Конструктор для создания сеанса.
+         *
+         * @param consumer получатель нормализованных слов.
+         */
+        private Session(TokenConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Метод для передачи очередной части текста.
+         *
+         * @param text часть текста.
+         */
+        public void feed(CharSequence text) {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                accept(text.charAt(i));
+            }
+        }
+
+        /**
+         * Метод для передачи очередной части текста из массива символов.
+         *
+         * @param chars массив символов.
+         * @param offset позиция начала части.
+         * @param count количество символов.
+         */
+        public void feed(char[] chars, int offset, int count) {
+            for (int i = offset, end = offset + count; i < end; i++) {
+                accept(chars[i]);
+            }
+        }
+
+        /**
+         * Метод для завершения разбора: передает последнее слово и закрывает последнее предложение.
+         *
+         * @return количество предложений в тексте.
+         */
+        public int finish() {
+            flushToken();
+            if (inSentence) {
+                sentencesCount++;
+                inSentence = false;
+            }
+            return sentencesCount;
+        }
+
+        /**
+         * Метод для обработки одного символа текста.
+         *
+         * @param c символ текста.
+         */
+        private void accept(char c) {
+            if (c == '.' || c == '!' || c == '?') {
+                if (inSentence) {
+                    sentencesCount++;
+                    inSentence = false;
+                }
+            } else if (c > ' ') {
+                inSentence = true;
+            }
+
+            char mapped = c < CHAR_TABLE.length ? CHAR_TABLE[c] : SKIP;
+            if (mapped == SEPARATOR) {
+                flushToken();
+            } else if (mapped != SKIP) {
+                if (length == buffer.length) {
+                    char[] grown = new char[buffer.length * 2];
+                    System.arraycopy(buffer, 0, grown, 0, length);
+                    buffer = grown;
+                    view = CharBuffer.wrap(buffer);
+                }
+                buffer[length++] = mapped;
+            }
+        }
+
+        /**
+         * Метод для передачи накопленного слова получателю, если оно не является стоп-словом.
+         */
+        private void flushToken() {
+            if (length == 0) {
+                return;
+            }
+            view.clear().limit(length);
+            if (!stopWords.contains(view)) {
+                consumer.accept(buffer, length);
+            }
+            length = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package ru.farpost.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Класс для выбора {@code k} лучших элементов из потока без сортировки всего потока.
+ * Хранит не более {@code k} элементов в куче, вершина которой – худший из отобранных элементов,
+ * поэтому выбор из {@code n} элементов выполняется за {@code O(n log k)} и занимает {@code O(k)} памяти.
+ *
+ * @param <T> тип элементов.
+ */
+public class TopKSelector<T> {
+
+    /**
+     * Количество отбираемых элементов.
+     */
+    private final int k;
+
+    /**
+     * Порядок элементов: лучшие элементы идут первыми.
+     */
+    private final Comparator<? super T> order;
+
+    /**
+     * Куча отобранных элементов с худшим элементом на вершине.
+     */
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Конструктор для создания экземпляра.
+     *
+     * @param k количество отбираемых элементов.
+     * @param order порядок элементов, в котором лучшие элементы идут первыми.
+     */
+    public TopKSelector(int k, Comparator<? super T> order) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)) + 1, order.reversed());
+    }
+
+    /**
+     * Метод для предложения очередного элемента.
+     * Элемент отбирается, если отобрано меньше {@code k} элементов или он лучше худшего из отобранных.
+     *
+     * @param element элемент.
+     */
+    public void offer(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * Метод для получения отобранных элементов.
+     *
+     * @return список отобранных элементов, упорядоченный от лучшего к худшему.
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+}
@@ -6,22 +6,24 @@ import java.util.Map;
 /**
  * Компаратор для сортировки слов по убыванию их частоты.
  * Используется для сортировки списка слов по количеству вхождений в тексте.
+ * Слова с одинаковой частотой упорядочиваются по алфавиту, поэтому порядок результата детерминирован.
  */
 public class TopWordsSorter implements Comparator<Map.Entry<String, Integer>> {
 
     /**
      * Метод для сравнения двух записей по значению (частоте встречаемости слов).
-     * Сортировка выполняется в порядке убывания.
+     * Сортировка выполняется в порядке убывания частоты, при равной частоте – в порядке возрастания слова.
      *
      * @param o1 первая запись, содержащая слово и его количество вхождений.
      * @param o2 вторая запись, содержащая слово и его количество вхождений.
-     * @return -1, если {@code o2} больше {@code o1},
-     *         1, если {@code o1} больше {@code o2},
-     *         и 0, если частоты одинаковы.
+     * @return отрицательное число, если {@code o1} должна идти раньше {@code o2},
+     *         положительное число, если позже,
+     *         и 0, если слова и частоты совпадают.
      */
     @Override
     public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
-        return o2.getValue().compareTo(o1.getValue());
+        int result = o2.getValue().compareTo(o1.getValue());
+        return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
     }
 
 }
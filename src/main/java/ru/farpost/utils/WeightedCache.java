@@ -0,0 +1,276 @@
+package ru.farpost.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Кеш, ограниченный суммарным весом значений, с вытеснением по алгоритму сегментированного LRU.
+ * Новые значения попадают в испытательный сегмент, а при повторном обращении переносятся в защищенный сегмент,
+ * занимающий до {@value #PROTECTED_PERCENT}% веса кеша; при переполнении защищенного сегмента давно не
+ * использованные значения возвращаются в испытательный. Вытесняются давно не использованные значения испытательного
+ * сегмента, поэтому однократные обращения (например, обход всех документов) не вытесняют часто используемые значения.
+ * Все методы синхронизированы.
+ *
+ * @param <K> тип ключа.
+ * @param <V> тип значения.
+ */
+public class WeightedCache<K, V> {
+
+    /**
+     * Доля веса кеша, занимаемая защищенным сегментом, в процентах.
+     */
+    static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * Максимальный суммарный вес значений.
+     */
+    private final long maxWeight;
+
+    /**
+     * Максимальный вес защищенного сегмента.
+     */
+    private final long maxProtectedWeight;
+
+    /**
+     * Функция для вычисления веса значения.
+     */
+    private final ToLongFunction<V> weigher;
+
+    /**
+     * Испытательный сегмент в порядке от давно не использованных значений к недавно использованным.
+     * Порядок сегментов изменяется явно только при попаданиях и записи значений.
+     */
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+
+    /**
+     * Защищенный сегмент в порядке от давно не использованных значений к недавно использованным.
+     */
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>();
+
+    /**
+     * Вес испытательного сегмента.
+     */
+    private long probationWeight;
+
+    /**
+     * Вес защищенного сегмента.
+     */
+    private long protectedWeight;
+
+    /**
+     * Количество обращений, для которых значение найдено.
+     */
+    private long hitCount;
+
+    /**
+     * Количество обращений, для которых значение не найдено.
+     */
+    private long missCount;
+
+    /**
+     * Конструктор для создания кеша.
+     *
+     * @param maxWeight максимальный суммарный вес значений; значения тяжелее него не кешируются.
+     * @param weigher функция для вычисления веса значения.
+     */
+    public WeightedCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = maxWeight / 100 * PROTECTED_PERCENT;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Метод для получения значения по ключу.
+     *
+     * @param key ключ.
+     * @return значение или {@code null}, если значения в кеше нет.
+     */
+    public V get(K key) {
+        return get(key, value -> true);
+    }
+
+    /**
+     * Метод для получения значения по ключу, если оно содержит искомые данные.
+     * Обращение считается попаданием, и значение переносится в защищенный сегмент, только если значение
+     * удовлетворяет условию; иначе обращение считается промахом, и значение остается в своем сегменте.
+     *
+     * @param key ключ.
+     * @param found условие, при котором значение содержит искомые данные.
+     * @return значение или {@code null}, если значения в кеше нет или оно не удовлетворяет условию.
+     */
+    public synchronized V get(K key, Predicate<? super V> found) {
+        Entry<V> entry = protectedSegment.containsKey(key) ? protectedSegment.get(key) : probation.get(key);
+        if (entry == null || !found.test(entry.value)) {
+            missCount++;
+            return null;
+        }
+        if (probation.remove(key) != null) {
+            probationWeight -= entry.weight;
+            protectedSegment.put(key, entry);
+            protectedWeight += entry.weight;
+            demote();
+        } else {
+            protectedSegment.remove(key);
+            protectedSegment.put(key, entry);
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * Метод для объединения нового значения с текущим значением ключа.
+     *
+     * @param key ключ.
+     * @param value новое значение.
+     * @param remapping функция для объединения текущего значения с новым.
+     */
+    public synchronized void merge(K key, V value, BinaryOperator<V> remapping) {
+        Entry<V> entry = protectedSegment.containsKey(key) ? protectedSegment.get(key) : probation.get(key);
+        put(key, entry == null ? value : remapping.apply(entry.value, value));
+    }
+
+    /**
+     * Метод для добавления или замены значения.
+     * Замененное значение остается в своем сегменте; значение тяжелее максимального веса кеша не кешируется.
+     *
+     * @param key ключ.
+     * @param value значение.
+     */
+    public synchronized void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, weigher.applyAsLong(value));
+        boolean isProtected = protectedSegment.containsKey(key);
+        invalidate(key);
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        if (isProtected) {
+            protectedSegment.put(key, entry);
+            protectedWeight += entry.weight;
+            demote();
+        } else {
+            probation.put(key, entry);
+            probationWeight += entry.weight;
+        }
+        evict();
+    }
+
+    /**
+     * Метод для удаления значения по ключу.
+     *
+     * @param key ключ.
+     */
+    public synchronized void invalidate(K key) {
+        Entry<V> entry = protectedSegment.remove(key);
+        if (entry != null) {
+            protectedWeight -= entry.weight;
+        }
+        entry = probation.remove(key);
+        if (entry != null) {
+            probationWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Метод для получения количества значений в кеше.
+     *
+     * @return количество значений.
+     */
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Метод для получения суммарного веса значений в кеше.
+     *
+     * @return суммарный вес.
+     */
+    public synchronized long weight() {
+        return probationWeight + protectedWeight;
+    }
+
+    /**
+     * Метод для получения количества обращений, для которых значение найдено.
+     *
+     * @return количество попаданий.
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Метод для получения количества обращений, для которых значение не найдено.
+     *
+     * @return количество промахов.
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * Метод для переноса давно не использованных значений защищенного сегмента в испытательный
+     * при превышении веса защищенного сегмента.
+     */
+    private void demote() {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = protectedSegment.entrySet().iterator();
+        while (protectedWeight > maxProtectedWeight) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            iterator.remove();
+            protectedWeight -= eldest.getValue().weight;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationWeight += eldest.getValue().weight;
+        }
+    }
+
+    /**
+     * Метод для вытеснения давно не использованных значений при превышении веса кеша.
+     * Значения вытесняются из испытательного сегмента, а если он пуст – из защищенного.
+     */
+    private void evict() {
+        while (probationWeight + protectedWeight > maxWeight) {
+            if (!probation.isEmpty()) {
+                Iterator<Entry<V>> iterator = probation.values().iterator();
+                probationWeight -= iterator.next().weight;
+                iterator.remove();
+            } else {
+                Iterator<Entry<V>> iterator = protectedSegment.values().iterator();
+                protectedWeight -= iterator.next().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Значение кеша с его весом.
+     *
+     * @param <V> тип значения.
+     */
+    private static final class Entry<V> {
+
+        /**
+         * Значение.
+         */
+        private final V value;
+
+        /**
+         * Вес значения.
+         */
+        private final long weight;
+
+        /**
+         * Конструктор для создания значения кеша.
+         *
+         * @param value  значение.
+         * @param weight вес значения.
+         */
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+}
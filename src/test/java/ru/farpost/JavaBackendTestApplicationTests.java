@@ -1,15 +1,38 @@
 package ru.farpost;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.farpost.dto.DocumentDTO;
+import ru.farpost.dto.DocumentIdsPageDTO;
+import ru.farpost.dto.DocumentTextDTO;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.exception.ErrorResponse;
 import ru.farpost.model.Document;
 import ru.farpost.repository.DocumentRepository;
+import ru.farpost.service.CorpusStatisticService;
+import ru.farpost.service.CorpusTopWordsService;
+import ru.farpost.service.DocumentAnalyticsService;
+import ru.farpost.service.DocumentIndexService;
+import ru.farpost.service.DocumentScanService;
+import ru.farpost.service.DocumentSearchService;
 import ru.farpost.service.DocumentService;
+import ru.farpost.service.IndexPipelineService;
+import ru.farpost.service.UniqueWordsSketchService;
+import ru.farpost.service.SegmentService;
+import ru.farpost.service.VocabularyService;
+import ru.farpost.utils.AnalyticsMetrics;
+import ru.farpost.utils.AnalyticsProperties;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.DocumentCacheProperties;
 import ru.farpost.utils.DocumentsAnalyticFunctions;
+import ru.farpost.utils.SearchProperties;
+import ru.farpost.utils.SearchQuery;
+import ru.farpost.utils.TextCompressor;
 
 import java.util.*;
 
@@ -41,6 +64,53 @@ class JavaBackendTestApplicationTests {
     @Mock
     private DocumentsAnalyticFunctions analyticFunctions;
 
+    @Mock
+    private DocumentIndexService documentIndexService;
+
+    @Mock
+    private CorpusStatisticService corpusStatisticService;
+
+    @Mock
+    private DocumentAnalyticsService documentAnalyticsService;
+
+    @Mock
+    private CorpusTopWordsService corpusTopWordsService;
+
+    @Mock
+    private UniqueWordsSketchService uniqueWordsSketchService;
+
+    @Mock
+    private DocumentScanService documentScanService;
+
+    @Mock
+    private DocumentSearchService documentSearchService;
+
+    @Mock
+    private VocabularyService vocabularyService;
+
+    @Mock
+    private SegmentService segmentService;
+
+    @Mock
+    private TextCompressor textCompressor;
+
+    @Mock
+    private IndexPipelineService indexPipelineService;
+
+    @Spy
+    private AnalyticsProperties analyticsProperties = new AnalyticsProperties();
+
+    @Spy
+    private SearchProperties searchProperties = new SearchProperties();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private AnalyticsMetrics analyticsMetrics = new AnalyticsMetrics(meterRegistry);
+
+    @Spy
+    private DocumentCache documentCache = new DocumentCache(new DocumentCacheProperties(), meterRegistry);
+
     @Test
     public void testSaveDocument() {
 
@@ -51,6 +121,7 @@ class JavaBackendTestApplicationTests {
         documentService.saveDocument(document);
 
         Mockito.verify(documentRepository, Mockito.times(1)).save(document);
+        Mockito.verify(indexPipelineService, Mockito.times(1)).submit(List.of(document));
 
     }
 
@@ -62,7 +133,7 @@ class JavaBackendTestApplicationTests {
         document.setId(documentId);
         document.setText(testText);
 
-        Mockito.when(documentRepository.findById(documentId)).thenReturn(Optional.of(document));
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.of(new DocumentTextDTO(document.getText(), null)));
 
         DocumentDTO documentDTO = documentService.findDocument(documentId);
 
@@ -72,6 +143,23 @@ class JavaBackendTestApplicationTests {
 
     }
 
+    @Test
+    public void testFindDocumentIsCachedUntilInvalidated() {
+
+        long documentId = 1L;
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.of(new DocumentTextDTO(testText, null)));
+
+        assertEquals(testText, documentService.findDocument(documentId).getText());
+        assertEquals(testText, documentService.findDocument(documentId).getText());
+        Mockito.verify(documentRepository, Mockito.times(1)).findTextById(documentId);
+
+        documentCache.invalidate(List.of(documentId));
+        assertEquals(testText, documentService.findDocument(documentId).getText());
+        Mockito.verify(documentRepository, Mockito.times(2)).findTextById(documentId);
+        assertEquals(1, meterRegistry.get("document.cache.requests").tag("result", "hit").functionCounter().count());
+
+    }
+
 
     @Test
     public void testGetNormalizedDocument() {
@@ -81,7 +169,7 @@ class JavaBackendTestApplicationTests {
         document.setId(documentId);
         document.setText(testText);
 
-        Mockito.when(documentRepository.findById(documentId)).thenReturn(Optional.of(document));
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.of(new DocumentTextDTO(document.getText(), null)));
         Mockito.when(analyticFunctions.normalizeDocumentText(document.getText())).thenReturn(normalizedTestText);
 
         DocumentDTO documentDTO = documentService.getNormalizedDocument(documentId);
@@ -91,6 +179,24 @@ class JavaBackendTestApplicationTests {
 
     }
 
+    @Test
+    public void testGetPrecomputedNormalizedDocument() {
+
+        long documentId = 1L;
+
+        Mockito.when(documentAnalyticsService.findNormalizedText(documentId)).thenReturn(Optional.of(normalizedTestText));
+
+        DocumentDTO documentDTO = documentService.getNormalizedDocument(documentId);
+
+        assertEquals(documentId, documentDTO.getId());
+        assertEquals(normalizedTestText, documentDTO.getText());
+        Mockito.verify(documentRepository, Mockito.never()).findTextById(documentId);
+        Mockito.verify(analyticFunctions, Mockito.never()).normalizeDocumentText(Mockito.anyString());
+        assertEquals(1, meterRegistry.counter("analytics.cache.requests", "cache", "normalized_text", "result", "hit").count());
+        assertNull(meterRegistry.find("analytics.stage").tag("stage", "normalize").timer());
+
+    }
+
     @Test
     public void testGetDocumentStatistics() {
 
@@ -105,10 +211,10 @@ class JavaBackendTestApplicationTests {
         statistics.put("avg_word_length", 7);
         statistics.put("sentences_count", 6);
 
-        Mockito.when(documentRepository.findById(documentId)).thenReturn(Optional.of(document));
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.of(new DocumentTextDTO(document.getText(), null)));
         Mockito.when(analyticFunctions.getDocumentStatistic(document.getText())).thenReturn(statistics);
 
-        Map<String, Integer> testResult = documentService.getDocumentStatistics(documentId);
+        Map<String, Integer> testResult = documentService.getDocumentStatistics(documentId, false);
 
         assertNotNull(testResult);
         assertEquals(4, testResult.size());
@@ -120,14 +226,31 @@ class JavaBackendTestApplicationTests {
     }
 
     @Test
-    public void testGetAllDocumentsStatistics() {
+    public void testGetPrecomputedDocumentStatistics() {
+
+        long documentId = 1L;
+        Map<String, Integer> statistics = Map.of("word_count", 72, "uniq_word_count", 71, "avg_word_length", 7, "sentences_count", 6);
+
+        Mockito.when(documentAnalyticsService.findStatistic(documentId)).thenReturn(Optional.of(statistics));
 
-        List<Document> documents = Arrays.asList(
-                new Document(1L, "Тестовый текст. Для документа 1!"),
-                new Document(2L, "Текст тестовый, для документа 2?"),
-                new Document(4L, "Для документа 4. Тестовый текст."),
-                new Document(5L, "Текст для документа 5 тестовый.")
-        );
+        assertEquals(statistics, documentService.getDocumentStatistics(documentId, false));
+        Mockito.verify(documentRepository, Mockito.never()).findTextById(documentId);
+
+    }
+
+    @Test
+    public void testGetMissingDocumentStatistics() {
+
+        long documentId = 1L;
+
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.empty());
+
+        assertThrows(ErrorResponse.class, () -> documentService.getDocumentStatistics(documentId, false));
+
+    }
+
+    @Test
+    public void testGetAllDocumentsStatistics() {
 
         Map<String, Integer> allStatistics = new LinkedHashMap<>();
         allStatistics.put("documents_count", 4);
@@ -136,14 +259,31 @@ class JavaBackendTestApplicationTests {
         allStatistics.put("avg_word_length", 6);
         allStatistics.put("sentences_count", 6);
 
-        Mockito.when(documentRepository.findAll()).thenReturn(documents);
-        Mockito.when(analyticFunctions.getAllDocumentStatistic(documents)).thenReturn(allStatistics);
+        Mockito.when(corpusStatisticService.getCorpusStatistic()).thenReturn(allStatistics);
 
-        Map<String, Integer> testResult = documentService.getAllDocumentsStatistics();
+        Map<String, Integer> testResult = documentService.getAllDocumentsStatistics(false, null);
 
         assertNotNull(testResult);
         assertEquals(5, testResult.size());
         assertEquals(allStatistics, testResult);
+        Mockito.verify(documentRepository, Mockito.never()).findAll();
+
+    }
+
+    @Test
+    public void testGetApproximateAllDocumentsStatistics() {
+
+        Map<String, Integer> allStatistics = new LinkedHashMap<>();
+        allStatistics.put("documents_count", 4);
+        allStatistics.put("uniq_word_count", 4000);
+
+        Mockito.when(corpusStatisticService.getCorpusStatistic()).thenReturn(allStatistics);
+        Mockito.when(uniqueWordsSketchService.estimateCorpus()).thenReturn(4012L);
+
+        Map<String, Integer> testResult = documentService.getAllDocumentsStatistics(true, null);
+
+        assertEquals(4012, testResult.get("uniq_word_count"));
+        assertEquals(4, testResult.get("documents_count"));
 
     }
 
@@ -167,10 +307,10 @@ class JavaBackendTestApplicationTests {
         topWords.put("принимая", 1);
         topWords.put("дальнейшее", 1);
 
-        Mockito.when(documentRepository.findById(documentId)).thenReturn(Optional.of(document));
-        Mockito.when(analyticFunctions.getTopWords(document.getText())).thenReturn(topWords);
+        Mockito.when(documentRepository.findTextById(documentId)).thenReturn(Optional.of(new DocumentTextDTO(document.getText(), null)));
+        Mockito.when(analyticFunctions.getTopWords(document.getText(), 10)).thenReturn(topWords);
 
-        Map<String, Integer> testResult = documentService.getTopWordInDocument(documentId);
+        Map<String, Integer> testResult = documentService.getTopWordInDocument(documentId, 10);
 
         assertNotNull(testResult);
         assertEquals(10, testResult.size());
@@ -178,20 +318,54 @@ class JavaBackendTestApplicationTests {
 
     }
 
+    @Test
+    public void testGetPrecomputedTopWordInDocument() {
+
+        long documentId = 1L;
+        Map<String, Integer> topWords = Map.of("leo", 5);
+
+        Mockito.when(documentAnalyticsService.findTopWords(documentId, 5)).thenReturn(Optional.of(topWords));
+
+        assertEquals(topWords, documentService.getTopWordInDocument(documentId, 5));
+        Mockito.verify(analyticFunctions, Mockito.never()).getTopWords(Mockito.anyString(), Mockito.anyInt());
+
+    }
+
+    @Test
+    public void testGetTopWordInDocumentRejectsInvalidCount() {
+
+        ErrorResponse exception = assertThrows(ErrorResponse.class, () -> documentService.getTopWordInDocument(1L, 0));
+        assertEquals(400, exception.getCode());
+        Mockito.verifyNoInteractions(documentAnalyticsService, documentRepository);
+
+    }
+
+    @Test
+    public void testGetNgramsInDocumentUsesNormalizedText() {
+
+        Long documentId = 1L;
+        Map<String, Integer> ngrams = Map.of("тестовый текст", 2);
+
+        Mockito.when(documentAnalyticsService.findNormalizedText(documentId)).thenReturn(Optional.of(testText));
+        Mockito.when(analyticFunctions.getNgrams(testText, 2, 10)).thenReturn(ngrams);
+
+        assertEquals(ngrams, documentService.getNgramsInDocument(documentId, 2, 10));
+        Mockito.verifyNoInteractions(documentRepository);
+
+        ErrorResponse exception = assertThrows(ErrorResponse.class, () -> documentService.getNgrams(1, 10));
+        assertEquals(400, exception.getCode());
+        Mockito.verifyNoInteractions(documentScanService);
+
+    }
+
     @Test
     public void testGetDocumentIdByWords() {
 
         String word = "тестовый";
-        List<Document> documents = Arrays.asList(
-                new Document(1L, "Тестовый текст для документа 1"),
-                new Document(2L, "Текст тестовый для документа 2"),
-                new Document(4L, "Для документа 4 тестовый текст"),
-                new Document(5L, "Текст для документа 5 тестовый")
-        );
         List<Long> documentIds = List.of(1L, 2L, 4L, 5L);
 
-        Mockito.when(documentRepository.findAll()).thenReturn(documents);
-        Mockito.when(analyticFunctions.getDocumentIdByWords(documents, word)).thenReturn(documentIds);
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(true);
+        Mockito.when(documentIndexService.findDocumentIds(word)).thenReturn(documentIds);
 
         List<Long> testResult = documentService.getDocumentIdByWords(word);
 
@@ -202,6 +376,92 @@ class JavaBackendTestApplicationTests {
         assertTrue(testResult.contains(2L));
         assertTrue(testResult.contains(4L));
         assertTrue(testResult.contains(5L));
+        Mockito.verify(documentRepository, Mockito.never()).findAll();
+
+    }
+
+    @Test
+    public void testGetDocumentIdByWordsWithoutDocuments() {
+
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(false);
+
+        assertThrows(ErrorResponse.class, () -> documentService.getDocumentIdByWords("тестовый"));
+
+    }
+
+    @Test
+    public void testGetDocumentIdPageByWords() {
+
+        String word = "тестовый";
+
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(true);
+        Mockito.when(documentIndexService.findDocumentIds(word, Long.MIN_VALUE, 2)).thenReturn(List.of(1L, 2L));
+        Mockito.when(documentIndexService.findDocumentIds(word, 2L, 2)).thenReturn(List.of(5L));
+
+        DocumentIdsPageDTO firstPage = documentService.getDocumentIdPageByWords(word, null, 2);
+        DocumentIdsPageDTO lastPage = documentService.getDocumentIdPageByWords(word, firstPage.getNext(), 2);
+
+        assertEquals(new DocumentIdsPageDTO(List.of(1L, 2L), 2L), firstPage);
+        assertEquals(new DocumentIdsPageDTO(List.of(5L), null), lastPage);
+        assertThrows(ErrorResponse.class, () -> documentService.getDocumentIdPageByWords(word, null, 0));
+        assertThrows(ErrorResponse.class,
+                () -> documentService.getDocumentIdPageByWords(word, null, searchProperties.getMaxPageSize() + 1));
+
+    }
+
+    @Test
+    public void testSearchDocuments() {
+
+        SearchQuery query = new SearchQuery(List.of(new SearchQuery.Clause()));
+        List<Long> documentIds = List.of(2L, 7L);
+
+        Mockito.when(analyticFunctions.parseSearchQuery("тестовый \"текст\"")).thenReturn(query);
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(true);
+        Mockito.when(documentSearchService.search(query)).thenReturn(documentIds);
+
+        assertEquals(documentIds, documentService.searchDocuments("тестовый \"текст\""));
+
+        Mockito.when(analyticFunctions.parseSearchQuery("-тестовый")).thenThrow(IllegalArgumentException.class);
+
+        ErrorResponse exception = assertThrows(ErrorResponse.class, () -> documentService.searchDocuments("-тестовый"));
+        assertEquals(400, exception.getCode());
+        assertThrows(ErrorResponse.class, () -> documentService.searchDocuments(null));
+
+    }
+
+    @Test
+    public void testGetDocumentIdsByPrefixAndSimilarWord() {
+
+        List<String> terms = List.of("тест", "тестовый");
+        List<Long> documentIds = List.of(1L, 3L);
+
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(true);
+        Mockito.when(vocabularyService.findTermsByPrefix("тест", searchProperties.getMaxExpansions())).thenReturn(terms);
+        Mockito.when(documentSearchService.findDocumentIdsByTerms(terms)).thenReturn(documentIds);
+        Mockito.when(vocabularyService.findTermsWithinDistance("тестовй", 1, searchProperties.getMaxExpansions()))
+                .thenReturn(Map.of());
+
+        assertEquals(documentIds, documentService.getDocumentIdsByPrefix("Тест"));
+        assertEquals(List.of(), documentService.getDocumentIdsBySimilarWord("тестовй", 1));
+
+        ErrorResponse exception = assertThrows(ErrorResponse.class, () -> documentService.getDocumentIdsBySimilarWord("тест", 3));
+        assertEquals(400, exception.getCode());
+
+    }
+
+    @Test
+    public void testGetRankedDocuments() {
+
+        List<ScoredDocumentDTO> ranked = List.of(new ScoredDocumentDTO(3L, 2.5), new ScoredDocumentDTO(1L, 1.0));
+
+        Mockito.when(documentRepository.existsByIdIsNotNull()).thenReturn(true);
+        Mockito.when(analyticFunctions.getQueryTerms("тестовый текст")).thenReturn(List.of("тестовый", "текст"));
+        Mockito.when(documentSearchService.rank(List.of("тестовый", "текст"), 2)).thenReturn(ranked);
+
+        assertEquals(ranked, documentService.getRankedDocuments("тестовый текст", 2));
+
+        ErrorResponse exception = assertThrows(ErrorResponse.class, () -> documentService.getRankedDocuments("тестовый", 0));
+        assertEquals(400, exception.getCode());
 
     }
 
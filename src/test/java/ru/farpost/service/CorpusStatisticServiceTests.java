@@ -0,0 +1,133 @@
+package ru.farpost.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.model.DocumentStatistic;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentStatisticRepository;
+import ru.farpost.repository.DocumentTermRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusStatisticServiceTests {
+
+    private final DocumentStatisticRepository documentStatisticRepository = Mockito.mock(DocumentStatisticRepository.class);
+
+    private final CorpusStatisticRepository corpusStatisticRepository = Mockito.mock(CorpusStatisticRepository.class);
+
+    private final DocumentTermRepository documentTermRepository = Mockito.mock(DocumentTermRepository.class);
+
+    private final CorpusStatisticService corpusStatisticService =
+            new CorpusStatisticService(documentStatisticRepository, corpusStatisticRepository, documentTermRepository);
+
+    private DocumentStatisticRepository.TotalsView totals(long documents, long words, long wordsLength, long sentences) {
+        DocumentStatisticRepository.TotalsView totals = Mockito.mock(DocumentStatisticRepository.TotalsView.class);
+        Mockito.when(totals.getDocumentsCount()).thenReturn(documents);
+        Mockito.when(totals.getWordCount()).thenReturn(words);
+        Mockito.when(totals.getWordsLength()).thenReturn(wordsLength);
+        Mockito.when(totals.getSentencesCount()).thenReturn(sentences);
+        return totals;
+    }
+
+    @Test
+    public void testUpdateNewDocument() {
+
+        CorpusAnalysisDTO analysis = new CorpusAnalysisDTO();
+        analysis.add(1L, new TextAnalysisDTO(Map.of("тестовый", 2, "текст", 1), "тестовый текст тестовый", 3, 20, 2, Map.of()));
+        Set<Long> documentIds = analysis.getAnalyses().keySet();
+        DocumentStatisticRepository.TotalsView previous = totals(0, 0, 0, 0);
+
+        Mockito.when(documentStatisticRepository.sumByDocumentIds(documentIds)).thenReturn(previous);
+        Mockito.when(corpusStatisticRepository.applyDelta(CorpusStatistic.SINGLETON_ID, 1, 3, 2, 20, 2)).thenReturn(1);
+
+        corpusStatisticService.updateDocuments(analysis, 2);
+
+        Mockito.verify(documentStatisticRepository).deleteByDocumentIds(documentIds);
+        Mockito.verify(documentStatisticRepository).saveAll(List.of(new DocumentStatistic(1L, 3, 2, 20, 2)));
+        Mockito.verify(corpusStatisticRepository).applyDelta(CorpusStatistic.SINGLETON_ID, 1, 3, 2, 20, 2);
+        Mockito.verify(corpusStatisticRepository, Mockito.never()).save(Mockito.any());
+
+    }
+
+    @Test
+    public void testUpdateOverwrittenDocumentsSubtractPreviousVersions() {
+
+        CorpusAnalysisDTO analysis = new CorpusAnalysisDTO();
+        analysis.add(1L, new TextAnalysisDTO(Map.of("текст", 1), "текст", 1, 5, 1, Map.of()));
+        analysis.add(2L, new TextAnalysisDTO(Map.of("документ", 1), "документ", 1, 8, 1, Map.of()));
+        Set<Long> documentIds = analysis.getAnalyses().keySet();
+        DocumentStatisticRepository.TotalsView previous = totals(1, 3, 20, 2);
+
+        Mockito.when(documentStatisticRepository.sumByDocumentIds(documentIds)).thenReturn(previous);
+        Mockito.when(corpusStatisticRepository.applyDelta(CorpusStatistic.SINGLETON_ID, 1, -1, 0, -7, 0)).thenReturn(1);
+
+        corpusStatisticService.updateDocuments(analysis, 0);
+
+        Mockito.verify(corpusStatisticRepository).applyDelta(CorpusStatistic.SINGLETON_ID, 1, -1, 0, -7, 0);
+
+    }
+
+    @Test
+    public void testUpdateCreatesCorpusRowWhenMissing() {
+
+        CorpusAnalysisDTO analysis = new CorpusAnalysisDTO();
+        analysis.add(1L, new TextAnalysisDTO(Map.of("текст", 1), "текст", 1, 5, 1, Map.of()));
+        Set<Long> documentIds = analysis.getAnalyses().keySet();
+        DocumentStatisticRepository.TotalsView previous = totals(0, 0, 0, 0);
+
+        Mockito.when(documentStatisticRepository.sumByDocumentIds(documentIds)).thenReturn(previous);
+
+        corpusStatisticService.updateDocuments(analysis, 1);
+
+        Mockito.verify(corpusStatisticRepository).save(new CorpusStatistic(CorpusStatistic.SINGLETON_ID, 1, 1, 1, 5, 1, 1));
+
+    }
+
+    @Test
+    public void testGetCorpusStatistic() {
+
+        Mockito.when(corpusStatisticRepository.findById(CorpusStatistic.SINGLETON_ID))
+                .thenReturn(Optional.of(new CorpusStatistic(CorpusStatistic.SINGLETON_ID, 4, 16, 4, 103, 6, 3)));
+
+        Map<String, Integer> statistic = corpusStatisticService.getCorpusStatistic();
+
+        assertEquals(Map.of("documents_count", 4, "word_count", 16, "uniq_word_count", 4,
+                "avg_word_length", 6, "sentences_count", 6), statistic);
+
+    }
+
+    @Test
+    public void testGetCorpusStatisticWithoutDocuments() {
+
+        Mockito.when(corpusStatisticRepository.findById(CorpusStatistic.SINGLETON_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ErrorResponse.class, corpusStatisticService::getCorpusStatistic);
+
+    }
+
+    @Test
+    public void testGetDocumentsStatistic() {
+
+        List<Long> documentIds = List.of(1L, 2L);
+        DocumentStatisticRepository.TotalsView totals = totals(2, 10, 55, 3);
+
+        Mockito.when(documentStatisticRepository.sumByDocumentIds(documentIds)).thenReturn(totals);
+        Mockito.when(documentTermRepository.countDistinctTermsByDocumentIds(documentIds)).thenReturn(7L);
+
+        Map<String, Integer> statistic = corpusStatisticService.getDocumentsStatistic(documentIds);
+
+        assertEquals(Map.of("documents_count", 2, "word_count", 10, "uniq_word_count", 7,
+                "avg_word_length", 5, "sentences_count", 3), statistic);
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package ru.farpost.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentTermRepository;
+import ru.farpost.utils.AnalyticsProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusTopWordsServiceTests {
+
+    private final DocumentTermRepository documentTermRepository = Mockito.mock(DocumentTermRepository.class);
+
+    private final CorpusStatisticRepository corpusStatisticRepository = Mockito.mock(CorpusStatisticRepository.class);
+
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+
+    private final CorpusTopWordsService corpusTopWordsService = new CorpusTopWordsService(documentTermRepository,
+            corpusStatisticRepository, new AnalyticsProperties(), transactionManager);
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private DocumentTermRepository.TermFrequencyView term(String term, int frequency) {
+        return new DocumentTermRepository.TermFrequencyView() {
+            @Override
+            public String getTerm() {
+                return term;
+            }
+
+            @Override
+            public int getFrequency() {
+                return frequency;
+            }
+        };
+    }
+
+    private void save(String term, int frequency) {
+        TextAnalysisDTO analysis = new TextAnalysisDTO();
+        analysis.setTermFrequencies(Map.of(term, frequency));
+        generation.incrementAndGet();
+        corpusTopWordsService.updateDocuments(List.of(), Map.of(generation.get(), analysis));
+    }
+
+    @Test
+    public void testUpdatesCommittedDuringLoadAreKept() {
+
+        Mockito.when(corpusStatisticRepository.findGenerationById(Mockito.any()))
+                .thenAnswer(invocation -> Optional.of(generation.get()));
+        Mockito.when(documentTermRepository.streamTermFrequencies()).thenAnswer(invocation -> Stream.of(term("кот", 3))
+                .peek(term -> save("пес", 7)));
+
+        corpusTopWordsService.loadSketch();
+
+        assertEquals(Map.of("пес", 7L, "кот", 3L), corpusTopWordsService.getTopWords(10));
+
+        corpusTopWordsService.updateDocuments(List.of(term("пес", 7)), Map.of());
+        assertEquals(Map.of("кот", 3L), corpusTopWordsService.getTopWords(10));
+
+    }
+
+    @Test
+    public void testUpdatesCommittedBeforeSnapshotAreNotReplayed() {
+
+        Mockito.when(corpusStatisticRepository.findGenerationById(Mockito.any()))
+                .thenAnswer(invocation -> Optional.of(generation.get()));
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenAnswer(invocation -> {
+            save("пес", 7);
+            return Mockito.mock(TransactionStatus.class);
+        });
+        Mockito.when(documentTermRepository.streamTermFrequencies())
+                .thenAnswer(invocation -> Stream.of(term("кот", 3), term("пес", 7)));
+
+        corpusTopWordsService.loadSketch();
+
+        assertEquals(Map.of("пес", 7L, "кот", 3L), corpusTopWordsService.getTopWords(10));
+
+    }
+
+}
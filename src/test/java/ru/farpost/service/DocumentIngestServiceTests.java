@@ -0,0 +1,96 @@
+package ru.farpost.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.farpost.dto.BulkResultDTO;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.AnalyticsMetrics;
+import ru.farpost.utils.DocumentsAnalyticFunctions;
+import ru.farpost.utils.IngestProperties;
+import ru.farpost.utils.TextCompressor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentIngestServiceTests {
+
+    private final DocumentRepository documentRepository = Mockito.mock(DocumentRepository.class);
+
+    private final DocumentService documentService = Mockito.mock(DocumentService.class);
+
+    private final DocumentIndexService documentIndexService = Mockito.mock(DocumentIndexService.class);
+
+    private final IndexPipelineService indexPipelineService = Mockito.mock(IndexPipelineService.class);
+
+    private DocumentIngestService createService(int batchSize) {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setBatchSize(batchSize);
+        Mockito.doCallRealMethod().when(documentService).validateDocument(Mockito.any());
+        return new DocumentIngestService(documentRepository, documentService, documentIndexService,
+                indexPipelineService, Mockito.mock(ClusterService.class), Mockito.mock(DocumentsAnalyticFunctions.class), Mockito.mock(TextCompressor.class),
+                Mockito.mock(AnalyticsMetrics.class), ingestProperties, new ObjectMapper(), Mockito.mock(PlatformTransactionManager.class));
+    }
+
+    private ByteArrayInputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIngestNdjson() throws Exception {
+
+        String ndjson = """
+                {"id":1,"text":"Тестовый текст для документа 1"}
+                {"id":2,"text":"   "}
+
+                {"id":3,"text":"Текст тестовый для документа 3"}
+                {"id":4,"text":
+                {"id":5,"text":"Для документа 5 тестовый текст"}
+                """;
+
+        BulkResultDTO result = createService(2).ingestNdjson(body(ndjson), false);
+
+        assertEquals(3, result.getSavedCount());
+        assertEquals(2, result.getFailedCount());
+        assertEquals(List.of(1L, 3L), result.getErrors().stream().map(it -> it.getIndex()).toList());
+        assertEquals(2L, result.getErrors().get(0).getId());
+        assertNull(result.getErrors().get(1).getId());
+        Mockito.verify(documentRepository, Mockito.times(2)).upsertAll(Mockito.anyList());
+        Mockito.verify(indexPipelineService, Mockito.times(2)).submit(Mockito.anyList());
+
+    }
+
+    @Test
+    public void testIngestJsonArray() throws Exception {
+
+        String json = """
+                [{"id":1,"text":"Тестовый текст"}, {"id":"abc","text":"Текст"}, {"text":"Без идентификатора"},
+                 {"id":4,"text":"Текст тестовый"}]
+                """;
+
+        BulkResultDTO result = createService(10).ingestJsonArray(body(json), false);
+
+        assertEquals(2, result.getSavedCount());
+        assertEquals(2, result.getFailedCount());
+        assertEquals(List.of(1L, 2L), result.getErrors().stream().map(it -> it.getIndex()).toList());
+        Mockito.verify(documentRepository, Mockito.times(1)).upsertAll(Mockito.anyList());
+
+    }
+
+    @Test
+    public void testFailedBatchRejectsAllItsDocuments() throws Exception {
+
+        Mockito.doThrow(new IllegalStateException()).when(documentRepository).upsertAll(Mockito.anyList());
+
+        BulkResultDTO result = createService(10).ingestNdjson(body("{\"id\":1,\"text\":\"Текст\"}\n{\"id\":2,\"text\":\"Текст\"}"), false);
+
+        assertEquals(0, result.getSavedCount());
+        assertEquals(2, result.getFailedCount());
+
+    }
+
+}
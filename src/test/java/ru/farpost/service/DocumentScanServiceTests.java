@@ -0,0 +1,60 @@
+package ru.farpost.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.farpost.model.Document;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.IngestProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentScanServiceTests {
+
+    private final DocumentRepository documentRepository = Mockito.mock(DocumentRepository.class);
+
+    private DocumentScanService createService(int chunkSize) {
+        IngestProperties ingestProperties = new IngestProperties();
+        ingestProperties.setScanChunkSize(chunkSize);
+        return new DocumentScanService(documentRepository, ingestProperties, Mockito.mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    public void testForEachChunkUsesKeysetPagination() {
+
+        Limit limit = Limit.of(2);
+        Mockito.when(documentRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, limit))
+                .thenReturn(List.of(new Document(1L, "Текст 1"), new Document(3L, "Текст 3")));
+        Mockito.when(documentRepository.findByIdGreaterThanOrderByIdAsc(3L, limit))
+                .thenReturn(List.of(new Document(7L, "Текст 7")));
+
+        List<List<Long>> chunks = new ArrayList<>();
+        long processed = createService(2).forEachChunk(chunk -> chunks.add(chunk.stream().map(Document::getId).toList()));
+
+        assertEquals(3, processed);
+        assertEquals(List.of(List.of(1L, 3L), List.of(7L)), chunks);
+        Mockito.verify(documentRepository, Mockito.times(2)).findByIdGreaterThanOrderByIdAsc(Mockito.any(), Mockito.any());
+
+    }
+
+    @Test
+    public void testForEachChunkStopsOnEmptyChunk() {
+
+        Limit limit = Limit.of(2);
+        Mockito.when(documentRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, limit))
+                .thenReturn(List.of(new Document(1L, "Текст 1"), new Document(2L, "Текст 2")));
+        Mockito.when(documentRepository.findByIdGreaterThanOrderByIdAsc(2L, limit)).thenReturn(List.of());
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        long processed = createService(2).forEachChunk(chunk -> chunkSizes.add(chunk.size()));
+
+        assertEquals(2, processed);
+        assertEquals(List.of(2), chunkSizes);
+
+    }
+
+}
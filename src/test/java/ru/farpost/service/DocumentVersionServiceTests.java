@@ -0,0 +1,63 @@
+package ru.farpost.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.CorpusStatistic;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.ContentHash;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.DocumentCacheProperties;
+import ru.farpost.utils.IngestProperties;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentVersionServiceTests {
+
+    private final DocumentRepository documentRepository = Mockito.mock(DocumentRepository.class);
+
+    private final CorpusStatisticRepository corpusStatisticRepository = Mockito.mock(CorpusStatisticRepository.class);
+
+    private final DocumentCache documentCache = new DocumentCache(new DocumentCacheProperties(), new SimpleMeterRegistry());
+
+    private final DocumentVersionService documentVersionService = new DocumentVersionService(documentRepository,
+            corpusStatisticRepository, documentCache, Mockito.mock(IndexPipelineService.class), new IngestProperties(), Mockito.mock(PlatformTransactionManager.class));
+
+    @Test
+    public void testDocumentETagFollowsContentHash() {
+
+        long hash = ContentHash.of("Текст документа");
+        Mockito.when(documentRepository.findContentHashById(1L)).thenReturn(Optional.of(hash));
+
+        String eTag = documentVersionService.getDocumentETag(1L);
+        assertEquals("\"" + Long.toHexString(hash) + "\"", eTag);
+        assertEquals(eTag, documentVersionService.getDocumentETag(1L));
+        Mockito.verify(documentRepository, Mockito.times(1)).findContentHashById(1L);
+
+        Mockito.when(documentRepository.findContentHashById(1L)).thenReturn(Optional.of(ContentHash.of("Новый текст")));
+        documentCache.invalidate(List.of(1L));
+        assertNotEquals(eTag, documentVersionService.getDocumentETag(1L));
+
+        Mockito.when(documentRepository.existsById(2L)).thenReturn(true);
+        assertNull(documentVersionService.getDocumentETag(2L));
+        assertThrows(ErrorResponse.class, () -> documentVersionService.getDocumentETag(3L));
+
+    }
+
+    @Test
+    public void testCorpusETagFollowsGeneration() {
+
+        assertNull(documentVersionService.getCorpusETag());
+
+        Mockito.when(corpusStatisticRepository.findGenerationById(CorpusStatistic.SINGLETON_ID)).thenReturn(Optional.of(7L));
+        assertEquals("\"corpus-7\"", documentVersionService.getCorpusETag());
+
+    }
+
+}
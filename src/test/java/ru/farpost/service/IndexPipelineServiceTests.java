@@ -0,0 +1,99 @@
+package ru.farpost.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.farpost.exception.ErrorResponse;
+import ru.farpost.model.Document;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.DocumentCache;
+import ru.farpost.utils.DocumentCacheProperties;
+import ru.farpost.utils.IndexPipelineProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexPipelineServiceTests {
+
+    private final DocumentRepository documentRepository = Mockito.mock(DocumentRepository.class);
+
+    private final DocumentIndexService documentIndexService = Mockito.mock(DocumentIndexService.class);
+
+    private IndexPipelineService createService(IndexPipelineProperties indexPipelineProperties) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new IndexPipelineService(documentRepository, documentIndexService,
+                new DocumentCache(new DocumentCacheProperties(), registry), indexPipelineProperties, registry,
+                Mockito.mock(PlatformTransactionManager.class));
+    }
+
+    private Document document(long id) {
+        Document document = new Document();
+        document.setId(id);
+        document.setText("Текст документа " + id);
+        return document;
+    }
+
+    @Test
+    public void testWatermarkReachesSubmittedEvents() throws Exception {
+
+        IndexPipelineProperties indexPipelineProperties = new IndexPipelineProperties();
+        indexPipelineProperties.setEnabled(true);
+        indexPipelineProperties.setWorkers(2);
+        Mockito.when(documentRepository.findAllById(Mockito.anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(this::document).toList());
+        IndexPipelineService service = createService(indexPipelineProperties);
+
+        long first = service.submit(List.of(document(1), document(2)));
+        long second = service.submit(List.of(document(3)));
+
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals(2, service.awaitWatermark(second, Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS));
+        assertFalse(service.isPending(1L));
+        assertEquals(0, service.getQueuedCount());
+        Mockito.verify(documentRepository).markIndexPending(List.of(1L, 2L));
+        Mockito.verify(documentRepository, Mockito.atLeastOnce()).clearIndexPending(Mockito.anyList());
+        service.shutdown();
+
+    }
+
+    @Test
+    public void testFullQueueRejectsOrIndexesInCallerThread() throws Exception {
+
+        IndexPipelineProperties indexPipelineProperties = new IndexPipelineProperties();
+        indexPipelineProperties.setEnabled(true);
+        indexPipelineProperties.setQueueCapacity(1);
+        indexPipelineProperties.setOfferTimeout(Duration.ofMillis(10));
+        CountDownLatch indexing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(documentRepository.findAllById(Mockito.anyCollection())).thenAnswer(invocation -> {
+            indexing.countDown();
+            release.await();
+            return List.of(document(1));
+        });
+        IndexPipelineService service = createService(indexPipelineProperties);
+
+        long sequence = service.submit(List.of(document(1)));
+        assertTrue(indexing.await(5, TimeUnit.SECONDS));
+        assertTrue(service.isPending(1L));
+        assertThrows(ErrorResponse.class, () -> service.submit(List.of(document(2))));
+        assertEquals(0, service.awaitWatermark(sequence, Duration.ZERO).get());
+
+        indexPipelineProperties.setOverflow(IndexPipelineProperties.Overflow.CALLER_RUNS);
+        Document document = document(3);
+        assertEquals(0, service.submit(List.of(document)));
+        Mockito.verify(documentIndexService).indexDocuments(List.of(document));
+
+        release.countDown();
+        assertEquals(sequence, service.awaitWatermark(sequence, Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS));
+        service.shutdown();
+
+    }
+
+}
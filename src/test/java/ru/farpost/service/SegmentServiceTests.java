@@ -0,0 +1,147 @@
+package ru.farpost.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.Document;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.DocumentRepository;
+import ru.farpost.utils.NgramCounter;
+import ru.farpost.utils.SegmentProperties;
+import ru.farpost.utils.TextTokenizer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentServiceTests {
+
+    @TempDir
+    private Path directory;
+
+    private final DocumentRepository documentRepository = Mockito.mock(DocumentRepository.class);
+
+    private final CorpusStatisticRepository corpusStatisticRepository = Mockito.mock(CorpusStatisticRepository.class);
+
+    private final DocumentScanService documentScanService = Mockito.mock(DocumentScanService.class);
+
+    private final TextTokenizer textTokenizer = Mockito.mock(TextTokenizer.class);
+
+    private SegmentService createService() {
+        SegmentProperties segmentProperties = new SegmentProperties();
+        segmentProperties.setEnabled(true);
+        segmentProperties.setDirectory(directory.toString());
+        segmentProperties.setMergeFactor(2);
+        SegmentService segmentService = new SegmentService(segmentProperties, documentRepository,
+                corpusStatisticRepository, documentScanService, textTokenizer);
+        segmentService.openSegments();
+        return segmentService;
+    }
+
+    private Map<Long, TextAnalysisDTO> analyses(Object... idsAndTexts) {
+        Map<Long, TextAnalysisDTO> analyses = new HashMap<>();
+        for (int i = 0; i < idsAndTexts.length; i += 2) {
+            TextAnalysisDTO analysis = new TextAnalysisDTO();
+            analysis.setNormalizedText((String) idsAndTexts[i + 1]);
+            analyses.put((Long) idsAndTexts[i], analysis);
+        }
+        return analyses;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).count();
+        }
+    }
+
+    private void corpusGeneration(long generation) {
+        Mockito.when(corpusStatisticRepository.findGenerationById(Mockito.any())).thenReturn(Optional.of(generation));
+    }
+
+    @Test
+    public void testLatestVersionWinsAcrossMergesAndReopen() throws Exception {
+
+        SegmentService segmentService = createService();
+        corpusGeneration(1);
+        segmentService.updateDocuments(analyses(1L, "кот мышь", 2L, "кот собака"));
+        corpusGeneration(2);
+        segmentService.updateDocuments(analyses(1L, "собака"));
+        corpusGeneration(3);
+        segmentService.updateDocuments(analyses(3L, "кот кот мышь"));
+        corpusGeneration(4);
+        segmentService.updateDocuments(analyses(2L, ""));
+
+        assertEquals(List.of(3L), segmentService.findDocumentIds("кот"));
+        assertEquals(List.of(1L), segmentService.findDocumentIds("собака"));
+        for (int i = 0; i < 100 && segmentFiles() > 2; i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(segmentFiles() <= 2);
+        segmentService.shutdown();
+
+        Mockito.when(documentRepository.count()).thenReturn(3L);
+        SegmentService reopened = createService();
+        reopened.checkSegments();
+
+        assertTrue(reopened.isReady());
+        assertEquals(List.of(3L), reopened.findDocumentIds("кот"));
+        assertEquals(List.of(3L), reopened.findDocumentIds("мышь"));
+        assertEquals(List.of(1L), reopened.findDocumentIds("собака"));
+        Map<String, Long> ngrams = new HashMap<>();
+        long documents = reopened.forEachDocument((tokens, dictionary) ->
+                new NgramCounter(tokens, dictionary, 2).forEach((ngram, count) -> ngrams.merge(ngram, count, Long::sum)));
+        assertEquals(3, documents);
+        assertEquals(Map.of("кот кот", 1L, "кот мышь", 1L), ngrams);
+        reopened.shutdown();
+
+    }
+
+    @Test
+    public void testSegmentsMissingCommittedSavesAreRebuilt() throws Exception {
+
+        SegmentService segmentService = createService();
+        corpusGeneration(1);
+        segmentService.updateDocuments(analyses(1L, "кот мышь"));
+        segmentService.shutdown();
+
+        Document document = new Document();
+        document.setId(1L);
+        document.setText("собака");
+        Mockito.when(documentRepository.count()).thenReturn(1L);
+        Mockito.when(textTokenizer.tokenize("собака")).thenReturn(List.of("собака"));
+        Mockito.when(documentScanService.forEachChunkReadOnly(Mockito.any())).thenAnswer(invocation -> {
+            Consumer<List<Document>> consumer = invocation.getArgument(0);
+            consumer.accept(List.of(document));
+            return 1L;
+        });
+        corpusGeneration(2);
+        SegmentService reopened = createService();
+        reopened.checkSegments();
+
+        for (int i = 0; i < 100 && !reopened.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(reopened.isReady());
+        assertEquals(List.of(), reopened.findDocumentIds("кот"));
+        assertEquals(List.of(1L), reopened.findDocumentIds("собака"));
+        reopened.shutdown();
+
+        Mockito.clearInvocations(documentScanService);
+        SegmentService current = createService();
+        current.checkSegments();
+
+        assertTrue(current.isReady());
+        Mockito.verify(documentScanService, Mockito.never()).forEachChunkReadOnly(Mockito.any());
+        current.shutdown();
+
+    }
+
+}
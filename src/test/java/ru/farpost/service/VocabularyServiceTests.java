@@ -0,0 +1,88 @@
+package ru.farpost.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.CorpusTerm;
+import ru.farpost.repository.CorpusStatisticRepository;
+import ru.farpost.repository.CorpusTermRepository;
+import ru.farpost.repository.DocumentTermRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VocabularyServiceTests {
+
+    private final CorpusTermRepository corpusTermRepository = Mockito.mock(CorpusTermRepository.class);
+
+    private final CorpusStatisticRepository corpusStatisticRepository = Mockito.mock(CorpusStatisticRepository.class);
+
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+
+    private final VocabularyService vocabularyService = new VocabularyService(corpusTermRepository,
+            corpusStatisticRepository, transactionManager);
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private DocumentTermRepository.TermFrequencyView term(String term) {
+        return new DocumentTermRepository.TermFrequencyView() {
+            @Override
+            public String getTerm() {
+                return term;
+            }
+
+            @Override
+            public int getFrequency() {
+                return 1;
+            }
+        };
+    }
+
+    private void save(String term) {
+        TextAnalysisDTO analysis = new TextAnalysisDTO();
+        analysis.setTermFrequencies(Map.of(term, 1));
+        generation.incrementAndGet();
+        vocabularyService.updateDocuments(List.of(), Map.of(generation.get(), analysis));
+    }
+
+    @Test
+    public void testUpdatesCommittedDuringLoadAreKept() {
+
+        Mockito.when(corpusStatisticRepository.findGenerationById(Mockito.any()))
+                .thenAnswer(invocation -> Optional.of(generation.get()));
+        Mockito.when(corpusTermRepository.streamAll()).thenAnswer(invocation -> Stream.of(new CorpusTerm("кот", 2))
+                .peek(term -> save("котенок")));
+
+        vocabularyService.loadVocabulary();
+
+        assertEquals(List.of("кот", "котенок"), vocabularyService.findTermsByPrefix("кот", 10));
+
+    }
+
+    @Test
+    public void testUpdatesCommittedBeforeSnapshotAreNotReplayed() {
+
+        Mockito.when(corpusStatisticRepository.findGenerationById(Mockito.any()))
+                .thenAnswer(invocation -> Optional.of(generation.get()));
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenAnswer(invocation -> {
+            save("котенок");
+            return Mockito.mock(TransactionStatus.class);
+        });
+        Mockito.when(corpusTermRepository.streamAll())
+                .thenAnswer(invocation -> Stream.of(new CorpusTerm("кот", 2), new CorpusTerm("котенок", 1)));
+
+        vocabularyService.loadVocabulary();
+        vocabularyService.updateDocuments(List.of(term("котенок")), Map.of());
+
+        assertEquals(List.of("кот"), vocabularyService.findTermsByPrefix("кот", 10));
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.farpost.dto.ScoredDocumentDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25RankerTests {
+
+    /**
+     * Списки документов слов в памяти с учетом прочитанных целиком списков.
+     */
+    private static class MemoryPostings implements Bm25Ranker.PostingSource {
+
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+
+        private final Map<Long, Integer> lengths = new HashMap<>();
+
+        private final Set<String> fullyRead = new HashSet<>();
+
+        @Override
+        public void readAll(String term, Bm25Ranker.PostingConsumer consumer) {
+            fullyRead.add(term);
+            postings.get(term).forEach((id, frequency) -> consumer.accept(id, frequency, lengths.get(id)));
+        }
+
+        @Override
+        public void readForDocuments(String term, List<Long> documentIds, Bm25Ranker.PostingConsumer consumer) {
+            Map<Long, Integer> list = postings.get(term);
+            documentIds.stream().filter(list::containsKey)
+                    .forEach(id -> consumer.accept(id, list.get(id), lengths.get(id)));
+        }
+
+        private Map<String, Integer> documentFrequencies() {
+            Map<String, Integer> frequencies = new HashMap<>();
+            postings.forEach((term, list) -> frequencies.put(term, list.size()));
+            return frequencies;
+        }
+
+    }
+
+    private MemoryPostings randomPostings(Random random, int documents) {
+        MemoryPostings source = new MemoryPostings();
+        int[] documentFrequencies = {3, 40, 700, documents - 10};
+        for (long id = 1; id <= documents; id++) {
+            source.lengths.put(id, 5 + random.nextInt(200));
+        }
+        for (int t = 0; t < documentFrequencies.length; t++) {
+            Map<Long, Integer> list = new HashMap<>();
+            while (list.size() < documentFrequencies[t]) {
+                list.put(1L + random.nextInt(documents), 1 + random.nextInt(5));
+            }
+            source.postings.put("term" + t, list);
+        }
+        return source;
+    }
+
+    private List<ScoredDocumentDTO> exhaustive(Bm25Ranker ranker, MemoryPostings source, int k) {
+        Map<Long, Double> scores = new HashMap<>();
+        source.postings.forEach((term, list) -> {
+            double idf = ranker.idf(list.size());
+            list.forEach((id, frequency) -> scores.merge(id, ranker.score(idf, frequency, source.lengths.get(id)), Double::sum));
+        });
+        List<ScoredDocumentDTO> result = new ArrayList<>();
+        scores.forEach((id, score) -> result.add(new ScoredDocumentDTO(id, score)));
+        result.sort(Comparator.comparingDouble(ScoredDocumentDTO::getScore).reversed().thenComparing(ScoredDocumentDTO::getId));
+        return result.subList(0, Math.min(k, result.size()));
+    }
+
+    @Test
+    public void testRankMatchesExhaustiveScoring() {
+
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            int documents = 2000;
+            MemoryPostings source = randomPostings(random, documents);
+            Bm25Ranker ranker = new Bm25Ranker(1.2, 0.75, documents, 105);
+            int k = 1 + random.nextInt(50);
+
+            List<ScoredDocumentDTO> expected = exhaustive(ranker, source, k);
+            List<ScoredDocumentDTO> actual = ranker.rank(source.documentFrequencies(), k, source);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), actual.get(i).getId());
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-9);
+            }
+        }
+
+    }
+
+    @Test
+    public void testFrequentTermIsNotReadWhenItCannotChangeResult() {
+
+        MemoryPostings source = new MemoryPostings();
+        Map<Long, Integer> rare = new HashMap<>();
+        Map<Long, Integer> common = new HashMap<>();
+        for (long id = 1; id <= 10000; id++) {
+            source.lengths.put(id, 100);
+            common.put(id, 1);
+        }
+        for (long id = 1; id <= 5; id++) {
+            rare.put(id * 100, 3);
+        }
+        source.postings.put("редкое", rare);
+        source.postings.put("частое", common);
+
+        Bm25Ranker ranker = new Bm25Ranker(1.2, 0.75, 10000, 100);
+        List<ScoredDocumentDTO> result = ranker.rank(source.documentFrequencies(), 3, source);
+
+        assertEquals(List.of(100L, 200L, 300L), result.stream().map(ScoredDocumentDTO::getId).toList());
+        assertEquals(Set.of("редкое"), source.fullyRead);
+        assertEquals(exhaustive(ranker, source, 3), result);
+
+    }
+
+}
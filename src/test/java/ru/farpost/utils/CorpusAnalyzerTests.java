@@ -0,0 +1,80 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.farpost.dto.CorpusAnalysisDTO;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.model.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusAnalyzerTests {
+
+    private final String[] vocabulary = {"Тестовый", "текст", "для", "документа", "и", "ЁЛКА", "ёжик", "the", "of",
+            "Lorem", "ipsum", "odor", "amet", "gravida", "показатели", "успешности", "внимание"};
+
+    private final String[] punctuation = {" ", " ", " ", ", ", ". ", "! ", "? ", " - "};
+
+    private CorpusAnalyzer createAnalyzer(DocumentsAnalyticFunctions analyticFunctions, int parallelism, int threshold) {
+        AnalyticsProperties analyticsProperties = new AnalyticsProperties();
+        analyticsProperties.setParallelism(parallelism);
+        analyticsProperties.setParallelThreshold(threshold);
+        return new CorpusAnalyzer(analyticFunctions, analyticsProperties);
+    }
+
+    private List<Document> generateDocuments(int count, long seed) {
+        Random random = new Random(seed);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = random.nextInt(200);
+            for (int j = 0; j < words; j++) {
+                text.append(vocabulary[random.nextInt(vocabulary.length)]);
+                text.append(punctuation[random.nextInt(punctuation.length)]);
+            }
+            documents.add(new Document((long) random.nextInt(count), text.toString()));
+        }
+        return documents;
+    }
+
+    @Test
+    public void testParallelAnalysisMatchesSequential() {
+
+        DocumentsAnalyticFunctions analyticFunctions = TextFixtures.analyticFunctions();
+        List<Document> documents = generateDocuments(1000, 42);
+
+        Map<Long, TextAnalysisDTO> expected = new LinkedHashMap<>();
+        for (Document document : documents) {
+            expected.put(document.getId(), analyticFunctions.analyzeText(document.getText()));
+        }
+
+        CorpusAnalysisDTO result = createAnalyzer(analyticFunctions, 4, 8).analyze(documents);
+
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(result.getAnalyses().keySet()));
+        assertEquals(expected, result.getAnalyses());
+        assertEquals(expected.values().stream().mapToLong(TextAnalysisDTO::getWordCount).sum(), result.getWordCount());
+        assertEquals(expected.values().stream().mapToLong(TextAnalysisDTO::getWordsLength).sum(), result.getWordsLength());
+        assertEquals(expected.values().stream().mapToLong(TextAnalysisDTO::getSentencesCount).sum(), result.getSentencesCount());
+
+    }
+
+    @Test
+    public void testSmallGroupIsAnalyzedSequentially() {
+
+        CorpusAnalysisDTO result = createAnalyzer(TextFixtures.analyticFunctions(), 2, 16)
+                .analyze(List.of(new Document(1L, "Тестовый текст. Текст!"), new Document(1L, "ёжик и ЁЛКА")));
+
+        assertEquals(Map.of("ёжик", 1, "ёлка", 1), result.getAnalyses().get(1L).getTermFrequencies());
+        assertEquals(1, result.getAnalyses().size());
+        assertEquals(2, result.getWordCount());
+        assertEquals(8, result.getWordsLength());
+        assertEquals(1, result.getSentencesCount());
+
+    }
+
+}
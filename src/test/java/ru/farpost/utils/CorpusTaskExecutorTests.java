@@ -0,0 +1,54 @@
+package ru.farpost.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.exception.ErrorResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusTaskExecutorTests {
+
+    @Test
+    public void testTasksOverQueueCapacityAreRejected() throws Exception {
+
+        CorpusTaskProperties properties = new CorpusTaskProperties();
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(1);
+        CorpusTaskExecutor executor = new CorpusTaskExecutor(properties, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            CompletableFuture<String> running = executor.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "running";
+            });
+            started.await();
+            CompletableFuture<String> queued = executor.submit(() -> "queued");
+            CompletableFuture<String> rejected = executor.submit(() -> "rejected");
+
+            ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+            ErrorResponse error = assertInstanceOf(ErrorResponse.class, exception.getCause());
+            assertEquals(ExceptionsMessage.SERVER_BUSY.getCode(), error.getCode());
+
+            release.countDown();
+            assertEquals("running", running.get());
+            assertEquals("queued", queued.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTests {
+
+    private HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add("слово" + i);
+        }
+        return sketch;
+    }
+
+    @Test
+    public void testEstimateWithinErrorBound() {
+
+        for (int count : new int[]{10, 1000, 100000, 1000000}) {
+            long estimate = sketchOf(0, count).estimate();
+            assertEquals(count, estimate, count * 0.05, "count " + count);
+        }
+
+    }
+
+    @Test
+    public void testDuplicatesDoNotChangeEstimate() {
+
+        HyperLogLog sketch = sketchOf(0, 5000);
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 5000; i++) {
+            sketch.add("слово" + i);
+        }
+
+        assertEquals(estimate, sketch.estimate());
+
+    }
+
+    @Test
+    public void testMergeEstimatesUnion() {
+
+        HyperLogLog first = sketchOf(0, 60000);
+        HyperLogLog second = new HyperLogLog(sketchOf(40000, 100000).toByteArray());
+
+        first.merge(second);
+
+        assertEquals(100000, first.estimate(), 100000 * 0.05);
+        assertEquals(HyperLogLog.REGISTERS, first.toByteArray().length);
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NgramCounterTests {
+
+    @Test
+    public void testNgramsMatchNaiveCount() {
+
+        TextTokenizer tokenizer = TextFixtures.tokenizer();
+        String[] vocabulary = {"кот", "пес", "дом", "лес", "река", "поле", "гора"};
+        Random random = new Random(11);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(vocabulary[random.nextInt(vocabulary.length)]).append(i % 7 == 0 ? ". " : " ");
+        }
+        List<String> words = tokenizer.tokenize(text);
+
+        for (int n = NgramCounter.MIN_N; n <= NgramCounter.MAX_N; n++) {
+            Map<String, Long> expected = new HashMap<>();
+            for (int i = 0; i + n <= words.size(); i++) {
+                expected.merge(String.join(" ", words.subList(i, i + n)), 1L, Long::sum);
+            }
+            Map<String, Long> actual = new HashMap<>();
+            new NgramCounter(tokenizer, new TermDictionary(), text, n).forEach(actual::put);
+
+            assertEquals(expected, actual);
+        }
+
+    }
+
+    @Test
+    public void testTopOrdersByCountThenAlphabetically() {
+
+        NgramCounter counter = new NgramCounter(TextFixtures.tokenizer(), new TermDictionary(), "кот пес. дом кот. кот пес дом кот и дом кот", 2);
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("дом кот", 3);
+        expected.put("кот пес", 2);
+        expected.put("пес дом", 2);
+
+        assertEquals(expected, counter.top(3));
+
+    }
+
+    @Test
+    public void testShortTextAndInvalidLength() {
+
+        TextTokenizer tokenizer = TextFixtures.tokenizer();
+
+        assertTrue(new NgramCounter(tokenizer, new TermDictionary(), "одно слово", 3).top(10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new NgramCounter(tokenizer, new TermDictionary(), "текст", 1));
+        assertThrows(IllegalArgumentException.class, () -> new NgramCounter(tokenizer, new TermDictionary(), "текст", 6));
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTests {
+
+    private long[] randomPostings(Random random, int size, int bound) {
+        return random.longs(size, 0, bound).distinct().sorted().toArray();
+    }
+
+    @Test
+    public void testPostingListOperationsMatchSets() {
+
+        Random random = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            long[] first = randomPostings(random, random.nextInt(50), 1000);
+            long[] second = randomPostings(random, random.nextInt(2000), 1000);
+            TreeSet<Long> firstSet = new TreeSet<>(LongStream.of(first).boxed().toList());
+            TreeSet<Long> secondSet = new TreeSet<>(LongStream.of(second).boxed().toList());
+
+            TreeSet<Long> intersection = new TreeSet<>(firstSet);
+            intersection.retainAll(secondSet);
+            TreeSet<Long> difference = new TreeSet<>(firstSet);
+            difference.removeAll(secondSet);
+            TreeSet<Long> union = new TreeSet<>(firstSet);
+            union.addAll(secondSet);
+
+            assertArrayEquals(intersection.stream().mapToLong(Long::longValue).toArray(), PostingLists.intersect(first, second));
+            assertArrayEquals(intersection.stream().mapToLong(Long::longValue).toArray(), PostingLists.intersect(second, first));
+            assertArrayEquals(difference.stream().mapToLong(Long::longValue).toArray(), PostingLists.difference(first, second));
+            assertArrayEquals(union.stream().mapToLong(Long::longValue).toArray(), PostingLists.union(first, second));
+        }
+
+    }
+
+    @Test
+    public void testPositionsCodecAndPhrase() {
+
+        int[] positions = {0, 1, 127, 128, 20000, 3000000};
+        assertArrayEquals(positions, PostingLists.decodePositions(PostingLists.encodePositions(positions)));
+        assertEquals(0, PostingLists.decodePositions(PostingLists.encodePositions(new int[0])).length);
+
+        // "кот пес кот рыжий пес": кот = {0, 2}, пес = {1, 4}, рыжий = {3}
+        int[] cat = {0, 2};
+        int[] dog = {1, 4};
+        int[] red = {3};
+
+        assertTrue(PostingLists.containsPhrase(new int[][]{cat, dog}));
+        assertTrue(PostingLists.containsPhrase(new int[][]{red, dog}));
+        assertTrue(PostingLists.containsPhrase(new int[][]{cat, red, dog}));
+        assertFalse(PostingLists.containsPhrase(new int[][]{dog, red}));
+        assertFalse(PostingLists.containsPhrase(new int[][]{cat, cat}));
+
+    }
+
+    @Test
+    public void testParseSearchQuery() {
+
+        TextTokenizer tokenizer = TextFixtures.tokenizer();
+
+        SearchQuery query = SearchQuery.parse("Кот \"рыжий и пес\" -мышь NOT the AND сыр OR попугай", tokenizer);
+
+        assertEquals(2, query.getClauses().size());
+        SearchQuery.Clause first = query.getClauses().get(0);
+        assertEquals(List.of(List.of("кот"), List.of("рыжий", "пес"), List.of("сыр")), first.getRequired());
+        assertEquals(List.of(List.of("мышь")), first.getExcluded());
+        assertEquals(List.of(List.of("попугай")), query.getClauses().get(1).getRequired());
+
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("", tokenizer));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("-кот", tokenizer));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("кот OR", tokenizer));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("\"кот пес", tokenizer));
+
+    }
+
+}
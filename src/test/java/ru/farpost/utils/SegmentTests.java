@@ -0,0 +1,106 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTests {
+
+    @TempDir
+    private Path directory;
+
+    private TreeMap<Long, List<String>> randomDocuments(Random random, long firstId, int count) {
+        String[] vocabulary = {"кот", "мышь", "собака", "ёж", "cat", "dog", "zebra", "я", "ящик", "а"};
+        TreeMap<Long, List<String>> documents = new TreeMap<>();
+        for (long id = firstId; documents.size() < count; id += 1 + random.nextInt(3)) {
+            List<String> words = new ArrayList<>();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                words.add(vocabulary[random.nextInt(vocabulary.length)]);
+            }
+            documents.put(id, words);
+        }
+        return documents;
+    }
+
+    private void assertSegmentContains(Segment segment, TreeMap<Long, List<String>> expected) {
+        assertEquals(expected.size(), segment.documentCount());
+        Map<String, TreeMap<Long, Integer>> postings = new TreeMap<>();
+        int ordinal = 0;
+        for (Map.Entry<Long, List<String>> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), segment.documentId(ordinal));
+            assertEquals(ordinal, segment.findDocument(entry.getKey()));
+            assertEquals(entry.getValue(), Arrays.stream(segment.tokens(ordinal)).mapToObj(segment::term).toList());
+            entry.getValue().forEach(term -> postings.computeIfAbsent(term, key -> new TreeMap<>())
+                    .merge(entry.getKey(), 1, Integer::sum));
+            ordinal++;
+        }
+        assertEquals(postings.size(), segment.termCount());
+        postings.forEach((term, expectedPostings) -> {
+            int termId = segment.findTerm(term);
+            assertEquals(term, segment.term(termId));
+            assertEquals(expectedPostings.size(), segment.documentFrequency(termId));
+            TreeMap<Long, Integer> actual = new TreeMap<>();
+            segment.forEachPosting(termId, (document, frequency) -> actual.put(segment.documentId(document), frequency));
+            assertEquals(expectedPostings, actual);
+        });
+        assertEquals(-1, segment.findTerm("отсутствует"));
+        assertEquals(-1, segment.findDocument(-5));
+    }
+
+    @Test
+    public void testWriteAndReadBack() throws Exception {
+
+        TreeMap<Long, List<String>> documents = randomDocuments(new Random(1), 1, 200);
+        Path file = directory.resolve("segment.seg");
+
+        Segment.write(file, documents);
+
+        assertSegmentContains(Segment.open(file), documents);
+
+    }
+
+    @Test
+    public void testMergeSkipsDeletedDocumentsAndUnusedTerms() throws Exception {
+
+        Random random = new Random(2);
+        TreeMap<Long, List<String>> first = randomDocuments(random, 1, 100);
+        TreeMap<Long, List<String>> second = randomDocuments(random, 2, 100);
+        second.put(1_000_000L, List.of("уникальное"));
+        Path firstFile = directory.resolve("first.seg");
+        Path secondFile = directory.resolve("second.seg");
+        Segment.write(firstFile, first);
+        Segment.write(secondFile, second);
+        Segment firstSegment = Segment.open(firstFile);
+        Segment secondSegment = Segment.open(secondFile);
+
+        BitSet firstDeleted = new BitSet();
+        TreeMap<Long, List<String>> expected = new TreeMap<>(first);
+        for (Long id : second.keySet()) {
+            if (first.containsKey(id)) {
+                firstDeleted.set(firstSegment.findDocument(id));
+            }
+        }
+        expected.putAll(second);
+        BitSet secondDeleted = new BitSet();
+        secondDeleted.set(secondSegment.findDocument(1_000_000L));
+        expected.remove(1_000_000L);
+
+        Path merged = directory.resolve("merged.seg");
+        Segment.merge(merged, List.of(firstSegment, secondSegment), List.of(firstDeleted, secondDeleted));
+
+        assertSegmentContains(Segment.open(merged), expected);
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.farpost.dto.DocumentIdsPageDTO;
+import ru.farpost.dto.ScoredDocumentDTO;
+import ru.farpost.dto.StatisticTotalsDTO;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardMergerTests {
+
+    private StatisticTotalsDTO totals(long documentsCount, long wordCount, long wordsLength, long sentencesCount,
+                                      List<String> uniqueWords) {
+        HyperLogLog sketch = new HyperLogLog();
+        uniqueWords.forEach(sketch::add);
+        return new StatisticTotalsDTO(documentsCount, wordCount, uniqueWords.size(), wordsLength, sentencesCount,
+                sketch.toByteArray());
+    }
+
+    @Test
+    public void testMergeIdsAndPages() {
+
+        assertEquals(List.of(1L, 2L, 3L, 5L, 8L, 13L), ShardMerger.mergeIds(List.of(List.of(2L, 8L), List.of(1L, 3L, 13L), List.of(), List.of(5L))));
+
+        List<Long> first = LongStream.rangeClosed(1, 20).filter(id -> id % 2 == 0).boxed().toList();
+        List<Long> second = LongStream.rangeClosed(1, 20).filter(id -> id % 2 == 1).boxed().toList();
+        DocumentIdsPageDTO page = ShardMerger.mergePages(List.of(
+                new DocumentIdsPageDTO(first.subList(0, 5), first.get(4)),
+                new DocumentIdsPageDTO(second.subList(0, 5), second.get(4))), 5);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), page.getIds());
+        assertEquals(5L, page.getNext());
+
+        DocumentIdsPageDTO last = ShardMerger.mergePages(List.of(
+                new DocumentIdsPageDTO(List.of(18L, 20L), null),
+                new DocumentIdsPageDTO(List.of(19L), null)), 5);
+        assertEquals(List.of(18L, 19L, 20L), last.getIds());
+        assertNull(last.getNext());
+
+    }
+
+    @Test
+    public void testMergeRankedAndCounts() {
+
+        List<ScoredDocumentDTO> ranked = ShardMerger.mergeRanked(List.of(
+                List.of(new ScoredDocumentDTO(4L, 3.0), new ScoredDocumentDTO(2L, 1.0)),
+                List.of(new ScoredDocumentDTO(1L, 2.0), new ScoredDocumentDTO(3L, 1.0))), 3);
+        assertEquals(List.of(4L, 1L, 2L), ranked.stream().map(ScoredDocumentDTO::getId).toList());
+
+        Map<String, Long> first = new LinkedHashMap<>(Map.of("кот", 5L, "пес", 4L));
+        Map<String, Long> second = new LinkedHashMap<>(Map.of("пес", 3L, "мышь", 6L));
+        assertEquals(List.of("пес", "мышь"), List.copyOf(ShardMerger.mergeCounts(List.of(first, second), 2).keySet()));
+        assertEquals(Map.of("пес", 7L, "мышь", 6L), ShardMerger.mergeCounts(List.of(first, second), 2));
+
+    }
+
+    @Test
+    public void testMergeStatistics() {
+
+        List<String> words = IntStream.range(0, 2000).mapToObj(i -> "слово" + i).collect(Collectors.toList());
+        StatisticTotalsDTO first = totals(3, 100, 500, 10, words.subList(0, 1200));
+        StatisticTotalsDTO second = totals(2, 60, 180, 6, words.subList(800, 2000));
+
+        Map<String, Integer> statistic = ShardMerger.mergeStatistics(List.of(first, second), false);
+        assertEquals(5, statistic.get("documents_count"));
+        assertEquals(160, statistic.get("word_count"));
+        assertEquals(4, statistic.get("avg_word_length"));
+        assertEquals(16, statistic.get("sentences_count"));
+        assertEquals(2000, statistic.get("uniq_word_count"), 2000 * 0.05);
+
+        assertEquals(1200, ShardMerger.mergeStatistics(List.of(first), false).get("uniq_word_count"));
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.farpost.components.ExceptionsMessage;
+import ru.farpost.dto.TextAnalysisDTO;
+import ru.farpost.exception.ErrorResponse;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamedTextTests {
+
+    @Test
+    public void testStreamedTextMatchesWholeText() throws Exception {
+
+        String text = "Тестовый текст для документа. Ёжик и ЁЛКА!  Lorem ipsum 😀 gravida?\n".repeat(50)
+                + "текст без точки \uD83D";
+        DocumentsAnalyticFunctions analyticFunctions = TextFixtures.analyticFunctions();
+        TextCompressor textCompressor = new TextCompressor(new CompressionProperties());
+
+        for (int chunkSize : new int[]{1, 2, 3, 7, 64, 100_000}) {
+            StreamedText streamed = analyticFunctions.analyzeText(new StringReader(text), chunkSize, Long.MAX_VALUE);
+            byte[] compressed;
+            try (InputStream input = textCompressor.compressStream(streamed)) {
+                compressed = input.readAllBytes();
+            }
+
+            TextAnalysisDTO expected = analyticFunctions.analyzeText(text);
+            TextAnalysisDTO actual = streamed.getAnalysis();
+            assertEquals(expected, actual, "chunk size " + chunkSize);
+            assertArrayEquals(expected.getTermPositions().get("текст"), actual.getTermPositions().get("текст"));
+            assertEquals(ContentHash.of(text), streamed.getContentHash());
+            assertEquals(text.length(), streamed.getLength());
+            assertFalse(streamed.isBlank());
+            assertEquals(new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), TextCompressor.decompress(compressed));
+        }
+
+    }
+
+    @Test
+    public void testBlankUnfinishedAndTooLargeText() throws Exception {
+
+        DocumentsAnalyticFunctions analyticFunctions = TextFixtures.analyticFunctions();
+
+        StreamedText blank = analyticFunctions.analyzeText(new StringReader(" \n\t "), 2, Long.MAX_VALUE);
+        assertEquals(" \n\t ".length(), blank.readAllBytes().length);
+        assertTrue(blank.isBlank());
+        assertEquals(0, blank.getAnalysis().getWordCount());
+
+        StreamedText unfinished = analyticFunctions.analyzeText(new StringReader("Тестовый текст"), 4, Long.MAX_VALUE);
+        assertTrue(unfinished.read() >= 0);
+        assertThrows(IllegalStateException.class, unfinished::getAnalysis);
+
+        StreamedText limited = analyticFunctions.analyzeText(new StringReader("Тестовый текст"), 4, 14);
+        assertEquals("Тестовый текст".getBytes(StandardCharsets.UTF_8).length, limited.readAllBytes().length);
+        StreamedText tooLarge = analyticFunctions.analyzeText(new StringReader("Тестовый текст!"), 4, 14);
+        ErrorResponse error = assertThrows(ErrorResponse.class, tooLarge::readAllBytes);
+        assertEquals(ExceptionsMessage.DOCUMENT_TOO_LARGE.getCode(), error.getCode());
+
+    }
+
+}
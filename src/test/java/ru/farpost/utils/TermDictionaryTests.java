@@ -0,0 +1,74 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermDictionaryTests {
+
+    @Test
+    public void testIdsAreDenseAndStableAcrossGrowth() {
+
+        TermDictionary dictionary = new TermDictionary();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String term = "слово" + (i % 15000);
+            char[] buffer = (term + "хвост").toCharArray();
+            int id = i % 2 == 0 ? dictionary.id(term) : dictionary.id(buffer, term.length());
+            Integer previous = expected.putIfAbsent(term, id);
+            assertEquals(previous == null ? expected.size() - 1 : previous, id);
+        }
+
+        assertEquals(15000, dictionary.size());
+        expected.forEach((term, id) -> {
+            assertEquals(term, dictionary.term(id));
+            assertEquals(id, dictionary.find(term));
+            assertEquals(id, dictionary.find(term.toCharArray(), term.length()));
+        });
+        assertEquals(-1, dictionary.find("отсутствует"));
+        assertEquals(-1, dictionary.find("слово".toCharArray(), 4));
+        assertEquals(15000, dictionary.size());
+
+    }
+
+    @Test
+    public void testConcurrentAddsAssignOneIdPerTerm() throws Exception {
+
+        TermDictionary dictionary = new TermDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                results.add(executor.submit(() -> {
+                    int[] ids = new int[10000];
+                    for (int i = 0; i < ids.length; i++) {
+                        int word = (i * 7 + offset * 13) % ids.length;
+                        ids[word] = dictionary.id("w" + word);
+                    }
+                    return ids;
+                }));
+            }
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertArrayEquals(first, result.get());
+            }
+            assertEquals(10000, dictionary.size());
+            for (int word = 0; word < first.length; word++) {
+                assertEquals("w" + word, dictionary.term(first[word]));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+}
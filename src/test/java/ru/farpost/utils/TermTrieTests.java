@@ -0,0 +1,148 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermTrieTests {
+
+    private static int levenshtein(String first, String second) {
+        int[] row = new int[second.length() + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int above = row[j];
+                row[j] = Math.min(diagonal + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1),
+                        Math.min(row[j], row[j - 1]) + 1);
+                diagonal = above;
+            }
+        }
+        return row[second.length()];
+    }
+
+    private TreeMap<String, Integer> randomVocabulary(Random random, TermTrie trie) {
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        char[] alphabet = "котмыьш".toCharArray();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                word.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            trie.add(word.toString(), 1);
+            expected.merge(word.toString(), 1, Integer::sum);
+        }
+        return expected;
+    }
+
+    /**
+     * Количество узлов поддерева полного дерева слов длины {@code length} над {@code alphabet}, которые посещает
+     * поиск с отсечением: потомки перебираются, пока в строке таблицы расстояний есть значение меньше
+     * {@code maxEdits}, а затем только по символам искомого слова в ячейках со значением {@code maxEdits}.
+     */
+    private static int expectedVisits(String node, String alphabet, int length, String query, int maxEdits) {
+        int[] row = new int[query.length() + 1];
+        for (int i = 0; i <= query.length(); i++) {
+            row[i] = Math.min(levenshtein(node, query.substring(0, i)), maxEdits + 1);
+        }
+        int minimum = Arrays.stream(row).min().getAsInt();
+        if (minimum > maxEdits || node.length() == length) {
+            return 1;
+        }
+        int visits = 1;
+        for (char symbol : alphabet.toCharArray()) {
+            boolean reachable = minimum < maxEdits || IntStream.range(0, query.length())
+                    .anyMatch(i -> row[i] == maxEdits && query.charAt(i) == symbol);
+            if (reachable) {
+                visits += expectedVisits(node + symbol, alphabet, length, query, maxEdits);
+            }
+        }
+        return visits;
+    }
+
+    @Test
+    public void testPrefixAndRemovalMatchSortedMap() {
+
+        Random random = new Random(3);
+        TermTrie trie = new TermTrie();
+        TreeMap<String, Integer> expected = randomVocabulary(random, trie);
+
+        for (String term : new ArrayList<>(expected.keySet())) {
+            if (random.nextInt(3) == 0) {
+                int frequency = expected.remove(term);
+                trie.add(term, -frequency);
+            } else if (random.nextInt(2) == 0) {
+                trie.add(term, -1);
+                expected.computeIfPresent(term, (key, value) -> value == 1 ? null : value - 1);
+            }
+        }
+
+        assertEquals(expected.size(), trie.size());
+        expected.forEach((term, frequency) -> assertEquals(frequency, trie.documentFrequency(term)));
+        for (String prefix : List.of("к", "ко", "мыш", "ьь", "ш", "котм", "о")) {
+            List<String> matches = expected.subMap(prefix, prefix + Character.MAX_VALUE).keySet().stream().toList();
+            assertEquals(matches, trie.findByPrefix(prefix, Integer.MAX_VALUE));
+            assertEquals(matches.subList(0, Math.min(3, matches.size())), trie.findByPrefix(prefix, 3));
+        }
+
+    }
+
+    @Test
+    public void testFindWithinDistanceMatchesNaiveScan() {
+
+        TermTrie trie = new TermTrie();
+        TreeMap<String, Integer> vocabulary = randomVocabulary(new Random(9), trie);
+
+        for (String query : List.of("кот", "мышь", "о", "ттттт", "кош")) {
+            for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                Map<String, Integer> found = trie.findWithinDistance(query, maxEdits, Integer.MAX_VALUE);
+                int edits = maxEdits;
+                List<String> expected = vocabulary.keySet().stream()
+                        .filter(term -> levenshtein(term, query) <= edits).sorted().toList();
+
+                assertEquals(expected, found.keySet().stream().sorted().toList());
+                found.forEach((term, distance) -> assertEquals(levenshtein(term, query), distance));
+            }
+        }
+
+    }
+
+    @Test
+    public void testFindWithinDistancePrunesExhaustedBranches() {
+
+        // В полном дереве у каждого узла есть потомок на каждый символ, и метки не сжимаются,
+        // поэтому количество посещенных узлов можно вычислить перебором префиксов.
+        String alphabet = "абвгде";
+        int length = 5;
+        TermTrie trie = new TermTrie();
+        List<String> words = new ArrayList<>(List.of(""));
+        for (int i = 0; i < length; i++) {
+            words = words.stream().flatMap(word -> alphabet.chars().mapToObj(symbol -> word + (char) symbol)).toList();
+        }
+        words.forEach(word -> trie.add(word, 1));
+
+        for (String query : List.of("абвгд", "еееее", "вг", "абвгдеабв")) {
+            for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                int edits = maxEdits;
+                int expected = alphabet.chars()
+                        .map(symbol -> expectedVisits(String.valueOf((char) symbol), alphabet, length, query, edits))
+                        .sum();
+                assertEquals(expected, trie.countVisitedNodes(query, maxEdits), query + " " + maxEdits);
+            }
+        }
+
+    }
+
+}
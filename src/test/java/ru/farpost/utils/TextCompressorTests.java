@@ -0,0 +1,53 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.farpost.model.Document;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextCompressorTests {
+
+    private TextCompressor createCompressor(boolean enabled, int threshold) {
+        CompressionProperties compressionProperties = new CompressionProperties();
+        compressionProperties.setEnabled(enabled);
+        compressionProperties.setThreshold(threshold);
+        return new TextCompressor(compressionProperties);
+    }
+
+    @Test
+    public void testCompressedTextIsRestoredLazily() {
+
+        String text = "Съешь же ещё этих мягких французских булок, да выпей чаю. ".repeat(200);
+        byte[] compressed = createCompressor(true, 100).compress(text);
+
+        assertNotNull(compressed);
+        assertTrue(compressed.length < text.getBytes(StandardCharsets.UTF_8).length / 10);
+        assertEquals(text, TextCompressor.decompress(compressed));
+
+        Document stored = new Document(1L, null);
+        stored.setCompressedText(compressed);
+        assertEquals(text, stored.getText());
+        assertSame(stored.getText(), stored.getText());
+        assertEquals(new Document(1L, text), stored);
+
+        stored.setText("новый текст");
+        assertNull(stored.getCompressedText());
+        assertEquals("новый текст", stored.getText());
+
+    }
+
+    @Test
+    public void testShortDisabledAndUnprofitableTextsStayRaw() {
+
+        String text = "Короткий текст документа";
+        assertNull(createCompressor(true, text.length() + 1).compress(text));
+        assertNull(createCompressor(false, 0).compress(text.repeat(1000)));
+        assertNull(createCompressor(true, 0).compress(null));
+
+        assertNull(createCompressor(true, 0).compress("абв"));
+
+    }
+
+}
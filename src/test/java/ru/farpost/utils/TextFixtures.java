@@ -0,0 +1,38 @@
+package ru.farpost.utils;
+
+import java.util.List;
+
+/**
+ * Общие объекты для тестов разбора текстов: токенизатор и функции аналитики с одним списком стоп-слов.
+ */
+final class TextFixtures {
+
+    /**
+     * Стоп-слова тестов.
+     */
+    static final List<String> STOP_WORDS = List.of("и", "во", "над", "чем", "для", "a", "of", "the");
+
+    private TextFixtures() {
+    }
+
+    /**
+     * Метод для создания токенизатора со стоп-словами {@link #STOP_WORDS}.
+     *
+     * @return токенизатор.
+     */
+    static TextTokenizer tokenizer() {
+        StopWordsListUtil stopWordsUtil = new StopWordsListUtil();
+        stopWordsUtil.setWords(STOP_WORDS);
+        return new TextTokenizer(stopWordsUtil);
+    }
+
+    /**
+     * Метод для создания функций аналитики со стоп-словами {@link #STOP_WORDS} и собственным словарем.
+     *
+     * @return функции аналитики.
+     */
+    static DocumentsAnalyticFunctions analyticFunctions() {
+        return new DocumentsAnalyticFunctions(tokenizer(), new TermDictionary());
+    }
+
+}
@@ -0,0 +1,68 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextTokenizerTests {
+
+    private final String testText = "Lorem, ipsum odor odor odor a amet, consectetuer adipiscing elit. " +
+            "Viverra& fermentum neque: tellus euismod gravida duis gravida of mi! " +
+            "Conubia Conubia Arcu nibh; the leo leo leo leo leo platea enim lacinia? " +
+            "Принимая во внимание внимание внимание внимание показатели успешности. " +
+            "Есть над чем задуматься: ЁЛКА и ёжик.";
+
+    @Test
+    public void testTokenizeMatchesRegexNormalization() {
+
+        List<String> expected = Arrays.stream(testText
+                        .replaceAll("[^a-zA-Zа-яА-ЯёЁ\\s]", "")
+                        .toLowerCase()
+                        .split("\\s+"))
+                .filter(word -> !List.of("и", "во", "над", "чем", "a", "of", "the").contains(word))
+                .toList();
+
+        assertEquals(expected, TextFixtures.tokenizer().tokenize(testText));
+
+    }
+
+    @Test
+    public void testSkipsEmptyTokens() {
+
+        assertEquals(List.of("hello", "world"), TextFixtures.tokenizer().tokenize("  1. Hello -- world 42 "));
+        assertTrue(TextFixtures.tokenizer().tokenize("12345 !!!").isEmpty());
+
+    }
+
+    @Test
+    public void testCountsSentences() {
+
+        int sentences = TextFixtures.tokenizer().forEachToken(testText, (buffer, length) -> { });
+        int expected = (int) Arrays.stream(testText.split("[.!?]+")).map(String::trim).filter(it -> !it.isEmpty()).count();
+
+        assertEquals(expected, sentences);
+        assertEquals(0, TextFixtures.tokenizer().forEachToken(" ... ", (buffer, length) -> { }));
+
+    }
+
+    @Test
+    public void testSessionHandlesTokensAcrossChunks() {
+
+        List<String> words = new ArrayList<>();
+        TextTokenizer.Session session = TextFixtures.tokenizer().session((buffer, length) -> words.add(new String(buffer, 0, length)));
+        char[] chars = testText.toCharArray();
+        for (int offset = 0; offset < chars.length; offset += 7) {
+            session.feed(chars, offset, Math.min(7, chars.length - offset));
+        }
+        int sentences = session.finish();
+
+        assertEquals(TextFixtures.tokenizer().tokenize(testText), words);
+        assertEquals(TextFixtures.tokenizer().forEachToken(testText, (buffer, length) -> { }), sentences);
+
+    }
+
+}
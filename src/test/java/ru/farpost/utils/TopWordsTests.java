@@ -0,0 +1,100 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopWordsTests {
+
+    @Test
+    public void testTopKSelectorMatchesFullSort() {
+
+        Random random = new Random(7);
+        List<Integer> values = new ArrayList<>();
+        TopKSelector<Integer> selector = new TopKSelector<>(25, Comparator.reverseOrder());
+        for (int i = 0; i < 10000; i++) {
+            int value = random.nextInt(1000);
+            values.add(value);
+            selector.offer(value);
+        }
+        values.sort(Comparator.reverseOrder());
+
+        assertEquals(values.subList(0, 25), selector.toList());
+
+    }
+
+    @Test
+    public void testTopWordsBreaksTiesAlphabetically() {
+
+        String text = "Ёжик банан яблоко. Банан, ёжик! The апельсин и груша яблоко ёжик";
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("ёжик", 3);
+        expected.put("банан", 2);
+        expected.put("яблоко", 2);
+        expected.put("апельсин", 1);
+
+        DocumentsAnalyticFunctions analyticFunctions = TextFixtures.analyticFunctions();
+        Map<String, Integer> fromText = analyticFunctions.getTopWords(text, 4);
+        Map<String, Integer> fromCounts = analyticFunctions.getTopWords(
+                analyticFunctions.analyzeText(text).getTermFrequencies(), 4);
+
+        assertEquals(List.copyOf(expected.entrySet()), List.copyOf(fromText.entrySet()));
+        assertEquals(List.copyOf(expected.entrySet()), List.copyOf(fromCounts.entrySet()));
+
+    }
+
+    @Test
+    public void testSpaceSavingFindsHeavyHitters() {
+
+        Random random = new Random(11);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(50);
+        Map<String, Long> exact = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < 200000; i++) {
+            String term = random.nextInt(4) == 0 ? "частое" + random.nextInt(5) : "редкое" + random.nextInt(5000);
+            sketch.add(term, 1);
+            exact.merge(term, 1L, Long::sum);
+            total++;
+        }
+
+        Map<String, Long> top = sketch.top(5);
+
+        assertEquals(5, top.size());
+        for (Map.Entry<String, Long> entry : top.entrySet()) {
+            assertTrue(entry.getKey().startsWith("частое"));
+            long count = exact.get(entry.getKey());
+            assertTrue(entry.getValue() >= count && entry.getValue() <= count + total / 50);
+        }
+
+    }
+
+    @Test
+    public void testSpaceSavingSubtractAndMerge() {
+
+        SpaceSavingSketch first = new SpaceSavingSketch(10);
+        first.add("текст", 5);
+        first.add("документ", 3);
+        SpaceSavingSketch second = new SpaceSavingSketch(10);
+        second.add("документ", 4);
+        second.add("слово", 1);
+
+        first.merge(second);
+        first.subtract("текст", 5);
+
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("документ", 7L);
+        expected.put("слово", 1L);
+        assertEquals(List.copyOf(expected.entrySet()), List.copyOf(first.top(10).entrySet()));
+
+    }
+
+}
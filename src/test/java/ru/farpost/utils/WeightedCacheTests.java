@@ -0,0 +1,57 @@
+package ru.farpost.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedCacheTests {
+
+    @Test
+    public void testEvictsByWeightAndKeepsReusedValues() {
+
+        WeightedCache<Integer, String> cache = new WeightedCache<>(100, String::length);
+        cache.put(1, "a".repeat(30));
+        cache.put(2, "b".repeat(30));
+        assertNotNull(cache.get(1));
+
+        for (int key = 3; key < 20; key++) {
+            cache.put(key, "c".repeat(30));
+        }
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertTrue(cache.weight() <= 100);
+        assertEquals(3, cache.size());
+
+        cache.put(20, "d".repeat(101));
+        assertNull(cache.get(20));
+        cache.put(1, "e".repeat(10));
+        assertEquals("e".repeat(10), cache.get(1));
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+
+        assertEquals(3, cache.hitCount());
+        assertEquals(3, cache.missCount());
+
+    }
+
+    @Test
+    public void testValueWithoutRequestedDataIsMissAndStaysOnProbation() {
+
+        WeightedCache<Integer, String> cache = new WeightedCache<>(100, String::length);
+        cache.put(1, "a".repeat(30));
+        cache.put(2, "b".repeat(30));
+
+        assertNull(cache.get(1, value -> value.startsWith("b")));
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        cache.put(3, "c".repeat(30));
+        cache.put(4, "d".repeat(30));
+        assertNull(cache.get(1));
+        assertEquals("b".repeat(30), cache.get(2, value -> value.startsWith("b")));
+        assertEquals(1, cache.hitCount());
+
+    }
+
+}